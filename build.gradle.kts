@@ -48,11 +48,15 @@ tasks {
     }
     dependencies {
         implementation("com.google.code.gson:gson:2.10.1")
+        implementation("it.unimi.dsi:fastutil-core:8.5.13") // int/long primitive collections for the word indexes
+        compileOnly("commons-codec:commons-codec:1.18.0") // Double Metaphone for "sounds like" lookup; bundled with the IDE
         // --- 添加 MP3 支持库 ---
         // Tritonus SPI for MP3 support in javax.sound.sampled
         implementation("com.googlecode.soundlibs:tritonus-share:0.3.7.4") // 基础库
         implementation("com.googlecode.soundlibs:mp3spi:1.9.5.4")     // MP3 SPI 实现
         implementation("javazoom:jlayer:1.0.1")
 
+        testImplementation("junit:junit:4.13.2")
+
     }
 }
@@ -1,6 +1,8 @@
 package com.honsin.aiword.action;
 
 
+import com.honsin.aiword.service.CompilingDownloadSink;
+import com.honsin.aiword.service.WordbookDownloader;
 import com.honsin.aiword.settings.WordMemorizerSettingsState;
 import com.intellij.notification.NotificationGroupManager;
 import com.intellij.notification.NotificationType;
@@ -17,15 +19,10 @@ import com.intellij.openapi.util.text.StringUtil;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
-import java.net.URI;
 import java.net.URL;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.time.Duration;
 
 public class DownloadWordbookAction extends AnAction {
 
@@ -70,55 +67,29 @@ public class DownloadWordbookAction extends AnAction {
         ProgressManager.getInstance().run(new Task.Backgroundable(project, "下载默认单词本 (Downloading Default Wordbook)", true) {
             @Override
             public void run(@NotNull ProgressIndicator indicator) {
-                indicator.setIndeterminate(true);
                 indicator.setText("正在连接并下载... (Connecting and downloading...)");
 
-                HttpClient client = HttpClient.newBuilder()
-                        .connectTimeout(Duration.ofSeconds(10)) // Add timeout
-                        .followRedirects(HttpClient.Redirect.NORMAL) // Handle redirects
-                        .build();
-                HttpRequest request = HttpRequest.newBuilder()
-                        .uri(URI.create(DEFAULT_WORDBOOK_URL))
-                        .timeout(Duration.ofSeconds(30)) // Timeout for the request itself
-                        .GET()
-                        .build();
-
                 try {
                     LOG.info("Downloading from " + DEFAULT_WORDBOOK_URL + " to " + targetFilePath);
-                    // Download directly to file
-                    HttpResponse<Path> response = client.send(request, HttpResponse.BodyHandlers.ofFile(targetFilePath));
-
-                    if (response.statusCode() == 200) {
-                        LOG.info("Download successful. Status code: " + response.statusCode());
-                        NotificationGroupManager.getInstance().getNotificationGroup(NOTIFICATION_GROUP_ID)
-                                .createNotification("下载成功 (Download Successful)",
-                                        "默认单词本已保存到 (Default wordbook saved to): " + targetFilePath,
-                                        NotificationType.INFORMATION)
-                                .notify(project);
-                    } else {
-                        LOG.error("Download failed. Status code: " + response.statusCode() + ", Body (might be error message): " + response.body()); // Log body for debugging
-                        // Try to delete the potentially incomplete file
-                        try {
-                            Files.deleteIfExists(targetFilePath);
-                        } catch (IOException ignored) {
-                        }
-                        NotificationGroupManager.getInstance().getNotificationGroup(NOTIFICATION_GROUP_ID)
-                                .createNotification("下载失败 (Download Failed)",
-                                        "无法下载文件 (Could not download file). 服务器状态码 (Server status code): " + response.statusCode(),
-                                        NotificationType.ERROR)
-                                .notify(project);
+                    // Download to a .part file first; it is moved into place only when complete and resumed on retry
+                    WordbookDownloader.DownloadRequest request = new WordbookDownloader.DownloadRequest(DEFAULT_WORDBOOK_URL, targetFilePath);
+                    if (CompilingDownloadSink.accepts(targetFilePath)) {
+                        request.setSink(new CompilingDownloadSink(targetFilePath));
                     }
+                    WordbookDownloader.DownloadResult result = WordbookDownloader.download(request, indicator);
 
-                } catch (IOException | InterruptedException | IllegalArgumentException ex) {
-                    LOG.error("Error during wordbook download", ex);
-                    // Try to delete the potentially incomplete file
-                    try {
-                        Files.deleteIfExists(targetFilePath);
-                    } catch (IOException ignored) {
-                    }
+                    LOG.info("Download successful: " + result.getSize() + " bytes, resumed at " + result.getResumedFrom());
+                    NotificationGroupManager.getInstance().getNotificationGroup(NOTIFICATION_GROUP_ID)
+                            .createNotification("下载成功 (Download Successful)",
+                                    "默认单词本已保存到 (Default wordbook saved to): " + targetFilePath,
+                                    NotificationType.INFORMATION)
+                            .notify(project);
+                } catch (IOException | IllegalArgumentException ex) {
+                    // The partial file is kept next to the target so the next attempt resumes
+                    LOG.warn("Error during wordbook download", ex);
                     NotificationGroupManager.getInstance().getNotificationGroup(NOTIFICATION_GROUP_ID)
                             .createNotification("下载出错 (Download Error)",
-                                    "下载过程中发生错误 (An error occurred during download): " + ex.getMessage(),
+                                    "下载过程中发生错误，再次下载将从中断处继续 (An error occurred during download, downloading again resumes it): " + ex.getMessage(),
                                     NotificationType.ERROR)
                             .notify(project);
                 }
@@ -0,0 +1,139 @@
+package com.honsin.aiword.action;
+
+
+import com.honsin.aiword.model.WordEntry;
+import com.honsin.aiword.service.WordbookService;
+import com.honsin.aiword.service.WordbookSnapshot;
+import com.honsin.aiword.service.tts.AudioPack;
+import com.honsin.aiword.service.tts.AudioPackExporter;
+import com.honsin.aiword.service.tts.LocalAudioPackTtsProvider;
+import com.honsin.aiword.service.tts.TtsProvider;
+import com.honsin.aiword.settings.WordMemorizerSettingsState;
+import com.intellij.notification.NotificationGroupManager;
+import com.intellij.notification.NotificationType;
+import com.intellij.openapi.actionSystem.ActionUpdateThread;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.util.text.StringUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fetches the pronunciation of every word in the selected wordbook into one offline audio pack
+ * ({@code <wordbook dir>/audio/<book>.awpack}). Cancelling keeps what was fetched; running it again resumes.
+ */
+public class ExportAudioPackAction extends AnAction {
+
+    private static final Logger LOG = Logger.getInstance(ExportAudioPackAction.class);
+    private static final String NOTIFICATION_GROUP_ID = "WordMemorizerNotifications";
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent e) {
+        Project project = e.getProject(); // Can be null
+        WordMemorizerSettingsState settings = WordMemorizerSettingsState.getInstance();
+        String directory = settings.getWordbookDirectory();
+        String bookName = settings.getSelectedWordbookName();
+        Path audioDir = LocalAudioPackTtsProvider.getAudioDirectory();
+
+        if (StringUtil.isEmptyOrSpaces(bookName) || audioDir == null) {
+            Messages.showWarningDialog(project,
+                    "请先在工具窗口中选择一个单词本。\n(Please select a wordbook in the tool window first.)",
+                    "未选择单词本 (No Wordbook Selected)");
+            return;
+        }
+
+        Path bookFile = Paths.get(directory).resolve(bookName);
+        Path packFile = audioDir.resolve(toPackFileName(bookName));
+
+        ProgressManager.getInstance().run(new Task.Backgroundable(project, "导出音频包 (Exporting Audio Pack)", true) {
+            private AudioPackExporter.Result result;
+
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                indicator.setIndeterminate(false);
+                indicator.setText("正在读取单词本 (Reading wordbook) " + bookName + "...");
+                List<String> words = new ArrayList<>();
+                try {
+                    WordbookSnapshot snapshot = WordbookService.getInstance().acquire(bookFile);
+                    try {
+                        for (WordEntry entry : snapshot.getWords()) {
+                            words.add(entry.getWord());
+                        }
+                    } finally {
+                        snapshot.release();
+                    }
+                    indicator.setText("正在下载发音 (Fetching pronunciations) " + bookName + "...");
+                    result = new AudioPackExporter(packFile, AudioPackExporter.DEFAULT_CONCURRENCY).export(words, indicator);
+                } catch (IOException ex) {
+                    throw new RuntimeException(ex.getMessage(), ex);
+                }
+            }
+
+            @Override
+            public void onSuccess() {
+                LocalAudioPackTtsProvider provider = TtsProvider.EP_NAME.findExtension(LocalAudioPackTtsProvider.class);
+                if (provider != null) {
+                    provider.invalidate();
+                }
+                String message = "已打包 " + result.packed + " / " + result.total + " 个发音 (pronunciations packed)";
+                if (result.missing > 0) {
+                    message += "，" + result.missing + " 个没有发音 (without audio)";
+                }
+                if (!result.isComplete()) {
+                    message += "，" + result.failed + " 个失败，再次导出可继续 (failed, run again to resume)";
+                } else {
+                    message += "\n" + packFile;
+                }
+                showNotification(project, "音频包导出 (Audio Pack Export)", message,
+                        result.isComplete() ? NotificationType.INFORMATION : NotificationType.WARNING);
+            }
+
+            @Override
+            public void onCancel() {
+                showNotification(project, "音频包导出已取消 (Audio Pack Export Canceled)",
+                        "已下载的发音会保留，再次导出将继续。(Fetched audio is kept; export again to resume.)", NotificationType.WARNING);
+            }
+
+            @Override
+            public void onThrowable(@NotNull Throwable error) {
+                LOG.warn("Audio pack export failed for " + bookName, error);
+                showNotification(project, "音频包导出失败 (Audio Pack Export Failed)", error.getMessage(), NotificationType.ERROR);
+            }
+        });
+    }
+
+    @NotNull
+    static String toPackFileName(@NotNull String wordbookFileName) {
+        String base = wordbookFileName.endsWith(".json")
+                ? wordbookFileName.substring(0, wordbookFileName.length() - ".json".length())
+                : wordbookFileName;
+        return base + AudioPack.EXTENSION;
+    }
+
+    private static void showNotification(Project project, String title, String content, NotificationType type) {
+        NotificationGroupManager.getInstance().getNotificationGroup(NOTIFICATION_GROUP_ID)
+                .createNotification(title, content, type)
+                .notify(project);
+    }
+
+    @Override
+    public void update(@NotNull AnActionEvent e) {
+        e.getPresentation().setEnabled(!StringUtil.isEmptyOrSpaces(WordMemorizerSettingsState.getInstance().getSelectedWordbookName()));
+    }
+
+    @Override
+    public @NotNull ActionUpdateThread getActionUpdateThread() {
+        return ActionUpdateThread.BGT;
+    }
+}
@@ -0,0 +1,109 @@
+package com.honsin.aiword.action;
+
+
+import com.honsin.aiword.service.tts.AudioPack;
+import com.honsin.aiword.service.tts.LocalAudioPackTtsProvider;
+import com.honsin.aiword.service.tts.TtsProvider;
+import com.intellij.notification.NotificationGroupManager;
+import com.intellij.notification.NotificationType;
+import com.intellij.openapi.actionSystem.ActionUpdateThread;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.fileChooser.FileChooser;
+import com.intellij.openapi.fileChooser.FileChooserDescriptor;
+import com.intellij.openapi.fileChooser.FileChooserDescriptorFactory;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Copies an audio pack exported on another machine into the local audio directory. No network involved.
+ */
+public class ImportAudioPackAction extends AnAction {
+
+    private static final Logger LOG = Logger.getInstance(ImportAudioPackAction.class);
+    private static final String NOTIFICATION_GROUP_ID = "WordMemorizerNotifications";
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent e) {
+        Project project = e.getProject(); // Can be null
+        Path audioDir = LocalAudioPackTtsProvider.getAudioDirectory();
+        if (audioDir == null) {
+            Messages.showWarningDialog(project,
+                    "请先在 设置 -> 工具 -> AiWord Memorizer Settings 中配置单词本目录。\n(Please configure the wordbook directory in Settings -> Tools -> AiWord Memorizer Settings first.)",
+                    "目录未配置 (Directory Not Configured)");
+            return;
+        }
+
+        FileChooserDescriptor descriptor = FileChooserDescriptorFactory.createSingleFileNoJarsDescriptor()
+                .withTitle("选择音频包 (Select Audio Pack)")
+                .withFileFilter(file -> file.getName().endsWith(AudioPack.EXTENSION));
+        VirtualFile chosen = FileChooser.chooseFile(descriptor, project, null);
+        if (chosen == null) {
+            return;
+        }
+
+        Path source = Paths.get(chosen.getPath());
+        Path target = audioDir.resolve(source.getFileName());
+        // A pack can be hundreds of MB: validate and copy it off the EDT
+        ProgressManager.getInstance().run(new Task.Backgroundable(project, "导入音频包 (Importing Audio Pack)", false) {
+            private int size;
+
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                try {
+                    try (AudioPack pack = AudioPack.open(source)) {
+                        size = pack.size(); // Validate before copying
+                    }
+                    Files.createDirectories(audioDir);
+                    if (!source.toAbsolutePath().equals(target.toAbsolutePath())) {
+                        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+                        Files.copy(source, tmp, StandardCopyOption.REPLACE_EXISTING);
+                        try {
+                            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                        } catch (java.nio.file.AtomicMoveNotSupportedException ex) {
+                            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+                        }
+                    }
+                } catch (IOException ex) {
+                    throw new RuntimeException(ex.getMessage(), ex);
+                }
+                LocalAudioPackTtsProvider provider = TtsProvider.EP_NAME.findExtension(LocalAudioPackTtsProvider.class);
+                if (provider != null) {
+                    provider.invalidate();
+                }
+            }
+
+            @Override
+            public void onSuccess() {
+                NotificationGroupManager.getInstance().getNotificationGroup(NOTIFICATION_GROUP_ID)
+                        .createNotification("音频包已导入 (Audio Pack Imported)",
+                                size + " 个发音 (pronunciations): " + target, NotificationType.INFORMATION)
+                        .notify(project);
+            }
+
+            @Override
+            public void onThrowable(@NotNull Throwable error) {
+                LOG.warn("Failed to import audio pack " + source, error);
+                Messages.showErrorDialog(project, "导入音频包失败 (Failed to import audio pack): " + error.getMessage(),
+                        "导入错误 (Import Error)");
+            }
+        });
+    }
+
+    @Override
+    public @NotNull ActionUpdateThread getActionUpdateThread() {
+        return ActionUpdateThread.BGT;
+    }
+}
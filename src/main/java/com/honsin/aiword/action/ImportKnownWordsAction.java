@@ -0,0 +1,82 @@
+package com.honsin.aiword.action;
+
+import com.honsin.aiword.service.KnownWords;
+import com.intellij.notification.NotificationGroupManager;
+import com.intellij.notification.NotificationType;
+import com.intellij.openapi.actionSystem.ActionUpdateThread;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.fileChooser.FileChooser;
+import com.intellij.openapi.fileChooser.FileChooserDescriptor;
+import com.intellij.openapi.fileChooser.FileChooserDescriptorFactory;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Marks every word of a word list (one per line, e.g. exported from another app) as known, see {@link KnownWords}.
+ */
+public class ImportKnownWordsAction extends AnAction {
+
+    private static final Logger LOG = Logger.getInstance(ImportKnownWordsAction.class);
+    private static final String NOTIFICATION_GROUP_ID = "WordMemorizerNotifications";
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent e) {
+        Project project = e.getProject(); // Can be null
+        FileChooserDescriptor descriptor = FileChooserDescriptorFactory.createSingleFileNoJarsDescriptor()
+                .withTitle("选择已掌握的单词列表 (Select List of Known Words)")
+                .withDescription("每行一个单词，Tab 或逗号之后的内容忽略。(One word per line; anything after a tab or comma is ignored.)");
+        VirtualFile chosen = FileChooser.chooseFile(descriptor, project, null);
+        if (chosen == null) {
+            return;
+        }
+        Path file = Paths.get(chosen.getPath());
+
+        ProgressManager.getInstance().run(new Task.Backgroundable(project, "导入已掌握的单词 (Importing Known Words)", false) {
+            private int added;
+
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                try {
+                    added = KnownWords.getInstance().importFrom(file);
+                } catch (IOException ex) {
+                    throw new RuntimeException(ex.getMessage(), ex);
+                }
+            }
+
+            @Override
+            public void onSuccess() {
+                int total = KnownWords.getInstance().getIndex().size();
+                showNotification(project, "已掌握 (Known Words)",
+                        "从 " + file.getFileName() + " 新增 " + added + " 个已掌握的单词，共 " + total + " 个。(Added "
+                                + added + " known words, " + total + " in total.)", NotificationType.INFORMATION);
+            }
+
+            @Override
+            public void onThrowable(@NotNull Throwable error) {
+                LOG.warn("Importing known words from " + file + " failed", error);
+                showNotification(project, "导入失败 (Import Failed)", error.getMessage(), NotificationType.ERROR);
+            }
+        });
+    }
+
+    private static void showNotification(Project project, String title, String content, NotificationType type) {
+        NotificationGroupManager.getInstance().getNotificationGroup(NOTIFICATION_GROUP_ID)
+                .createNotification(title, content, type)
+                .notify(project);
+    }
+
+    @Override
+    public @NotNull ActionUpdateThread getActionUpdateThread() {
+        return ActionUpdateThread.BGT;
+    }
+}
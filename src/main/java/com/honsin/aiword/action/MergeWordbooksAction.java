@@ -0,0 +1,122 @@
+package com.honsin.aiword.action;
+
+import com.honsin.aiword.service.WordbookMerger;
+import com.honsin.aiword.service.WordbookService;
+import com.honsin.aiword.service.WordbookSnapshot;
+import com.intellij.notification.NotificationGroupManager;
+import com.intellij.notification.NotificationType;
+import com.intellij.openapi.actionSystem.ActionUpdateThread;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.fileChooser.FileChooser;
+import com.intellij.openapi.fileChooser.FileChooserDescriptor;
+import com.intellij.openapi.fileChooser.FileChooserDescriptorFactory;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reports how much the chosen wordbooks overlap and merges them into one book without duplicates
+ * ({@code <wordbook dir>/合并-<book>+<book>.json}), see {@link WordbookMerger}.
+ */
+public class MergeWordbooksAction extends AnAction {
+
+    private static final Logger LOG = Logger.getInstance(MergeWordbooksAction.class);
+    private static final String NOTIFICATION_GROUP_ID = "WordMemorizerNotifications";
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent e) {
+        Project project = e.getProject();
+        FileChooserDescriptor descriptor = FileChooserDescriptorFactory.createMultipleFilesNoJarsDescriptor()
+                .withTitle("选择要合并的单词本 (Select Wordbooks to Merge)")
+                .withFileFilter(file -> file.getName().toLowerCase().endsWith(".json"));
+        VirtualFile[] chosen = FileChooser.chooseFiles(descriptor, project, null);
+        if (chosen == null || chosen.length == 0) {
+            return;
+        }
+        if (chosen.length < 2) {
+            Messages.showWarningDialog(project, "请至少选择两个单词本。(Select at least two wordbooks.)",
+                    "合并单词本 (Merge Wordbooks)");
+            return;
+        }
+        List<Path> files = new ArrayList<>(chosen.length);
+        List<String> names = new ArrayList<>(chosen.length);
+        for (VirtualFile file : chosen) {
+            files.add(Paths.get(file.getPath()));
+            names.add(StringUtil.trimEnd(file.getName(), ".json"));
+        }
+        Path target = files.get(0).resolveSibling("合并-" + String.join("+", names) + ".json");
+        if (files.contains(target)) {
+            Messages.showWarningDialog(project, "合并结果不能覆盖参与合并的单词本。(The merged book would overwrite one of its sources.)",
+                    "合并单词本 (Merge Wordbooks)");
+            return;
+        }
+
+        ProgressManager.getInstance().run(new Task.Backgroundable(project, "合并单词本 (Merging Wordbooks)", true) {
+            private WordbookMerger.Overlap overlap;
+            private int wordCount;
+
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                List<WordbookSnapshot> books = new ArrayList<>(files.size());
+                try {
+                    for (Path file : files) {
+                        indicator.setText("正在读取单词本 (Reading wordbook) " + file.getFileName() + "...");
+                        books.add(WordbookService.getInstance().acquire(file, indicator));
+                    }
+                    overlap = WordbookMerger.analyze(books, indicator);
+                    LOG.info("Wordbook overlap:\n" + String.join("\n", overlap.toLines()));
+                    wordCount = WordbookMerger.merge(books, target, indicator);
+                } catch (IOException ex) {
+                    throw new RuntimeException(ex.getMessage(), ex);
+                } finally {
+                    books.forEach(WordbookSnapshot::release);
+                }
+            }
+
+            @Override
+            public void onSuccess() {
+                StringBuilder report = new StringBuilder();
+                for (int b = 0; b < overlap.getNames().size(); b++) {
+                    report.append(overlap.getNames().get(b)).append(": ").append(overlap.getSize(b)).append("<br>");
+                }
+                for (String line : overlap.toLines()) {
+                    report.append(StringUtil.escapeXmlEntities(line)).append("<br>");
+                }
+                report.append("已生成 ").append(target.getFileName()).append("，共 ").append(wordCount)
+                        .append(" 个单词；刷新工具窗口的单词本列表即可加载。(Merged ").append(wordCount)
+                        .append(" distinct words; refresh the wordbook list to load it.)");
+                showNotification(project, "单词本重合度 (Wordbook Overlap)", report.toString(), NotificationType.INFORMATION);
+            }
+
+            @Override
+            public void onThrowable(@NotNull Throwable error) {
+                LOG.warn("Merging wordbooks failed", error);
+                showNotification(project, "合并单词本失败 (Merging Wordbooks Failed)", error.getMessage(), NotificationType.ERROR);
+            }
+        });
+    }
+
+    private static void showNotification(Project project, String title, String content, NotificationType type) {
+        NotificationGroupManager.getInstance().getNotificationGroup(NOTIFICATION_GROUP_ID)
+                .createNotification(title, content, type)
+                .notify(project);
+    }
+
+    @Override
+    public @NotNull ActionUpdateThread getActionUpdateThread() {
+        return ActionUpdateThread.BGT;
+    }
+}
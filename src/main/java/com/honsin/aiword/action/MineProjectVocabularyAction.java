@@ -0,0 +1,121 @@
+package com.honsin.aiword.action;
+
+import com.honsin.aiword.service.ProjectVocabularyMiner;
+import com.honsin.aiword.service.WordbookService;
+import com.honsin.aiword.service.WordbookSnapshot;
+import com.honsin.aiword.settings.WordMemorizerSettingsState;
+import com.intellij.notification.NotificationGroupManager;
+import com.intellij.notification.NotificationType;
+import com.intellij.openapi.actionSystem.ActionUpdateThread;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.text.StringUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Builds a wordbook of the English words used in the current project, most frequent first
+ * ({@code <wordbook dir>/<project>-项目词汇.json}). Running it again only reads the files changed since.
+ */
+public class MineProjectVocabularyAction extends AnAction {
+
+    private static final Logger LOG = Logger.getInstance(MineProjectVocabularyAction.class);
+    private static final String NOTIFICATION_GROUP_ID = "WordMemorizerNotifications";
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent e) {
+        Project project = e.getProject();
+        if (project == null) {
+            return;
+        }
+        WordMemorizerSettingsState settings = WordMemorizerSettingsState.getInstance();
+        String directory = settings.getWordbookDirectory();
+        String bookName = settings.getSelectedWordbookName();
+        Path target = Paths.get(directory).resolve(toFileName(project.getName()));
+
+        ProgressManager.getInstance().run(new Task.Backgroundable(project, "生成项目词汇单词本 (Building Project Vocabulary)", true) {
+            private int wordCount;
+
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                // Translations come from the books open in tool windows, or else from the selected one
+                List<WordbookSnapshot> books = WordbookService.getInstance().acquireLoaded();
+                try {
+                    if (books.isEmpty() && !StringUtil.isEmptyOrSpaces(bookName)) {
+                        indicator.setText("正在读取单词本 (Reading wordbook) " + bookName + "...");
+                        books.add(WordbookService.getInstance().acquire(Paths.get(directory).resolve(bookName), indicator));
+                    }
+                    if (books.isEmpty()) {
+                        throw new IllegalStateException("请先在工具窗口中加载一个单词本，用于查找释义。(Load a wordbook in the tool window first; it provides the translations.)");
+                    }
+                    books.removeIf(book -> {
+                        if (book.getFile().equals(target.toAbsolutePath().normalize())) {
+                            book.release(); // The previous result must not translate the new one
+                            return true;
+                        }
+                        return false;
+                    });
+                    List<ProjectVocabularyMiner.MinedWord> words = ProjectVocabularyMiner.getInstance(project).mine(books, indicator);
+                    indicator.setText("正在写入 (Writing) " + target.getFileName() + "...");
+                    ProjectVocabularyMiner.writeWordbook(words, target);
+                    wordCount = words.size();
+                } catch (IOException ex) {
+                    throw new RuntimeException(ex.getMessage(), ex);
+                } finally {
+                    books.forEach(WordbookSnapshot::release);
+                }
+            }
+
+            @Override
+            public void onSuccess() {
+                showNotification(project, "项目词汇 (Project Vocabulary)",
+                        "已生成单词本 " + target.getFileName() + "，共 " + wordCount + " 个单词，按出现次数排序；刷新工具窗口的单词本列表即可加载。"
+                                + "(Built " + wordCount + " words, most frequent first; refresh the wordbook list to load it.)",
+                        NotificationType.INFORMATION);
+            }
+
+            @Override
+            public void onCancel() {
+                showNotification(project, "项目词汇已取消 (Project Vocabulary Canceled)",
+                        "已分析的文件会保留，再次运行只分析剩下和改动的文件。(Files analysed so far are kept; running again continues.)",
+                        NotificationType.WARNING);
+            }
+
+            @Override
+            public void onThrowable(@NotNull Throwable error) {
+                LOG.warn("Building the project vocabulary failed", error);
+                showNotification(project, "项目词汇生成失败 (Project Vocabulary Failed)", error.getMessage(), NotificationType.ERROR);
+            }
+        });
+    }
+
+    @NotNull
+    static String toFileName(@NotNull String projectName) {
+        return projectName.replaceAll("[\\\\/:*?\"<>|\\s]+", "_") + "-项目词汇.json";
+    }
+
+    private static void showNotification(Project project, String title, String content, NotificationType type) {
+        NotificationGroupManager.getInstance().getNotificationGroup(NOTIFICATION_GROUP_ID)
+                .createNotification(title, content, type)
+                .notify(project);
+    }
+
+    @Override
+    public void update(@NotNull AnActionEvent e) {
+        e.getPresentation().setEnabled(e.getProject() != null);
+    }
+
+    @Override
+    public @NotNull ActionUpdateThread getActionUpdateThread() {
+        return ActionUpdateThread.BGT;
+    }
+}
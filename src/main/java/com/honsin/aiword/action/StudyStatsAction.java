@@ -0,0 +1,23 @@
+package com.honsin.aiword.action;
+
+import com.honsin.aiword.service.StudyStats;
+import com.intellij.openapi.actionSystem.ActionUpdateThread;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Shows the learning statistics dashboard, see {@link StudyStatsDialog}.
+ */
+public class StudyStatsAction extends AnAction {
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent e) {
+        new StudyStatsDialog(e.getProject(), StudyStats.getInstance()).show();
+    }
+
+    @Override
+    public @NotNull ActionUpdateThread getActionUpdateThread() {
+        return ActionUpdateThread.BGT;
+    }
+}
@@ -0,0 +1,141 @@
+package com.honsin.aiword.action;
+
+import com.honsin.aiword.service.StudyStats;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.DialogWrapper;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.ui.JBColor;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Learning statistics of one book or all books: totals, the last 30 days as a bar chart, and the retention
+ * curve. Everything comes from {@link StudyStats#summary}, so switching books is instant.
+ */
+class StudyStatsDialog extends DialogWrapper {
+
+    private static final int DAYS = 30;
+    private static final String ALL_BOOKS = "全部单词本 (All Wordbooks)";
+
+    private final StudyStats stats;
+    private final JComboBox<String> bookComboBox = new JComboBox<>();
+    private final JLabel summaryLabel = new JLabel();
+    private final DailyChart chart = new DailyChart();
+
+    StudyStatsDialog(@Nullable Project project, @NotNull StudyStats stats) {
+        super(project);
+        this.stats = stats;
+        List<String> books = new ArrayList<>();
+        books.add(ALL_BOOKS);
+        books.addAll(stats.getBooks());
+        bookComboBox.setModel(new DefaultComboBoxModel<>(books.toArray(new String[0])));
+        bookComboBox.addActionListener(e -> showBook());
+        setTitle("学习统计 (Study Statistics)");
+        init();
+        showBook();
+    }
+
+    @Override
+    protected @Nullable JComponent createCenterPanel() {
+        JPanel panel = new JPanel(new BorderLayout(0, 8));
+        panel.add(bookComboBox, BorderLayout.NORTH);
+        summaryLabel.setVerticalAlignment(SwingConstants.TOP);
+        panel.add(summaryLabel, BorderLayout.CENTER);
+        chart.setPreferredSize(new Dimension(520, 140));
+        panel.add(chart, BorderLayout.SOUTH);
+        return panel;
+    }
+
+    @Override
+    protected Action @NotNull [] createActions() {
+        return new Action[]{getOKAction()};
+    }
+
+    private void showBook() {
+        Object selected = bookComboBox.getSelectedItem();
+        StudyStats.Summary summary = stats.summary(ALL_BOOKS.equals(selected) ? null : (String) selected, DAYS);
+        StringBuilder html = new StringBuilder("<html><table cellpadding='2'>");
+        html.append("<tr><th></th><th>答题 (Answers)</th><th>正确率 (Accuracy)</th><th>时间 (Time)</th></tr>");
+        appendRow(html, "今天 (Today)", summary.sumOfLast(1));
+        appendRow(html, "7 天 (7 days)", summary.sumOfLast(7));
+        appendRow(html, "30 天 (30 days)", summary.sumOfLast(DAYS));
+        appendRow(html, "全部 (All time)", new long[]{summary.getTotalAnswers(), summary.getTotalRecalled(), summary.getTotalSeconds()});
+        html.append("</table><br><b>记忆保持 (Retention)</b> — 距上次作答的天数 (days since last answered)<table cellpadding='2'><tr>");
+        int[] bounds = StudyStats.RETENTION_DAYS;
+        for (int k = 0; k < bounds.length; k++) {
+            String label = k == bounds.length - 1 ? bounds[k] + "+"
+                    : bounds[k + 1] - bounds[k] == 1 ? String.valueOf(bounds[k]) : bounds[k] + "-" + (bounds[k + 1] - 1);
+            html.append("<th>").append(label).append("</th>");
+        }
+        html.append("</tr><tr>");
+        for (int k = 0; k < bounds.length; k++) {
+            long answers = summary.getRetentionAnswers(k);
+            html.append("<td>").append(answers == 0 ? "-" : percent(summary.getRetentionRecalled(k), answers))
+                    .append("</td>");
+        }
+        html.append("</tr></table></html>");
+        summaryLabel.setText(html.toString());
+        chart.setSummary(summary);
+    }
+
+    private static void appendRow(StringBuilder html, String label, long[] sum) {
+        html.append("<tr><td>").append(StringUtil.escapeXmlEntities(label)).append("</td><td>").append(sum[0])
+                .append("</td><td>").append(sum[0] == 0 ? "-" : percent(sum[1], sum[0]))
+                .append("</td><td>").append(formatMinutes(sum[2])).append("</td></tr>");
+    }
+
+    private static String percent(long part, long whole) {
+        return String.format(Locale.ROOT, "%.0f%%", 100.0 * part / whole);
+    }
+
+    private static String formatMinutes(long seconds) {
+        return seconds < 3600 ? (seconds + 59) / 60 + " min"
+                : String.format(Locale.ROOT, "%d h %02d min", seconds / 3600, (seconds % 3600) / 60);
+    }
+
+    /**
+     * Answers per day as bars, the recalled part darker; today on the right.
+     */
+    private static class DailyChart extends JComponent {
+        private static final Color ANSWERS = new JBColor(new Color(0xB3CDE8), new Color(0x3D5A78));
+        private static final Color RECALLED = new JBColor(new Color(0x3B7DC4), new Color(0x6FA8E0));
+        private StudyStats.Summary summary;
+
+        void setSummary(StudyStats.Summary summary) {
+            this.summary = summary;
+            repaint();
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            if (summary == null) {
+                return;
+            }
+            int days = summary.getDays();
+            int max = 1;
+            for (int i = 0; i < days; i++) {
+                max = Math.max(max, summary.getAnswers(i));
+            }
+            int width = getWidth();
+            int height = getHeight() - 2;
+            int barWidth = Math.max(1, width / days - 2);
+            for (int i = 0; i < days; i++) {
+                int x = i * width / days;
+                int answers = summary.getAnswers(i) * height / max;
+                int recalled = summary.getRecalled(i) * height / max;
+                g.setColor(ANSWERS);
+                g.fillRect(x, height - answers, barWidth, answers);
+                g.setColor(RECALLED);
+                g.fillRect(x, height - recalled, barWidth, recalled);
+            }
+            g.setColor(JBColor.GRAY);
+            g.drawLine(0, height, width, height);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.honsin.aiword.action;
+
+import com.honsin.aiword.model.WordEntry;
+import com.honsin.aiword.service.TranslationLookup;
+import com.honsin.aiword.service.YoudaoTtsService;
+import com.intellij.codeInsight.hint.HintManager;
+import com.intellij.openapi.actionSystem.ActionUpdateThread;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.CommonDataKeys;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.popup.JBPopup;
+import com.intellij.openapi.ui.popup.JBPopupFactory;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.ui.components.JBLabel;
+import com.intellij.util.ui.JBUI;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.List;
+
+/**
+ * Shows the translations of the selected text, or of the word at the caret, from all loaded wordbooks.
+ * Identifiers are split into words and inflected forms reduced, so {@code isRunningTasks} finds "run" and "task".
+ */
+public class TranslateSelectionAction extends AnAction implements DumbAware {
+
+    private static final Logger LOG = Logger.getInstance(TranslateSelectionAction.class);
+    private static final int MAX_SELECTION_LENGTH = 200;
+
+    @Override
+    public void update(@NotNull AnActionEvent e) {
+        e.getPresentation().setEnabledAndVisible(e.getData(CommonDataKeys.EDITOR) != null);
+    }
+
+    @Override
+    public @NotNull ActionUpdateThread getActionUpdateThread() {
+        return ActionUpdateThread.BGT;
+    }
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent e) {
+        Editor editor = e.getData(CommonDataKeys.EDITOR);
+        if (editor == null) {
+            return;
+        }
+        String text = textToTranslate(editor);
+        if (text == null) {
+            HintManager.getInstance().showInformationHint(editor, "光标处没有单词 (No word at the caret)");
+            return;
+        }
+
+        long start = System.nanoTime();
+        List<TranslationLookup.Result> results = TranslationLookup.lookup(text);
+        LOG.debug("Looked up '" + text + "': " + results.size() + " translations in " + (System.nanoTime() - start) / 1000 + " µs");
+
+        if (results.isEmpty()) {
+            HintManager.getInstance().showInformationHint(editor, TranslationLookup.hasLoadedBooks()
+                    ? "单词本中没有找到 '" + text + "' (Not found in the loaded wordbooks)"
+                    : "没有已加载的单词本，请先在 AiWord 工具窗口中加载 (No wordbook loaded; load one in the AiWord tool window)");
+            return;
+        }
+        JComponent content = createContent(e.getProject(), results);
+        JBPopup popup = JBPopupFactory.getInstance()
+                .createComponentPopupBuilder(content, null)
+                .setTitle("翻译 (Translation): " + StringUtil.shortenTextWithEllipsis(text, 40, 0))
+                .setRequestFocus(true)
+                .setMovable(true)
+                .setCancelOnClickOutside(true)
+                .createPopup();
+        popup.showInBestPositionFor(editor);
+    }
+
+    /**
+     * The selection, or the identifier around the caret (letters, digits and underscores).
+     */
+    @Nullable
+    private static String textToTranslate(Editor editor) {
+        if (editor.getSelectionModel().hasSelection()) {
+            String selected = editor.getSelectionModel().getSelectedText();
+            if (selected == null || selected.isBlank()) {
+                return null;
+            }
+            return StringUtil.first(selected.trim(), MAX_SELECTION_LENGTH, false);
+        }
+        CharSequence chars = editor.getDocument().getCharsSequence();
+        int offset = editor.getCaretModel().getOffset();
+        int from = offset;
+        while (from > 0 && isIdentifierChar(chars.charAt(from - 1))) from--;
+        int to = offset;
+        while (to < chars.length() && isIdentifierChar(chars.charAt(to))) to++;
+        return from < to ? chars.subSequence(from, to).toString() : null;
+    }
+
+    private static boolean isIdentifierChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    /**
+     * One row per translation: a pronounce button, then "query → headword  translation · book".
+     */
+    private static JComponent createContent(@Nullable Project project, List<TranslationLookup.Result> results) {
+        JPanel panel = new JPanel();
+        panel.setLayout(new BoxLayout(panel, BoxLayout.Y_AXIS));
+        panel.setBorder(JBUI.Borders.empty(6, 8));
+        YoudaoTtsService ttsService = new YoudaoTtsService();
+        for (TranslationLookup.Result result : results) {
+            WordEntry entry = result.getEntry();
+            JButton pronounce = new JButton("发音");
+            pronounce.setToolTipText("播放 " + entry.getWord() + " 的发音 (Pronounce)");
+            pronounce.addActionListener(ev -> ttsService.pronounceWordAsync(project, entry.getWord()));
+
+            StringBuilder html = new StringBuilder("<html>");
+            if (!result.getQuery().equalsIgnoreCase(entry.getWord())) {
+                html.append(StringUtil.escapeXmlEntities(result.getQuery())).append(" → ");
+            }
+            html.append("<b>").append(StringUtil.escapeXmlEntities(entry.getWord())).append("</b>&nbsp;&nbsp;")
+                    .append(StringUtil.escapeXmlEntities(entry.getTranslation()))
+                    .append(" <font color=gray>· ").append(StringUtil.escapeXmlEntities(result.getBookName())).append("</font></html>");
+
+            JPanel row = new JPanel(new BorderLayout(JBUI.scale(8), 0));
+            row.setAlignmentX(Component.LEFT_ALIGNMENT);
+            row.setBorder(JBUI.Borders.empty(2, 0));
+            row.add(pronounce, BorderLayout.WEST);
+            row.add(new JBLabel(html.toString()), BorderLayout.CENTER);
+            panel.add(row);
+        }
+        return panel;
+    }
+}
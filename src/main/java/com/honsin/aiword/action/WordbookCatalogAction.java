@@ -0,0 +1,154 @@
+package com.honsin.aiword.action;
+
+
+import com.honsin.aiword.service.WordbookCatalog;
+import com.honsin.aiword.service.WordbookCatalogSyncer;
+import com.honsin.aiword.settings.WordMemorizerSettingsState;
+import com.intellij.notification.NotificationGroupManager;
+import com.intellij.notification.NotificationType;
+import com.intellij.openapi.actionSystem.ActionUpdateThread;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.util.text.StringUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fetches the wordbook catalog configured in settings, lets the user pick books and downloads them in
+ * parallel. Books that have not changed on the server since the last download are skipped.
+ */
+public class WordbookCatalogAction extends AnAction {
+
+    private static final Logger LOG = Logger.getInstance(WordbookCatalogAction.class);
+    private static final String NOTIFICATION_GROUP_ID = "WordMemorizerNotifications";
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent e) {
+        WordMemorizerSettingsState settings = WordMemorizerSettingsState.getInstance();
+        openCatalog(e.getProject(), settings.getCatalogUrl(), settings.getWordbookDirectory());
+    }
+
+    /**
+     * Also used by the settings page, with the values currently typed into the form.
+     */
+    public static void openCatalog(Project project, String manifestUrl, String directory) {
+        if (StringUtil.isEmptyOrSpaces(manifestUrl)) {
+            Messages.showWarningDialog(project,
+                    "请先在 设置 -> 工具 -> AiWord Memorizer Settings 中配置词库目录地址。\n(Please configure the catalog URL in Settings -> Tools -> AiWord Memorizer Settings first.)",
+                    "词库目录未配置 (Catalog Not Configured)");
+            return;
+        }
+        if (StringUtil.isEmptyOrSpaces(directory)) {
+            Messages.showWarningDialog(project,
+                    "请先配置单词本目录。\n(Please configure the wordbook directory first.)",
+                    "目录未配置 (Directory Not Configured)");
+            return;
+        }
+        Path targetDir = Paths.get(directory);
+        WordbookCatalogSyncer syncer = new WordbookCatalogSyncer(targetDir, WordbookCatalogSyncer.DEFAULT_CONCURRENCY);
+
+        ProgressManager.getInstance().run(new Task.Backgroundable(project, "获取词库目录 (Fetching Wordbook Catalog)", true) {
+            private WordbookCatalog catalog;
+
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                indicator.setIndeterminate(true);
+                indicator.setText("正在获取词库目录 (Fetching catalog) " + manifestUrl);
+                try {
+                    catalog = WordbookCatalog.fetch(manifestUrl);
+                } catch (IOException ex) {
+                    throw new RuntimeException(ex.getMessage(), ex);
+                }
+            }
+
+            @Override
+            public void onSuccess() {
+                if (catalog.getBooks().isEmpty()) {
+                    showNotification(project, "词库目录 (Wordbook Catalog)", "目录中没有单词本 (The catalog lists no wordbooks)", NotificationType.WARNING);
+                    return;
+                }
+                WordbookCatalogDialog dialog = new WordbookCatalogDialog(project, catalog.getBooks(), syncer);
+                if (dialog.showAndGet()) {
+                    download(project, syncer, dialog.getSelectedBooks());
+                }
+            }
+
+            @Override
+            public void onThrowable(@NotNull Throwable error) {
+                LOG.warn("Fetching catalog failed: " + manifestUrl, error);
+                showNotification(project, "获取词库目录失败 (Fetching Catalog Failed)", error.getMessage(), NotificationType.ERROR);
+            }
+        });
+    }
+
+    private static void download(Project project, WordbookCatalogSyncer syncer, List<WordbookCatalog.Book> books) {
+        ProgressManager.getInstance().run(new Task.Backgroundable(project, "下载单词本 (Downloading Wordbooks)", true) {
+            private WordbookCatalogSyncer.Result result;
+
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                indicator.setText("正在下载 " + books.size() + " 个单词本 (Downloading " + books.size() + " wordbooks)...");
+                try {
+                    result = syncer.sync(books, indicator);
+                } catch (IOException ex) {
+                    throw new RuntimeException(ex.getMessage(), ex);
+                }
+            }
+
+            @Override
+            public void onSuccess() {
+                StringBuilder message = new StringBuilder()
+                        .append("已下载 ").append(result.downloaded).append(" 个，")
+                        .append("增量更新 ").append(result.patched).append(" 个，")
+                        .append(result.unchanged).append(" 个无更新 (")
+                        .append(result.downloaded).append(" downloaded, ")
+                        .append(result.patched).append(" patched, ")
+                        .append(result.unchanged).append(" unchanged)");
+                for (Map.Entry<String, String> failure : result.failures.entrySet()) {
+                    message.append("\n").append(failure.getKey()).append(": ").append(failure.getValue());
+                }
+                showNotification(project, "单词本同步 (Wordbook Sync)", message.toString(),
+                        result.failures.isEmpty() ? NotificationType.INFORMATION : NotificationType.WARNING);
+            }
+
+            @Override
+            public void onCancel() {
+                showNotification(project, "下载已取消 (Download Canceled)",
+                        "再次下载将从中断处继续。(Downloading again resumes it.)", NotificationType.WARNING);
+            }
+
+            @Override
+            public void onThrowable(@NotNull Throwable error) {
+                LOG.warn("Catalog download failed", error);
+                showNotification(project, "下载失败 (Download Failed)", error.getMessage(), NotificationType.ERROR);
+            }
+        });
+    }
+
+    private static void showNotification(Project project, String title, String content, NotificationType type) {
+        NotificationGroupManager.getInstance().getNotificationGroup(NOTIFICATION_GROUP_ID)
+                .createNotification(title, content, type)
+                .notify(project);
+    }
+
+    @Override
+    public void update(@NotNull AnActionEvent e) {
+        e.getPresentation().setEnabled(!StringUtil.isEmptyOrSpaces(WordMemorizerSettingsState.getInstance().getCatalogUrl()));
+    }
+
+    @Override
+    public @NotNull ActionUpdateThread getActionUpdateThread() {
+        return ActionUpdateThread.BGT;
+    }
+}
@@ -0,0 +1,139 @@
+package com.honsin.aiword.action;
+
+import com.honsin.aiword.service.WordbookCatalog;
+import com.honsin.aiword.service.WordbookCatalogSyncer;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.DialogWrapper;
+import com.intellij.ui.components.JBScrollPane;
+import com.intellij.ui.table.JBTable;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lets the user tick the catalog books to download. Books already in the wordbook directory start
+ * ticked, so pressing OK right away just checks them for updates.
+ */
+class WordbookCatalogDialog extends DialogWrapper {
+
+    private final List<WordbookCatalog.Book> books;
+    private final boolean[] present;
+    private final boolean[] selected;
+    private JButton selectAllButton;
+
+    WordbookCatalogDialog(@Nullable Project project, @NotNull List<WordbookCatalog.Book> books, @NotNull WordbookCatalogSyncer syncer) {
+        super(project);
+        this.books = books;
+        this.present = new boolean[books.size()];
+        this.selected = new boolean[books.size()];
+        for (int i = 0; i < books.size(); i++) {
+            present[i] = syncer.isPresent(books.get(i));
+            selected[i] = present[i];
+        }
+        setTitle("词库目录 (Wordbook Catalog)");
+        setOKButtonText("下载/更新 (Download/Update)");
+        init();
+        updateOkAction();
+    }
+
+    @NotNull
+    List<WordbookCatalog.Book> getSelectedBooks() {
+        List<WordbookCatalog.Book> result = new ArrayList<>();
+        for (int i = 0; i < books.size(); i++) {
+            if (selected[i]) result.add(books.get(i));
+        }
+        return result;
+    }
+
+    @Override
+    protected @Nullable JComponent createCenterPanel() {
+        JBTable table = new JBTable(new CatalogTableModel());
+        table.getColumnModel().getColumn(0).setMaxWidth(40);
+        table.setPreferredScrollableViewportSize(new Dimension(560, 300));
+
+        selectAllButton = new JButton("全选 (Select All)");
+        selectAllButton.addActionListener(e -> {
+            boolean all = getSelectedBooks().size() < books.size();
+            java.util.Arrays.fill(selected, all);
+            ((AbstractTableModel) table.getModel()).fireTableDataChanged();
+            updateOkAction();
+        });
+
+        JPanel panel = new JPanel(new BorderLayout(0, 6));
+        panel.add(new JBScrollPane(table), BorderLayout.CENTER);
+        JPanel south = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 0));
+        south.add(selectAllButton);
+        panel.add(south, BorderLayout.SOUTH);
+        return panel;
+    }
+
+    private void updateOkAction() {
+        setOKActionEnabled(!getSelectedBooks().isEmpty());
+    }
+
+    private class CatalogTableModel extends AbstractTableModel {
+        private final String[] columns = {"", "名称 (Name)", "文件 (File)", "大小 (Size)", "状态 (Status)"};
+
+        @Override
+        public int getRowCount() {
+            return books.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return columns.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return columns[column];
+        }
+
+        @Override
+        public Class<?> getColumnClass(int columnIndex) {
+            return columnIndex == 0 ? Boolean.class : String.class;
+        }
+
+        @Override
+        public boolean isCellEditable(int rowIndex, int columnIndex) {
+            return columnIndex == 0;
+        }
+
+        @Override
+        public Object getValueAt(int rowIndex, int columnIndex) {
+            WordbookCatalog.Book book = books.get(rowIndex);
+            switch (columnIndex) {
+                case 0:
+                    return selected[rowIndex];
+                case 1:
+                    return book.getName();
+                case 2:
+                    return book.getFileName();
+                case 3:
+                    return book.getSize() > 0 ? formatSize(book.getSize()) : "";
+                default:
+                    return present[rowIndex] ? "已下载 (Downloaded)" : "未下载 (Not downloaded)";
+            }
+        }
+
+        @Override
+        public void setValueAt(Object value, int rowIndex, int columnIndex) {
+            if (columnIndex == 0) {
+                selected[rowIndex] = Boolean.TRUE.equals(value);
+                fireTableCellUpdated(rowIndex, columnIndex);
+                updateOkAction();
+            }
+        }
+    }
+
+    private static String formatSize(long bytes) {
+        if (bytes < 1024) return bytes + " B";
+        if (bytes < 1024 * 1024) return String.format("%.1f KB", bytes / 1024.0);
+        return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+}
@@ -0,0 +1,253 @@
+package com.honsin.aiword.editor;
+
+import com.honsin.aiword.model.WordEntry;
+import com.honsin.aiword.service.Vocabulary;
+import com.honsin.aiword.service.VocabularyHighlightService;
+import com.honsin.aiword.settings.WordMemorizerSettingsState;
+import com.intellij.lang.ASTNode;
+import com.intellij.lang.LanguageParserDefinitions;
+import com.intellij.lang.ParserDefinition;
+import com.intellij.lang.annotation.AnnotationHolder;
+import com.intellij.lang.annotation.ExternalAnnotator;
+import com.intellij.lang.annotation.HighlightSeverity;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.colors.CodeInsightColors;
+import com.intellij.openapi.editor.colors.TextAttributesKey;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.psi.PsiComment;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.tree.IElementType;
+import com.intellij.psi.tree.TokenSet;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Set;
+
+/**
+ * Marks words of the loaded wordbook in comments, string literals and identifiers; hovering shows the translation.
+ * <p>
+ * Runs as an external annotator: the PSI is only walked to find the text regions (cheap, in the read
+ * action), the search itself happens in the background and never holds up typing. The result of the last
+ * pass is kept per file; on the next pass only regions that were touched by the edit, or are new, are
+ * searched again, the matches of all other regions are reused as they are.
+ */
+public final class VocabularyAnnotator extends ExternalAnnotator<VocabularyAnnotator.Request, VocabularyAnnotator.FileScan> {
+
+    private static final Logger LOG = Logger.getInstance(VocabularyAnnotator.class);
+
+    public static final TextAttributesKey VOCABULARY_WORD =
+            TextAttributesKey.createTextAttributesKey("AIWORD_VOCABULARY_WORD", CodeInsightColors.WEAK_WARNING_ATTRIBUTES);
+
+    /**
+     * A file full of common words ("get", "value", "name", ...) would otherwise be underlined everywhere.
+     */
+    private static final int MAX_ANNOTATIONS_PER_FILE = 2000;
+    private static final int CANCEL_CHECK_INTERVAL = 1024;
+    // Tokens of prose in languages whose parser definition lists no string literals
+    private static final Set<String> TEXT_TOKEN_NAMES = Set.of("PLAIN_TEXT", "TEXT", "XML_DATA_CHARACTERS");
+    private static final int[] NO_MATCHES = new int[0];
+    private static final Key<FileScan> LAST_SCAN = Key.create("aiword.vocabulary.scan");
+
+    /**
+     * What the background part needs, collected in the read action.
+     */
+    public static final class Request {
+        private final PsiFile file;
+        private final Vocabulary vocabulary;
+        private final long stamp;
+        private final CharSequence text;
+        private final int[] regions; // start, end pairs, ordered
+
+        Request(PsiFile file, Vocabulary vocabulary, long stamp, CharSequence text, int[] regions) {
+            this.file = file;
+            this.vocabulary = vocabulary;
+            this.stamp = stamp;
+            this.text = text;
+            this.regions = regions;
+        }
+    }
+
+    /**
+     * The words found in one version of a file; immutable.
+     */
+    public static final class FileScan {
+        private final Vocabulary vocabulary;
+        private final long stamp;
+        private final CharSequence text;
+        // Every region (start << 32 | end) -> (start, end, book index) triples relative to the region start
+        private final Long2ObjectOpenHashMap<int[]> matchesByRegion;
+        private final int[] regions;
+
+        FileScan(Vocabulary vocabulary, long stamp, CharSequence text, int[] regions, Long2ObjectOpenHashMap<int[]> matchesByRegion) {
+            this.vocabulary = vocabulary;
+            this.stamp = stamp;
+            this.text = text;
+            this.regions = regions;
+            this.matchesByRegion = matchesByRegion;
+        }
+    }
+
+    @Nullable
+    @Override
+    public Request collectInformation(@NotNull PsiFile file) {
+        Vocabulary vocabulary = VocabularyHighlightService.getInstance().getVocabulary();
+        if (vocabulary == null || !WordMemorizerSettingsState.getInstance().isHighlightVocabulary()) {
+            return null;
+        }
+        CharSequence text = file.getViewProvider().getContents();
+        if (file.getTextLength() != text.length()) {
+            return null; // PSI not yet committed; the next pass will come
+        }
+        return new Request(file, vocabulary, file.getViewProvider().getModificationStamp(), text, collectRegions(file));
+    }
+
+    @Nullable
+    @Override
+    public FileScan doAnnotate(@Nullable Request request) {
+        if (request == null) {
+            return null;
+        }
+        FileScan previous = request.file.getUserData(LAST_SCAN);
+        if (previous != null && previous.vocabulary == request.vocabulary && previous.stamp == request.stamp) {
+            return previous;
+        }
+        FileScan scan = scan(request, previous != null && previous.vocabulary == request.vocabulary ? previous : null);
+        request.file.putUserData(LAST_SCAN, scan);
+        return scan;
+    }
+
+    @Override
+    public void apply(@NotNull PsiFile file, @Nullable FileScan scan, @NotNull AnnotationHolder holder) {
+        if (scan == null) {
+            return;
+        }
+        int textLength = file.getTextLength();
+        int annotations = 0;
+        for (int r = 0; r < scan.regions.length; r += 2) {
+            int[] matches = scan.matchesByRegion.get(regionKey(scan.regions[r], scan.regions[r + 1]));
+            if (matches == null) continue;
+            for (int m = 0; m < matches.length; m += 3) {
+                int start = scan.regions[r] + matches[m];
+                int end = scan.regions[r] + matches[m + 1];
+                if (end > textLength || annotations++ >= MAX_ANNOTATIONS_PER_FILE) {
+                    return;
+                }
+                WordEntry entry = scan.vocabulary.getEntry(matches[m + 2]);
+                holder.newSilentAnnotation(HighlightSeverity.INFORMATION)
+                        .range(new TextRange(start, end))
+                        .textAttributes(VOCABULARY_WORD)
+                        .tooltip(entry.getWord() + ": " + entry.getTranslation())
+                        .create();
+            }
+        }
+    }
+
+    /**
+     * Searches the regions of the request, reusing the matches of {@code previous} for every region
+     * whose text is untouched by the edit between the two versions.
+     */
+    private static FileScan scan(Request request, @Nullable FileScan previous) {
+        CharSequence text = request.text;
+        int[] regions = request.regions;
+        // The edit replaced previous.text[prefix, oldLength - suffix) by text[prefix, newLength - suffix)
+        int prefix = 0;
+        int suffix = 0;
+        int delta = 0;
+        if (previous != null) {
+            CharSequence old = previous.text;
+            int limit = Math.min(old.length(), text.length());
+            while (prefix < limit && old.charAt(prefix) == text.charAt(prefix)) prefix++;
+            while (suffix < limit - prefix
+                    && old.charAt(old.length() - 1 - suffix) == text.charAt(text.length() - 1 - suffix)) suffix++;
+            delta = text.length() - old.length();
+        }
+        int changedEnd = text.length() - suffix;
+
+        Long2ObjectOpenHashMap<int[]> matchesByRegion = new Long2ObjectOpenHashMap<>();
+        IntArrayList found = new IntArrayList();
+        int rescanned = 0;
+        for (int r = 0; r < regions.length; r += 2) {
+            if ((r & (CANCEL_CHECK_INTERVAL - 1)) == 0) ProgressManager.checkCanceled();
+            int start = regions[r];
+            int end = regions[r + 1];
+            int[] matches = null;
+            if (previous != null) {
+                if (end <= prefix) {
+                    matches = previous.matchesByRegion.get(regionKey(start, end));
+                } else if (start >= changedEnd) {
+                    matches = previous.matchesByRegion.get(regionKey(start - delta, end - delta));
+                }
+            }
+            if (matches == null) {
+                found.clear();
+                request.vocabulary.findWords(text, start, end, found);
+                matches = found.isEmpty() ? NO_MATCHES : found.toIntArray();
+                for (int m = 0; m < matches.length; m += 3) {
+                    matches[m] -= start;
+                    matches[m + 1] -= start;
+                }
+                rescanned++;
+            }
+            matchesByRegion.put(regionKey(start, end), matches);
+        }
+        if (previous != null) {
+            LOG.debug("Vocabulary: rescanned " + rescanned + " of " + regions.length / 2 + " regions of " + request.file.getName());
+        }
+        return new FileScan(request.vocabulary, request.stamp, text, regions, matchesByRegion);
+    }
+
+    /**
+     * Text ranges of the comments, string literals and identifiers of the file, in document order.
+     */
+    private static int[] collectRegions(PsiFile file) {
+        ParserDefinition definition = LanguageParserDefinitions.INSTANCE.forLanguage(file.getLanguage());
+        TokenSet strings = definition != null ? definition.getStringLiteralElements() : TokenSet.EMPTY;
+        IntArrayList regions = new IntArrayList();
+        int visited = 0;
+        PsiElement element = file.getFirstChild();
+        while (element != null) {
+            if ((++visited & (CANCEL_CHECK_INTERVAL - 1)) == 0) ProgressManager.checkCanceled();
+            boolean comment = element instanceof PsiComment;
+            PsiElement child = comment ? null : element.getFirstChild();
+            if (child != null) {
+                element = child;
+                continue;
+            }
+            if (comment || isTextLeaf(element, strings)) {
+                TextRange range = element.getTextRange();
+                if (range.getLength() >= 3) {
+                    regions.add(range.getStartOffset());
+                    regions.add(range.getEndOffset());
+                }
+            }
+            // Next in document order: the sibling, or the sibling of the nearest ancestor that has one
+            while (element != null && element != file && element.getNextSibling() == null) {
+                element = element.getParent();
+            }
+            element = element == null || element == file ? null : element.getNextSibling();
+        }
+        return regions.toIntArray();
+    }
+
+    private static boolean isTextLeaf(PsiElement leaf, TokenSet strings) {
+        ASTNode node = leaf.getNode();
+        if (node == null) {
+            return false;
+        }
+        IElementType type = node.getElementType();
+        if (strings.contains(type)) {
+            return true;
+        }
+        String name = type.toString();
+        return name.endsWith("IDENTIFIER") || TEXT_TOKEN_NAMES.contains(name);
+    }
+
+    private static long regionKey(int start, int end) {
+        return ((long) start << 32) | end;
+    }
+}
@@ -0,0 +1,59 @@
+package com.honsin.aiword.model;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * The fields of a wordbook entry beyond word and translation, for its detail hint. Any of them may be empty.
+ */
+public final class ExtendedEntry {
+    private final String phonetic;
+    private final List<String> examples;
+    private final List<String> phrases;
+    private final List<String> roots;
+
+    public ExtendedEntry(@NotNull String phonetic, @NotNull List<String> examples,
+                         @NotNull List<String> phrases, @NotNull List<String> roots) {
+        this.phonetic = phonetic;
+        this.examples = List.copyOf(examples);
+        this.phrases = List.copyOf(phrases);
+        this.roots = List.copyOf(roots);
+    }
+
+    /**
+     * E.g. "英 /əˈbɪləti/  美 /əˈbɪləti/"; empty if unknown.
+     */
+    @NotNull
+    public String getPhonetic() {
+        return phonetic;
+    }
+
+    /**
+     * Example sentences, each with its translation if the book has one.
+     */
+    @NotNull
+    public List<String> getExamples() {
+        return examples;
+    }
+
+    @NotNull
+    public List<String> getPhrases() {
+        return phrases;
+    }
+
+    @NotNull
+    public List<String> getRoots() {
+        return roots;
+    }
+
+    public boolean isEmpty() {
+        return phonetic.isEmpty() && examples.isEmpty() && phrases.isEmpty() && roots.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "ExtendedEntry{phonetic='" + phonetic + "', examples=" + examples.size()
+                + ", phrases=" + phrases.size() + ", roots=" + roots.size() + '}';
+    }
+}
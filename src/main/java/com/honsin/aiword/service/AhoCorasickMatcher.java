@@ -0,0 +1,149 @@
+package com.honsin.aiword.service;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Finds every occurrence of many patterns in a text in a single pass (Aho-Corasick), ignoring case.
+ * <p>
+ * The time per text is linear in its length plus the number of matches, however many patterns there are,
+ * so a whole wordbook can be searched as cheaply as one word. Immutable once built, and thread-safe.
+ */
+public final class AhoCorasickMatcher {
+
+    public interface MatchConsumer {
+        /**
+         * A match of pattern {@code pattern} at {@code [start, end)}; matches come ordered by {@code end}.
+         */
+        void match(int start, int end, int pattern);
+    }
+
+    private static final int ROOT = 0;
+    private static final int NONE = -1;
+    private static final int CANCEL_CHECK_INTERVAL = 4096;
+
+    private final Long2IntOpenHashMap transitions; // (state << 16 | char) -> next state
+    private final int[] failure;    // Longest proper suffix of the state that is also a state
+    private final int[] output;     // Pattern ending in the state, or NONE
+    private final int[] outputLink; // Nearest state on the failure chain with an output, or NONE
+    private final int[] depth;
+
+    private AhoCorasickMatcher(Long2IntOpenHashMap transitions, int[] failure, int[] output, int[] outputLink,
+                               int[] depth) {
+        this.transitions = transitions;
+        this.failure = failure;
+        this.output = output;
+        this.outputLink = outputLink;
+        this.depth = depth;
+    }
+
+    /**
+     * Builds the automaton; pattern {@code i} is reported as {@code i}. Empty patterns are ignored, and of
+     * patterns that only differ in case the first one wins.
+     *
+     * @param cancelled checked now and then; when it returns {@code true} the build stops with a
+     *                  {@link CancellationException}.
+     */
+    @NotNull
+    public static AhoCorasickMatcher build(@NotNull List<String> patterns, @NotNull BooleanSupplier cancelled) {
+        Long2IntOpenHashMap transitions = new Long2IntOpenHashMap(Math.max(16, patterns.size() * 4));
+        transitions.defaultReturnValue(NONE);
+        IntArrayList output = new IntArrayList();
+        IntArrayList depth = new IntArrayList();
+        IntArrayList firstChild = new IntArrayList();
+        IntArrayList nextSibling = new IntArrayList();
+        IntArrayList label = new IntArrayList();
+        output.add(NONE);
+        depth.add(0);
+        firstChild.add(NONE);
+        nextSibling.add(NONE);
+        label.add(0);
+
+        // 1. Trie of the lower-cased patterns
+        for (int p = 0; p < patterns.size(); p++) {
+            if ((p & (CANCEL_CHECK_INTERVAL - 1)) == 0 && cancelled.getAsBoolean()) throw new CancellationException();
+            String pattern = patterns.get(p);
+            if (pattern == null || pattern.isEmpty()) continue;
+            int state = ROOT;
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = Character.toLowerCase(pattern.charAt(i));
+                int next = transitions.get(key(state, c));
+                if (next == NONE) {
+                    next = output.size();
+                    output.add(NONE);
+                    depth.add(i + 1);
+                    firstChild.add(NONE);
+                    nextSibling.add(firstChild.getInt(state));
+                    label.add(c);
+                    firstChild.set(state, next);
+                    transitions.put(key(state, c), next);
+                }
+                state = next;
+            }
+            if (output.getInt(state) == NONE) {
+                output.set(state, p);
+            }
+        }
+
+        // 2. Failure and output links, breadth first so a state's links are known before its children's
+        int states = output.size();
+        int[] failure = new int[states];
+        int[] outputLink = new int[states];
+        outputLink[ROOT] = NONE;
+        int[] queue = new int[states];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = ROOT;
+        while (head < tail) {
+            if ((head & (CANCEL_CHECK_INTERVAL - 1)) == 0 && cancelled.getAsBoolean()) throw new CancellationException();
+            int parent = queue[head++];
+            for (int child = firstChild.getInt(parent); child != NONE; child = nextSibling.getInt(child)) {
+                char c = (char) label.getInt(child);
+                int fail = ROOT;
+                if (parent != ROOT) {
+                    int f = failure[parent];
+                    int next;
+                    while ((next = transitions.get(key(f, c))) == NONE && f != ROOT) {
+                        f = failure[f];
+                    }
+                    fail = next == NONE ? ROOT : next;
+                }
+                failure[child] = fail;
+                outputLink[child] = output.getInt(fail) != NONE ? fail : outputLink[fail];
+                queue[tail++] = child;
+            }
+        }
+        return new AhoCorasickMatcher(transitions, failure, output.toIntArray(), outputLink, depth.toIntArray());
+    }
+
+    /**
+     * Reports all matches inside {@code text[from, to)}, overlapping ones included.
+     */
+    public void match(@NotNull CharSequence text, int from, int to, @NotNull MatchConsumer consumer) {
+        int state = ROOT;
+        for (int i = from; i < to; i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            int next;
+            while ((next = transitions.get(key(state, c))) == NONE && state != ROOT) {
+                state = failure[state];
+            }
+            state = next == NONE ? ROOT : next;
+            for (int s = output[state] != NONE ? state : outputLink[state]; s != NONE; s = outputLink[s]) {
+                consumer.match(i + 1 - depth[s], i + 1, output[s]);
+            }
+        }
+    }
+
+    public int getStateCount() {
+        return failure.length;
+    }
+
+    private static long key(int state, char c) {
+        return ((long) state << 16) | c;
+    }
+}
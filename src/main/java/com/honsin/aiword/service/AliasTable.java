@@ -0,0 +1,130 @@
+package com.honsin.aiword.service;
+
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+/**
+ * Draws indices with probability proportional to their weight in O(1) per draw (Vose's alias method).
+ * <p>
+ * Building takes O(n); the table is immutable afterwards, so when weights change a new table is built.
+ */
+final class AliasTable {
+
+    private final double[] probability; // Chance to keep column i rather than take its alias
+    private final int[] alias;
+    private final int positive; // Columns with a weight > 0
+    private final BitSet zero;  // Columns with weight 0, never drawn
+
+    private AliasTable(double[] probability, int[] alias, int positive, BitSet zero) {
+        this.probability = probability;
+        this.alias = alias;
+        this.positive = positive;
+        this.zero = zero;
+    }
+
+    /**
+     * @param weights non-negative; if all are 0, every index is equally likely.
+     */
+    static AliasTable build(double[] weights) {
+        int n = weights.length;
+        double sum = 0;
+        int positive = 0;
+        BitSet zero = new BitSet();
+        for (int i = 0; i < n; i++) {
+            if (weights[i] > 0) {
+                sum += weights[i];
+                positive++;
+            } else {
+                zero.set(i);
+            }
+        }
+        double[] probability = new double[n];
+        int[] alias = new int[n];
+        if (sum <= 0) {
+            Arrays.fill(probability, 1.0);
+            return new AliasTable(probability, alias, n, new BitSet());
+        }
+
+        // Split into columns below and above the average, then top up each small column from a large one
+        double[] scaled = new double[n];
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int smallCount = 0;
+        int largeCount = 0;
+        for (int i = 0; i < n; i++) {
+            scaled[i] = weights[i] > 0 ? weights[i] * n / sum : 0;
+            if (scaled[i] < 1.0) {
+                small[smallCount++] = i;
+            } else {
+                large[largeCount++] = i;
+            }
+        }
+        while (smallCount > 0 && largeCount > 0) {
+            int s = small[--smallCount];
+            int l = large[--largeCount];
+            probability[s] = scaled[s];
+            alias[s] = l;
+            scaled[l] = scaled[l] + scaled[s] - 1.0;
+            if (scaled[l] < 1.0) {
+                small[smallCount++] = l;
+            } else {
+                large[largeCount++] = l;
+            }
+        }
+        // What is left is 1 up to rounding errors
+        while (largeCount > 0) {
+            int l = large[--largeCount];
+            probability[l] = 1.0;
+            alias[l] = l;
+        }
+        int anyPositive = zero.nextClearBit(0);
+        while (smallCount > 0) {
+            int s = small[--smallCount];
+            probability[s] = zero.get(s) ? 0.0 : 1.0;
+            alias[s] = zero.get(s) ? anyPositive : s;
+        }
+        return new AliasTable(probability, alias, positive, zero);
+    }
+
+    int size() {
+        return probability.length;
+    }
+
+    int sample(Random random) {
+        int column = random.nextInt(probability.length);
+        return random.nextDouble() < probability[column] ? column : alias[column];
+    }
+
+    /**
+     * Draws up to {@code count} distinct indices (fewer only if fewer have a weight), in draw order.
+     * Repeats are drawn again; when a few heavy words take nearly all the weight, the rest is filled
+     * by a scan from a random position instead.
+     */
+    int[] sampleDistinct(int count, Random random) {
+        int wanted = Math.min(count, positive);
+        int[] result = new int[wanted];
+        IntOpenHashSet picked = new IntOpenHashSet(wanted * 2);
+        int found = 0;
+        int attempts = wanted * 16 + 64;
+        while (found < wanted && attempts-- > 0) {
+            int index = sample(random);
+            if (picked.add(index)) {
+                result[found++] = index;
+            }
+        }
+        if (found < wanted) {
+            int n = probability.length;
+            int start = random.nextInt(n);
+            for (int k = 0; k < n && found < wanted; k++) {
+                int index = (start + k) % n;
+                if (!zero.get(index) && picked.add(index)) {
+                    result[found++] = index;
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,381 @@
+package com.honsin.aiword.service;
+
+import com.honsin.aiword.model.WordEntry;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProgressIndicator;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Binary, memory-mapped form of a wordbook JSON, kept in {@code <wordbook dir>/.aiword-cache/<book>.awc}.
+ * Loading it needs no JSON parsing, and any entry can be read by index without touching the others.
+ * <pre>
+ * header   magic "AWCB", version, count, reserved (ints), source size, source mtime (longs), content hash (32 bytes)
+ * offsets  (count + 1) ints, relative to the data section; entry i is [offsets[i], offsets[i + 1])
+ * data     per entry: [short word length][word utf8][translation utf8]
+ * </pre>
+ * The cache is valid while the source file has the recorded size and modification time.
+ * The content hash only depends on the entries, not on the JSON formatting (see {@link ContentHasher}).
+ * <p>
+ * Extended fields (phonetics, examples, roots) are not part of the cache but of a side file next to it,
+ * {@code <book>.awx}, read only when an entry's details are shown (see {@link ExtendedEntryStore}).
+ */
+public final class CompiledWordbook {
+
+    private static final Logger LOG = Logger.getInstance(CompiledWordbook.class);
+    public static final String CACHE_DIRECTORY_NAME = ".aiword-cache";
+    public static final String EXTENSION = ".awc";
+    public static final String EXTENDED_EXTENSION = ".awx";
+    private static final int MAGIC = 0x41574342; // "AWCB"
+    private static final int VERSION = 1;
+    private static final int HASH_BYTES = 32;
+    private static final int HEADER_SIZE = 4 * 4 + 8 + 8 + HASH_BYTES;
+    private static final int CANCEL_CHECK_INTERVAL = 1024; // Entries between cancellation checks while compiling
+
+    private final Path file;
+    private final MappedByteBuffer buffer;
+    private final int count;
+    private final long sourceSize;
+    private final long sourceModified;
+    private final byte[] contentHash;
+    private final int dataStart;
+
+    private CompiledWordbook(Path file, MappedByteBuffer buffer) throws IOException {
+        this.file = file;
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("不是有效的单词本缓存 (Not a valid wordbook cache): " + file);
+        }
+        this.count = buffer.getInt(8);
+        this.sourceSize = buffer.getLong(16);
+        this.sourceModified = buffer.getLong(24);
+        this.contentHash = new byte[HASH_BYTES];
+        buffer.get(32, contentHash);
+        this.dataStart = HEADER_SIZE + (count + 1) * 4;
+        if (count < 0 || dataStart > buffer.capacity() || dataStart + (long) offset(count) != buffer.capacity()) {
+            throw new IOException("单词本缓存已损坏 (Wordbook cache is corrupt): " + file);
+        }
+    }
+
+    /**
+     * Where the compiled form of {@code source} is kept.
+     */
+    @NotNull
+    public static Path cacheFileFor(@NotNull Path source) {
+        Path parent = source.toAbsolutePath().getParent();
+        return parent.resolve(CACHE_DIRECTORY_NAME).resolve(source.getFileName() + EXTENSION);
+    }
+
+    /**
+     * Where the extended fields of the book compiled to {@code cacheFile} are kept.
+     */
+    @NotNull
+    static Path extendedFileFor(@NotNull Path cacheFile) {
+        String name = cacheFile.getFileName().toString();
+        return cacheFile.resolveSibling(name.substring(0, name.length() - EXTENSION.length()) + EXTENDED_EXTENSION);
+    }
+
+    @NotNull
+    public static CompiledWordbook open(@NotNull Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new CompiledWordbook(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * @return the compiled form of {@code source}, or null if there is none or it is stale/unreadable.
+     */
+    @Nullable
+    public static CompiledWordbook openIfUpToDate(@NotNull Path source) {
+        Path cache = cacheFileFor(source);
+        if (!Files.isRegularFile(cache)) {
+            return null;
+        }
+        try {
+            CompiledWordbook compiled = open(cache);
+            return compiled.isUpToDate(source) ? compiled : null;
+        } catch (IOException e) {
+            LOG.warn("Ignoring unreadable wordbook cache " + cache + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    public boolean isUpToDate(@NotNull Path source) {
+        try {
+            return Files.size(source) == sourceSize && Files.getLastModifiedTime(source).toMillis() == sourceModified;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @NotNull
+    public Path getFile() {
+        return file;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    long getSourceSize() {
+        return sourceSize;
+    }
+
+    long getSourceModified() {
+        return sourceModified;
+    }
+
+    @NotNull
+    public String getWord(int index) {
+        int start = dataStart + offset(index);
+        int length = buffer.getShort(start) & 0xFFFF;
+        return decode(start + 2, length);
+    }
+
+    @NotNull
+    public String getTranslation(int index) {
+        int start = dataStart + offset(index);
+        int wordLength = buffer.getShort(start) & 0xFFFF;
+        int translationStart = start + 2 + wordLength;
+        return decode(translationStart, dataStart + offset(index + 1) - translationStart);
+    }
+
+    @NotNull
+    public WordEntry get(int index) {
+        return new WordEntry(getWord(index), getTranslation(index));
+    }
+
+    @NotNull
+    public List<WordEntry> toList() {
+        List<WordEntry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            entries.add(get(i));
+        }
+        return entries;
+    }
+
+    /**
+     * Lowercase hex SHA-256 over the entries, see {@link ContentHasher}.
+     */
+    @NotNull
+    public String getContentHash() {
+        return HexFormat.of().formatHex(contentHash);
+    }
+
+    private int offset(int index) {
+        if (index < 0 || index > count) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+        }
+        return buffer.getInt(HEADER_SIZE + index * 4);
+    }
+
+    private String decode(int position, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(position, bytes); // Absolute get: safe to call from several threads
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @NotNull
+    public static Writer newWriter(@NotNull Path cacheFile) throws IOException {
+        return new Writer(cacheFile);
+    }
+
+    /**
+     * Running hash of a list of entries: SHA-256 over {@code word \0 translation \n} in UTF-8, in order.
+     * The same entries give the same hash no matter how the JSON was formatted.
+     */
+    public static final class ContentHasher {
+        private final MessageDigest digest;
+
+        public ContentHasher() {
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        public void add(@NotNull String word, @NotNull String translation) {
+            digest.update(word.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(translation.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+        }
+
+        @NotNull
+        public byte[] finish() {
+            return digest.digest();
+        }
+    }
+
+    /**
+     * Builds a cache file entry by entry. Entries go to a side file first, so memory use is one int per entry
+     * (two once an entry has extended fields); {@link #commit} assembles the final file and moves it into place
+     * atomically.
+     */
+    public static final class Writer implements Closeable {
+        private final Path target;
+        private final Path dataFile;
+        private final DataOutputStream data;
+        private int[] offsets = new int[1024];
+        private int count = 0;
+        private final ContentHasher hasher = new ContentHasher();
+        private int dataSize = 0;
+        private ExtendedEntryStore.Writer extended; // Null until the first entry with extended fields
+        private boolean finished = false;
+
+        private Writer(Path target) throws IOException {
+            this.target = target;
+            Files.createDirectories(target.toAbsolutePath().getParent());
+            this.dataFile = target.resolveSibling(target.getFileName() + ".data.tmp");
+            this.data = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(dataFile), 64 * 1024));
+        }
+
+        public void add(@NotNull String word, @NotNull String translation) throws IOException {
+            byte[] wordBytes = word.getBytes(StandardCharsets.UTF_8);
+            byte[] translationBytes = translation.getBytes(StandardCharsets.UTF_8);
+            if (wordBytes.length > 0xFFFF) {
+                throw new WordbookFormatException("单词过长 (Word too long): " + word.substring(0, 32) + "...");
+            }
+            if (count == offsets.length) {
+                offsets = Arrays.copyOf(offsets, count * 2);
+            }
+            offsets[count++] = dataSize;
+            data.writeShort(wordBytes.length);
+            data.write(wordBytes);
+            data.write(translationBytes);
+            dataSize += 2 + wordBytes.length + translationBytes.length;
+            if (dataSize < 0) {
+                throw new IOException("单词本过大 (Wordbook too large)");
+            }
+            hasher.add(word, translation);
+        }
+
+        /**
+         * @param extendedJson the entry's extended fields as a JSON object, or null if it has none.
+         */
+        public void add(@NotNull String word, @NotNull String translation, @Nullable String extendedJson) throws IOException {
+            int index = count;
+            add(word, translation);
+            if (extendedJson != null) {
+                if (extended == null) {
+                    extended = new ExtendedEntryStore.Writer(extendedFileFor(target));
+                }
+                extended.add(index, extendedJson);
+            }
+        }
+
+        public int size() {
+            return count;
+        }
+
+        /**
+         * Writes the cache, recording {@code source}'s current size and modification time.
+         */
+        @NotNull
+        public CompiledWordbook commit(@NotNull Path source) throws IOException {
+            return commit(Files.size(source), Files.getLastModifiedTime(source).toMillis());
+        }
+
+        @NotNull
+        public CompiledWordbook commit(long sourceSize, long sourceModified) throws IOException {
+            finished = true;
+            data.close();
+            Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+            try (OutputStream raw = Files.newOutputStream(tmp);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(raw, 64 * 1024))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(count);
+                out.writeInt(0);
+                out.writeLong(sourceSize);
+                out.writeLong(sourceModified);
+                out.write(hasher.finish());
+                for (int i = 0; i < count; i++) {
+                    out.writeInt(offsets[i]);
+                }
+                out.writeInt(dataSize);
+                out.flush();
+                Files.copy(dataFile, raw);
+            } finally {
+                Files.deleteIfExists(dataFile);
+            }
+            if (extended != null) {
+                extended.commit(count, sourceSize, sourceModified);
+            } else {
+                Files.deleteIfExists(extendedFileFor(target)); // Would be stale; the book has no extended fields now
+            }
+            WordbookDownloader.moveAtomically(tmp, target);
+            return open(target);
+        }
+
+        /**
+         * Drops everything written so far.
+         */
+        public void abort() {
+            if (extended != null) {
+                extended.abort(); // Nothing to do once it is committed
+            }
+            if (finished) {
+                return;
+            }
+            finished = true;
+            try {
+                data.close();
+                Files.deleteIfExists(dataFile);
+            } catch (IOException e) {
+                LOG.debug("Could not delete " + dataFile + ": " + e.getMessage());
+            }
+        }
+
+        @Override
+        public void close() {
+            abort();
+        }
+    }
+
+    /**
+     * Compiles {@code source} from scratch with the streaming parser.
+     *
+     * @throws com.intellij.openapi.progress.ProcessCanceledException if {@code indicator} is cancelled meanwhile.
+     */
+    @NotNull
+    static CompiledWordbook compile(@NotNull Path source, @NotNull ProgressIndicator indicator) throws IOException {
+        int[] entries = new int[1];
+        try (Writer writer = newWriter(cacheFileFor(source));
+             InputStream in = Files.newInputStream(source)) {
+            WordbookParser.parseDetailed(in, source.getFileName().toString(), (word, translation, extended) -> {
+                if ((++entries[0] & (CANCEL_CHECK_INTERVAL - 1)) == 0) {
+                    indicator.checkCanceled(); // Leaves through close(), which deletes the partial cache
+                }
+                writer.add(word, translation, extended != null ? extended.toString() : null);
+            });
+            indicator.checkCanceled();
+            return writer.commit(source);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CompiledWordbook(" + file.getFileName() + ", " + count + " words)";
+    }
+}
@@ -0,0 +1,140 @@
+package com.honsin.aiword.service;
+
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.file.Path;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Parses a wordbook while it downloads and writes its {@link CompiledWordbook} cache at the same time,
+ * so the book is load-ready as soon as the download finishes. The parser runs on its own thread, fed
+ * through a pipe; as soon as it rejects the data (e.g. an HTML error page) the download is aborted, and
+ * data that only turns out broken at its end (truncated, trailing garbage) never replaces the wordbook.
+ * <p>
+ * The book's compile lock ({@link WordbookService#compileLock}) is held from start to end, so a load of
+ * the same book waits and then finds the fresh cache instead of compiling into the same temp files.
+ */
+public final class CompilingDownloadSink implements DownloadSink {
+
+    private static final Logger LOG = Logger.getInstance(CompilingDownloadSink.class);
+    private static final int PIPE_SIZE = 64 * 1024;
+
+    private final Path target;
+    private CompiledWordbook.Writer writer;
+    private PipedOutputStream pipe;
+    private Thread parserThread;
+    private ReentrantLock lock;       // Held by the download thread between onStart and onComplete/onAbort
+    private volatile IOException failure;
+
+    public CompilingDownloadSink(@NotNull Path target) {
+        this.target = target;
+    }
+
+    /**
+     * Only JSON wordbooks can be compiled.
+     */
+    public static boolean accepts(@NotNull Path target) {
+        return target.getFileName().toString().toLowerCase().endsWith(".json");
+    }
+
+    @Override
+    public void onStart() throws IOException {
+        lock = WordbookService.getInstance().compileLock(target);
+        lock.lock();
+        writer = CompiledWordbook.newWriter(CompiledWordbook.cacheFileFor(target));
+        PipedInputStream in = new PipedInputStream(PIPE_SIZE);
+        pipe = new PipedOutputStream(in);
+        parserThread = new Thread(() -> {
+            try (in) {
+                WordbookParser.parseDetailed(in, target.getFileName().toString(), (word, translation, extended) ->
+                        writer.add(word, translation, extended != null ? extended.toString() : null));
+            } catch (IOException e) {
+                failure = e;
+            } catch (RuntimeException e) {
+                failure = new WordbookFormatException(e.getMessage(), e);
+            }
+        }, "AiWord wordbook compiler");
+        parserThread.setDaemon(true);
+        parserThread.start();
+    }
+
+    @Override
+    public void onChunk(@NotNull byte[] buffer, int offset, int length) throws IOException {
+        checkFailure();
+        try {
+            pipe.write(buffer, offset, length);
+        } catch (IOException e) {
+            // The parser stopped reading; report why
+            awaitParser();
+            checkFailure();
+            throw e;
+        }
+    }
+
+    @Override
+    public void onEnd() throws IOException {
+        pipe.close();
+        awaitParser();
+        checkFailure();
+    }
+
+    @Override
+    public void onComplete(@NotNull Path file) throws IOException {
+        try {
+            CompiledWordbook compiled = writer.commit(file);
+            LOG.info("Compiled " + compiled + " while downloading");
+        } finally {
+            unlock();
+        }
+    }
+
+    @Override
+    public void onAbort() {
+        try {
+            if (pipe != null) {
+                try {
+                    pipe.close();
+                } catch (IOException ignored) {
+                }
+                try {
+                    awaitParser();
+                } catch (IOException ignored) {
+                }
+            }
+            if (writer != null) {
+                writer.abort();
+            }
+        } finally {
+            unlock();
+        }
+    }
+
+    private void unlock() {
+        if (lock != null && lock.isHeldByCurrentThread()) {
+            lock.unlock();
+        }
+        lock = null;
+    }
+
+    private void awaitParser() throws IOException {
+        try {
+            parserThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("编译单词本被中断 (Compiling wordbook was interrupted)", e);
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        IOException e = failure;
+        if (e instanceof WordbookFormatException) {
+            throw new WordbookFormatException(e.getMessage(), e);
+        } else if (e != null) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.honsin.aiword.service;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Sees the bytes of a download while {@link WordbookDownloader} writes them to disk, e.g. to parse the
+ * file on the fly. A resumed download first replays the part already on disk, so a sink always sees
+ * the whole file from byte 0.
+ * <p>
+ * Throwing from {@link #onChunk} aborts the download; a {@link WordbookFormatException} also discards
+ * the part file, since resuming garbage is pointless.
+ */
+public interface DownloadSink {
+
+    void onStart() throws IOException;
+
+    void onChunk(@NotNull byte[] buffer, int offset, int length) throws IOException;
+
+    /**
+     * All bytes have arrived (and the checksum matched), the part file is not moved into place yet.
+     * Throwing rejects the download, like throwing from {@link #onChunk}.
+     */
+    void onEnd() throws IOException;
+
+    /**
+     * The complete, verified file has been moved to {@code file}.
+     */
+    void onComplete(@NotNull Path file) throws IOException;
+
+    /**
+     * The download failed or was cancelled after {@link #onStart}.
+     */
+    void onAbort();
+}
@@ -0,0 +1,286 @@
+package com.honsin.aiword.service;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.honsin.aiword.model.ExtendedEntry;
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Extended fields (phonetics, examples, phrases, roots) of a compiled wordbook, from its {@code .awx} side file.
+ * <pre>
+ * header   magic "AWCX", version, count, reserved (ints), source size, source mtime (longs)
+ * offsets  (count + 1) ints, relative to the data section; entry i is [offsets[i], offsets[i + 1]), empty if none
+ * data     per entry: its extended fields as a JSON object, utf8
+ * </pre>
+ * Nothing is parsed up front: an entry's bytes are only read and parsed when it is asked for, and the last
+ * {@link #CACHE_SIZE} parsed entries are kept.
+ */
+public final class ExtendedEntryStore {
+
+    private static final Logger LOG = Logger.getInstance(ExtendedEntryStore.class);
+    private static final int MAGIC = 0x41574358; // "AWCX"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 * 4 + 8 + 8;
+    private static final int CACHE_SIZE = 64;
+    private static final ExtendedEntry NONE = new ExtendedEntry("", List.of(), List.of(), List.of());
+
+    private final Path file;
+    private final MappedByteBuffer buffer;
+    private final int count;
+    private final int dataStart;
+    private final Map<Integer, ExtendedEntry> recent = new LinkedHashMap<>(CACHE_SIZE, 0.75f, true) { // Guarded by itself
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, ExtendedEntry> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private ExtendedEntryStore(Path file, MappedByteBuffer buffer) throws IOException {
+        this.file = file;
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("不是有效的扩展字段文件 (Not a valid extended fields file): " + file);
+        }
+        this.count = buffer.getInt(8);
+        this.dataStart = HEADER_SIZE + (count + 1) * 4;
+        if (count < 0 || dataStart > buffer.capacity() || dataStart + (long) offset(count) != buffer.capacity()) {
+            throw new IOException("扩展字段文件已损坏 (Extended fields file is corrupt): " + file);
+        }
+    }
+
+    /**
+     * The extended fields written together with {@code compiled}, or null if the book has none or the side
+     * file does not belong to this version of the book.
+     */
+    @Nullable
+    static ExtendedEntryStore openFor(@NotNull CompiledWordbook compiled) {
+        Path file = CompiledWordbook.extendedFileFor(compiled.getFile());
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ExtendedEntryStore store = new ExtendedEntryStore(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            if (store.count != compiled.size() || store.buffer.getLong(16) != compiled.getSourceSize()
+                    || store.buffer.getLong(24) != compiled.getSourceModified()) {
+                LOG.debug("Ignoring extended fields of another version of the book: " + file);
+                return null;
+            }
+            return store;
+        } catch (IOException e) {
+            LOG.warn("Ignoring unreadable extended fields " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * The extended fields of entry {@code index}, or null if it has none.
+     */
+    @Nullable
+    public ExtendedEntry get(int index) {
+        ExtendedEntry entry;
+        synchronized (recent) {
+            entry = recent.get(index);
+        }
+        if (entry == null) {
+            String json = getJson(index);
+            entry = json == null ? NONE : parse(json);
+            synchronized (recent) {
+                recent.put(index, entry);
+            }
+        }
+        return entry == NONE ? null : entry;
+    }
+
+    /**
+     * The stored JSON of entry {@code index}, or null if it has none.
+     */
+    @Nullable
+    String getJson(int index) {
+        int start = offset(index);
+        int length = offset(index + 1) - start;
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(dataStart + start, bytes); // Absolute get: safe to call from several threads
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public int size() {
+        return count;
+    }
+
+    private int offset(int index) {
+        if (index < 0 || index > count) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+        }
+        return buffer.getInt(HEADER_SIZE + index * 4);
+    }
+
+    private ExtendedEntry parse(String json) {
+        JsonObject fields;
+        try {
+            fields = JsonParser.parseString(json).getAsJsonObject();
+        } catch (JsonParseException | IllegalStateException e) {
+            LOG.warn("Ignoring malformed extended fields in " + file + ": " + e.getMessage());
+            return NONE;
+        }
+        String uk = phonetic(fields.get("ukphone"));
+        String us = phonetic(fields.get("usphone"));
+        String phonetic;
+        if (!uk.isEmpty() || !us.isEmpty()) {
+            phonetic = ((uk.isEmpty() ? "" : "英 " + uk + "  ") + (us.isEmpty() ? "" : "美 " + us)).trim();
+        } else {
+            phonetic = phonetic(fields.get("phonetic"));
+        }
+        List<String> examples = lines(fields.get("sentences"));
+        examples.addAll(lines(fields.get("examples")));
+        ExtendedEntry entry = new ExtendedEntry(phonetic, examples, lines(fields.get("phrases")), lines(fields.get("roots")));
+        return entry.isEmpty() ? NONE : entry;
+    }
+
+    /**
+     * "/ə'bɪlɪtɪ/" for "ə'bɪlɪtɪ", "[ə'bɪlɪtɪ]" or "/ə'bɪlɪtɪ/"; empty if missing.
+     */
+    private static String phonetic(@Nullable JsonElement value) {
+        if (value == null || !value.isJsonPrimitive()) {
+            return "";
+        }
+        String text = value.getAsString().trim();
+        if (text.length() >= 2 && (text.charAt(0) == '/' || text.charAt(0) == '[')) {
+            text = text.substring(1, text.length() - (text.endsWith("/") || text.endsWith("]") ? 1 : 0)).trim();
+        }
+        return text.isEmpty() ? "" : "/" + text + "/";
+    }
+
+    /**
+     * One line per item of a string or an array of strings and objects; an object's string members are joined,
+     * e.g. {"phrase": "ability to", "translation": "能够"} becomes "ability to  能够".
+     */
+    private static List<String> lines(@Nullable JsonElement value) {
+        List<String> lines = new ArrayList<>();
+        if (value == null) {
+            return lines;
+        }
+        for (JsonElement item : value.isJsonArray() ? value.getAsJsonArray() : List.of(value)) {
+            StringBuilder line = new StringBuilder();
+            if (item.isJsonPrimitive()) {
+                line.append(item.getAsString().trim());
+            } else if (item.isJsonObject()) {
+                for (Map.Entry<String, JsonElement> member : item.getAsJsonObject().entrySet()) {
+                    JsonElement text = member.getValue();
+                    if (text.isJsonPrimitive() && text.getAsJsonPrimitive().isString() && !text.getAsString().isBlank()) {
+                        line.append(line.length() > 0 ? "  " : "").append(text.getAsString().trim());
+                    }
+                }
+            }
+            if (line.length() > 0) {
+                lines.add(line.toString());
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Writes a side file entry by entry through a temporary data file, like {@link CompiledWordbook.Writer};
+     * entries without extended fields take no space but their offset.
+     */
+    static final class Writer {
+        private final Path target;
+        private final Path dataFile;
+        private final DataOutputStream data;
+        private int[] offsets = new int[1024];
+        private int size = 0;
+        private int dataSize = 0;
+        private boolean finished = false;
+
+        Writer(@NotNull Path target) throws IOException {
+            this.target = target;
+            Files.createDirectories(target.toAbsolutePath().getParent());
+            this.dataFile = target.resolveSibling(target.getFileName() + ".data.tmp");
+            this.data = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(dataFile), 64 * 1024));
+        }
+
+        /**
+         * Adds the extended fields of entry {@code index}; entries must come in increasing order.
+         */
+        void add(int index, @NotNull String json) throws IOException {
+            fillOffsets(index);
+            byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+            data.write(bytes);
+            dataSize += bytes.length;
+            if (dataSize < 0) {
+                throw new IOException("扩展字段过大 (Extended fields too large)");
+            }
+        }
+
+        /**
+         * Gives every entry up to {@code index} without an offset yet the current end of the data.
+         */
+        private void fillOffsets(int index) {
+            if (index >= offsets.length) {
+                offsets = Arrays.copyOf(offsets, Math.max(index + 1, offsets.length * 2));
+            }
+            while (size <= index) {
+                offsets[size++] = dataSize;
+            }
+        }
+
+        void commit(int count, long sourceSize, long sourceModified) throws IOException {
+            finished = true;
+            data.close();
+            fillOffsets(count);
+            Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+            try (OutputStream raw = Files.newOutputStream(tmp);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(raw, 64 * 1024))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(count);
+                out.writeInt(0);
+                out.writeLong(sourceSize);
+                out.writeLong(sourceModified);
+                for (int i = 0; i <= count; i++) {
+                    out.writeInt(offsets[i]);
+                }
+                out.flush();
+                Files.copy(dataFile, raw);
+            } finally {
+                Files.deleteIfExists(dataFile);
+            }
+            WordbookDownloader.moveAtomically(tmp, target);
+        }
+
+        void abort() {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            try {
+                data.close();
+                Files.deleteIfExists(dataFile);
+            } catch (IOException e) {
+                LOG.debug("Could not delete " + dataFile + ": " + e.getMessage());
+            }
+        }
+    }
+}
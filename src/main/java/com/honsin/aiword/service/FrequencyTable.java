@@ -0,0 +1,172 @@
+package com.honsin.aiword.service;
+
+import com.honsin.aiword.model.WordEntry;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * How common English words are: word → rank, 0 for the most frequent word.
+ * <p>
+ * Read from a plain word list, most frequent word first (one word per line; a count or other columns after
+ * the word are ignored, {@code #} starts a comment). Words are kept as 64-bit hashes in a sorted array with
+ * the ranks alongside, so a table of 100k words takes 1.2 MB and a lookup is a binary search. Wordbooks are
+ * joined with it once per snapshot ({@link WordbookSnapshot#getFrequencyRanks()}), not once per comparison.
+ */
+public final class FrequencyTable {
+
+    private static final String BUNDLED_RESOURCE = "/frequency/en.txt";
+
+    private final String name;
+    private final long[] hashes; // Sorted
+    private final int[] ranks;   // Rank of hashes[i]
+    private final int rankLimit; // Greater than every rank
+
+    private FrequencyTable(String name, long[] hashes, int[] ranks, int rankLimit) {
+        this.name = name;
+        this.hashes = hashes;
+        this.ranks = ranks;
+        this.rankLimit = rankLimit;
+    }
+
+    /**
+     * The list shipped with the plugin (a few hundred common words; a full list can be set in the settings).
+     */
+    @NotNull
+    public static FrequencyTable bundled() throws IOException {
+        try (InputStream in = FrequencyTable.class.getResourceAsStream(BUNDLED_RESOURCE)) {
+            if (in == null) {
+                throw new IOException("Missing resource " + BUNDLED_RESOURCE);
+            }
+            return read(in, "bundled");
+        }
+    }
+
+    @NotNull
+    public static FrequencyTable read(@NotNull Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return read(in, file.getFileName().toString());
+        }
+    }
+
+    /**
+     * Reads a word list, most frequent first. A word listed twice keeps its first (better) rank.
+     */
+    @NotNull
+    public static FrequencyTable read(@NotNull InputStream in, @NotNull String name) throws IOException {
+        long[] hashes = new long[1024];
+        int count = 0;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            String word = firstColumn(line);
+            if (word.isEmpty()) continue;
+            if (count == hashes.length) {
+                hashes = Arrays.copyOf(hashes, count * 2);
+            }
+            hashes[count++] = hash(word);
+        }
+        if (count == 0) {
+            throw new IOException("词频表中没有单词 (No words in frequency list): " + name);
+        }
+
+        // Sort by hash; the permutation is the rank, since the list is in rank order
+        long[] listed = hashes;
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) order[i] = i;
+        IntArrays.quickSort(order, (a, b) -> {
+            int c = Long.compare(listed[a], listed[b]);
+            return c != 0 ? c : Integer.compare(a, b);
+        });
+        long[] sorted = new long[count];
+        int[] ranks = new int[count];
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            long h = listed[order[i]];
+            if (unique > 0 && sorted[unique - 1] == h) continue; // Duplicate; the first has the lower rank
+            sorted[unique] = h;
+            ranks[unique++] = order[i];
+        }
+        return new FrequencyTable(name, Arrays.copyOf(sorted, unique), Arrays.copyOf(ranks, unique), count);
+    }
+
+    private static String firstColumn(String line) {
+        int comment = line.indexOf('#');
+        String text = (comment >= 0 ? line.substring(0, comment) : line).trim();
+        int end = 0;
+        while (end < text.length() && !Character.isWhitespace(text.charAt(end)) && text.charAt(end) != ',') end++;
+        return text.substring(0, end);
+    }
+
+    /**
+     * FNV-1a of the lower-cased word, like the project miner's token hashes.
+     */
+    private static long hash(CharSequence word) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < word.length(); i++) {
+            hash ^= Character.toLowerCase(word.charAt(i));
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Rank of {@code word} ignoring case, or -1 if it is not in the table.
+     */
+    public int rankOf(@NotNull String word) {
+        int i = Arrays.binarySearch(hashes, hash(word.trim()));
+        return i >= 0 ? ranks[i] : -1;
+    }
+
+    /**
+     * Rank of every entry of {@code words}, by index. Words not in the table rank after all the others,
+     * in book order; for phrases the phrase itself is looked up, then its rarest word.
+     */
+    @NotNull
+    public int[] rankAll(@NotNull List<WordEntry> words) {
+        int size = words.size();
+        int[] result = new int[size];
+        for (int i = 0; i < size; i++) {
+            String word = words instanceof MappedWordStore ? ((MappedWordStore) words).getWord(i) : words.get(i).getWord();
+            int rank = rankOf(word);
+            if (rank < 0 && word.indexOf(' ') > 0) {
+                rank = rankOfPhrase(word);
+            }
+            result[i] = rank >= 0 ? rank : rankLimit + i;
+        }
+        return result;
+    }
+
+    private int rankOfPhrase(String phrase) {
+        int rarest = -1;
+        for (String part : phrase.trim().split("\\s+")) {
+            int rank = rankOf(part);
+            if (rank < 0) {
+                return -1;
+            }
+            rarest = Math.max(rarest, rank);
+        }
+        return rarest;
+    }
+
+    /**
+     * Number of distinct words.
+     */
+    public int size() {
+        return hashes.length;
+    }
+
+    @NotNull
+    public String getName() {
+        return name;
+    }
+}
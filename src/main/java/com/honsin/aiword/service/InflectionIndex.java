@@ -0,0 +1,124 @@
+package com.honsin.aiword.service;
+
+import com.honsin.aiword.model.WordEntry;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Finds the headword of an inflected form ("abilities" -> ability, "went" -> go) in constant time.
+ * <p>
+ * The forms of every headword are generated once ({@link WordForms#forEachInflection}, for the parts of
+ * speech its translation lists) and only their 64-bit hashes are kept, each with the index of its entry:
+ * no form or headword string is stored. A form of two headwords ("leaves") belongs to the first in the book.
+ */
+public final class InflectionIndex {
+
+    private static final long EMPTY = 0;
+
+    private final long[] keys;
+    private final int[] entries;
+    private final int mask;
+
+    InflectionIndex(@NotNull List<WordEntry> words) {
+        MappedWordStore mapped = words instanceof MappedWordStore ? (MappedWordStore) words : null;
+        LongArrayList formHashes = new LongArrayList(words.size() * 3);
+        IntArrayList formEntries = new IntArrayList(words.size() * 3);
+        for (int i = 0; i < words.size(); i++) {
+            WordEntry entry = words.get(i);
+            String word = mapped != null ? mapped.getWord(i) : entry.getWord();
+            int index = i;
+            WordForms.forEachInflection(word, partsOfSpeech(entry.getTranslation()), form -> {
+                formHashes.add(hash(form));
+                formEntries.add(index);
+            });
+        }
+
+        int capacity = Integer.highestOneBit(Math.max(4, formHashes.size() + formHashes.size() / 3)) << 1;
+        this.keys = new long[capacity];
+        this.entries = new int[capacity];
+        this.mask = capacity - 1;
+        for (int f = 0; f < formHashes.size(); f++) {
+            long key = formHashes.getLong(f);
+            int slot = slot(key);
+            while (keys[slot] != EMPTY && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            if (keys[slot] == EMPTY) {
+                keys[slot] = key;
+                entries[slot] = formEntries.getInt(f);
+            }
+        }
+    }
+
+    /**
+     * Index of the entry {@code form} is an inflection of (ignoring case), or -1.
+     */
+    public int find(@NotNull String form) {
+        long key = hash(form.trim().toLowerCase(Locale.ROOT));
+        int slot = slot(key);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                return entries[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private int slot(long key) {
+        return (int) (key ^ (key >>> 32)) & mask;
+    }
+
+    /**
+     * FNV-1a; never {@link #EMPTY}.
+     */
+    private static long hash(String form) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < form.length(); i++) {
+            hash ^= form.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash == EMPTY ? 1 : hash;
+    }
+
+    /**
+     * Parts of speech a translation like "n. 能力; vt. 使能够" lists; all of them if it has no types at all,
+     * none (only irregular forms) for e.g. "prep." or "conj.".
+     */
+    static int partsOfSpeech(String translation) {
+        int pos = 0;
+        boolean typed = false;
+        int start = 0;
+        while (start < translation.length()) {
+            int end = translation.indexOf("; ", start);
+            if (end < 0) end = translation.length();
+            int dot = translation.indexOf(". ", start);
+            if (dot > start && dot < end) {
+                typed = true;
+                switch (translation.substring(start, dot).trim().toLowerCase(Locale.ROOT)) {
+                    case "n":
+                        pos |= WordForms.NOUN;
+                        break;
+                    case "v":
+                    case "vt":
+                    case "vi":
+                    case "aux":
+                        pos |= WordForms.VERB;
+                        break;
+                    case "a":
+                    case "adj":
+                        pos |= WordForms.ADJECTIVE;
+                        break;
+                    default:
+                        break;
+                }
+            }
+            start = end + 2;
+        }
+        return typed ? pos : WordForms.ANY;
+    }
+}
@@ -0,0 +1,78 @@
+package com.honsin.aiword.service;
+
+import com.intellij.openapi.diagnostic.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Inflected forms no rule derives ("went", "children", "better"), read once from {@code /lemmas/irregular.txt}.
+ */
+final class IrregularForms {
+
+    private static final Logger LOG = Logger.getInstance(IrregularForms.class);
+    private static final String RESOURCE = "/lemmas/irregular.txt";
+
+    private static final class Holder {
+        static final IrregularForms INSTANCE = load();
+    }
+
+    private final Map<String, List<String>> formsByLemma;
+    private final Map<String, List<String>> lemmasByForm; // "lay" -> lay, lie
+
+    private IrregularForms(Map<String, List<String>> formsByLemma, Map<String, List<String>> lemmasByForm) {
+        this.formsByLemma = formsByLemma;
+        this.lemmasByForm = lemmasByForm;
+    }
+
+    static IrregularForms get() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Headwords {@code form} (lower case) is an irregular form of; empty if none.
+     */
+    List<String> lemmasOf(String form) {
+        return lemmasByForm.getOrDefault(form, Collections.emptyList());
+    }
+
+    /**
+     * Irregular forms of {@code lemma} (lower case); empty if none.
+     */
+    List<String> formsOf(String lemma) {
+        return formsByLemma.getOrDefault(lemma, Collections.emptyList());
+    }
+
+    private static IrregularForms load() {
+        Map<String, List<String>> formsByLemma = new HashMap<>();
+        Map<String, List<String>> lemmasByForm = new HashMap<>();
+        try (InputStream in = IrregularForms.class.getResourceAsStream(RESOURCE)) {
+            if (in == null) {
+                throw new IOException("Missing resource " + RESOURCE);
+            }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String[] words = line.split("\\s+");
+                List<String> forms = List.of(words).subList(1, words.length);
+                formsByLemma.put(words[0], forms);
+                for (String form : forms) {
+                    lemmasByForm.computeIfAbsent(form, f -> new ArrayList<>(1)).add(words[0]);
+                }
+            }
+        } catch (IOException e) {
+            LOG.warn("Cannot read irregular forms; only regular inflections are recognized", e);
+        }
+        return new IrregularForms(formsByLemma, lemmasByForm);
+    }
+}
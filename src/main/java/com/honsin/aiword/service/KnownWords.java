@@ -0,0 +1,219 @@
+package com.honsin.aiword.service;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.PersistentStateComponentWithModificationTracker;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.components.State;
+import com.intellij.openapi.components.Storage;
+import com.intellij.openapi.util.Disposer;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Words the user marked as known, across all wordbooks, stored in {@code aiword-known.xml}. Views, random
+ * draws and page playback skip them.
+ * <p>
+ * Lookups go through an immutable {@link Index}: a Bloom filter that rules out almost every unknown word
+ * from a few cache-resident bits, in front of an exact set of headword fingerprints (see
+ * {@link WordbookMerger#fingerprint}). A change builds a new index, so readers never lock.
+ */
+@Service(Service.Level.APP)
+@State(name = "AiWordKnownWords", storages = @Storage("aiword-known.xml"))
+public final class KnownWords implements PersistentStateComponentWithModificationTracker<KnownWords.KnownData> {
+
+    /**
+     * What is stored; public fields for the XML serializer. Words are trimmed and lower case.
+     */
+    public static final class KnownData {
+        public List<String> words = new ArrayList<>();
+    }
+
+    /**
+     * The known words at one point in time; a new instance after every change.
+     */
+    public static final class Index {
+        static final Index EMPTY = new Index(List.of());
+
+        private final LongBloomFilter bloom;
+        private final LongOpenHashSet exact;
+
+        private Index(Collection<String> words) {
+            this.bloom = new LongBloomFilter(words.size());
+            this.exact = new LongOpenHashSet(words.size());
+            for (String word : words) {
+                long fingerprint = WordbookMerger.fingerprint(word);
+                bloom.add(fingerprint);
+                exact.add(fingerprint);
+            }
+        }
+
+        /**
+         * Whether {@code word} (ignoring case) is known.
+         */
+        public boolean contains(@NotNull String word) {
+            long fingerprint = WordbookMerger.fingerprint(word);
+            return bloom.mightContain(fingerprint) && exact.contains(fingerprint);
+        }
+
+        public int size() {
+            return exact.size();
+        }
+
+        public boolean isEmpty() {
+            return exact.isEmpty();
+        }
+    }
+
+    private KnownData data = new KnownData(); // Guarded by this
+    private volatile Index index = Index.EMPTY;
+    private long modificationCount = 0;
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+
+    public static KnownWords getInstance() {
+        return ApplicationManager.getApplication().getService(KnownWords.class);
+    }
+
+    @Override
+    public synchronized KnownData getState() {
+        return data;
+    }
+
+    @Override
+    public void loadState(@NotNull KnownData state) {
+        synchronized (this) {
+            data = state;
+            if (data.words == null) {
+                data.words = new ArrayList<>();
+            }
+            index = new Index(data.words);
+            modificationCount++;
+        }
+        fireChanged();
+    }
+
+    @Override
+    public synchronized long getStateModificationCount() {
+        return modificationCount;
+    }
+
+    /**
+     * The current known words; compare instances to tell whether they changed.
+     */
+    @NotNull
+    public Index getIndex() {
+        return index;
+    }
+
+    public boolean isKnown(@NotNull String word) {
+        return index.contains(word);
+    }
+
+    /**
+     * Marks {@code words} as known.
+     *
+     * @return how many of them were not known before.
+     */
+    public int addAll(@NotNull Collection<String> words) {
+        int added = 0;
+        synchronized (this) {
+            Index current = index;
+            LongOpenHashSet adding = new LongOpenHashSet();
+            for (String word : words) {
+                String key = word.trim().toLowerCase(Locale.ROOT);
+                if (!key.isEmpty() && !current.contains(key) && adding.add(WordbookMerger.fingerprint(key))) {
+                    data.words.add(key);
+                    added++;
+                }
+            }
+            if (added == 0) {
+                return 0;
+            }
+            index = new Index(data.words);
+            modificationCount++;
+        }
+        fireChanged();
+        return added;
+    }
+
+    /**
+     * Marks {@code words} as not known any more.
+     *
+     * @return how many of them were known.
+     */
+    public int removeAll(@NotNull Collection<String> words) {
+        int removed;
+        synchronized (this) {
+            LongOpenHashSet removing = new LongOpenHashSet();
+            for (String word : words) {
+                removing.add(WordbookMerger.fingerprint(word));
+            }
+            int before = data.words.size();
+            data.words.removeIf(word -> removing.contains(WordbookMerger.fingerprint(word)));
+            removed = before - data.words.size();
+            if (removed == 0) {
+                return 0;
+            }
+            index = new Index(data.words);
+            modificationCount++;
+        }
+        fireChanged();
+        return removed;
+    }
+
+    /**
+     * Marks every word of a word list as known: one word or phrase per line, anything after a tab or comma
+     * (e.g. a translation) and lines starting with '#' are ignored.
+     *
+     * @return how many words were not known before.
+     */
+    public int importFrom(@NotNull Path file) throws IOException {
+        List<String> words = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("\uFEFF")) {
+                    line = line.substring(1);
+                }
+                int end = line.length();
+                for (int i = 0; i < line.length(); i++) {
+                    char c = line.charAt(i);
+                    if (c == '\t' || c == ',') {
+                        end = i;
+                        break;
+                    }
+                }
+                String word = line.substring(0, end).trim();
+                if (!word.isEmpty() && !word.startsWith("#")) {
+                    words.add(word);
+                }
+            }
+        }
+        return addAll(words);
+    }
+
+    /**
+     * Calls {@code listener} (on any thread) after every change, until {@code parent} is disposed.
+     */
+    public void addChangeListener(@NotNull Runnable listener, @NotNull Disposable parent) {
+        listeners.add(listener);
+        Disposer.register(parent, () -> listeners.remove(listener));
+    }
+
+    private void fireChanged() {
+        for (Runnable listener : listeners) {
+            listener.run();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.honsin.aiword.service;
+
+/**
+ * Bloom filter over 64-bit keys that are already good hashes (fingerprints): "no" is certain, "maybe" is
+ * wrong for about 1% of absent keys. The bits of tens of thousands of keys fit in the CPU cache, so most
+ * absent keys are ruled out without touching the exact set behind it.
+ */
+final class LongBloomFilter {
+
+    private static final int BITS_PER_KEY = 10;
+    private static final int PROBES = 7; // About ln 2 * BITS_PER_KEY
+
+    private final long[] bits;
+    private final long mask;
+
+    LongBloomFilter(int expectedKeys) {
+        long size = Long.highestOneBit(Math.max(64L, (long) expectedKeys * BITS_PER_KEY - 1)) << 1;
+        this.bits = new long[(int) (size >>> 6)];
+        this.mask = size - 1;
+    }
+
+    void add(long key) {
+        long h1 = key;
+        long h2 = (key >>> 32) | 1; // Odd, so the probes do not repeat
+        for (int i = 0; i < PROBES; i++) {
+            long bit = (h1 + i * h2) & mask;
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    boolean mightContain(long key) {
+        long h1 = key;
+        long h2 = (key >>> 32) | 1;
+        for (int i = 0; i < PROBES; i++) {
+            long bit = (h1 + i * h2) & mask;
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
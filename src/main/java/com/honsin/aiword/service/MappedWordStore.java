@@ -0,0 +1,43 @@
+package com.honsin.aiword.service;
+
+import com.honsin.aiword.model.WordEntry;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * Read-only list view of a {@link CompiledWordbook}: entries are decoded from the mapped file when they
+ * are asked for, so a 500k word book costs no more heap than a 50 word one.
+ */
+public final class MappedWordStore extends AbstractList<WordEntry> implements RandomAccess {
+
+    private final CompiledWordbook compiled;
+
+    MappedWordStore(@NotNull CompiledWordbook compiled) {
+        this.compiled = compiled;
+    }
+
+    @Override
+    public WordEntry get(int index) {
+        return compiled.get(index);
+    }
+
+    @Override
+    public int size() {
+        return compiled.size();
+    }
+
+    /**
+     * Cheaper than {@code get(index).getWord()} when the translation is not needed.
+     */
+    @NotNull
+    public String getWord(int index) {
+        return compiled.getWord(index);
+    }
+
+    @NotNull
+    public CompiledWordbook getCompiled() {
+        return compiled;
+    }
+}
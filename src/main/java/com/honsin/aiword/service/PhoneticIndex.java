@@ -0,0 +1,207 @@
+package com.honsin.aiword.service;
+
+import com.honsin.aiword.model.WordEntry;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import org.apache.commons.codec.language.DoubleMetaphone;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Finds words that sound like a guessed spelling ("nolij" -> knowledge) by their Double Metaphone keys.
+ * <p>
+ * Every headword gets its primary and, if different, alternate key, packed into a {@code long}. The index
+ * is compressed-row: the distinct keys sorted, and per key a run of entry indices in one {@code int[]}, so
+ * it costs about 12 bytes per word and a lookup is a binary search.
+ */
+public final class PhoneticIndex {
+
+    private static final int MAX_CODE_LENGTH = 6;
+
+    private final List<WordEntry> words;
+    private final MappedWordStore mapped;
+    private final long[] keys;     // Sorted, distinct
+    private final int[] offsets;   // Postings of keys[k] are postings[offsets[k] .. offsets[k + 1])
+    private final int[] postings;  // Entry indices, in book order per key
+
+    PhoneticIndex(@NotNull List<WordEntry> words) {
+        this.words = words;
+        this.mapped = words instanceof MappedWordStore ? (MappedWordStore) words : null;
+        DoubleMetaphone encoder = encoder();
+        LongArrayList pairKeys = new LongArrayList(words.size() + words.size() / 4);
+        IntArrayList pairEntries = new IntArrayList(words.size() + words.size() / 4);
+        for (int i = 0; i < words.size(); i++) {
+            String word = letters(wordAt(i));
+            if (word.isEmpty()) continue;
+            long primary = pack(encoder.doubleMetaphone(word, false));
+            long alternate = pack(encoder.doubleMetaphone(word, true));
+            if (primary != 0) {
+                pairKeys.add(primary);
+                pairEntries.add(i);
+            }
+            if (alternate != 0 && alternate != primary) {
+                pairKeys.add(alternate);
+                pairEntries.add(i);
+            }
+        }
+
+        // Sort the pairs by key (ties in book order), then cut them into runs
+        int count = pairKeys.size();
+        long[] allKeys = pairKeys.elements();
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) order[i] = i;
+        IntArrays.quickSort(order, (a, b) -> {
+            int c = Long.compare(allKeys[a], allKeys[b]);
+            return c != 0 ? c : Integer.compare(a, b);
+        });
+        long[] distinct = new long[count];
+        int[] starts = new int[count + 1];
+        int[] entries = new int[count];
+        int keyCount = 0;
+        for (int p = 0; p < count; p++) {
+            long key = allKeys[order[p]];
+            if (keyCount == 0 || distinct[keyCount - 1] != key) {
+                distinct[keyCount] = key;
+                starts[keyCount++] = p;
+            }
+            entries[p] = pairEntries.getInt(order[p]);
+        }
+        starts[keyCount] = count;
+        this.keys = Arrays.copyOf(distinct, keyCount);
+        this.offsets = Arrays.copyOf(starts, keyCount + 1);
+        this.postings = entries;
+    }
+
+    /**
+     * Entries sounding like {@code spelling}: those with the same key, then (if that is less than {@code limit})
+     * those one sound off, each group by closest spelling and then book order.
+     */
+    @NotNull
+    public int[] find(@NotNull String spelling, int limit) {
+        String query = letters(spelling);
+        if (query.isEmpty()) {
+            return new int[0];
+        }
+        DoubleMetaphone encoder = encoder();
+        String primary = encoder.doubleMetaphone(query, false);
+        String alternate = encoder.doubleMetaphone(query, true);
+        IntOpenHashSet seen = new IntOpenHashSet();
+        IntArrayList found = new IntArrayList();
+        for (String code : new String[]{primary, alternate}) {
+            int k = Arrays.binarySearch(keys, pack(code));
+            if (k >= 0) {
+                addPostings(k, seen, found);
+            }
+        }
+        int exact = found.size();
+        if (found.size() < limit) {
+            // Guesses are often one sound off ("enuf"): keys one edit away, by a scan of the keys only
+            for (int k = 0; k < keys.length; k++) {
+                String code = unpack(keys[k]);
+                if (editDistance(code, primary) <= 1 || editDistance(code, alternate) <= 1) {
+                    addPostings(k, seen, found);
+                }
+            }
+        }
+        int[] result = found.toIntArray();
+        int[] distance = new int[result.length];
+        for (int i = 0; i < result.length; i++) {
+            // Same sound first, then one sound off; closest spelling first within each
+            distance[i] = editDistance(query, letters(wordAt(result[i]))) + (i < exact ? 0 : 1 << 16);
+        }
+        int[] order = new int[result.length];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        IntArrays.quickSort(order, (a, b) -> {
+            int c = Integer.compare(distance[a], distance[b]);
+            return c != 0 ? c : Integer.compare(result[a], result[b]);
+        });
+        int[] sorted = new int[Math.min(limit, result.length)];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = result[order[i]];
+        }
+        return sorted;
+    }
+
+    private void addPostings(int k, IntOpenHashSet seen, IntArrayList found) {
+        for (int p = offsets[k]; p < offsets[k + 1]; p++) {
+            if (seen.add(postings[p])) {
+                found.add(postings[p]);
+            }
+        }
+    }
+
+    /**
+     * Number of distinct keys.
+     */
+    public int size() {
+        return keys.length;
+    }
+
+    private String wordAt(int index) {
+        return mapped != null ? mapped.getWord(index) : words.get(index).getWord();
+    }
+
+    private static DoubleMetaphone encoder() {
+        DoubleMetaphone encoder = new DoubleMetaphone(); // Cheap; one per build or lookup, never shared
+        encoder.setMaxCodeLen(MAX_CODE_LENGTH);
+        return encoder;
+    }
+
+    /**
+     * The ASCII letters of {@code text}, lower case; phrases are encoded as one word.
+     */
+    private static String letters(String text) {
+        StringBuilder sb = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            if (c >= 'a' && c <= 'z') sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * A key of up to {@link #MAX_CODE_LENGTH} characters (A-Z and '0' for "th"), 6 bits each; 0 for none.
+     */
+    private static long pack(String code) {
+        if (code == null || code.isEmpty()) {
+            return 0;
+        }
+        long key = 0;
+        for (int i = 0; i < code.length(); i++) {
+            char c = code.charAt(i);
+            key = (key << 6) | (c == '0' ? 27 : c - 'A' + 1);
+        }
+        return key;
+    }
+
+    private static String unpack(long key) {
+        char[] code = new char[MAX_CODE_LENGTH];
+        int start = code.length;
+        for (; key != 0; key >>>= 6) {
+            int c = (int) (key & 0x3f);
+            code[--start] = c == 27 ? '0' : (char) ('A' + c - 1);
+        }
+        return new String(code, start, code.length - start);
+    }
+
+    private static int editDistance(String a, String b) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) previous[j] = j;
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+}
@@ -0,0 +1,322 @@
+package com.honsin.aiword.service;
+
+import com.honsin.aiword.model.WordEntry;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Finds the English words a project's code is made of: identifiers and comments of every file in the project
+ * content are split into words, counted, and matched against the loaded wordbooks.
+ * <p>
+ * Files are tokenized in parallel. Words are counted under a 64-bit hash of their spelling, so the counts
+ * live in primitive maps and no string is kept per occurrence. The counts of each file are kept with its
+ * modification stamp; mining again only reads the files changed since, so a large project is only slow once.
+ */
+@Service(Service.Level.PROJECT)
+public final class ProjectVocabularyMiner {
+
+    private static final Logger LOG = Logger.getInstance(ProjectVocabularyMiner.class);
+    private static final int MIN_WORD_LENGTH = 3;
+    private static final int MAX_WORD_LENGTH = 30;
+    private static final long MAX_FILE_SIZE = 2 * 1024 * 1024; // Larger files are data, not code
+
+    /**
+     * Word counts of one version of a file.
+     */
+    private static final class FileWords {
+        final long stamp;
+        final long[] hashes;
+        final int[] counts;
+
+        FileWords(long stamp, long[] hashes, int[] counts) {
+            this.stamp = stamp;
+            this.hashes = hashes;
+            this.counts = counts;
+        }
+    }
+
+    /**
+     * A wordbook word that occurs in the project.
+     */
+    public static final class MinedWord {
+        private final WordEntry entry;
+        private final String bookName;
+        private int count;
+
+        MinedWord(WordEntry entry, String bookName) {
+            this.entry = entry;
+            this.bookName = bookName;
+        }
+
+        @NotNull
+        public WordEntry getEntry() {
+            return entry;
+        }
+
+        @NotNull
+        public String getBookName() {
+            return bookName;
+        }
+
+        /**
+         * Occurrences in the project, inflected forms ("tasks", "running") included.
+         */
+        public int getCount() {
+            return count;
+        }
+    }
+
+    private final Project project;
+    private final Map<String, FileWords> fileWords = new ConcurrentHashMap<>(); // File URL -> counts
+    private final Long2ObjectOpenHashMap<String> spellings = new Long2ObjectOpenHashMap<>(); // Guarded by itself
+
+    public ProjectVocabularyMiner(@NotNull Project project) {
+        this.project = project;
+    }
+
+    public static ProjectVocabularyMiner getInstance(@NotNull Project project) {
+        return project.getService(ProjectVocabularyMiner.class);
+    }
+
+    /**
+     * Counts the words of the project and returns the ones found in {@code books}, most frequent first.
+     *
+     * One mining at a time per project; a second call waits for the first.
+     *
+     * @throws ProcessCanceledException if {@code indicator} is cancelled; the files read so far stay cached.
+     */
+    @NotNull
+    public synchronized List<MinedWord> mine(@NotNull List<WordbookSnapshot> books, @NotNull ProgressIndicator indicator) {
+        long start = System.nanoTime();
+        indicator.setText("正在收集项目文件 (Collecting project files)...");
+        List<VirtualFile> files = ReadAction.compute(this::collectFiles);
+        Set<String> present = new HashSet<>();
+        ConcurrentLinkedQueue<VirtualFile> changed = new ConcurrentLinkedQueue<>();
+        for (VirtualFile file : files) {
+            present.add(file.getUrl());
+            FileWords cached = fileWords.get(file.getUrl());
+            if (cached == null || cached.stamp != file.getModificationStamp()) {
+                changed.add(file);
+            }
+        }
+        fileWords.keySet().retainAll(present);
+        int toRead = changed.size();
+        LOG.info("Mining " + files.size() + " files of " + project.getName() + ", " + toRead + " changed since the last run");
+
+        indicator.setText("正在分析 " + toRead + " 个文件 (Tokenizing files)...");
+        tokenizeInParallel(changed, toRead, indicator);
+
+        indicator.setText("正在统计和查词 (Counting and looking up words)...");
+        indicator.setIndeterminate(true);
+        Long2IntOpenHashMap totals = new Long2IntOpenHashMap();
+        for (FileWords words : fileWords.values()) {
+            for (int i = 0; i < words.hashes.length; i++) {
+                totals.addTo(words.hashes[i], words.counts[i]);
+            }
+        }
+        indicator.checkCanceled();
+        List<MinedWord> mined = join(totals, books);
+        mined.sort((a, b) -> Integer.compare(b.count, a.count));
+        LOG.info("Mined " + mined.size() + " wordbook words (" + totals.size() + " distinct tokens) from " + project.getName()
+                + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return mined;
+    }
+
+    private List<VirtualFile> collectFiles() {
+        List<VirtualFile> files = new ArrayList<>();
+        ProjectFileIndex index = ProjectFileIndex.getInstance(project);
+        index.iterateContent(file -> {
+            if (!file.isDirectory() && !file.getFileType().isBinary() && file.getLength() <= MAX_FILE_SIZE) {
+                files.add(file);
+            }
+            return true;
+        });
+        return files;
+    }
+
+    private void tokenizeInParallel(ConcurrentLinkedQueue<VirtualFile> queue, int total, ProgressIndicator indicator) {
+        if (total == 0) {
+            return;
+        }
+        int threads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors() - 1, 8));
+        ExecutorService executor = AppExecutorUtil.createBoundedApplicationPoolExecutor("AiWord vocabulary miner", threads);
+        AtomicInteger done = new AtomicInteger();
+        CountDownLatch finished = new CountDownLatch(threads);
+        try {
+            for (int i = 0; i < threads; i++) {
+                executor.execute(() -> {
+                    try {
+                        VirtualFile file;
+                        while (!indicator.isCanceled() && (file = queue.poll()) != null) {
+                            try {
+                                tokenizeFile(file);
+                            } catch (RuntimeException e) {
+                                LOG.warn("Tokenizing " + file.getPath() + " failed", e);
+                            }
+                            done.incrementAndGet();
+                        }
+                    } finally {
+                        finished.countDown();
+                    }
+                });
+            }
+            while (!finished.await(100, TimeUnit.MILLISECONDS)) {
+                indicator.setFraction((double) done.get() / total);
+                indicator.setText2(done.get() + " / " + total);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ProcessCanceledException();
+        } finally {
+            executor.shutdownNow();
+            indicator.setText2("");
+        }
+        indicator.checkCanceled();
+    }
+
+    private void tokenizeFile(VirtualFile file) {
+        long stamp = file.getModificationStamp(); // Before reading: a change while reading is picked up next time
+        String text;
+        try {
+            text = new String(file.contentsToByteArray(), file.getCharset());
+        } catch (IOException e) {
+            LOG.debug("Skipping unreadable " + file.getPath() + ": " + e.getMessage());
+            return;
+        }
+        Long2IntOpenHashMap counts = new Long2IntOpenHashMap();
+        Long2ObjectOpenHashMap<String> newSpellings = new Long2ObjectOpenHashMap<>();
+        forEachWord(text, (hash, chars, start, end) -> {
+            if (counts.addTo(hash, 1) == 0) {
+                // The string is only made for the first occurrence in the file
+                newSpellings.put(hash, chars.subSequence(start, end).toString().toLowerCase(Locale.ROOT));
+            }
+        });
+        long[] hashes = new long[counts.size()];
+        int[] values = new int[counts.size()];
+        int i = 0;
+        for (Long2IntMap.Entry entry : counts.long2IntEntrySet()) {
+            hashes[i] = entry.getLongKey();
+            values[i++] = entry.getIntValue();
+        }
+        synchronized (spellings) {
+            for (Long2ObjectMap.Entry<String> spelling : newSpellings.long2ObjectEntrySet()) {
+                spellings.putIfAbsent(spelling.getLongKey(), spelling.getValue());
+            }
+        }
+        fileWords.put(file.getUrl(), new FileWords(stamp, hashes, values));
+    }
+
+    @FunctionalInterface
+    interface WordConsumer {
+        void accept(long hash, CharSequence text, int start, int end);
+    }
+
+    /**
+     * Splits text into words at non-letters and camel-case humps, like {@link WordForms#split}, and hashes
+     * them ignoring case. Only ASCII letters make up words: this is about English in code.
+     */
+    static void forEachWord(CharSequence text, WordConsumer consumer) {
+        int length = text.length();
+        int start = -1;
+        for (int i = 0; i <= length; i++) {
+            boolean letter = i < length && isAsciiLetter(text.charAt(i));
+            boolean boundary = !letter || (start >= 0 && isHump(text, i));
+            if (start >= 0 && boundary) {
+                int wordLength = i - start;
+                if (wordLength >= MIN_WORD_LENGTH && wordLength <= MAX_WORD_LENGTH) {
+                    long hash = 0xcbf29ce484222325L; // FNV-1a
+                    for (int j = start; j < i; j++) {
+                        hash ^= Character.toLowerCase(text.charAt(j));
+                        hash *= 0x100000001b3L;
+                    }
+                    consumer.accept(hash, text, start, i);
+                }
+                start = -1;
+            }
+            if (letter && start < 0) {
+                start = i;
+            }
+        }
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isHump(CharSequence text, int i) {
+        char previous = text.charAt(i - 1);
+        char current = text.charAt(i);
+        if (Character.isLowerCase(previous) && Character.isUpperCase(current)) {
+            return true;
+        }
+        return Character.isUpperCase(previous) && Character.isUpperCase(current)
+                && i + 1 < text.length() && Character.isLowerCase(text.charAt(i + 1));
+    }
+
+    /**
+     * Matches every counted token (or its stem) with the headwords of {@code books}; the first book wins.
+     */
+    private List<MinedWord> join(Long2IntOpenHashMap totals, List<WordbookSnapshot> books) {
+        Map<String, MinedWord> byHeadword = new HashMap<>();
+        for (Long2IntMap.Entry total : totals.long2IntEntrySet()) {
+            String token;
+            synchronized (spellings) {
+                token = spellings.get(total.getLongKey());
+            }
+            if (token == null) continue;
+            candidates:
+            for (String candidate : WordForms.stemCandidates(token)) {
+                for (WordbookSnapshot book : books) {
+                    int index = book.getLookupIndex().find(candidate);
+                    if (index >= 0) {
+                        WordEntry entry = book.getWords().get(index);
+                        byHeadword.computeIfAbsent(entry.getWord().toLowerCase(Locale.ROOT),
+                                k -> new MinedWord(entry, book.getFile().getFileName().toString())).count += total.getIntValue();
+                        break candidates;
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(byHeadword.values());
+    }
+
+    /**
+     * Writes {@code words} as a wordbook, in their order, with their counts as {@code frequency}.
+     */
+    public static void writeWordbook(@NotNull List<MinedWord> words, @NotNull Path target) throws IOException {
+        try (WordbookWriter writer = new WordbookWriter(target)) {
+            for (MinedWord word : words) {
+                writer.add(word.getEntry().getWord(), word.getEntry().getTranslation(), word.getCount());
+            }
+            writer.commit();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.honsin.aiword.service;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.PersistentStateComponentWithModificationTracker;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.components.State;
+import com.intellij.openapi.components.Storage;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * How often each word was recently forgotten, stored in {@code aiword-recall.xml}.
+ * <p>
+ * Every word has an error score between 0 and 1, moved towards 1 when the user had to look the word
+ * up and towards 0 when they recalled it, so recent answers count most. Words never practised score
+ * {@link #UNSEEN_SCORE}. Only practised words are stored, keyed by the lower-cased headword.
+ */
+@Service(Service.Level.APP)
+@State(name = "AiWordRecallStats", storages = @Storage("aiword-recall.xml"))
+public final class RecallStats implements PersistentStateComponentWithModificationTracker<RecallStats.RecallData> {
+
+    public static final float UNSEEN_SCORE = 0.5f;
+    private static final float LEARNING_RATE = 0.3f; // Weight of the latest answer
+
+    /**
+     * What is stored; public fields for the XML serializer.
+     */
+    public static final class RecallData {
+        public Map<String, Float> errorScores = new HashMap<>();
+    }
+
+    private RecallData data = new RecallData();
+    private long modificationCount = 0;
+
+    public static RecallStats getInstance() {
+        return ApplicationManager.getApplication().getService(RecallStats.class);
+    }
+
+    @Override
+    public synchronized RecallData getState() {
+        return data;
+    }
+
+    @Override
+    public synchronized void loadState(@NotNull RecallData state) {
+        data = state;
+        if (data.errorScores == null) {
+            data.errorScores = new HashMap<>();
+        }
+        modificationCount++;
+    }
+
+    @Override
+    public synchronized long getStateModificationCount() {
+        return modificationCount;
+    }
+
+    /**
+     * The user knew {@code word} (e.g. typed it while translations were hidden).
+     */
+    public void recordRecalled(@NotNull String word) {
+        record(word, 0f);
+    }
+
+    /**
+     * The user had to look {@code word} up.
+     */
+    public void recordForgotten(@NotNull String word) {
+        record(word, 1f);
+    }
+
+    private synchronized void record(String word, float outcome) {
+        String key = word.trim().toLowerCase(Locale.ROOT);
+        float previous = data.errorScores.getOrDefault(key, UNSEEN_SCORE);
+        data.errorScores.put(key, previous + LEARNING_RATE * (outcome - previous));
+        modificationCount++;
+    }
+
+    /**
+     * Changes every time a score changes; lets caches built from the scores tell whether they are stale.
+     */
+    public synchronized long getVersion() {
+        return modificationCount;
+    }
+
+    /**
+     * A copy of the scores of all practised words.
+     */
+    @NotNull
+    public synchronized Map<String, Float> getErrorScores() {
+        return new HashMap<>(data.errorScores);
+    }
+}
@@ -0,0 +1,497 @@
+package com.honsin.aiword.service;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Learning statistics per wordbook and day: answers, accuracy, time spent and a retention curve.
+ * <p>
+ * Every answer is appended to an event log ({@code <config>/aiword-stats/events.log}) and added to rollups:
+ * per book, counters per day in {@code int[]}s indexed by day, and the recall rate by days since the word
+ * was last answered. The rollups are saved next to the log ({@code rollups.bin}) with the log length they
+ * include, so a start only replays the events written after the last save and the dashboard reads a few
+ * array slots instead of the history.
+ */
+@Service(Service.Level.APP)
+public final class StudyStats implements Disposable {
+
+    private static final Logger LOG = Logger.getInstance(StudyStats.class);
+    private static final String DIRECTORY = "aiword-stats";
+    private static final String EVENTS_FILE = "events.log";
+    private static final String ROLLUPS_FILE = "rollups.bin";
+    private static final int MAGIC = 0x41575354; // "AWST"
+    private static final int VERSION = 1;
+    private static final int CHECKPOINT_INTERVAL = 64;     // Events between saves of the rollups
+    private static final long MAX_GAP_MILLIS = 120_000;    // A longer pause between answers is not study time
+    private static final long FIRST_ANSWER_MILLIS = 10_000; // Credited for the first answer after a pause
+    private static final String ALL_BOOKS = "";
+
+    /**
+     * Lower bounds (days since the word was last answered) of the retention curve's buckets; the last is open.
+     */
+    public static final int[] RETENTION_DAYS = {0, 1, 2, 4, 8, 15, 31};
+
+    /**
+     * Counters of one book (or of all books).
+     */
+    private static final class Rollup {
+        int firstDay = -1; // Epoch day of index 0
+        int[] answers = new int[0];
+        int[] recalled = new int[0];
+        int[] seconds = new int[0];
+        long lastAnswerMillis;
+        long totalAnswers;
+        long totalRecalled;
+        long totalSeconds;
+        final long[] retentionAnswers = new long[RETENTION_DAYS.length];
+        final long[] retentionRecalled = new long[RETENTION_DAYS.length];
+
+        void add(int day, long millis, boolean wasRecalled, int sinceLastAnswer) {
+            if (firstDay < 0) {
+                firstDay = day;
+            }
+            int slot = day - firstDay;
+            if (slot < 0) {
+                return; // Clock went back before the first event; too rare to shift the arrays for
+            }
+            if (slot >= answers.length) {
+                int length = Math.max(slot + 1, answers.length * 2);
+                answers = Arrays.copyOf(answers, length);
+                recalled = Arrays.copyOf(recalled, length);
+                seconds = Arrays.copyOf(seconds, length);
+            }
+            long gap = millis - lastAnswerMillis;
+            int spent = (int) ((gap > 0 && gap <= MAX_GAP_MILLIS ? gap : FIRST_ANSWER_MILLIS) / 1000);
+            lastAnswerMillis = millis;
+            answers[slot]++;
+            seconds[slot] += spent;
+            totalAnswers++;
+            totalSeconds += spent;
+            if (wasRecalled) {
+                recalled[slot]++;
+                totalRecalled++;
+            }
+            if (sinceLastAnswer >= 0) {
+                int bucket = RETENTION_DAYS.length - 1;
+                while (RETENTION_DAYS[bucket] > sinceLastAnswer) bucket--;
+                retentionAnswers[bucket]++;
+                if (wasRecalled) retentionRecalled[bucket]++;
+            }
+        }
+
+        int at(int[] counters, int day) {
+            int slot = day - firstDay;
+            return firstDay >= 0 && slot >= 0 && slot < counters.length ? counters[slot] : 0;
+        }
+    }
+
+    /**
+     * What the dashboard shows for one book (or all books), read from the rollups.
+     */
+    public static final class Summary {
+        private final int[] answers;  // Per day, oldest first, the last is today
+        private final int[] recalled;
+        private final int[] seconds;
+        private final long totalAnswers;
+        private final long totalRecalled;
+        private final long totalSeconds;
+        private final long[] retentionAnswers;
+        private final long[] retentionRecalled;
+
+        private Summary(Rollup rollup, int today, int days) {
+            answers = new int[days];
+            recalled = new int[days];
+            seconds = new int[days];
+            if (rollup != null) {
+                for (int i = 0; i < days; i++) {
+                    int day = today - days + 1 + i;
+                    answers[i] = rollup.at(rollup.answers, day);
+                    recalled[i] = rollup.at(rollup.recalled, day);
+                    seconds[i] = rollup.at(rollup.seconds, day);
+                }
+            }
+            totalAnswers = rollup != null ? rollup.totalAnswers : 0;
+            totalRecalled = rollup != null ? rollup.totalRecalled : 0;
+            totalSeconds = rollup != null ? rollup.totalSeconds : 0;
+            retentionAnswers = rollup != null ? rollup.retentionAnswers.clone() : new long[RETENTION_DAYS.length];
+            retentionRecalled = rollup != null ? rollup.retentionRecalled.clone() : new long[RETENTION_DAYS.length];
+        }
+
+        public int getDays() {
+            return answers.length;
+        }
+
+        /**
+         * Answers on day {@code i} (0 = the oldest shown, {@link #getDays()} - 1 = today).
+         */
+        public int getAnswers(int i) {
+            return answers[i];
+        }
+
+        public int getRecalled(int i) {
+            return recalled[i];
+        }
+
+        public int getSeconds(int i) {
+            return seconds[i];
+        }
+
+        /**
+         * Answers, recalled answers and seconds of the last {@code days} days, summed.
+         */
+        @NotNull
+        public long[] sumOfLast(int days) {
+            long[] sum = new long[3];
+            for (int i = Math.max(0, answers.length - days); i < answers.length; i++) {
+                sum[0] += answers[i];
+                sum[1] += recalled[i];
+                sum[2] += seconds[i];
+            }
+            return sum;
+        }
+
+        public long getTotalAnswers() {
+            return totalAnswers;
+        }
+
+        public long getTotalRecalled() {
+            return totalRecalled;
+        }
+
+        public long getTotalSeconds() {
+            return totalSeconds;
+        }
+
+        /**
+         * Answers in retention bucket {@code bucket} (see {@link #RETENTION_DAYS}).
+         */
+        public long getRetentionAnswers(int bucket) {
+            return retentionAnswers[bucket];
+        }
+
+        public long getRetentionRecalled(int bucket) {
+            return retentionRecalled[bucket];
+        }
+    }
+
+    private final Path directory;
+    private final ExecutorService writer = AppExecutorUtil.createBoundedApplicationPoolExecutor("AiWord study stats", 1);
+    // Guarded by this; they always cover exactly the first logLength bytes of the log
+    private final Map<String, Rollup> rollups = new LinkedHashMap<>();
+    private final Long2IntOpenHashMap lastAnswerDay = new Long2IntOpenHashMap(); // Word fingerprint -> epoch day
+    private long logLength;
+    private int sinceCheckpoint; // Only touched on the writer thread
+
+    public StudyStats() {
+        this(Paths.get(PathManager.getConfigPath(), DIRECTORY));
+    }
+
+    StudyStats(@NotNull Path directory) {
+        this.directory = directory;
+        lastAnswerDay.defaultReturnValue(-1);
+        writer.execute(this::load);
+    }
+
+    public static StudyStats getInstance() {
+        return ApplicationManager.getApplication().getService(StudyStats.class);
+    }
+
+    /**
+     * Records an answer: {@code recalled} if the user knew {@code word} of {@code book}, else they had to look it up.
+     */
+    public void recordAnswer(@NotNull String book, @NotNull String word, boolean recalled) {
+        long millis = System.currentTimeMillis();
+        long fingerprint = WordbookMerger.fingerprint(word);
+        writer.execute(() -> {
+            long written = append(millis, book, fingerprint, recalled);
+            synchronized (this) {
+                apply(millis, book, fingerprint, recalled);
+                logLength += written;
+            }
+            if (++sinceCheckpoint >= CHECKPOINT_INTERVAL) {
+                checkpoint();
+            }
+        });
+    }
+
+    /**
+     * Books with recorded answers, in the order they were first used.
+     */
+    @NotNull
+    public synchronized List<String> getBooks() {
+        List<String> books = new ArrayList<>(rollups.keySet());
+        books.remove(ALL_BOOKS);
+        return books;
+    }
+
+    /**
+     * Statistics of {@code book} (null for all books) with counters for the last {@code days} days;
+     * O(days), independent of the history's length.
+     */
+    @NotNull
+    public synchronized Summary summary(@Nullable String book, int days) {
+        return new Summary(rollups.get(book != null ? book : ALL_BOOKS), epochDay(System.currentTimeMillis()), days);
+    }
+
+    private void apply(long millis, String book, long fingerprint, boolean recalled) {
+        int day = epochDay(millis);
+        int previous = lastAnswerDay.put(fingerprint, day);
+        int since = previous >= 0 ? Math.max(0, day - previous) : -1;
+        rollups.computeIfAbsent(ALL_BOOKS, b -> new Rollup()).add(day, millis, recalled, since);
+        rollups.computeIfAbsent(book, b -> new Rollup()).add(day, millis, recalled, since);
+    }
+
+    private static int epochDay(long millis) {
+        return (int) LocalDate.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault()).toEpochDay();
+    }
+
+    /**
+     * Appends one event to the log.
+     *
+     * @return bytes written; 0 if the log cannot be written (the answer still counts until the IDE exits).
+     */
+    private long append(long millis, String book, long fingerprint, boolean recalled) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream record = new DataOutputStream(bytes)) {
+            writeEvent(record, millis, book, fingerprint, recalled);
+            Files.createDirectories(directory);
+            try (OutputStream out = Files.newOutputStream(directory.resolve(EVENTS_FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                bytes.writeTo(out);
+            }
+            return bytes.size();
+        } catch (IOException e) {
+            LOG.warn("Cannot write study event: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    private static void writeEvent(DataOutputStream out, long millis, String book, long fingerprint, boolean recalled) throws IOException {
+        out.writeLong(millis);
+        out.writeUTF(book);
+        out.writeLong(fingerprint);
+        out.writeBoolean(recalled);
+    }
+
+    /**
+     * Reads the saved rollups, then replays the events logged after they were saved.
+     * Rollups that cannot be read, or that cover more than the log holds, are rebuilt from the whole log.
+     */
+    private void load() {
+        long start = System.nanoTime();
+        Path log = directory.resolve(EVENTS_FILE);
+        boolean rebuilt = false;
+        try {
+            readRollups(log);
+        } catch (IOException e) {
+            LOG.warn("Rebuilding study statistics from the event log: " + e.getMessage());
+            synchronized (this) {
+                rollups.clear();
+                lastAnswerDay.clear();
+                logLength = 0;
+            }
+            rebuilt = true;
+        }
+        if (!Files.isRegularFile(log)) {
+            if (rebuilt) {
+                checkpoint();
+            }
+            return;
+        }
+        int replayed = 0;
+        synchronized (this) {
+            try (InputStream raw = Files.newInputStream(log);
+                 DataInputStream in = new DataInputStream(new BufferedInputStream(raw, 64 * 1024))) {
+                in.skipNBytes(logLength);
+                while (true) {
+                    long millis;
+                    String book;
+                    long fingerprint;
+                    boolean recalled;
+                    try {
+                        millis = in.readLong();
+                        book = in.readUTF();
+                        fingerprint = in.readLong();
+                        recalled = in.readBoolean();
+                    } catch (EOFException e) {
+                        break; // End of the log, or a record cut off by a crash
+                    }
+                    apply(millis, book, fingerprint, recalled);
+                    logLength += 8 + 2 + utfLength(book) + 8 + 1;
+                    replayed++;
+                }
+            } catch (IOException e) {
+                LOG.warn("Cannot read study events: " + e.getMessage());
+            }
+            try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+                if (channel.size() > logLength) {
+                    channel.truncate(logLength); // Later records must not follow a broken one
+                }
+            } catch (IOException e) {
+                LOG.warn("Cannot repair study event log: " + e.getMessage());
+            }
+        }
+        LOG.info("Study statistics loaded, " + replayed + " events replayed, in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        if (replayed > 0 || rebuilt) {
+            checkpoint();
+        }
+    }
+
+    private static int utfLength(String text) {
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            length += c >= 0x0001 && c <= 0x007F ? 1 : c <= 0x07FF ? 2 : 3; // Modified UTF-8, as writeUTF
+        }
+        return length;
+    }
+
+    private void readRollups(Path log) throws IOException {
+        Path file = directory.resolve(ROLLUPS_FILE);
+        if (!Files.isRegularFile(file)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("不是有效的学习统计文件 (Not a valid study statistics file): " + file);
+            }
+            synchronized (this) {
+                logLength = in.readLong();
+                long available = Files.isRegularFile(log) ? Files.size(log) : 0;
+                if (logLength > available) {
+                    // E.g. the log was restored from a backup or deleted: the rollups count events it no longer has
+                    throw new IOException("学习统计超出了事件日志 (Study statistics cover more than the event log): "
+                            + logLength + " > " + available + " bytes");
+                }
+                int words = in.readInt();
+                for (int i = 0; i < words; i++) {
+                    lastAnswerDay.put(in.readLong(), in.readInt());
+                }
+                int books = in.readInt();
+                for (int b = 0; b < books; b++) {
+                    String name = in.readUTF();
+                    Rollup rollup = new Rollup();
+                    rollup.firstDay = in.readInt();
+                    int days = in.readInt();
+                    rollup.answers = readInts(in, days);
+                    rollup.recalled = readInts(in, days);
+                    rollup.seconds = readInts(in, days);
+                    rollup.lastAnswerMillis = in.readLong();
+                    rollup.totalAnswers = in.readLong();
+                    rollup.totalRecalled = in.readLong();
+                    rollup.totalSeconds = in.readLong();
+                    for (int k = 0; k < RETENTION_DAYS.length; k++) {
+                        rollup.retentionAnswers[k] = in.readLong();
+                        rollup.retentionRecalled[k] = in.readLong();
+                    }
+                    rollups.put(name, rollup);
+                }
+            }
+        }
+    }
+
+    private static int[] readInts(DataInputStream in, int count) throws IOException {
+        int[] values = new int[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+
+    /**
+     * Saves the rollups with the log length they cover; replaces the previous save atomically.
+     */
+    private void checkpoint() {
+        sinceCheckpoint = 0;
+        Path file = directory.resolve(ROLLUPS_FILE);
+        Path tmp = directory.resolve(ROLLUPS_FILE + ".tmp");
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * 1024);
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                synchronized (this) { // Copied under the lock, written without it
+                    out.writeInt(MAGIC);
+                    out.writeInt(VERSION);
+                    out.writeLong(logLength);
+                    out.writeInt(lastAnswerDay.size());
+                    for (Long2IntMap.Entry entry : lastAnswerDay.long2IntEntrySet()) {
+                        out.writeLong(entry.getLongKey());
+                        out.writeInt(entry.getIntValue());
+                    }
+                    out.writeInt(rollups.size());
+                    for (Map.Entry<String, Rollup> entry : rollups.entrySet()) {
+                        Rollup rollup = entry.getValue();
+                        out.writeUTF(entry.getKey());
+                        out.writeInt(rollup.firstDay);
+                        int days = rollup.answers.length;
+                        out.writeInt(days);
+                        for (int[] counters : new int[][]{rollup.answers, rollup.recalled, rollup.seconds}) {
+                            for (int i = 0; i < days; i++) out.writeInt(counters[i]);
+                        }
+                        out.writeLong(rollup.lastAnswerMillis);
+                        out.writeLong(rollup.totalAnswers);
+                        out.writeLong(rollup.totalRecalled);
+                        out.writeLong(rollup.totalSeconds);
+                        for (int k = 0; k < RETENTION_DAYS.length; k++) {
+                            out.writeLong(rollup.retentionAnswers[k]);
+                            out.writeLong(rollup.retentionRecalled[k]);
+                        }
+                    }
+                }
+            }
+            Files.createDirectories(directory);
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                bytes.writeTo(out);
+            }
+            WordbookDownloader.moveAtomically(tmp, file);
+        } catch (IOException e) {
+            LOG.warn("Cannot save study statistics: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void dispose() {
+        writer.execute(() -> {
+            if (sinceCheckpoint > 0) {
+                checkpoint();
+            }
+        });
+        writer.shutdown();
+        try {
+            writer.awaitTermination(2, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
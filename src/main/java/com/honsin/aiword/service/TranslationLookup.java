@@ -0,0 +1,103 @@
+package com.honsin.aiword.service;
+
+import com.honsin.aiword.model.WordEntry;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Looks text from the editor up in every loaded wordbook at once.
+ * <p>
+ * Only books already loaded (by a tool window) are searched, through their {@link WordLookupIndex}, so a
+ * lookup is a few hash probes per book and never reads or parses a file.
+ */
+public final class TranslationLookup {
+
+    /**
+     * Identifiers can be long; the popup shows the first words only.
+     */
+    private static final int MAX_PARTS = 8;
+
+    private TranslationLookup() {
+    }
+
+    /**
+     * One translation found.
+     */
+    public static final class Result {
+        private final String query;
+        private final WordEntry entry;
+        private final String bookName;
+
+        Result(String query, WordEntry entry, String bookName) {
+            this.query = query;
+            this.entry = entry;
+            this.bookName = bookName;
+        }
+
+        /**
+         * The part of the text that was looked up, e.g. "Running" of "isRunning".
+         */
+        @NotNull
+        public String getQuery() {
+            return query;
+        }
+
+        @NotNull
+        public WordEntry getEntry() {
+            return entry;
+        }
+
+        @NotNull
+        public String getBookName() {
+            return bookName;
+        }
+    }
+
+    /**
+     * Whether any wordbook is loaded, i.e. whether a lookup can find anything at all.
+     */
+    public static boolean hasLoadedBooks() {
+        List<WordbookSnapshot> books = WordbookService.getInstance().acquireLoaded();
+        books.forEach(WordbookSnapshot::release);
+        return !books.isEmpty();
+    }
+
+    /**
+     * Looks up {@code text} as a whole (for phrases like "ice cream") and each of its words, inflected
+     * words by their headword ({@link WordbookSnapshot#findLemma}).
+     */
+    @NotNull
+    public static List<Result> lookup(@NotNull String text) {
+        String trimmed = text.trim();
+        Set<String> queries = new LinkedHashSet<>();
+        if (trimmed.indexOf(' ') > 0) {
+            queries.add(trimmed.replaceAll("\\s+", " "));
+        }
+        List<String> parts = WordForms.split(trimmed);
+        if (parts.size() > 1) {
+            parts.removeIf(part -> part.length() < 2); // The "v" of "parseV2"
+        }
+        queries.addAll(parts.subList(0, Math.min(parts.size(), MAX_PARTS)));
+
+        List<Result> results = new ArrayList<>();
+        List<WordbookSnapshot> books = WordbookService.getInstance().acquireLoaded();
+        try {
+            for (String query : queries) {
+                for (WordbookSnapshot book : books) {
+                    int index = book.findLemma(query);
+                    if (index >= 0) {
+                        // Decoded now: the snapshot is released before the popup shows it
+                        results.add(new Result(query, book.getWords().get(index), book.getFile().getFileName().toString()));
+                    }
+                }
+            }
+        } finally {
+            books.forEach(WordbookSnapshot::release);
+        }
+        return results;
+    }
+}
@@ -0,0 +1,170 @@
+package com.honsin.aiword.service;
+
+import com.honsin.aiword.model.WordEntry;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+/**
+ * The words of one wordbook snapshot, ready to be found in source text.
+ * <p>
+ * A word is found as a whole word only: at both ends there must be a non-letter or a camel-case hump,
+ * so {@code "userName"} contains "user" and "name", {@code "HTTPServer"} contains "server", but
+ * {@code "interesting"} does not contain "rest". Built by {@link VocabularyHighlightService}.
+ */
+public final class Vocabulary {
+
+    /**
+     * Shorter words ("a", "an", "to", ...) are everywhere and not worth pointing at.
+     */
+    static final int MIN_WORD_LENGTH = 3;
+
+    private final WordbookSnapshot snapshot;
+    private final AhoCorasickMatcher matcher;
+    private final int[] bookIndex; // Pattern -> index of the word in the book
+
+    private Vocabulary(WordbookSnapshot snapshot, AhoCorasickMatcher matcher, int[] bookIndex) {
+        this.snapshot = snapshot;
+        this.matcher = matcher;
+        this.bookIndex = bookIndex;
+    }
+
+    /**
+     * Builds the matcher of the headwords of {@code snapshot}; the vocabulary takes over the caller's
+     * reference to the snapshot, even if the build fails.
+     */
+    @NotNull
+    static Vocabulary build(@NotNull WordbookSnapshot snapshot, @NotNull BooleanSupplier cancelled) {
+        try {
+            List<WordEntry> words = snapshot.getWords();
+            MappedWordStore mapped = words instanceof MappedWordStore ? (MappedWordStore) words : null;
+            IntArrayList indices = new IntArrayList();
+            for (int i = 0; i < words.size(); i++) {
+                String word = mapped != null ? mapped.getWord(i) : words.get(i).getWord();
+                if (isSearchable(word)) {
+                    indices.add(i);
+                }
+            }
+            int[] bookIndex = indices.toIntArray();
+            List<String> patterns = new AbstractList<>() {
+                @Override
+                public String get(int index) {
+                    int i = bookIndex[index];
+                    return mapped != null ? mapped.getWord(i) : words.get(i).getWord();
+                }
+
+                @Override
+                public int size() {
+                    return bookIndex.length;
+                }
+            };
+            return new Vocabulary(snapshot, AhoCorasickMatcher.build(patterns, cancelled), bookIndex);
+        } catch (RuntimeException e) {
+            snapshot.release();
+            throw e;
+        }
+    }
+
+    private static boolean isSearchable(String word) {
+        if (word == null || word.length() < MIN_WORD_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (!Character.isLetter(c) && c != '-' && c != ' ' && c != '\'') {
+                return false;
+            }
+        }
+        return Character.isLetter(word.charAt(0)) && Character.isLetter(word.charAt(word.length() - 1));
+    }
+
+    @NotNull
+    public WordbookSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    @NotNull
+    public WordEntry getEntry(int index) {
+        return snapshot.getWords().get(index);
+    }
+
+    /**
+     * Appends the whole words found in {@code text[from, to)} to {@code out}, as
+     * {@code (start, end, index in the book)} triples ordered by start. Where found words overlap
+     * ("ice cream" and "cream"), the one starting first wins, and of those the longest.
+     */
+    public void findWords(@NotNull CharSequence text, int from, int to, @NotNull IntArrayList out) {
+        IntArrayList found = new IntArrayList();
+        matcher.match(text, from, to, (start, end, pattern) -> {
+            if (isWordStart(text, from, to, start) && isWordEnd(text, to, end) && !hasHump(text, start, end)) {
+                found.add(start);
+                found.add(end);
+                found.add(bookIndex[pattern]);
+            }
+        });
+        int count = found.size() / 3;
+        if (count == 0) {
+            return;
+        }
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) order[i] = i;
+        int[] f = found.elements();
+        IntArrays.quickSort(order, (a, b) -> {
+            int c = Integer.compare(f[a * 3], f[b * 3]);
+            return c != 0 ? c : Integer.compare(f[b * 3 + 1], f[a * 3 + 1]);
+        });
+        int lastEnd = from;
+        for (int i : order) {
+            if (f[i * 3] >= lastEnd) {
+                out.add(f[i * 3]);
+                out.add(f[i * 3 + 1]);
+                out.add(f[i * 3 + 2]);
+                lastEnd = f[i * 3 + 1];
+            }
+        }
+    }
+
+    /**
+     * Releases the snapshot; called by the service when the vocabulary is replaced.
+     */
+    void release() {
+        snapshot.release();
+    }
+
+    private static boolean isWordStart(CharSequence text, int from, int to, int start) {
+        if (start == from) return true;
+        char previous = text.charAt(start - 1);
+        char first = text.charAt(start);
+        if (!Character.isLetter(previous)) return true;
+        if (Character.isLowerCase(previous) && Character.isUpperCase(first)) return true; // userName
+        // HTTPServer: the word starts at the last capital of the run
+        return Character.isUpperCase(previous) && Character.isUpperCase(first)
+                && start + 1 < to && Character.isLowerCase(text.charAt(start + 1));
+    }
+
+    private static boolean isWordEnd(CharSequence text, int to, int end) {
+        if (end == to) return true;
+        char last = text.charAt(end - 1);
+        char next = text.charAt(end);
+        if (!Character.isLetter(next)) return true;
+        if (Character.isLowerCase(last) && Character.isUpperCase(next)) return true;
+        return Character.isUpperCase(last) && Character.isUpperCase(next)
+                && end + 1 < to && Character.isLowerCase(text.charAt(end + 1));
+    }
+
+    /**
+     * Whether a camel-case hump lies inside the match, i.e. it spans two words of an identifier.
+     */
+    private static boolean hasHump(CharSequence text, int start, int end) {
+        for (int i = start + 1; i < end; i++) {
+            if (Character.isLowerCase(text.charAt(i - 1)) && Character.isUpperCase(text.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
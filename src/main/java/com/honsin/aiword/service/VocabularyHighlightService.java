@@ -0,0 +1,140 @@
+package com.honsin.aiword.service;
+
+import com.honsin.aiword.settings.WordMemorizerSettingsState;
+import com.intellij.codeInsight.daemon.DaemonCodeAnalyzer;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.project.ProjectManager;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds the {@link Vocabulary} that the editor highlights: the wordbook last loaded in a tool window.
+ * <p>
+ * The matcher is built off the EDT; until it is ready the editor simply shows no (or the previous)
+ * highlighting, and open editors are re-highlighted once it is published.
+ */
+@Service(Service.Level.APP)
+public final class VocabularyHighlightService implements Disposable {
+
+    private static final Logger LOG = Logger.getInstance(VocabularyHighlightService.class);
+
+    private final ExecutorService executor = AppExecutorUtil.createBoundedApplicationPoolExecutor("AiWord vocabulary", 1);
+    private final AtomicLong version = new AtomicLong();
+    private volatile Vocabulary vocabulary; // Replaced under this
+    private WordbookSnapshot wordbook;      // Book to highlight, own reference; guarded by this
+
+    public static VocabularyHighlightService getInstance() {
+        return ApplicationManager.getApplication().getService(VocabularyHighlightService.class);
+    }
+
+    /**
+     * The vocabulary to highlight, or {@code null} when highlighting is off or not ready yet.
+     */
+    @Nullable
+    public Vocabulary getVocabulary() {
+        return vocabulary;
+    }
+
+    /**
+     * Highlights the words of {@code snapshot} from now on. The caller keeps its own reference.
+     */
+    public synchronized void setWordbook(@NotNull WordbookSnapshot snapshot) {
+        if (wordbook == snapshot || !snapshot.tryRetain()) {
+            return;
+        }
+        if (wordbook != null) {
+            wordbook.release();
+        }
+        wordbook = snapshot;
+        rebuild();
+    }
+
+    /**
+     * Called when the highlighting setting was switched.
+     */
+    public synchronized void settingsChanged() {
+        rebuild();
+    }
+
+    private void rebuild() {
+        long v = version.incrementAndGet();
+        WordbookSnapshot book = wordbook;
+        if (book == null || !WordMemorizerSettingsState.getInstance().isHighlightVocabulary()) {
+            publish(null);
+            return;
+        }
+        if (vocabulary != null && vocabulary.getSnapshot() == book) {
+            restartHighlighting();
+            return;
+        }
+        if (!book.tryRetain()) {
+            return;
+        }
+        executor.execute(() -> {
+            long start = System.nanoTime();
+            Vocabulary built;
+            try {
+                built = Vocabulary.build(book, () -> version.get() != v);
+            } catch (CancellationException e) {
+                return; // Superseded; the build released the snapshot
+            } catch (RuntimeException e) {
+                LOG.warn("Building the vocabulary of " + book.getFile().getFileName() + " failed", e);
+                return;
+            }
+            synchronized (this) {
+                if (version.get() != v) {
+                    built.release();
+                    return;
+                }
+                publish(built);
+            }
+            LOG.info("Vocabulary of " + book.getFile().getFileName() + " built in "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms");
+        });
+    }
+
+    private void publish(@Nullable Vocabulary replacement) {
+        Vocabulary old = vocabulary;
+        if (old == replacement) {
+            return;
+        }
+        vocabulary = replacement;
+        if (old != null) {
+            old.release(); // A highlighting pass still using it only reads the mapped file, which stays valid
+        }
+        restartHighlighting();
+    }
+
+    private static void restartHighlighting() {
+        ApplicationManager.getApplication().invokeLater(() -> {
+            for (Project project : ProjectManager.getInstance().getOpenProjects()) {
+                if (!project.isDisposed()) {
+                    DaemonCodeAnalyzer.getInstance(project).restart();
+                }
+            }
+        });
+    }
+
+    @Override
+    public synchronized void dispose() {
+        version.incrementAndGet();
+        executor.shutdownNow();
+        if (vocabulary != null) {
+            vocabulary.release();
+            vocabulary = null;
+        }
+        if (wordbook != null) {
+            wordbook.release();
+            wordbook = null;
+        }
+    }
+}
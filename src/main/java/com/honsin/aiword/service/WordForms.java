@@ -0,0 +1,198 @@
+package com.honsin.aiword.service;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Turns text met in code into headwords to look up: identifiers are split into words, and inflected
+ * words are reduced to the forms a dictionary lists them under ("running" -> "running", "run").
+ */
+public final class WordForms {
+
+    private WordForms() {
+    }
+
+    /**
+     * The words of {@code text}, split at non-letters, underscores and camel-case humps, in order and
+     * without duplicates: {@code "parseHTTPResponse_v2"} -> parse, HTTP, Response.
+     */
+    @NotNull
+    public static List<String> split(@NotNull String text) {
+        Set<String> parts = new LinkedHashSet<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean letter = i < text.length() && Character.isLetter(text.charAt(i));
+            if (letter && start < 0) {
+                start = i;
+            } else if (letter && isHump(text, i)) {
+                parts.add(text.substring(start, i));
+                start = i;
+            } else if (!letter && start >= 0) {
+                parts.add(text.substring(start, i));
+                start = -1;
+            }
+        }
+        return new ArrayList<>(parts);
+    }
+
+    private static boolean isHump(String text, int i) {
+        char previous = text.charAt(i - 1);
+        char current = text.charAt(i);
+        if (Character.isLowerCase(previous) && Character.isUpperCase(current)) {
+            return true; // userName
+        }
+        // HTTPResponse: the last capital of a run starts the next word
+        return Character.isUpperCase(previous) && Character.isUpperCase(current)
+                && i + 1 < text.length() && Character.isLowerCase(text.charAt(i + 1));
+    }
+
+    /**
+     * Parts of speech for {@link #forEachInflection}, as bits.
+     */
+    public static final int NOUN = 1;
+    public static final int VERB = 2;
+    public static final int ADJECTIVE = 4;
+    public static final int ANY = NOUN | VERB | ADJECTIVE;
+
+    /**
+     * Lower-cased forms {@code word} may be listed under, the word itself first, then its lemmas from the
+     * irregular forms table ("went" -> "go"), then what remains after removing common inflections (plural,
+     * past, -ing, comparative, -ly). Rule based, so some candidates are not words at all; they simply are not found.
+     */
+    @NotNull
+    public static List<String> stemCandidates(@NotNull String word) {
+        String w = word.toLowerCase(Locale.ROOT);
+        Set<String> candidates = new LinkedHashSet<>();
+        candidates.add(w);
+        candidates.addAll(IrregularForms.get().lemmasOf(w));
+        int n = w.length();
+        if (n > 4 && w.endsWith("ies")) candidates.add(w.substring(0, n - 3) + "y");        // studies
+        if (n > 4 && w.endsWith("ves")) {                                                  // leaves, knives
+            candidates.add(w.substring(0, n - 3) + "f");
+            candidates.add(w.substring(0, n - 3) + "fe");
+        }
+        if (n > 3 && w.endsWith("es")) candidates.add(w.substring(0, n - 2));             // boxes
+        if (n > 3 && w.endsWith("s") && !w.endsWith("ss")) candidates.add(w.substring(0, n - 1));
+        if (n > 4 && w.endsWith("ied")) candidates.add(w.substring(0, n - 3) + "y");       // studied
+        if (n > 3 && w.endsWith("ed")) {
+            String stem = w.substring(0, n - 2);
+            candidates.add(stem);                                                          // played
+            candidates.add(stem + "e");                                                    // used
+            addUndoubled(candidates, stem);                                                // stopped
+        }
+        if (n > 4 && w.endsWith("ing")) {
+            String stem = w.substring(0, n - 3);
+            candidates.add(stem);                                                          // reading
+            candidates.add(stem + "e");                                                    // making
+            addUndoubled(candidates, stem);                                                // running
+            if (stem.endsWith("y")) candidates.add(stem.substring(0, stem.length() - 1) + "ie"); // lying
+        }
+        if (n > 4 && w.endsWith("iest")) candidates.add(w.substring(0, n - 4) + "y");      // happiest
+        if (n > 3 && w.endsWith("ier")) candidates.add(w.substring(0, n - 3) + "y");       // happier
+        for (String suffix : new String[]{"est", "er"}) {
+            if (n > suffix.length() + 2 && w.endsWith(suffix)) {
+                String stem = w.substring(0, n - suffix.length());
+                candidates.add(stem);                                                      // faster
+                candidates.add(stem + "e");                                                // larger
+                addUndoubled(candidates, stem);                                            // bigger
+            }
+        }
+        if (n > 4 && w.endsWith("ily")) candidates.add(w.substring(0, n - 3) + "y");       // happily
+        if (n > 4 && w.endsWith("ly")) candidates.add(w.substring(0, n - 2));             // quickly
+        if (n > 6 && w.endsWith("iness")) candidates.add(w.substring(0, n - 5) + "y");     // happiness
+        if (n > 5 && w.endsWith("ness")) candidates.add(w.substring(0, n - 4));           // darkness
+        return new ArrayList<>(candidates);
+    }
+
+    private static void addUndoubled(Set<String> candidates, String stem) {
+        int n = stem.length();
+        if (n > 2 && stem.charAt(n - 1) == stem.charAt(n - 2) && "aeiou".indexOf(stem.charAt(n - 1)) < 0) {
+            candidates.add(stem.substring(0, n - 1));
+        }
+    }
+
+    /**
+     * Passes the inflected forms of headword {@code word} for the parts of speech in {@code pos}: the reverse
+     * of {@link #stemCandidates}. Where the spelling rule is ambiguous (doubling the last consonant) both
+     * forms are passed. Phrases and words with other than ASCII letters have no forms.
+     */
+    public static void forEachInflection(@NotNull String word, int pos, @NotNull Consumer<String> consumer) {
+        String w = word.toLowerCase(Locale.ROOT);
+        int n = w.length();
+        if (n < 2 || !w.chars().allMatch(c -> c >= 'a' && c <= 'z')) {
+            return;
+        }
+        for (String form : IrregularForms.get().formsOf(w)) {
+            consumer.accept(form);
+        }
+        char last = w.charAt(n - 1);
+        boolean consonantY = last == 'y' && !isVowel(w.charAt(n - 2));
+        String stemY = w.substring(0, n - 1);
+        boolean doubles = n >= 3 && !isVowel(last) && "wxy".indexOf(last) < 0
+                && isVowel(w.charAt(n - 2)) && !isVowel(w.charAt(n - 3));
+        String doubled = w + last;
+        if ((pos & (NOUN | VERB)) != 0) {                                                // plural, 3rd person
+            if (w.endsWith("s") || w.endsWith("x") || w.endsWith("z") || w.endsWith("ch") || w.endsWith("sh")) {
+                consumer.accept(w + "es");
+            } else if (consonantY) {
+                consumer.accept(stemY + "ies");
+            } else {
+                consumer.accept(w + "s");
+                if (last == 'o') consumer.accept(w + "es");                               // potatoes
+            }
+            if ((pos & NOUN) != 0 && (last == 'f' || w.endsWith("fe"))) {
+                consumer.accept(w.substring(0, w.lastIndexOf('f')) + "ves");              // leaves, knives
+            }
+        }
+        if ((pos & VERB) != 0) {
+            if (last == 'e') {
+                consumer.accept(w + "d");                                                 // used
+            } else if (consonantY) {
+                consumer.accept(stemY + "ied");                                           // studied
+            } else {
+                consumer.accept(w + "ed");
+                if (doubles) consumer.accept(doubled + "ed");                             // stopped
+            }
+            if (w.endsWith("ie")) {
+                consumer.accept(w.substring(0, n - 2) + "ying");                          // lying
+            } else if (last == 'e' && n > 2 && !w.endsWith("ee") && !w.endsWith("ye") && !w.endsWith("oe")) {
+                consumer.accept(w.substring(0, n - 1) + "ing");                           // making
+            } else {
+                consumer.accept(w + "ing");
+                if (doubles) consumer.accept(doubled + "ing");                            // running
+            }
+        }
+        if ((pos & ADJECTIVE) != 0) {
+            if (last == 'e') {
+                consumer.accept(w + "r");                                                 // larger
+                consumer.accept(w + "st");
+            } else if (consonantY) {
+                consumer.accept(stemY + "ier");                                           // happier
+                consumer.accept(stemY + "iest");
+                consumer.accept(stemY + "ily");                                           // happily
+            } else {
+                consumer.accept(w + "er");
+                consumer.accept(w + "est");
+                if (doubles) {
+                    consumer.accept(doubled + "er");                                      // bigger
+                    consumer.accept(doubled + "est");
+                }
+            }
+            if (w.endsWith("le")) {
+                consumer.accept(w.substring(0, n - 1) + "y");                             // simply
+            } else if (!consonantY) {
+                consumer.accept(w + "ly");                                                // quickly
+            }
+        }
+    }
+
+    private static boolean isVowel(char c) {
+        return "aeiou".indexOf(c) >= 0;
+    }
+}
@@ -0,0 +1,72 @@
+package com.honsin.aiword.service;
+
+import com.honsin.aiword.model.WordEntry;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Finds a word in a wordbook by exact headword (ignoring case) in constant time.
+ * <p>
+ * An open-addressing table of entry indices only: the words themselves stay in the book and are compared
+ * on a probe, so the index costs 8 bytes per word instead of a copy of every string.
+ */
+public final class WordLookupIndex {
+
+    private static final int EMPTY = 0; // Table slots hold index + 1
+
+    private final List<WordEntry> words;
+    private final MappedWordStore mapped;
+    private final int[] table;
+    private final int mask;
+
+    WordLookupIndex(@NotNull List<WordEntry> words) {
+        this.words = words;
+        this.mapped = words instanceof MappedWordStore ? (MappedWordStore) words : null;
+        int capacity = Integer.highestOneBit(Math.max(4, words.size() * 2 - 1)) << 1;
+        this.table = new int[capacity];
+        this.mask = capacity - 1;
+        for (int i = 0; i < words.size(); i++) {
+            String word = wordAt(i);
+            int slot = hash(word) & mask;
+            while (true) {
+                int existing = table[slot];
+                if (existing == EMPTY) {
+                    table[slot] = i + 1;
+                    break;
+                }
+                if (wordAt(existing - 1).equalsIgnoreCase(word)) {
+                    break; // Duplicate headword: the first entry wins
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+    }
+
+    /**
+     * Index of the entry with headword {@code word} (ignoring case), or -1.
+     */
+    public int find(@NotNull String word) {
+        int slot = hash(word) & mask;
+        while (true) {
+            int existing = table[slot];
+            if (existing == EMPTY) {
+                return -1;
+            }
+            if (wordAt(existing - 1).equalsIgnoreCase(word)) {
+                return existing - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private String wordAt(int index) {
+        return mapped != null ? mapped.getWord(index) : words.get(index).getWord();
+    }
+
+    private static int hash(String word) {
+        int h = word.toLowerCase(Locale.ROOT).hashCode();
+        return h ^ (h >>> 16);
+    }
+}
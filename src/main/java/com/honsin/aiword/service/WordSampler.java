@@ -0,0 +1,135 @@
+package com.honsin.aiword.service;
+
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Draws random words of one wordbook by weight, through an {@link AliasTable}.
+ * <p>
+ * The table is built on the first draw and kept with the {@link WordbookSnapshot}; drawing a page is then
+ * O(page size). Weight changes are collected and applied by one rebuild on the next draw, not one per change.
+ * Words marked as known ({@link KnownWords}) are never drawn.
+ */
+public final class WordSampler {
+
+    /**
+     * What makes a word come up more often.
+     */
+    public enum Weighting {
+        UNIFORM("平均"),
+        FREQUENCY("常用词优先"),
+        DIFFICULTY("生僻词优先"),
+        ERRORS("常错词优先");
+
+        private final String displayName;
+
+        Weighting(String displayName) {
+            this.displayName = displayName;
+        }
+
+        @Override
+        public String toString() {
+            return displayName;
+        }
+    }
+
+    private static final Logger LOG = Logger.getInstance(WordSampler.class);
+    private static final double MIN_ERROR_WEIGHT = 0.05; // Words recalled every time still come up now and then
+
+    private final WordbookSnapshot book;
+    private final Weighting weighting;
+    private final double[] weights; // Guarded by this
+    private AliasTable table;       // Null until the next draw after a change
+    private long recallVersion = -1;
+    private KnownWords.Index known;  // The known words the table was built with
+
+    WordSampler(@NotNull WordbookSnapshot book, @NotNull Weighting weighting) {
+        this.book = book;
+        this.weighting = weighting;
+        this.weights = initialWeights(book, weighting);
+    }
+
+    private static double[] initialWeights(WordbookSnapshot book, Weighting weighting) {
+        int size = book.getWords().size();
+        double[] weights = new double[size];
+        if (weighting == Weighting.FREQUENCY || weighting == Weighting.DIFFICULTY) {
+            int[] ranks = book.getFrequencyRanks();
+            for (int i = 0; i < size; i++) {
+                weights[i] = weighting == Weighting.FREQUENCY
+                        ? 1.0 / (ranks[i] + 1.0)     // Zipf: the first words of the frequency list dominate
+                        : Math.log(ranks[i] + 2.0);  // Rare words a few times more often than common ones
+            }
+        } else {
+            Arrays.fill(weights, weighting == Weighting.ERRORS ? MIN_ERROR_WEIGHT + RecallStats.UNSEEN_SCORE : 1.0);
+        }
+        return weights;
+    }
+
+    /**
+     * Draws up to {@code count} distinct word indices.
+     */
+    @NotNull
+    public synchronized int[] draw(int count, @NotNull Random random) {
+        if (weighting == Weighting.ERRORS) {
+            applyRecallScores();
+        }
+        KnownWords.Index currentKnown = KnownWords.getInstance().getIndex();
+        if (currentKnown != known) {
+            known = currentKnown;
+            table = null;
+        }
+        if (table == null) {
+            long start = System.nanoTime();
+            BitSet mask = book.getKnownMask(known);
+            if (mask.cardinality() == weights.length) {
+                return new int[0]; // Every word is known
+            }
+            double[] effective = weights;
+            if (!mask.isEmpty()) {
+                effective = weights.clone();
+                for (int i = mask.nextSetBit(0); i >= 0; i = mask.nextSetBit(i + 1)) {
+                    effective[i] = 0;
+                }
+            }
+            table = AliasTable.build(effective);
+            LOG.debug("Alias table (" + weighting.name() + ") of " + weights.length + " words built in "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms");
+        }
+        return table.sampleDistinct(count, random);
+    }
+
+    /**
+     * Sets the weights of several words at once; the table is rebuilt on the next draw.
+     */
+    public synchronized void updateWeights(@NotNull int[] indices, @NotNull double[] newWeights) {
+        for (int i = 0; i < indices.length; i++) {
+            weights[indices[i]] = Math.max(0, newWeights[i]);
+        }
+        table = null;
+    }
+
+    /**
+     * Takes over the scores that changed since the last draw; only practised words are looked up.
+     */
+    private void applyRecallScores() {
+        RecallStats stats = RecallStats.getInstance();
+        long version = stats.getVersion();
+        if (version == recallVersion) {
+            return;
+        }
+        WordLookupIndex index = book.getLookupIndex();
+        for (Map.Entry<String, Float> score : stats.getErrorScores().entrySet()) {
+            int i = index.find(score.getKey());
+            if (i >= 0) {
+                weights[i] = MIN_ERROR_WEIGHT + score.getValue();
+            }
+        }
+        recallVersion = version;
+        table = null;
+    }
+}
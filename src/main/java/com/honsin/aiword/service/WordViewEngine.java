@@ -0,0 +1,220 @@
+package com.honsin.aiword.service;
+
+import com.honsin.aiword.model.WordEntry;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.ints.IntComparator;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Computes filtered and sorted views of a wordbook off the EDT.
+ * <p>
+ * A view is an {@code int[]} of indices into the book (the book itself is never copied or reordered),
+ * or {@code null} for "the whole book in book order". Views are cached per query for the current book,
+ * and a new request supersedes the one still running, which then stops at its next check.
+ * Words marked as known ({@link KnownWords}) are left out of every view.
+ */
+public final class WordViewEngine {
+
+    private static final Logger LOG = Logger.getInstance(WordViewEngine.class);
+    private static final int CACHE_SIZE = 8;
+    private static final int CANCEL_CHECK_INTERVAL = 4096;
+
+    private final ExecutorService executor = AppExecutorUtil.createBoundedApplicationPoolExecutor("AiWord word view", 1);
+    private final AtomicLong generation = new AtomicLong();
+    // Views of cachedSource only; guarded by this
+    private final Map<WordViewQuery, int[]> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<WordViewQuery, int[]> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+    private List<WordEntry> cachedSource;
+    private Future<?> running;
+    private List<WordEntry> rankedSource; // Guarded by this
+    private int[] frequencyRanks;
+    private KnownWords.Index cachedKnown; // The known words cached views were computed with; guarded by this
+
+    /**
+     * Ranks for {@link WordViewQuery.Sort#FREQUENCY} (lower = more frequent), one per index of {@code source};
+     * they apply to views of that list only. Without ranks that order is the book order, which for most
+     * published wordbooks already is by frequency.
+     */
+    public synchronized void setFrequencyRanks(@NotNull List<WordEntry> source, @Nullable int[] ranks) {
+        this.rankedSource = source;
+        this.frequencyRanks = ranks;
+        cache.keySet().removeIf(query -> query.getSort() == WordViewQuery.Sort.FREQUENCY);
+    }
+
+    /**
+     * Computes the view of {@code source} for {@code query} and passes it to {@code onReady} on the EDT,
+     * unless another request was made in the meantime. Cached and trivial views are passed at once.
+     *
+     * @param source must not change while it is shown (e.g. a {@link MappedWordStore}).
+     */
+    public void request(@NotNull List<WordEntry> source, @NotNull WordViewQuery query, @NotNull Consumer<int[]> onReady) {
+        long gen = generation.incrementAndGet();
+        KnownWords.Index known = KnownWords.getInstance().getIndex();
+        int[] ready;
+        synchronized (this) {
+            if (running != null) {
+                running.cancel(true);
+                running = null;
+            }
+            if (cachedSource != source || cachedKnown != known) {
+                cachedSource = source;
+                cachedKnown = known;
+                cache.clear();
+            }
+            if (query.isUnfiltered() && query.getSort() == WordViewQuery.Sort.BOOK && known.isEmpty()) {
+                ready = null;
+            } else {
+                ready = cache.get(query);
+                if (ready == null) {
+                    running = executor.submit(() -> computeAndPublish(source, query, known, gen, onReady));
+                    return;
+                }
+            }
+        }
+        onReady.accept(ready);
+    }
+
+    private void computeAndPublish(List<WordEntry> source, WordViewQuery query, KnownWords.Index known, long gen,
+                                   Consumer<int[]> onReady) {
+        long start = System.nanoTime();
+        int[] view;
+        try {
+            view = compute(source, query, known, gen);
+        } catch (CancellationException e) {
+            return; // Superseded
+        } catch (RuntimeException e) {
+            LOG.warn("Computing word view " + query + " failed", e);
+            return;
+        }
+        LOG.info("Word view " + query + ": " + view.length + " of " + source.size() + " words in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+        synchronized (this) {
+            if (cachedSource == source && cachedKnown == known) {
+                cache.put(query, view);
+            }
+        }
+        SwingUtilities.invokeLater(() -> {
+            if (generation.get() == gen) {
+                onReady.accept(view);
+            }
+        });
+    }
+
+    /**
+     * Stops the running computation and drops queued ones.
+     */
+    public synchronized void dispose() {
+        generation.incrementAndGet();
+        executor.shutdownNow();
+        cache.clear();
+        cachedSource = null;
+        cachedKnown = null;
+        rankedSource = null;
+        frequencyRanks = null;
+    }
+
+    private int[] compute(List<WordEntry> source, WordViewQuery query, KnownWords.Index known, long gen) {
+        MappedWordStore mapped = source instanceof MappedWordStore ? (MappedWordStore) source : null;
+        int size = source.size();
+
+        // 1. Filter; keep the words, the sort needs them again
+        IntArrayList indices = new IntArrayList(query.isUnfiltered() ? size : Math.min(size, 1024));
+        List<String> words = new ArrayList<>(indices.elements().length);
+        for (int i = 0; i < size; i++) {
+            if ((i & (CANCEL_CHECK_INTERVAL - 1)) == 0) checkCurrent(gen);
+            String word;
+            if (mapped != null && !query.needsTranslation()) {
+                word = mapped.getWord(i);
+                if (!query.matchesWord(word)) continue;
+            } else {
+                WordEntry entry = source.get(i);
+                word = entry.getWord();
+                if (!query.matchesWord(word) || !query.matchesTranslation(entry.getTranslation())) continue;
+            }
+            if (!known.isEmpty() && known.contains(word)) continue; // Mostly answered by the Bloom filter
+            indices.add(i);
+            words.add(word);
+        }
+
+        // 2. Sort positions of the filtered list, ties in book order
+        int count = indices.size();
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) order[i] = i;
+        IntComparator comparator = comparatorFor(query.getSort(), source, indices, words, gen);
+        if (comparator != null) {
+            IntArrays.quickSort(order, comparator);
+        }
+        int[] view = new int[count];
+        for (int i = 0; i < count; i++) {
+            view[i] = indices.getInt(order[i]);
+        }
+        return view;
+    }
+
+    @Nullable
+    private IntComparator comparatorFor(WordViewQuery.Sort sort, List<WordEntry> source, IntArrayList indices,
+                                        List<String> words, long gen) {
+        switch (sort) {
+            case ALPHABETICAL:
+                return checked(gen, (a, b) -> String.CASE_INSENSITIVE_ORDER.compare(words.get(a), words.get(b)));
+            case LENGTH:
+                return checked(gen, (a, b) -> {
+                    int c = Integer.compare(words.get(a).length(), words.get(b).length());
+                    return c != 0 ? c : String.CASE_INSENSITIVE_ORDER.compare(words.get(a), words.get(b));
+                });
+            case FREQUENCY:
+                int[] ranks;
+                synchronized (this) {
+                    ranks = rankedSource == source ? frequencyRanks : null;
+                }
+                if (ranks == null) {
+                    return null;
+                }
+                // Ranks are by book index: no lookup per comparison
+                int[] rank = new int[indices.size()];
+                for (int i = 0; i < rank.length; i++) {
+                    rank[i] = ranks[indices.getInt(i)];
+                }
+                return checked(gen, (a, b) -> Integer.compare(rank[a], rank[b]));
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Breaks ties by position (book order) and now and then checks that the request is still current.
+     */
+    private IntComparator checked(long gen, IntComparator comparator) {
+        int[] calls = new int[1];
+        return (a, b) -> {
+            if ((++calls[0] & (CANCEL_CHECK_INTERVAL - 1)) == 0) checkCurrent(gen);
+            int c = comparator.compare(a, b);
+            return c != 0 ? c : Integer.compare(a, b);
+        };
+    }
+
+    private void checkCurrent(long gen) {
+        if (generation.get() != gen || Thread.currentThread().isInterrupted()) {
+            throw new CancellationException();
+        }
+    }
+}
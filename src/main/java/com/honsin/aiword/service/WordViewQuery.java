@@ -0,0 +1,160 @@
+package com.honsin.aiword.service;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * What to show of a wordbook: a filter (prefix, length range, part of speech) and an order.
+ * Immutable, so it can be used as a cache key by {@link WordViewEngine}.
+ * <p>
+ * The filter text typed by the user is {@link #parse parsed} from words and options, e.g.
+ * {@code "ab len:4-8 pos:v"} = words starting with "ab", 4 to 8 letters, with a verb translation.
+ */
+public final class WordViewQuery {
+
+    public enum Sort {
+        BOOK("单词本顺序"),
+        ALPHABETICAL("字母顺序"),
+        LENGTH("长度"),
+        FREQUENCY("词频");
+
+        private final String displayName;
+
+        Sort(String displayName) {
+            this.displayName = displayName;
+        }
+
+        @Override
+        public String toString() {
+            return displayName;
+        }
+    }
+
+    public static final WordViewQuery ALL = new WordViewQuery("", 0, Integer.MAX_VALUE, null, Sort.BOOK);
+
+    private final String prefix;
+    private final int minLength;
+    private final int maxLength;
+    private final String partOfSpeech;
+    private final Sort sort;
+
+    public WordViewQuery(@NotNull String prefix, int minLength, int maxLength, @Nullable String partOfSpeech, @NotNull Sort sort) {
+        this.prefix = prefix.trim().toLowerCase(Locale.ROOT);
+        this.minLength = Math.max(0, minLength);
+        this.maxLength = Math.max(this.minLength, maxLength);
+        this.partOfSpeech = partOfSpeech == null || partOfSpeech.isBlank() ? null
+                : stripDot(partOfSpeech.trim().toLowerCase(Locale.ROOT));
+        this.sort = sort;
+    }
+
+    /**
+     * Parses the filter field: {@code len:N}, {@code len:N-M}, {@code pos:X} are options, anything else is the prefix.
+     * Unparseable options are treated as part of the prefix, so they simply match nothing.
+     */
+    @NotNull
+    public static WordViewQuery parse(@NotNull String text, @NotNull Sort sort) {
+        StringBuilder prefix = new StringBuilder();
+        int min = 0;
+        int max = Integer.MAX_VALUE;
+        String pos = null;
+        for (String token : text.trim().split("\\s+")) {
+            String lower = token.toLowerCase(Locale.ROOT);
+            if (lower.startsWith("pos:") && lower.length() > 4) {
+                pos = lower.substring(4);
+                continue;
+            }
+            if (lower.startsWith("len:") && lower.length() > 4) {
+                String range = lower.substring(4);
+                int dash = range.indexOf('-');
+                try {
+                    if (dash < 0) {
+                        min = max = Integer.parseInt(range);
+                    } else {
+                        min = dash == 0 ? 0 : Integer.parseInt(range.substring(0, dash));
+                        max = dash == range.length() - 1 ? Integer.MAX_VALUE : Integer.parseInt(range.substring(dash + 1));
+                    }
+                    continue;
+                } catch (NumberFormatException e) {
+                    // fall through: part of the prefix
+                }
+            }
+            prefix.append(token);
+        }
+        return new WordViewQuery(prefix.toString(), min, max, pos, sort);
+    }
+
+    @NotNull
+    public Sort getSort() {
+        return sort;
+    }
+
+    /**
+     * Whether every entry passes the filter, i.e. the view is only a reordering (or nothing at all).
+     */
+    public boolean isUnfiltered() {
+        return prefix.isEmpty() && minLength == 0 && maxLength == Integer.MAX_VALUE && partOfSpeech == null;
+    }
+
+    /**
+     * Whether the filter looks at translations; if not, they never have to be decoded.
+     */
+    boolean needsTranslation() {
+        return partOfSpeech != null;
+    }
+
+    boolean matchesWord(@NotNull String word) {
+        int length = word.length();
+        return length >= minLength && length <= maxLength
+                && word.regionMatches(true, 0, prefix, 0, prefix.length());
+    }
+
+    /**
+     * Translations look like "n. 能力; vt. 使能够"; "v" also matches "vt" and "vi".
+     */
+    boolean matchesTranslation(@NotNull String translation) {
+        if (partOfSpeech == null) {
+            return true;
+        }
+        int start = 0;
+        while (start < translation.length()) {
+            int end = translation.indexOf("; ", start);
+            if (end < 0) end = translation.length();
+            int dot = translation.indexOf(". ", start);
+            if (dot > start && dot < end) {
+                String type = translation.substring(start, dot).trim().toLowerCase(Locale.ROOT);
+                if (type.equals(partOfSpeech) || ("v".equals(partOfSpeech) && (type.equals("vt") || type.equals("vi")))) {
+                    return true;
+                }
+            }
+            start = end + 2;
+        }
+        return false;
+    }
+
+    private static String stripDot(String pos) {
+        return pos.endsWith(".") ? pos.substring(0, pos.length() - 1) : pos;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof WordViewQuery)) return false;
+        WordViewQuery that = (WordViewQuery) o;
+        return minLength == that.minLength && maxLength == that.maxLength && prefix.equals(that.prefix)
+                && Objects.equals(partOfSpeech, that.partOfSpeech) && sort == that.sort;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(prefix, minLength, maxLength, partOfSpeech, sort);
+    }
+
+    @Override
+    public String toString() {
+        return "WordViewQuery{prefix='" + prefix + "', length=" + minLength + "-" + maxLength
+                + ", pos=" + partOfSpeech + ", sort=" + sort + '}';
+    }
+}
@@ -0,0 +1,213 @@
+package com.honsin.aiword.service;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * A list of wordbooks published as one JSON manifest, e.g.
+ * <pre>
+ * {"books": [{"id": "cet4", "name": "CET-4", "url": "json/3-CET4-顺序.json", "sha256": "...", "size": 1234,
+ *             "contentHash": "...", "deltas": [{"from": "&lt;older contentHash&gt;", "url": "delta/cet4-3.json"}]}]}
+ * </pre>
+ * Book URLs may be relative to the manifest, so a whole catalog can be mirrored on any HTTP server
+ * (including {@code http://localhost}) by copying the directory.
+ * <p>
+ * {@code contentHash} and {@code deltas} are optional: with them a book whose local content already has
+ * that hash is not requested at all, and an older local version is patched with a small {@link WordbookDelta}.
+ */
+public final class WordbookCatalog {
+
+    private static final Logger LOG = Logger.getInstance(WordbookCatalog.class);
+    private static final Gson GSON = new Gson();
+    private static final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(15))
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+
+    /**
+     * One downloadable wordbook of the catalog.
+     */
+    public static final class Book {
+        private String id;
+        private String name;
+        private String url;
+        private String fileName;
+        private String sha256;
+        private long size;
+        private String contentHash;
+        private List<Delta> deltas;
+
+        @NotNull
+        public String getId() {
+            return id != null ? id : getFileName();
+        }
+
+        @NotNull
+        public String getName() {
+            return name != null && !name.isBlank() ? name : getId();
+        }
+
+        /**
+         * Absolute URL, already resolved against the manifest URL.
+         */
+        @NotNull
+        public String getUrl() {
+            return url;
+        }
+
+        /**
+         * Name of the file in the wordbook directory; defaults to the last segment of the URL.
+         */
+        @NotNull
+        public String getFileName() {
+            if (fileName != null && !fileName.isBlank()) {
+                return fileName;
+            }
+            String path = URI.create(url).getPath();
+            return path.substring(path.lastIndexOf('/') + 1);
+        }
+
+        @Nullable
+        public String getSha256() {
+            return sha256;
+        }
+
+        /**
+         * Advertised size in bytes, or 0 if the manifest does not say.
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * {@link CompiledWordbook#getContentHash() Content hash} of the current version, if published.
+         */
+        @Nullable
+        public String getContentHash() {
+            return contentHash == null || contentHash.isBlank() ? null : contentHash.trim().toLowerCase();
+        }
+
+        /**
+         * URL of a delta from the version with content hash {@code fromHash} to the current one, if published.
+         */
+        @Nullable
+        public String findDeltaUrl(@NotNull String fromHash) {
+            if (deltas != null) {
+                for (Delta delta : deltas) {
+                    if (delta != null && delta.url != null && fromHash.equalsIgnoreCase(delta.from)) {
+                        return delta.url;
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final class Delta {
+        private String from;
+        private String url;
+    }
+
+    private List<Book> books;
+
+    private WordbookCatalog() {
+    }
+
+    @NotNull
+    public List<Book> getBooks() {
+        return books == null ? Collections.emptyList() : books;
+    }
+
+    /**
+     * Downloads and parses the manifest. Books without a valid URL or file name are dropped, relative URLs
+     * are resolved. Of several books with the same file name only the first is kept: they would download
+     * into the same file.
+     */
+    @NotNull
+    public static WordbookCatalog fetch(@NotNull String manifestUrl) throws IOException {
+        URI manifestUri;
+        try {
+            manifestUri = URI.create(manifestUrl.trim());
+        } catch (IllegalArgumentException e) {
+            throw new IOException("无效的目录地址 (Invalid catalog URL): " + manifestUrl, e);
+        }
+
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(manifestUri)
+                .timeout(Duration.ofSeconds(30))
+                .GET()
+                .build();
+        HttpResponse<byte[]> response;
+        try {
+            response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("获取词库目录被中断 (Fetching catalog was interrupted)", e);
+        }
+        if (response.statusCode() != 200) {
+            throw new IOException("获取词库目录失败 (Failed to fetch catalog). HTTP 状态码: " + response.statusCode());
+        }
+
+        WordbookCatalog catalog;
+        try {
+            catalog = GSON.fromJson(new String(response.body(), StandardCharsets.UTF_8), WordbookCatalog.class);
+        } catch (JsonParseException e) {
+            throw new IOException("词库目录格式错误 (Malformed catalog): " + e.getMessage(), e);
+        }
+        if (catalog == null) {
+            throw new IOException("词库目录为空 (Catalog is empty)");
+        }
+
+        List<Book> resolved = new ArrayList<>();
+        Set<String> fileNames = new HashSet<>();
+        for (Book book : catalog.getBooks()) {
+            if (book == null || book.url == null || book.url.isBlank()) {
+                continue;
+            }
+            String fileName;
+            try {
+                book.url = manifestUri.resolve(book.url.trim()).toString();
+                if (book.deltas != null) {
+                    for (Delta delta : book.deltas) {
+                        if (delta != null && delta.url != null && !delta.url.isBlank()) {
+                            delta.url = manifestUri.resolve(delta.url.trim()).toString();
+                        }
+                    }
+                }
+                fileName = book.getFileName();
+            } catch (IllegalArgumentException e) {
+                LOG.warn("Skipping catalog book with invalid URL " + book.url + ": " + e.getMessage());
+                continue;
+            }
+            if (fileName.isBlank() || fileName.contains("/") || fileName.contains("\\") || fileName.startsWith(".")) {
+                LOG.warn("Skipping catalog book " + book.url + " with invalid file name '" + fileName + "'");
+                continue;
+            }
+            // Case-insensitive: on Windows and macOS two such names are the same file
+            if (!fileNames.add(fileName.toLowerCase(Locale.ROOT))) {
+                LOG.warn("Skipping catalog book " + book.url + ": file name " + fileName + " is used by an earlier book");
+                continue;
+            }
+            resolved.add(book);
+        }
+        catalog.books = resolved;
+        return catalog;
+    }
+}
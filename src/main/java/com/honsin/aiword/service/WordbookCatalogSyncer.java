@@ -0,0 +1,291 @@
+package com.honsin.aiword.service;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Downloads or updates several catalog books in parallel at bounded concurrency.
+ * <p>
+ * The {@code ETag}/{@code Last-Modified} of every book we downloaded is remembered in
+ * {@code <wordbook dir>/.catalog-state.properties}; the next sync sends them back as
+ * {@code If-None-Match}/{@code If-Modified-Since}, so unchanged books cost one 304 response.
+ * If the catalog publishes content hashes, a book whose local content has that hash costs nothing, and
+ * an older local version is brought up to date with a {@link WordbookDelta} when one is published
+ * (falling back to the full download if the delta does not fit).
+ */
+public final class WordbookCatalogSyncer {
+
+    private static final Logger LOG = Logger.getInstance(WordbookCatalogSyncer.class);
+    public static final int DEFAULT_CONCURRENCY = 3;
+    static final String STATE_FILE_NAME = ".catalog-state.properties";
+
+    private enum Outcome {DOWNLOADED, PATCHED, UNCHANGED}
+
+    public static final class Result {
+        public final int downloaded;
+        public final int patched;
+        public final int unchanged;
+        public final Map<String, String> failures; // file name -> reason
+
+        Result(int downloaded, int patched, int unchanged, Map<String, String> failures) {
+            this.downloaded = downloaded;
+            this.patched = patched;
+            this.unchanged = unchanged;
+            this.failures = Collections.unmodifiableMap(failures);
+        }
+    }
+
+    private final Path directory;
+    private final int concurrency;
+
+    public WordbookCatalogSyncer(@NotNull Path directory, int concurrency) {
+        this.directory = directory;
+        this.concurrency = Math.max(1, concurrency);
+    }
+
+    @NotNull
+    public Result sync(@NotNull List<WordbookCatalog.Book> books, @NotNull ProgressIndicator indicator) throws IOException {
+        Files.createDirectories(directory);
+        Properties state = loadState();
+        AtomicInteger downloaded = new AtomicInteger();
+        AtomicInteger patched = new AtomicInteger();
+        AtomicInteger unchanged = new AtomicInteger();
+        AtomicInteger finished = new AtomicInteger();
+        Map<String, String> failures = Collections.synchronizedMap(new LinkedHashMap<>());
+        double[] fractions = new double[books.size()];
+
+        indicator.setIndeterminate(false);
+        indicator.setFraction(0.0);
+        ExecutorService executor = AppExecutorUtil.createBoundedApplicationPoolExecutor("AiWord catalog download",
+                Math.min(concurrency, Math.max(1, books.size())));
+        try {
+            List<Future<?>> futures = new ArrayList<>(books.size());
+            for (int i = 0; i < books.size(); i++) {
+                int slot = i;
+                WordbookCatalog.Book book = books.get(i);
+                futures.add(executor.submit(() -> {
+                    if (indicator.isCanceled()) return;
+                    String fileName = book.getUrl(); // Until we know the name is valid
+                    try {
+                        fileName = book.getFileName();
+                        Outcome outcome = syncBook(book, state, new PartIndicator(indicator, fractions, slot));
+                        (outcome == Outcome.DOWNLOADED ? downloaded : outcome == Outcome.PATCHED ? patched : unchanged).incrementAndGet();
+                    } catch (IOException e) {
+                        failures.put(fileName, e.getMessage());
+                        LOG.warn("Catalog download failed for " + book.getUrl() + ": " + e.getMessage());
+                    } catch (ProcessCanceledException e) {
+                        throw e;
+                    } catch (RuntimeException e) {
+                        // E.g. a malformed URL: fails this book, not the whole sync
+                        failures.put(fileName, String.valueOf(e.getMessage()));
+                        LOG.warn("Catalog download failed for " + book.getUrl(), e);
+                    } finally {
+                        synchronized (fractions) {
+                            fractions[slot] = 1.0;
+                        }
+                        int n = finished.incrementAndGet();
+                        indicator.setText2(n + " / " + books.size() + "  " + fileName);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                indicator.checkCanceled();
+                try {
+                    future.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new ProcessCanceledException(e);
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof ProcessCanceledException) {
+                        throw (ProcessCanceledException) e.getCause();
+                    }
+                    throw new IOException(e.getCause().getMessage(), e.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+            try {
+                executor.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            saveState(state);
+        }
+        indicator.checkCanceled();
+        return new Result(downloaded.get(), patched.get(), unchanged.get(), failures);
+    }
+
+    private Outcome syncBook(WordbookCatalog.Book book, Properties state, ProgressIndicator indicator) throws IOException {
+        String fileName = book.getFileName();
+        Path target = directory.resolve(fileName);
+
+        String publishedHash = book.getContentHash();
+        if (publishedHash != null && Files.isRegularFile(target)) {
+            String localHash = localContentHash(target);
+            if (publishedHash.equals(localHash)) {
+                return Outcome.UNCHANGED;
+            }
+            String deltaUrl = localHash == null ? null : book.findDeltaUrl(localHash);
+            if (deltaUrl != null && tryDelta(target, deltaUrl, indicator)) {
+                synchronized (state) {
+                    // The patched file is ours, not the server's bytes: its old validators no longer apply
+                    state.remove(fileName + ".etag");
+                    state.remove(fileName + ".lastModified");
+                }
+                return Outcome.PATCHED;
+            }
+        }
+
+        WordbookDownloader.DownloadRequest request = new WordbookDownloader.DownloadRequest(book.getUrl(), target)
+                .setExpectedSha256(book.getSha256());
+        if (CompilingDownloadSink.accepts(target)) {
+            request.setSink(new CompilingDownloadSink(target));
+        }
+        synchronized (state) {
+            if (book.getUrl().equals(state.getProperty(fileName + ".url"))) {
+                request.setConditional(state.getProperty(fileName + ".etag"),
+                        state.getProperty(fileName + ".lastModified"));
+            }
+        }
+        WordbookDownloader.DownloadResult result = WordbookDownloader.download(request, indicator);
+        synchronized (state) {
+            state.setProperty(fileName + ".url", book.getUrl());
+            setOrRemove(state, fileName + ".etag", result.getETag());
+            setOrRemove(state, fileName + ".lastModified", result.getLastModified());
+        }
+        return result.isNotModified() ? Outcome.UNCHANGED : Outcome.DOWNLOADED;
+    }
+
+    @Nullable
+    private static String localContentHash(Path book) {
+        if (!CompilingDownloadSink.accepts(book)) {
+            return null;
+        }
+        try {
+            return WordbookService.getInstance().loadCompiled(book).getContentHash();
+        } catch (IOException e) {
+            LOG.info("Local copy of " + book.getFileName() + " is unreadable, downloading it again: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @return false if the delta could not be used and the whole book should be downloaded.
+     */
+    private static boolean tryDelta(Path target, String deltaUrl, ProgressIndicator indicator) throws IOException {
+        Path deltaFile = target.resolveSibling(target.getFileName() + ".delta");
+        try {
+            WordbookDownloader.download(new WordbookDownloader.DownloadRequest(deltaUrl, deltaFile), indicator);
+            WordbookService.getInstance().applyDelta(target, deltaFile);
+            return true;
+        } catch (IOException e) {
+            // Includes WordbookDelta.MismatchException: the delta was made for another version
+            LOG.info("Delta " + deltaUrl + " not usable, downloading the whole book: " + e.getMessage());
+            return false;
+        } finally {
+            Files.deleteIfExists(deltaFile);
+        }
+    }
+
+    /**
+     * Whether a catalog book is already in the wordbook directory.
+     */
+    public boolean isPresent(@NotNull WordbookCatalog.Book book) {
+        return Files.isRegularFile(directory.resolve(book.getFileName()));
+    }
+
+    private Properties loadState() {
+        Properties state = new Properties();
+        Path file = directory.resolve(STATE_FILE_NAME);
+        if (Files.isRegularFile(file)) {
+            try (InputStream in = Files.newInputStream(file)) {
+                state.load(in);
+            } catch (IOException e) {
+                LOG.warn("Ignoring unreadable catalog state " + file + ": " + e.getMessage());
+            }
+        }
+        return state;
+    }
+
+    private void saveState(Properties state) {
+        Path file = directory.resolve(STATE_FILE_NAME);
+        Path tmp = file.resolveSibling(STATE_FILE_NAME + ".tmp");
+        try {
+            synchronized (state) {
+                try (OutputStream out = Files.newOutputStream(tmp)) {
+                    state.store(out, "AiWord catalog validators");
+                }
+            }
+            WordbookDownloader.moveAtomically(tmp, file);
+        } catch (IOException e) {
+            LOG.warn("Could not save catalog state " + file + ": " + e.getMessage());
+        }
+    }
+
+    private static void setOrRemove(Properties state, String key, String value) {
+        if (value == null) {
+            state.remove(key);
+        } else {
+            state.setProperty(key, value);
+        }
+    }
+
+    /**
+     * Progress of one download; its fraction is averaged into the parent, its cancel state is the parent's.
+     */
+    private static final class PartIndicator extends EmptyProgressIndicator {
+        private final ProgressIndicator parent;
+        private final double[] fractions;
+        private final int slot;
+
+        PartIndicator(ProgressIndicator parent, double[] fractions, int slot) {
+            this.parent = parent;
+            this.fractions = fractions;
+            this.slot = slot;
+        }
+
+        @Override
+        public void setFraction(double fraction) {
+            double sum = 0;
+            synchronized (fractions) {
+                fractions[slot] = fraction;
+                for (double f : fractions) {
+                    sum += f;
+                }
+            }
+            parent.setFraction(sum / fractions.length);
+        }
+
+        @Override
+        public boolean isCanceled() {
+            return parent.isCanceled();
+        }
+
+        @Override
+        public void checkCanceled() {
+            parent.checkCanceled();
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.honsin.aiword.service;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Changes between two versions of a wordbook, keyed by headword:
+ * <pre>
+ * {"baseHash": "...", "targetHash": "...",
+ *  "added":   [{"word": "...", "translations": [...]}],
+ *  "removed": ["word", ...],
+ *  "changed": [{"word": "...", "translations": [...]}]}
+ * </pre>
+ * Hashes are {@link CompiledWordbook#getContentHash() content hashes}. Removed and changed words keep
+ * their position, added words are appended. A delta only applies to a book whose content hash is
+ * {@code baseHash}, and the result must hash to {@code targetHash}; otherwise {@link MismatchException}
+ * tells the caller to download the whole book instead.
+ */
+public final class WordbookDelta {
+
+    private static final Gson GSON = new Gson();
+
+    /**
+     * The delta does not fit the local book.
+     */
+    public static final class MismatchException extends IOException {
+        public MismatchException(String message) {
+            super(message);
+        }
+    }
+
+    private final String baseHash;
+    private final String targetHash;
+    private final List<JsonObject> added = new ArrayList<>();
+    private final Set<String> removed = new HashSet<>();
+    private final Map<String, JsonObject> changed = new HashMap<>();
+
+    private WordbookDelta(String baseHash, String targetHash) {
+        this.baseHash = baseHash;
+        this.targetHash = targetHash;
+    }
+
+    @NotNull
+    public static WordbookDelta read(@NotNull Path file) throws IOException {
+        JsonObject root;
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            JsonElement element = JsonParser.parseReader(reader);
+            if (!element.isJsonObject()) {
+                throw new WordbookFormatException("不是单词本增量文件 (Not a wordbook delta): " + file.getFileName());
+            }
+            root = element.getAsJsonObject();
+        } catch (JsonParseException e) {
+            throw new WordbookFormatException("增量文件格式错误 (Malformed delta) " + file.getFileName() + ": " + e.getMessage(), e);
+        }
+
+        String base = WordbookParser.stringMember(root, "baseHash");
+        String target = WordbookParser.stringMember(root, "targetHash");
+        if (base == null || target == null) {
+            throw new WordbookFormatException("增量文件缺少 baseHash/targetHash (Delta lacks baseHash/targetHash): " + file.getFileName());
+        }
+        WordbookDelta delta = new WordbookDelta(base.toLowerCase(), target.toLowerCase());
+        for (JsonObject entry : objects(root, "added")) {
+            if (WordbookParser.stringMember(entry, "word") != null) delta.added.add(entry);
+        }
+        for (JsonObject entry : objects(root, "changed")) {
+            String word = WordbookParser.stringMember(entry, "word");
+            if (word != null) delta.changed.put(word, entry);
+        }
+        JsonElement removedArray = root.get("removed");
+        if (removedArray != null && removedArray.isJsonArray()) {
+            for (JsonElement word : removedArray.getAsJsonArray()) {
+                if (word.isJsonPrimitive()) delta.removed.add(word.getAsString().trim());
+            }
+        }
+        return delta;
+    }
+
+    @NotNull
+    public String getBaseHash() {
+        return baseHash;
+    }
+
+    @NotNull
+    public String getTargetHash() {
+        return targetHash;
+    }
+
+    public int size() {
+        return added.size() + removed.size() + changed.size();
+    }
+
+    /**
+     * Applies the delta to {@code book} (whose compiled form is {@code base}). The new compiled cache is built
+     * from {@code base} by index, without parsing the JSON; the JSON file is then rewritten entry by entry so
+     * unknown fields of untouched entries survive. Both files are replaced atomically.
+     */
+    @NotNull
+    CompiledWordbook applyTo(@NotNull Path book, @NotNull CompiledWordbook base) throws IOException {
+        if (!base.getContentHash().equals(baseHash)) {
+            throw new MismatchException("增量的基础版本与本地单词本不符 (Delta base does not match the local wordbook): "
+                    + book.getFileName());
+        }
+
+        // 1. Check the result before touching anything on disk
+        CompiledWordbook.ContentHasher hasher = new CompiledWordbook.ContentHasher();
+        forEachResultEntry(base, null, (word, translation, extendedJson) -> hasher.add(word, translation));
+        String resultHash = HexFormat.of().formatHex(hasher.finish());
+        if (!resultHash.equals(targetHash)) {
+            throw new MismatchException("应用增量后的内容与目标版本不符 (Result of the delta does not match the target version): "
+                    + book.getFileName());
+        }
+
+        // 2. New JSON next to the book, 3. new compiled cache stamped with it
+        Path tmpJson = book.resolveSibling(book.getFileName() + ".tmp");
+        try {
+            rewriteJson(book, tmpJson);
+            try (CompiledWordbook.Writer writer = CompiledWordbook.newWriter(CompiledWordbook.cacheFileFor(book))) {
+                forEachResultEntry(base, ExtendedEntryStore.openFor(base), writer::add); // Carries the extended fields over
+                WordbookDownloader.moveAtomically(tmpJson, book);
+                return writer.commit(book);
+            }
+        } finally {
+            Files.deleteIfExists(tmpJson);
+        }
+    }
+
+    /**
+     * Receives the entries of the result, with their extended fields as JSON (null if none or not asked for).
+     */
+    @FunctionalInterface
+    private interface ResultConsumer {
+        void accept(String word, String translation, @Nullable String extendedJson) throws IOException;
+    }
+
+    private void forEachResultEntry(CompiledWordbook base, @Nullable ExtendedEntryStore baseExtended,
+                                    ResultConsumer consumer) throws IOException {
+        for (int i = 0; i < base.size(); i++) {
+            String word = base.getWord(i);
+            if (removed.contains(word)) {
+                continue;
+            }
+            JsonObject change = changed.get(word);
+            if (change == null) {
+                consumer.accept(word, base.getTranslation(i), baseExtended != null ? baseExtended.getJson(i) : null);
+            } else {
+                acceptEntry(change, consumer);
+            }
+        }
+        for (JsonObject entry : added) {
+            acceptEntry(entry, consumer);
+        }
+    }
+
+    private static void acceptEntry(JsonObject entry, ResultConsumer consumer) throws IOException {
+        String word = WordbookParser.stringMember(entry, "word");
+        String translation = WordbookParser.combineTranslations(entry.get("translations"));
+        // Same rule as the parser: entries without a word or translation do not exist for the compiled form
+        if (word != null && !word.isEmpty() && !translation.isEmpty()) {
+            JsonObject extended = WordbookParser.extendedMembers(entry);
+            consumer.accept(word, translation, extended != null ? extended.toString() : null);
+        }
+    }
+
+    private void rewriteJson(Path book, Path target) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(book, StandardCharsets.UTF_8);
+             Writer out = Files.newBufferedWriter(target, StandardCharsets.UTF_8)) {
+            in.mark(1);
+            if (in.read() != '\uFEFF') {
+                in.reset();
+            }
+            JsonReader reader = new JsonReader(in);
+            JsonWriter writer = new JsonWriter(out);
+            writer.setIndent("  ");
+            try {
+                reader.beginArray();
+                writer.beginArray();
+                while (reader.hasNext()) {
+                    if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                        reader.skipValue();
+                        continue;
+                    }
+                    JsonObject entry = JsonParser.parseReader(reader).getAsJsonObject();
+                    String word = WordbookParser.stringMember(entry, "word");
+                    if (word != null && removed.contains(word)) {
+                        continue;
+                    }
+                    JsonObject change = word == null ? null : changed.get(word);
+                    GSON.toJson(change != null ? change : entry, writer);
+                }
+                for (JsonObject entry : added) {
+                    GSON.toJson(entry, writer);
+                }
+                reader.endArray();
+                writer.endArray();
+                writer.flush();
+            } catch (JsonParseException | IllegalStateException e) {
+                throw new WordbookFormatException("单词本 JSON 格式错误 (Malformed wordbook JSON) " + book.getFileName() + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private static List<JsonObject> objects(JsonObject root, String name) {
+        List<JsonObject> result = new ArrayList<>();
+        JsonElement array = root.get(name);
+        if (array instanceof JsonArray) {
+            for (JsonElement element : (JsonArray) array) {
+                if (element.isJsonObject()) result.add(element.getAsJsonObject());
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,492 @@
+package com.honsin.aiword.service;
+
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Properties;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The one download engine for wordbooks.
+ * <ul>
+ *   <li>Data goes to {@code <target>.part}; the target file is only replaced, atomically, once the
+ *   download is complete (and the optional SHA-256 matches). An interrupted download never leaves a
+ *   truncated JSON in the wordbook directory.</li>
+ *   <li>The response validators (ETag / Last-Modified) are kept next to the part file, so a retry
+ *   resumes with {@code Range} + {@code If-Range} instead of starting from zero. If the file changed
+ *   on the server meanwhile, the server sends the whole file again and we start over.</li>
+ *   <li>A transfer that stalls for {@value #READ_TIMEOUT_SECONDS} s, or is cancelled while waiting for
+ *   data, is cut off by a watchdog that closes the body stream; the part file stays for resuming.</li>
+ *   <li>An optional {@link DownloadSink} sees the bytes as they arrive, e.g. to compile the wordbook
+ *   during the download ({@link CompilingDownloadSink}), and can still reject the file before it replaces
+ *   the target.</li>
+ * </ul>
+ */
+public final class WordbookDownloader {
+
+    private static final Logger LOG = Logger.getInstance(WordbookDownloader.class);
+    private static final int BUFFER_SIZE = 8192;         // 8 KB buffer
+    private static final String USER_AGENT = "IntelliJ Plugin (AiWord Memorizer)";
+    static final String PART_SUFFIX = ".part";
+    static final String META_SUFFIX = ".meta";
+    private static final int READ_TIMEOUT_SECONDS = 60;  // Longest wait for the next bytes of the body
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes (\\d+)-(\\d+)/(\\d+|\\*)");
+
+    private static final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(30))
+            .followRedirects(HttpClient.Redirect.NORMAL) // Handle redirects
+            .build();
+
+    /**
+     * What to download and where.
+     */
+    public static final class DownloadRequest {
+        private final String url;
+        private final Path target;
+        private String expectedSha256;
+        private String ifNoneMatch;
+        private String ifModifiedSince;
+        private DownloadSink sink;
+
+        public DownloadRequest(@NotNull String url, @NotNull Path target) {
+            this.url = url;
+            this.target = target;
+        }
+
+        @NotNull
+        public String getUrl() {
+            return url;
+        }
+
+        @NotNull
+        public Path getTarget() {
+            return target;
+        }
+
+        @Nullable
+        public String getExpectedSha256() {
+            return expectedSha256;
+        }
+
+        /**
+         * Optional hex SHA-256 of the complete file; the download fails if it does not match.
+         */
+        public DownloadRequest setExpectedSha256(@Nullable String expectedSha256) {
+            this.expectedSha256 = expectedSha256 == null || expectedSha256.isBlank() ? null : expectedSha256.trim().toLowerCase();
+            return this;
+        }
+
+        /**
+         * Makes the request conditional on the validators of the copy we already have. Only used when the
+         * target file exists; an unchanged file is answered with 304 and left untouched.
+         */
+        public DownloadRequest setConditional(@Nullable String eTag, @Nullable String lastModified) {
+            this.ifNoneMatch = eTag;
+            this.ifModifiedSince = lastModified;
+            return this;
+        }
+
+        /**
+         * Optional consumer of the downloaded bytes, see {@link DownloadSink}.
+         */
+        public DownloadRequest setSink(@Nullable DownloadSink sink) {
+            this.sink = sink;
+            return this;
+        }
+    }
+
+    /**
+     * Outcome of a successful download.
+     */
+    public static final class DownloadResult {
+        private final Path file;
+        private final long size;
+        private final long resumedFrom;
+        private final boolean notModified;
+        private final String eTag;
+        private final String lastModified;
+
+        DownloadResult(Path file, long size, long resumedFrom, boolean notModified, String eTag, String lastModified) {
+            this.file = file;
+            this.size = size;
+            this.resumedFrom = resumedFrom;
+            this.notModified = notModified;
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+        }
+
+        @NotNull
+        public Path getFile() {
+            return file;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * Bytes reused from a previous interrupted attempt (0 if the download started from scratch).
+         */
+        public long getResumedFrom() {
+            return resumedFrom;
+        }
+
+        /**
+         * True if a conditional request found the local copy up to date (nothing was transferred).
+         */
+        public boolean isNotModified() {
+            return notModified;
+        }
+
+        /**
+         * Validators of the file now on disk, to be passed to {@link DownloadRequest#setConditional} next time.
+         */
+        @Nullable
+        public String getETag() {
+            return eTag;
+        }
+
+        @Nullable
+        public String getLastModified() {
+            return lastModified;
+        }
+    }
+
+    private WordbookDownloader() {
+    }
+
+    /**
+     * Downloads (or resumes downloading) {@code request.getUrl()} into {@code request.getTarget()}.
+     * Cancelling the indicator keeps the part file for the next attempt.
+     */
+    @NotNull
+    public static DownloadResult download(@NotNull DownloadRequest request, @NotNull ProgressIndicator indicator) throws IOException {
+        Path target = request.getTarget();
+        Path part = target.resolveSibling(target.getFileName() + PART_SUFFIX);
+        Path meta = target.resolveSibling(target.getFileName() + PART_SUFFIX + META_SUFFIX);
+        Files.createDirectories(target.toAbsolutePath().getParent());
+
+        long existing = 0;
+        String validator = null;
+        if (Files.isRegularFile(part)) {
+            Properties partMeta = readMeta(meta);
+            validator = partMeta.getProperty("etag", partMeta.getProperty("lastModified"));
+            if (request.getUrl().equals(partMeta.getProperty("url")) && validator != null) {
+                existing = Files.size(part);
+            }
+        }
+
+        indicator.setText("正在连接服务器...(Connecting to server...)");
+        indicator.checkCanceled();
+        boolean conditional = existing == 0 && Files.isRegularFile(target)
+                && (request.ifNoneMatch != null || request.ifModifiedSince != null);
+        HttpResponse<InputStream> response = conditional
+                ? send(request.getUrl(), 0, null, request.ifNoneMatch, request.ifModifiedSince)
+                : send(request.getUrl(), existing, validator);
+        int status = response.statusCode();
+
+        if (status == 304 && conditional) {
+            response.body().close();
+            indicator.setFraction(1.0);
+            return new DownloadResult(target, Files.size(target), 0, true,
+                    response.headers().firstValue("ETag").orElse(request.ifNoneMatch),
+                    response.headers().firstValue("Last-Modified").orElse(request.ifModifiedSince));
+        }
+
+        if (status == 416 && existing > 0) {
+            // Our part is not a prefix of what the server has any more: start over
+            response.body().close();
+            existing = 0;
+            response = send(request.getUrl(), 0, null);
+            status = response.statusCode();
+        }
+
+        long resumedFrom = 0;
+        boolean append = false;
+        if (status == 206 && existing > 0) {
+            long start = parseRangeStart(response);
+            if (start == existing) {
+                append = true;
+                resumedFrom = existing;
+                LOG.info("Resuming download of " + request.getUrl() + " at byte " + existing);
+            } else {
+                response.body().close();
+                response = send(request.getUrl(), 0, null);
+                status = response.statusCode();
+            }
+        }
+
+        if (status < 200 || status >= 300) {
+            String body;
+            try (InputStream errorStream = response.body()) {
+                body = new String(errorStream.readNBytes(512), StandardCharsets.UTF_8);
+            }
+            throw new IOException("服务器响应错误 (Server returned error)。状态码 (Status Code): " + status
+                    + (body.isBlank() ? "" : "\n" + body.trim()));
+        }
+
+        String eTag = response.headers().firstValue("ETag").orElse(null);
+        String lastModified = response.headers().firstValue("Last-Modified").orElse(null);
+        writeMeta(meta, request.getUrl(), response);
+        long total = contentLength(response, status, resumedFrom);
+
+        DownloadSink sink = request.sink;
+        boolean completed = false;
+        try {
+            if (sink != null) {
+                sink.onStart();
+                if (append) {
+                    replayPart(part, sink);
+                }
+            }
+            copyBody(response, part, append, resumedFrom, total, indicator, sink);
+
+            indicator.setText("正在校验...(Verifying...)");
+            if (request.getExpectedSha256() != null) {
+                String actual = sha256(part);
+                if (!actual.equals(request.getExpectedSha256())) {
+                    Files.deleteIfExists(part);
+                    Files.deleteIfExists(meta);
+                    throw new IOException("校验失败 (Checksum mismatch): expected " + request.getExpectedSha256() + ", got " + actual);
+                }
+            }
+
+            if (sink != null) {
+                indicator.setText("正在生成索引...(Finishing index...)");
+                sink.onEnd(); // A WordbookFormatException here keeps the old file and drops the part
+            }
+
+            long size = Files.size(part);
+            moveAtomically(part, target);
+            Files.deleteIfExists(meta);
+            completed = true;
+            if (sink != null) {
+                try {
+                    sink.onComplete(target);
+                } catch (IOException e) {
+                    // The file itself is fine; whoever needs the index builds it on load
+                    LOG.warn("Download sink failed for " + target + ": " + e.getMessage());
+                }
+            }
+            indicator.setFraction(1.0); // 确保结束时进度为 100%
+            return new DownloadResult(target, size, resumedFrom, false, eTag, lastModified);
+        } catch (WordbookFormatException e) {
+            // Not a wordbook (e.g. an HTML error page): nothing worth resuming
+            Files.deleteIfExists(part);
+            Files.deleteIfExists(meta);
+            throw e;
+        } finally {
+            if (!completed) {
+                response.body().close();
+                if (sink != null) {
+                    sink.onAbort();
+                }
+            }
+        }
+    }
+
+    private static void replayPart(Path part, DownloadSink sink) throws IOException {
+        try (InputStream in = Files.newInputStream(part)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int bytesRead;
+            while ((bytesRead = in.read(buffer)) != -1) {
+                sink.onChunk(buffer, 0, bytesRead);
+            }
+        }
+    }
+
+    private static HttpResponse<InputStream> send(String url, long rangeStart, @Nullable String ifRange) throws IOException {
+        return send(url, rangeStart, ifRange, null, null);
+    }
+
+    private static HttpResponse<InputStream> send(String url, long rangeStart, @Nullable String ifRange,
+                                                  @Nullable String ifNoneMatch, @Nullable String ifModifiedSince) throws IOException {
+        HttpRequest.Builder builder = HttpRequest.newBuilder()
+                .uri(URI.create(url))
+                .timeout(Duration.ofSeconds(60))
+                .header("User-Agent", USER_AGENT)
+                .GET();
+        if (rangeStart > 0 && ifRange != null) {
+            builder.header("Range", "bytes=" + rangeStart + "-");
+            builder.header("If-Range", ifRange);
+        }
+        if (ifNoneMatch != null) {
+            builder.header("If-None-Match", ifNoneMatch);
+        }
+        if (ifModifiedSince != null) {
+            builder.header("If-Modified-Since", ifModifiedSince);
+        }
+        try {
+            return httpClient.send(builder.build(), HttpResponse.BodyHandlers.ofInputStream());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ProcessCanceledException(e);
+        }
+    }
+
+    private static void copyBody(HttpResponse<InputStream> response, Path part, boolean append, long alreadyHave,
+                                 long total, ProgressIndicator indicator, @Nullable DownloadSink sink) throws IOException {
+        String fileName = part.getFileName().toString();
+        indicator.setText("正在下载: " + fileName.substring(0, fileName.length() - PART_SUFFIX.length()) + " (Downloading...)");
+        indicator.setIndeterminate(total <= 0); // 大小未知，进度条不确定
+
+        // HttpRequest.timeout only covers the response headers: a read of the body can block forever, and
+        // checkCanceled() only runs between reads. The watchdog closes the stream, which ends the blocked read.
+        InputStream in = response.body();
+        AtomicLong lastData = new AtomicLong(System.nanoTime());
+        AtomicBoolean stalled = new AtomicBoolean();
+        ScheduledFuture<?> watchdog = AppExecutorUtil.getAppScheduledExecutorService().scheduleWithFixedDelay(() -> {
+            boolean idle = System.nanoTime() - lastData.get() > TimeUnit.SECONDS.toNanos(READ_TIMEOUT_SECONDS);
+            if (idle || indicator.isCanceled()) {
+                stalled.compareAndSet(false, idle);
+                closeQuietly(in);
+            }
+        }, 1, 1, TimeUnit.SECONDS);
+
+        StandardOpenOption mode = append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING;
+        try (in; OutputStream out = Files.newOutputStream(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE, mode)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long bytesCopied = alreadyHave;
+            try {
+                int bytesRead;
+                while ((bytesRead = in.read(buffer)) != -1) {
+                    lastData.set(System.nanoTime());
+                    indicator.checkCanceled(); // 在循环中检查取消状态, the part file is kept for resuming
+                    out.write(buffer, 0, bytesRead);
+                    if (sink != null) {
+                        sink.onChunk(buffer, 0, bytesRead);
+                    }
+                    bytesCopied += bytesRead;
+                    if (total > 0) {
+                        indicator.setFraction((double) bytesCopied / total); // 更新进度
+                    }
+                }
+            } catch (IOException e) {
+                if (!stalled.get() && !indicator.isCanceled()) {
+                    throw e;
+                }
+                // Closed by the watchdog, reported below
+            }
+            indicator.checkCanceled();
+            if (stalled.get()) {
+                throw new IOException("连接超时，" + READ_TIMEOUT_SECONDS + " 秒没有收到数据，已下载 " + bytesCopied
+                        + " 字节，重试将继续下载。(No data for " + READ_TIMEOUT_SECONDS + " s, retry to resume.)");
+            }
+            if (total > 0 && bytesCopied < total) {
+                throw new IOException("连接中断，已下载 " + bytesCopied + " / " + total + " 字节，重试将继续下载。(Connection closed early, retry to resume.)");
+            }
+        } finally {
+            watchdog.cancel(false);
+        }
+    }
+
+    private static void closeQuietly(InputStream in) {
+        try {
+            in.close();
+        } catch (IOException e) {
+            LOG.debug("Closing a stalled download failed: " + e.getMessage());
+        }
+    }
+
+    private static long parseRangeStart(HttpResponse<?> response) {
+        String contentRange = response.headers().firstValue("Content-Range").orElse("");
+        Matcher matcher = CONTENT_RANGE.matcher(contentRange.trim());
+        return matcher.matches() ? Long.parseLong(matcher.group(1)) : -1;
+    }
+
+    private static long contentLength(HttpResponse<?> response, int status, long resumedFrom) {
+        if (status == 206) {
+            Matcher matcher = CONTENT_RANGE.matcher(response.headers().firstValue("Content-Range").orElse("").trim());
+            if (matcher.matches() && !"*".equals(matcher.group(3))) {
+                return Long.parseLong(matcher.group(3));
+            }
+        }
+        long length = response.headers().firstValueAsLong("Content-Length").orElse(-1);
+        return length < 0 ? -1 : length + resumedFrom;
+    }
+
+    private static Properties readMeta(Path meta) {
+        Properties properties = new Properties();
+        if (Files.isRegularFile(meta)) {
+            try (Reader reader = Files.newBufferedReader(meta, StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            } catch (IOException e) {
+                LOG.warn("Ignoring unreadable download metadata " + meta + ": " + e.getMessage());
+            }
+        }
+        return properties;
+    }
+
+    private static void writeMeta(Path meta, String url, HttpResponse<?> response) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("url", url);
+        response.headers().firstValue("ETag").ifPresent(etag -> properties.setProperty("etag", etag));
+        response.headers().firstValue("Last-Modified").ifPresent(lm -> properties.setProperty("lastModified", lm));
+        try (Writer writer = Files.newBufferedWriter(meta, StandardCharsets.UTF_8)) {
+            properties.store(writer, "AiWord partial download");
+        }
+    }
+
+    /**
+     * Hex SHA-256 of a file.
+     */
+    @NotNull
+    public static String sha256(@NotNull Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        StringBuilder hexString = new StringBuilder();
+        for (byte b : digest.digest()) {
+            String hex = Integer.toHexString(0xff & b);
+            if (hex.length() == 1) hexString.append('0');
+            hexString.append(hex);
+        }
+        return hexString.toString();
+    }
+
+    static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
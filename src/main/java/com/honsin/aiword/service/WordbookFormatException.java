@@ -0,0 +1,18 @@
+package com.honsin.aiword.service;
+
+import java.io.IOException;
+
+/**
+ * The data is not a wordbook (e.g. an HTML error page, or JSON of another shape).
+ * Unlike other {@link IOException}s, retrying or resuming the same download will not help.
+ */
+public class WordbookFormatException extends IOException {
+
+    public WordbookFormatException(String message) {
+        super(message);
+    }
+
+    public WordbookFormatException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,135 @@
+package com.honsin.aiword.service;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+
+import javax.swing.*;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Loads wordbooks for one tool window in the background, where only the latest request counts.
+ * <p>
+ * Every request gets a version; a new request cancels the parse of the previous one (checked inside the
+ * parse loop) and only the result of the latest version is handed to the callback, on the EDT. The book is
+ * handed over as soon as it is parsed; its indexes are built afterwards in the background, and skipped
+ * once a newer load supersedes it, so picking five books in a row costs one parse, not five one after another.
+ */
+public final class WordbookLoadCoordinator {
+
+    private static final Logger LOG = Logger.getInstance(WordbookLoadCoordinator.class);
+    // Built right after the parse rather than on first use (editor lookups, the EDT, the first random draw),
+    // the ones a shown page needs soonest first
+    private static final List<Consumer<WordbookSnapshot>> WARM_UP = List.of(
+            WordbookSnapshot::getLookupIndex,
+            WordbookSnapshot::getFrequencyRanks,
+            snapshot -> snapshot.getKnownMask(KnownWords.getInstance().getIndex()),
+            WordbookSnapshot::getInflectionIndex,
+            WordbookSnapshot::getPhoneticIndex);
+
+    public interface Callback {
+        /**
+         * The callback owns {@code snapshot} and must release it.
+         */
+        void loaded(@NotNull WordbookSnapshot snapshot);
+
+        void failed(@NotNull Path file, @NotNull IOException error);
+    }
+
+    private final WordbookService service;
+    private final AtomicLong latestVersion = new AtomicLong();
+    private final AtomicReference<ProgressIndicator> running = new AtomicReference<>();
+    public WordbookLoadCoordinator(@NotNull WordbookService service) {
+        this.service = service;
+    }
+
+    /**
+     * Starts loading {@code file}, superseding any load still in progress.
+     */
+    public void load(@NotNull Path file, @NotNull Callback callback) {
+        long version = latestVersion.incrementAndGet();
+        ProgressIndicator indicator = new EmptyProgressIndicator();
+        cancelRunning(indicator);
+        // The shared pool, not a single thread: a new load must not queue behind a cancelled one winding down
+        AppExecutorUtil.getAppExecutorService().execute(() -> {
+            long start = System.nanoTime();
+            WordbookSnapshot snapshot;
+            try {
+                snapshot = service.acquire(file, indicator);
+            } catch (ProcessCanceledException e) {
+                LOG.debug("Load of " + file.getFileName() + " superseded");
+                return;
+            } catch (IOException e) {
+                SwingUtilities.invokeLater(() -> {
+                    if (latestVersion.get() == version) {
+                        callback.failed(file, e);
+                    }
+                });
+                return;
+            } finally {
+                running.compareAndSet(indicator, null);
+            }
+            LOG.info("Loaded " + file.getFileName() + " (" + snapshot.getWords().size() + " words) in "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms");
+            if (latestVersion.get() != version) {
+                snapshot.release(); // Superseded right after the parse
+                return;
+            }
+            // Our own reference for the warm-up, so the callback may release its one at any time
+            boolean warmUp = snapshot.tryRetain();
+            SwingUtilities.invokeLater(() -> {
+                if (latestVersion.get() == version) {
+                    callback.loaded(snapshot);
+                } else {
+                    snapshot.release();
+                }
+            });
+            if (warmUp) {
+                try {
+                    warmUp(snapshot, version);
+                } finally {
+                    snapshot.release();
+                }
+            }
+        });
+    }
+
+    private void warmUp(WordbookSnapshot snapshot, long version) {
+        long start = System.nanoTime();
+        for (Consumer<WordbookSnapshot> index : WARM_UP) {
+            if (latestVersion.get() != version) {
+                LOG.debug("Indexing " + snapshot.getFile().getFileName() + " stopped, a newer load superseded it");
+                return;
+            }
+            index.accept(snapshot);
+        }
+        LOG.debug("Indexed " + snapshot.getFile().getFileName() + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    /**
+     * Cancels the load in progress, if any; its result will not be delivered.
+     */
+    public void cancel() {
+        latestVersion.incrementAndGet();
+        cancelRunning(null);
+    }
+
+    public void dispose() {
+        cancel();
+    }
+
+    private void cancelRunning(ProgressIndicator replacement) {
+        ProgressIndicator previous = running.getAndSet(replacement);
+        if (previous != null) {
+            previous.cancel();
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.honsin.aiword.service;
+
+import com.intellij.openapi.progress.ProgressIndicator;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Compares and merges wordbooks by headword fingerprints.
+ * <p>
+ * Every headword (trimmed, ignoring case) becomes a 64-bit FNV-1a hash kept in a primitive set, so comparing
+ * books of millions of words costs about 16 bytes per word and no strings or entry objects. Two different
+ * headwords share a fingerprint with a chance of about n²/2^65, i.e. practically never.
+ */
+public final class WordbookMerger {
+
+    private static final int CANCEL_CHECK_INTERVAL = 4096;
+
+    private WordbookMerger() {
+    }
+
+    /**
+     * How many headwords each pair of books shares.
+     */
+    public static final class Overlap {
+        private final List<String> names;
+        private final int[] sizes;    // Distinct headwords per book
+        private final int[][] shared; // shared[a][b] == shared[b][a]
+
+        Overlap(List<String> names, int[] sizes, int[][] shared) {
+            this.names = names;
+            this.sizes = sizes;
+            this.shared = shared;
+        }
+
+        @NotNull
+        public List<String> getNames() {
+            return names;
+        }
+
+        public int getSize(int book) {
+            return sizes[book];
+        }
+
+        public int getShared(int a, int b) {
+            return shared[a][b];
+        }
+
+        /**
+         * Share of book {@code a}'s headwords that are also in book {@code b}, in percent.
+         */
+        public double getPercent(int a, int b) {
+            return sizes[a] == 0 ? 0 : 100.0 * shared[a][b] / sizes[a];
+        }
+
+        /**
+         * One line per pair, e.g. "CET4 ∩ CET6: 3210 (72.1% / 41.0%)".
+         */
+        @NotNull
+        public List<String> toLines() {
+            List<String> lines = new ArrayList<>();
+            for (int a = 0; a < names.size(); a++) {
+                for (int b = a + 1; b < names.size(); b++) {
+                    lines.add(String.format(Locale.ROOT, "%s ∩ %s: %d (%.1f%% / %.1f%%)",
+                            names.get(a), names.get(b), shared[a][b], getPercent(a, b), getPercent(b, a)));
+                }
+            }
+            return lines;
+        }
+    }
+
+    /**
+     * Counts the headwords each pair of {@code books} has in common.
+     */
+    @NotNull
+    public static Overlap analyze(@NotNull List<WordbookSnapshot> books, @NotNull ProgressIndicator indicator) {
+        int n = books.size();
+        List<LongOpenHashSet> sets = new ArrayList<>(n);
+        List<String> names = new ArrayList<>(n);
+        int[] sizes = new int[n];
+        for (int b = 0; b < n; b++) {
+            indicator.setText("正在计算指纹 (Fingerprinting) " + books.get(b).getFile().getFileName() + "...");
+            indicator.setFraction(0.5 * b / n);
+            LongOpenHashSet set = fingerprints(books.get(b), indicator);
+            sets.add(set);
+            names.add(displayName(books.get(b)));
+            sizes[b] = set.size();
+        }
+        int[][] shared = new int[n][n];
+        for (int a = 0; a < n; a++) {
+            shared[a][a] = sizes[a];
+            for (int b = a + 1; b < n; b++) {
+                indicator.checkCanceled();
+                LongOpenHashSet small = sets.get(a).size() <= sets.get(b).size() ? sets.get(a) : sets.get(b);
+                LongOpenHashSet large = small == sets.get(a) ? sets.get(b) : sets.get(a);
+                int count = 0;
+                for (LongIterator it = small.iterator(); it.hasNext(); ) {
+                    if (large.contains(it.nextLong())) count++;
+                }
+                shared[a][b] = shared[b][a] = count;
+            }
+            indicator.setFraction(0.5 + 0.5 * (a + 1) / n);
+        }
+        return new Overlap(names, sizes, shared);
+    }
+
+    /**
+     * Writes one book with every headword of {@code books} once, in the order first seen (books in the given
+     * order). A headword's translations are those of all books having it, each distinct part once, e.g.
+     * "n. 能力; n. 才能" and "n. 能力; vt. 使能够" become "n. 能力; n. 才能; vt. 使能够".
+     *
+     * @return number of words written.
+     */
+    public static int merge(@NotNull List<WordbookSnapshot> books, @NotNull Path target,
+                            @NotNull ProgressIndicator indicator) throws IOException {
+        long total = 0;
+        for (WordbookSnapshot book : books) {
+            total += book.getWords().size();
+        }
+        LongOpenHashSet seen = new LongOpenHashSet();
+        long done = 0;
+        try (WordbookWriter writer = new WordbookWriter(target)) {
+            for (int b = 0; b < books.size(); b++) {
+                WordbookSnapshot book = books.get(b);
+                MappedWordStore words = (MappedWordStore) book.getWords();
+                CompiledWordbook compiled = words.getCompiled();
+                indicator.setText("正在合并 (Merging) " + book.getFile().getFileName() + "...");
+                for (int i = 0; i < compiled.size(); i++, done++) {
+                    if ((done & (CANCEL_CHECK_INTERVAL - 1)) == 0) {
+                        indicator.checkCanceled();
+                        indicator.setFraction((double) done / total);
+                    }
+                    String word = compiled.getWord(i);
+                    if (!seen.add(fingerprint(word))) {
+                        continue; // Written with the first book having it; within a book the first entry counts
+                    }
+                    Set<String> parts = new LinkedHashSet<>();
+                    addParts(parts, compiled.getTranslation(i));
+                    for (int later = b + 1; later < books.size(); later++) {
+                        WordbookSnapshot other = books.get(later);
+                        int index = other.getLookupIndex().find(word);
+                        if (index >= 0) {
+                            addParts(parts, ((MappedWordStore) other.getWords()).getCompiled().getTranslation(index));
+                        }
+                    }
+                    writer.add(word, String.join("; ", parts));
+                }
+            }
+            writer.commit();
+            return writer.size();
+        }
+    }
+
+    /**
+     * The fingerprints of all headwords of {@code book}.
+     */
+    @NotNull
+    static LongOpenHashSet fingerprints(@NotNull WordbookSnapshot book, @NotNull ProgressIndicator indicator) {
+        MappedWordStore words = (MappedWordStore) book.getWords();
+        LongOpenHashSet set = new LongOpenHashSet(words.size());
+        for (int i = 0; i < words.size(); i++) {
+            if ((i & (CANCEL_CHECK_INTERVAL - 1)) == 0) {
+                indicator.checkCanceled();
+            }
+            set.add(fingerprint(words.getWord(i)));
+        }
+        return set;
+    }
+
+    /**
+     * FNV-1a over the trimmed, lower-cased headword.
+     */
+    static long fingerprint(@NotNull String word) {
+        String key = word.trim().toLowerCase(Locale.ROOT);
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static void addParts(Set<String> parts, String translation) {
+        for (String part : translation.split("; ")) {
+            if (!part.isBlank()) {
+                parts.add(part.trim());
+            }
+        }
+    }
+
+    private static String displayName(WordbookSnapshot book) {
+        String name = book.getFile().getFileName().toString();
+        return name.toLowerCase(Locale.ROOT).endsWith(".json") ? name.substring(0, name.length() - 5) : name;
+    }
+}
@@ -0,0 +1,259 @@
+package com.honsin.aiword.service;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+/**
+ * Streaming parser for wordbook JSON ({@code [{"word": "...", "translations": [{"translation": "...", "type": "..."}]}]}).
+ * <p>
+ * Entries are handed out one by one while the input is read, so the file never has to be in memory
+ * as a whole, and input that is not a wordbook (an HTML error page, other JSON) is rejected within
+ * the first bytes or entries instead of after the whole download.
+ */
+public final class WordbookParser {
+
+    private static final Logger LOG = Logger.getInstance(WordbookParser.class);
+    // If none of the first entries has a word and a translation, this is some other JSON
+    private static final int SCHEMA_PROBE_ENTRIES = 64;
+    // Fields kept for the detail hint (see ExtendedEntryStore); everything else is skipped
+    static final Set<String> EXTENDED_FIELDS = Set.of("phonetic", "usphone", "ukphone", "phrases", "sentences", "examples", "roots");
+
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(@NotNull String word, @NotNull String translation) throws IOException;
+    }
+
+    /**
+     * Also gets the entry's {@link #EXTENDED_FIELDS}, or null if it has none.
+     */
+    @FunctionalInterface
+    public interface DetailedEntryConsumer {
+        void accept(@NotNull String word, @NotNull String translation, @Nullable JsonObject extended) throws IOException;
+    }
+
+    private WordbookParser() {
+    }
+
+    /**
+     * @param sourceName only used in messages.
+     * @return number of entries passed to the consumer.
+     * @throws WordbookFormatException if the input is not a wordbook.
+     */
+    public static int parse(@NotNull InputStream input, @NotNull String sourceName, @NotNull EntryConsumer consumer) throws IOException {
+        return parse(input, sourceName, (word, translation, extended) -> consumer.accept(word, translation), false);
+    }
+
+    /**
+     * Like {@link #parse}, but also reads the extended fields (phonetics, examples, ...) of every entry.
+     */
+    public static int parseDetailed(@NotNull InputStream input, @NotNull String sourceName, @NotNull DetailedEntryConsumer consumer) throws IOException {
+        return parse(input, sourceName, consumer, true);
+    }
+
+    private static int parse(InputStream input, String sourceName, DetailedEntryConsumer consumer, boolean keepExtended) throws IOException {
+        InputStream in = input.markSupported() ? input : new BufferedInputStream(input);
+        checkLooksLikeJsonArray(in, sourceName);
+
+        JsonReader reader = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        int accepted = 0;
+        int seen = 0;
+        try {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                    throw new WordbookFormatException("单词本条目必须是对象 (Wordbook entries must be objects): "
+                            + sourceName + " #" + seen);
+                }
+                String word = null;
+                String translation = "";
+                JsonObject extended = null;
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String name = reader.nextName();
+                    if ("word".equals(name) && reader.peek() == JsonToken.STRING) {
+                        word = reader.nextString().trim();
+                    } else if ("translations".equals(name) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                        translation = readTranslations(reader);
+                    } else if (keepExtended && EXTENDED_FIELDS.contains(name)) {
+                        if (extended == null) {
+                            extended = new JsonObject();
+                        }
+                        extended.add(name, JsonParser.parseReader(reader));
+                    } else {
+                        reader.skipValue(); // Not used here
+                    }
+                }
+                reader.endObject();
+                seen++;
+
+                if (word == null || word.isEmpty()) {
+                    LOG.warn("Skipping entry in file " + sourceName + ": Missing or empty 'word' field in JSON object within the array.");
+                } else if (translation.isEmpty()) {
+                    LOG.warn("Skipping word '" + word + "' from file " + sourceName + ": No valid translations found in JSON object.");
+                } else {
+                    consumer.accept(word, translation, extended);
+                    accepted++;
+                }
+                if (accepted == 0 && seen >= SCHEMA_PROBE_ENTRIES) {
+                    throw new WordbookFormatException("前 " + seen + " 个条目都没有 word/translations，不是单词本 (No word/translations in the first "
+                            + seen + " entries, not a wordbook): " + sourceName);
+                }
+            }
+            reader.endArray();
+            if (reader.peek() != JsonToken.END_DOCUMENT) {
+                throw new WordbookFormatException("单词本数组之后还有多余内容 (Unexpected data after the wordbook array): " + sourceName);
+            }
+        } catch (MalformedJsonException | IllegalStateException | JsonParseException e) {
+            throw new WordbookFormatException("单词本 JSON 格式错误 (Malformed wordbook JSON) " + sourceName + ": " + e.getMessage(), e);
+        } catch (EOFException e) {
+            throw new WordbookFormatException("单词本不完整 (Wordbook is truncated): " + sourceName, e);
+        }
+        return accepted;
+    }
+
+    /**
+     * Combines translations into the display format, e.g. "n. 能力，能耐；才能; v. 使能够".
+     */
+    private static String readTranslations(JsonReader reader) throws IOException {
+        StringBuilder combined = new StringBuilder();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                reader.skipValue();
+                continue;
+            }
+            String translation = null;
+            String type = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if ("translation".equals(name) && reader.peek() == JsonToken.STRING) {
+                    translation = reader.nextString().trim();
+                } else if ("type".equals(name) && reader.peek() == JsonToken.STRING) {
+                    type = reader.nextString().trim();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            if (translation == null || translation.isEmpty()) {
+                continue;
+            }
+            if (combined.length() > 0) {
+                combined.append("; ");
+            }
+            if (type != null && !type.isEmpty()) {
+                combined.append(type).append(". ");
+            }
+            combined.append(translation);
+        }
+        reader.endArray();
+        return combined.toString();
+    }
+
+    /**
+     * Same as {@link #readTranslations} for an entry that is already a JSON tree (used for deltas).
+     */
+    @NotNull
+    static String combineTranslations(@Nullable JsonElement translations) {
+        if (translations == null || !translations.isJsonArray()) {
+            return "";
+        }
+        StringBuilder combined = new StringBuilder();
+        for (JsonElement item : translations.getAsJsonArray()) {
+            if (!item.isJsonObject()) {
+                continue;
+            }
+            String translation = stringMember(item.getAsJsonObject(), "translation");
+            String type = stringMember(item.getAsJsonObject(), "type");
+            if (translation == null || translation.isEmpty()) {
+                continue;
+            }
+            if (combined.length() > 0) {
+                combined.append("; ");
+            }
+            if (type != null && !type.isEmpty()) {
+                combined.append(type).append(". ");
+            }
+            combined.append(translation);
+        }
+        return combined.toString();
+    }
+
+    /**
+     * The {@link #EXTENDED_FIELDS} of an entry that is already a JSON tree, or null if it has none.
+     */
+    @Nullable
+    static JsonObject extendedMembers(@NotNull JsonObject entry) {
+        JsonObject extended = null;
+        for (String name : entry.keySet()) {
+            if (EXTENDED_FIELDS.contains(name)) {
+                if (extended == null) {
+                    extended = new JsonObject();
+                }
+                extended.add(name, entry.get(name));
+            }
+        }
+        return extended;
+    }
+
+    /**
+     * The trimmed string value of {@code name}, or null if it is missing or not a string.
+     */
+    @Nullable
+    static String stringMember(@NotNull JsonObject object, @NotNull String name) {
+        JsonElement value = object.get(name);
+        return value != null && value.isJsonPrimitive() && value.getAsJsonPrimitive().isString()
+                ? value.getAsString().trim() : null;
+    }
+
+    /**
+     * Looks at the first non-blank byte (after an optional BOM) so that an HTML page or plain text is
+     * rejected before anything else is read.
+     */
+    private static void checkLooksLikeJsonArray(InputStream in, String sourceName) throws IOException {
+        in.mark(1024);
+        int b;
+        int read = 0;
+        do {
+            b = in.read();
+            read++;
+        } while (b != -1 && read < 1024 && (Character.isWhitespace(b) || b == 0xEF || b == 0xBB || b == 0xBF));
+        if (b == '[') {
+            in.reset();
+            skipBom(in);
+            return;
+        }
+        if (b == -1) {
+            throw new WordbookFormatException("单词本为空 (Wordbook is empty): " + sourceName);
+        }
+        if (b == '<') {
+            throw new WordbookFormatException("收到的是网页而不是单词本，请检查下载地址 (Received an HTML page instead of a wordbook, check the URL): " + sourceName);
+        }
+        throw new WordbookFormatException("不是单词本 JSON 数组 (Not a wordbook JSON array): " + sourceName);
+    }
+
+    private static void skipBom(InputStream in) throws IOException {
+        in.mark(3);
+        if (in.read() == 0xEF && in.read() == 0xBB && in.read() == 0xBF) {
+            return;
+        }
+        in.reset();
+    }
+}
@@ -1,42 +1,48 @@
 package com.honsin.aiword.service;
 
 
-import com.google.gson.Gson;
-import com.google.gson.JsonSyntaxException;
 import com.honsin.aiword.model.WordEntry;
+import com.honsin.aiword.settings.WordMemorizerSettingsState;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.components.Service;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.util.text.StringUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.stream.Collectors;
-
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Loads wordbooks for all open projects. Each book is loaded once into a shared {@link WordbookSnapshot};
+ * loading or updating one book never waits for another.
+ */
 @Service(Service.Level.APP)
 public final class WordbookService {
 
-    private List<WordEntry> currentlyLoadedWords = new ArrayList<>();
-
     private static final Logger LOG = Logger.getInstance(WordbookService.class);
-    private static final Gson gson = new Gson(); // Create Gson instance
-
-    private static class JsonWordStructure {
-        String word;
-        List<TranslationItem> translations;
-
-    }
-
-    private static class TranslationItem {
-        String translation;
-        String type;
-
-    }
 
+    // Published snapshot per book (absolute, normalized path); swapped atomically when the book changes
+    private final Map<Path, AtomicReference<WordbookSnapshot>> snapshots = new ConcurrentHashMap<>();
+    // Loading/compiling/patching one book is serialized, different books are not
+    private final Map<Path, ReentrantLock> bookLocks = new ConcurrentHashMap<>();
+    private volatile FrequencyTable frequencyTable; // Loaded on first use
 
     // Get service instance
     public static WordbookService getInstance() {
@@ -47,117 +53,239 @@ public final class WordbookService {
         // Initial load can be done here or explicitly called
     }
 
-    public synchronized List<WordEntry> loadWordsFromFile(Path specificFilePath) throws IOException {
-        if (!Files.exists(specificFilePath) || !Files.isReadable(specificFilePath)) {
-            throw new IOException("单词本文件不存在或无法读取: " + specificFilePath);
-        }
-
-        this.currentlyLoadedWords = loadJsonFile(specificFilePath);
-
-        System.out.println("Successfully loaded " + this.currentlyLoadedWords.size() + " words from " + specificFilePath.getFileName());
-
-        return new ArrayList<>(this.currentlyLoadedWords); // Return a copy
+    /**
+     * Returns the shared snapshot of a wordbook, loading it if no one uses it yet (or the file changed since).
+     * The caller must {@link WordbookSnapshot#release() release} it when done.
+     */
+    @NotNull
+    public WordbookSnapshot acquire(@NotNull Path specificFilePath) throws IOException {
+        return acquire(specificFilePath, new EmptyProgressIndicator());
     }
 
     /**
-     * Loads a single word entry from a JSON file.
+     * Same as {@link #acquire(Path)}, but a parse for it stops when {@code indicator} is cancelled.
      *
-     * @param filePath Path to the .json file.
+     * @throws ProcessCanceledException if {@code indicator} was cancelled; nothing is acquired then.
      */
-    private List<WordEntry> loadJsonFile(Path filePath) {
-        List<WordEntry> allWords = new ArrayList<>(8000);
-        LOG.debug("Attempting to load JSON file (expecting array): " + filePath);
-        try {
-            // Read the entire file content as a String
-            String jsonContent = Files.readString(filePath, StandardCharsets.UTF_8);
+    @NotNull
+    public WordbookSnapshot acquire(@NotNull Path specificFilePath, @NotNull ProgressIndicator indicator) throws IOException {
+        Path key = specificFilePath.toAbsolutePath().normalize();
+        AtomicReference<WordbookSnapshot> published = snapshots.computeIfAbsent(key, k -> new AtomicReference<>());
+        WordbookSnapshot snapshot = retainIfCurrent(published.get());
+        if (snapshot != null) {
+            return snapshot;
+        }
 
-            // Use TypeToken to tell Gson to parse into a List<JsonWordStructure>
-            java.lang.reflect.Type listType = new com.google.gson.reflect.TypeToken<ArrayList<JsonWordStructure>>() {
-            }.getType();
-            List<JsonWordStructure> parsedWords = gson.fromJson(jsonContent, listType);
+        ReentrantLock lock = lockFor(key);
+        lock.lock();
+        try {
+            indicator.checkCanceled(); // Superseded while waiting for another load of this book
+            // Someone else may have loaded it while we waited
+            snapshot = retainIfCurrent(published.get());
+            if (snapshot != null) {
+                return snapshot;
+            }
+            if (!Files.exists(key) || !Files.isReadable(key)) {
+                throw new IOException("单词本文件不存在或无法读取: " + key);
+            }
+            snapshot = new WordbookSnapshot(key, loadCompiled(key, indicator), this);
+            published.set(snapshot);
+        } finally {
+            lock.unlock();
+        }
+        System.out.println("Successfully loaded " + snapshot.getWords().size() + " words from " + key.getFileName());
+        return snapshot;
+    }
 
-            if (parsedWords == null || parsedWords.isEmpty()) {
-                LOG.warn("Skipping file " + filePath.getFileName() + ": JSON array is null or empty.");
-                return allWords;
+    /**
+     * Every wordbook currently loaded by someone (e.g. shown in a tool window), without loading anything.
+     * The caller must release each of them.
+     */
+    @NotNull
+    public List<WordbookSnapshot> acquireLoaded() {
+        List<WordbookSnapshot> loaded = new ArrayList<>();
+        for (AtomicReference<WordbookSnapshot> published : snapshots.values()) {
+            WordbookSnapshot snapshot = published.get();
+            if (snapshot != null && snapshot.tryRetain()) {
+                loaded.add(snapshot);
             }
+        }
+        return loaded;
+    }
 
-            int loadedInFile = 0;
-            // Iterate through each word object parsed from the array
-            for (JsonWordStructure parsedWord : parsedWords) {
-                // Validate parsed data for each word object
-                if (parsedWord == null || parsedWord.word == null || parsedWord.word.trim().isEmpty()) {
-                    LOG.warn("Skipping entry in file " + filePath.getFileName() + ": Missing or empty 'word' field in JSON object within the array.");
-                    continue; // Skip this entry, process the next one
-                }
+    @Nullable
+    private static WordbookSnapshot retainIfCurrent(@Nullable WordbookSnapshot snapshot) {
+        if (snapshot == null || !snapshot.isCurrent() || !snapshot.tryRetain()) {
+            return null;
+        }
+        return snapshot;
+    }
 
-                String word = parsedWord.word.trim();
-                String combinedTranslation = combineTranslations(parsedWord.translations);
+    /**
+     * Called when the last user released {@code snapshot}: drop it unless a newer one was published meanwhile.
+     */
+    void forget(@NotNull WordbookSnapshot snapshot) {
+        AtomicReference<WordbookSnapshot> published = snapshots.get(snapshot.getFile());
+        if (published != null && published.compareAndSet(snapshot, null)) {
+            LOG.debug("Released wordbook " + snapshot.getFile().getFileName());
+        }
+    }
 
-                if (combinedTranslation.isEmpty()) {
-                    LOG.warn("Skipping word '" + word + "' from file " + filePath.getFileName() + ": No valid translations found in JSON object.");
-                    continue; // Skip this entry
+    /**
+     * The word frequency table of the settings, or the bundled one if none is set (or it cannot be read).
+     */
+    @NotNull
+    public FrequencyTable getFrequencyTable() {
+        FrequencyTable table = frequencyTable;
+        if (table == null) {
+            synchronized (this) {
+                table = frequencyTable;
+                if (table == null) {
+                    frequencyTable = table = loadFrequencyTable();
                 }
-
-                // Create and add the WordEntry
-                allWords.add(new WordEntry(word, combinedTranslation));
-                loadedInFile++;
             }
-            LOG.debug("Successfully loaded " + loadedInFile + " words from " + filePath.getFileName());
+        }
+        return table;
+    }
+
+    /**
+     * Forgets the frequency table after the setting changed; books loaded from now on are ranked by the new one.
+     */
+    public synchronized void reloadFrequencyTable() {
+        frequencyTable = null;
+    }
 
+    private static FrequencyTable loadFrequencyTable() {
+        String file = WordMemorizerSettingsState.getInstance().getFrequencyFile();
+        if (!StringUtil.isEmptyOrSpaces(file)) {
+            try {
+                FrequencyTable table = FrequencyTable.read(Paths.get(file));
+                LOG.info("Loaded frequency table " + file + " (" + table.size() + " words)");
+                return table;
+            } catch (IOException | RuntimeException e) {
+                LOG.warn("Cannot read frequency table " + file + ", using the bundled one", e);
+            }
+        }
+        try {
+            return FrequencyTable.bundled();
         } catch (IOException e) {
-            LOG.error("Error reading JSON file: " + filePath, e);
-        } catch (JsonSyntaxException e) {
-            // This error might now indicate the file doesn't contain a valid JSON array
-            // or objects within the array are malformed.
-            LOG.error("Error parsing JSON file (expected an array of objects): " + filePath + ". Details: " + e.getMessage(), e);
-        } catch (Exception e) { // Catch unexpected errors during processing
-            LOG.error("Unexpected error processing file: " + filePath, e);
+            throw new IllegalStateException("Bundled frequency table is missing", e);
         }
-        return allWords;
+    }
+
+    private ReentrantLock lockFor(Path key) {
+        return bookLocks.computeIfAbsent(key, k -> new ReentrantLock());
     }
 
     /**
-     * Combines translations from the parsed JSON structure into the desired format.
-     * Example: "n. 能力，能耐；才能; v. 使能够"
+     * The lock that serializes loading, compiling and patching {@code book}; whoever writes its compiled
+     * cache outside this service (e.g. {@link CompilingDownloadSink}) must hold it meanwhile.
+     */
+    @NotNull
+    ReentrantLock compileLock(@NotNull Path book) {
+        return lockFor(book.toAbsolutePath().normalize());
+    }
+
+    /**
+     * Returns the compiled form of a wordbook, compiling it with the streaming parser if there is no
+     * up-to-date cache (a book downloaded by the plugin is usually compiled during the download already).
      *
-     * @param translationItems List of TranslationItem objects.
-     * @return A combined string representation of translations, or empty string if none are valid.
+     * @param filePath Path to the .json file.
      */
-    private String combineTranslations(List<TranslationItem> translationItems) {
-        if (translationItems == null || translationItems.isEmpty()) {
-            return "";
+    CompiledWordbook loadCompiled(Path filePath) throws IOException {
+        return loadCompiled(filePath, new EmptyProgressIndicator());
+    }
+
+    private CompiledWordbook loadCompiled(Path filePath, ProgressIndicator indicator) throws IOException {
+        ReentrantLock lock = lockFor(filePath.toAbsolutePath().normalize());
+        lock.lock(); // Two compiles of one book would share temp files
+        try {
+            CompiledWordbook compiled = CompiledWordbook.openIfUpToDate(filePath);
+            if (compiled != null) {
+                LOG.debug("Using compiled wordbook cache for " + filePath.getFileName());
+                return compiled;
+            }
+            LOG.debug("Compiling wordbook " + filePath);
+            compiled = CompiledWordbook.compile(filePath, indicator);
+            LOG.debug("Successfully compiled " + compiled.size() + " words from " + filePath.getFileName());
+            return compiled;
+        } finally {
+            lock.unlock();
         }
+    }
 
-        // Use Stream API for a concise way to format and join
-        return translationItems.stream()
-                .filter(item -> item != null && item.translation != null && !item.translation.trim().isEmpty()) // Filter out invalid items
-                .map(item -> {
-                    String type = (item.type != null && !item.type.trim().isEmpty()) ? item.type.trim() + ". " : ""; // Add type prefix if available
-                    return type + item.translation.trim();
-                })
-                .collect(Collectors.joining("; ")); // Join with semicolon and space
 
+    /**
+     * Updates {@code book} with a downloaded delta. The compiled cache is patched by index instead of
+     * re-parsing the book.
+     *
+     * @throws WordbookDelta.MismatchException if the delta was made for another version of the book.
+     */
+    public CompiledWordbook applyDelta(Path book, Path deltaFile) throws IOException {
+        WordbookDelta delta = WordbookDelta.read(deltaFile);
+        Path key = book.toAbsolutePath().normalize();
+        CompiledWordbook compiled;
+        ReentrantLock lock = lockFor(key);
+        lock.lock();
+        try {
+            compiled = delta.applyTo(book, loadCompiled(book));
+            // Current users keep their snapshot of the old version; the next acquire loads the new one
+            AtomicReference<WordbookSnapshot> published = snapshots.get(key);
+            if (published != null) {
+                published.set(null);
+            }
+        } finally {
+            lock.unlock();
+        }
+        LOG.info("Applied delta with " + delta.size() + " changes to " + book.getFileName() + " (" + compiled.size() + " words)");
+        return compiled;
     }
 
 
     /**
      * Gets a specified number of random words from the loaded list.
-     * (This method remains the same)
      *
      * @param count Number of words to get.
      * @return A list of random WordEntry objects, or an empty list if no words are loaded.
      */
     public List<WordEntry> getRandomWords(int count, List<WordEntry> allLoadedWords) {
-        if (count <= 0) {
+        if (count <= 0 || allLoadedWords.isEmpty()) {
             return Collections.emptyList();
         }
 
-        List<WordEntry> shuffled = new ArrayList<>(allLoadedWords);
-        Collections.shuffle(shuffled);
-
-        int actualCount = Math.min(count, shuffled.size());
-        return shuffled.subList(0, actualCount);
+        // Pick distinct indices (Floyd's algorithm) instead of shuffling a copy of the whole book
+        int size = allLoadedWords.size();
+        int actualCount = Math.min(count, size);
+        Random random = ThreadLocalRandom.current();
+        Set<Integer> picked = new LinkedHashSet<>(actualCount * 2);
+        for (int j = size - actualCount; j < size; j++) {
+            int candidate = random.nextInt(j + 1);
+            picked.add(picked.contains(candidate) ? j : candidate);
+        }
+        List<WordEntry> result = new ArrayList<>(actualCount);
+        for (int index : picked) {
+            result.add(allLoadedWords.get(index));
+        }
+        Collections.shuffle(result, random);
+        return result;
     }
 
-
-}
\ No newline at end of file
+    /**
+     * Random words of {@code book} by {@code weighting}, never one marked as known. Drawing is O(count): the
+     * book is neither scanned nor shuffled (its sampler is built once, on the first draw).
+     */
+    public List<WordEntry> getRandomWords(int count, WordbookSnapshot book, WordSampler.Weighting weighting) {
+        if (weighting == WordSampler.Weighting.UNIFORM && KnownWords.getInstance().getIndex().isEmpty()) {
+            return getRandomWords(count, book.getWords()); // Nothing to skip, no table needed
+        }
+        if (count <= 0 || book.getWords().isEmpty()) {
+            return Collections.emptyList();
+        }
+        int[] picked = book.getSampler(weighting).draw(count, ThreadLocalRandom.current());
+        List<WordEntry> result = new ArrayList<>(picked.length);
+        for (int index : picked) {
+            result.add(book.getWords().get(index)); // Already in random order
+        }
+        return result;
+    }
+}
@@ -0,0 +1,261 @@
+package com.honsin.aiword.service;
+
+import com.honsin.aiword.model.ExtendedEntry;
+import com.honsin.aiword.model.WordEntry;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One loaded version of a wordbook, shared by every tool window (and task) that uses it.
+ * <p>
+ * Obtained with {@link WordbookService#acquire(Path)} and given back with {@link #release()}; once the
+ * last user released it, the service forgets it and the mapped file can be unmapped. The content never
+ * changes: an updated book is a new snapshot, while users of the old one keep reading the old content.
+ */
+public final class WordbookSnapshot {
+
+    private final Path file;
+    private final MappedWordStore words;
+    private final AtomicInteger references = new AtomicInteger(1);
+    private final WordbookService owner;
+    // One lock per index: a slow build (e.g. the phonetic index in the background) must not hold up a quick one
+    private final Object lookupLock = new Object();
+    private final Object inflectionLock = new Object();
+    private final Object phoneticLock = new Object();
+    private final Object ranksLock = new Object();
+    private volatile WordLookupIndex lookupIndex;
+    private volatile InflectionIndex inflectionIndex;
+    private volatile PhoneticIndex phoneticIndex;
+    private volatile RankedBy frequencyRanks;
+    private volatile KnownMask knownMask;
+    private ExtendedEntryStore extended; // Guarded by this; null if the book has no extended fields
+    private boolean extendedOpened;      // Guarded by this
+    private final Map<WordSampler.Weighting, WordSampler> samplers = new EnumMap<>(WordSampler.Weighting.class); // Guarded by itself
+
+    /**
+     * Ranks and the table they were computed with.
+     */
+    private static final class RankedBy {
+        final FrequencyTable table;
+        final int[] ranks;
+
+        RankedBy(FrequencyTable table, int[] ranks) {
+            this.table = table;
+            this.ranks = ranks;
+        }
+    }
+
+    /**
+     * Known entries and the known words they were found with.
+     */
+    private static final class KnownMask {
+        final KnownWords.Index known;
+        final BitSet mask;
+
+        KnownMask(KnownWords.Index known, BitSet mask) {
+            this.known = known;
+            this.mask = mask;
+        }
+    }
+
+    WordbookSnapshot(@NotNull Path file, @NotNull CompiledWordbook compiled, @NotNull WordbookService owner) {
+        this.file = file;
+        this.words = new MappedWordStore(compiled);
+        this.owner = owner;
+    }
+
+    /**
+     * The wordbook file (absolute, normalized).
+     */
+    @NotNull
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Read-only, decoded on access; valid until {@link #release()}.
+     */
+    @NotNull
+    public List<WordEntry> getWords() {
+        return words;
+    }
+
+    /**
+     * Headword lookup, built on first use (the load coordinator builds it right after loading).
+     */
+    @NotNull
+    public WordLookupIndex getLookupIndex() {
+        WordLookupIndex index = lookupIndex;
+        if (index == null) {
+            synchronized (lookupLock) {
+                index = lookupIndex;
+                if (index == null) {
+                    lookupIndex = index = new WordLookupIndex(words);
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Inflected form lookup, built on first use (the load coordinator builds it right after loading).
+     */
+    @NotNull
+    public InflectionIndex getInflectionIndex() {
+        InflectionIndex index = inflectionIndex;
+        if (index == null) {
+            synchronized (inflectionLock) {
+                index = inflectionIndex;
+                if (index == null) {
+                    inflectionIndex = index = new InflectionIndex(words);
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Sound-alike lookup, built on first use (the load coordinator builds it right after loading).
+     */
+    @NotNull
+    public PhoneticIndex getPhoneticIndex() {
+        PhoneticIndex index = phoneticIndex;
+        if (index == null) {
+            synchronized (phoneticLock) {
+                index = phoneticIndex;
+                if (index == null) {
+                    phoneticIndex = index = new PhoneticIndex(words);
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Index of the entry for {@code word}: its headword, else the headword it is an inflected form of
+     * ("abilities", "went"), else the first stem candidate found; -1 if none.
+     */
+    public int findLemma(@NotNull String word) {
+        String trimmed = word.trim();
+        int index = getLookupIndex().find(trimmed);
+        if (index < 0) {
+            index = getInflectionIndex().find(trimmed);
+        }
+        if (index < 0) {
+            for (String candidate : WordForms.stemCandidates(trimmed)) {
+                index = getLookupIndex().find(candidate);
+                if (index >= 0) break;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Frequency rank of every word by index (see {@link FrequencyTable#rankAll}), joined with the service's
+     * frequency table on first use and again only when that table changes.
+     */
+    @NotNull
+    public int[] getFrequencyRanks() {
+        FrequencyTable table = owner.getFrequencyTable();
+        RankedBy ranked = frequencyRanks;
+        if (ranked == null || ranked.table != table) {
+            synchronized (ranksLock) {
+                ranked = frequencyRanks;
+                if (ranked == null || ranked.table != table) {
+                    frequencyRanks = ranked = new RankedBy(table, table.rankAll(words));
+                }
+            }
+        }
+        return ranked.ranks;
+    }
+
+    /**
+     * Phonetics, examples, phrases and roots of entry {@code index}, or null if the book has none for it.
+     * Read from the side file when asked for; the side file is opened on the first call.
+     */
+    @Nullable
+    public ExtendedEntry getExtendedEntry(int index) {
+        ExtendedEntryStore store;
+        synchronized (this) {
+            if (!extendedOpened) {
+                extended = ExtendedEntryStore.openFor(words.getCompiled());
+                extendedOpened = true;
+            }
+            store = extended;
+        }
+        return store != null ? store.get(index) : null;
+    }
+
+    /**
+     * Indices of the entries whose headword is in {@code known}; recomputed only when the known words change.
+     */
+    @NotNull
+    public BitSet getKnownMask(@NotNull KnownWords.Index known) {
+        KnownMask current = knownMask;
+        if (current == null || current.known != known) {
+            BitSet mask = new BitSet(words.size());
+            if (!known.isEmpty()) {
+                for (int i = 0; i < words.size(); i++) {
+                    if (known.contains(words.getWord(i))) mask.set(i);
+                }
+            }
+            knownMask = current = new KnownMask(known, mask); // A race computes the same mask twice at worst
+        }
+        return current.mask;
+    }
+
+    /**
+     * The random word sampler of this book for {@code weighting}, made on first use.
+     */
+    @NotNull
+    public WordSampler getSampler(@NotNull WordSampler.Weighting weighting) {
+        synchronized (samplers) {
+            return samplers.computeIfAbsent(weighting, w -> new WordSampler(this, w));
+        }
+    }
+
+    @NotNull
+    public String getContentHash() {
+        return words.getCompiled().getContentHash();
+    }
+
+    /**
+     * Gives the snapshot back. Must be called exactly once per {@link WordbookService#acquire}.
+     */
+    public void release() {
+        int left = references.decrementAndGet();
+        if (left == 0) {
+            owner.forget(this);
+        } else if (left < 0) {
+            throw new IllegalStateException("Wordbook snapshot released too often: " + file);
+        }
+    }
+
+    /**
+     * Adds a reference unless the snapshot was already released by everyone (then it must not be revived).
+     */
+    boolean tryRetain() {
+        int current;
+        do {
+            current = references.get();
+            if (current <= 0) {
+                return false;
+            }
+        } while (!references.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    /**
+     * Whether the file on disk is still the version this snapshot was made from.
+     */
+    boolean isCurrent() {
+        return words.getCompiled().isUpToDate(file);
+    }
+}
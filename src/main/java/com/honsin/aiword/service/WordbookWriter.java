@@ -0,0 +1,102 @@
+package com.honsin.aiword.service;
+
+import com.google.gson.stream.JsonWriter;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Writes a wordbook in the JSON schema {@link WordbookParser} reads, entry by entry.
+ * <p>
+ * The file is written next to the target as {@code .part} and only replaces it on {@link #commit()};
+ * closing without commit deletes the partial file, so a failed or cancelled write never leaves a broken book.
+ */
+public final class WordbookWriter implements Closeable {
+
+    private final Path target;
+    private final Path partFile;
+    private final JsonWriter json;
+    private int count;
+    private boolean committed;
+
+    public WordbookWriter(@NotNull Path target) throws IOException {
+        this.target = target;
+        this.partFile = target.resolveSibling(target.getFileName() + ".part");
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        this.json = new JsonWriter(new OutputStreamWriter(Files.newOutputStream(partFile), StandardCharsets.UTF_8));
+        json.setIndent("  ");
+        json.beginArray();
+    }
+
+    /**
+     * @param translation in the display format, e.g. "n. 能力; vt. 使能够"; split back into typed translations.
+     */
+    public void add(@NotNull String word, @NotNull String translation) throws IOException {
+        beginEntry(word, translation);
+        json.endObject();
+    }
+
+    /**
+     * Same as {@link #add(String, String)}, with how often the word occurs (an extra field readers may ignore).
+     */
+    public void add(@NotNull String word, @NotNull String translation, long frequency) throws IOException {
+        beginEntry(word, translation);
+        json.name("frequency").value(frequency);
+        json.endObject();
+    }
+
+    private void beginEntry(String word, String translation) throws IOException {
+        json.beginObject();
+        json.name("word").value(word);
+        json.name("translations").beginArray();
+        for (String part : translation.split("; ")) {
+            if (part.isBlank()) continue;
+            int dot = part.indexOf(". ");
+            boolean typed = dot > 0 && dot <= 6 && part.substring(0, dot).chars().allMatch(Character::isLetter);
+            json.beginObject();
+            json.name("translation").value(typed ? part.substring(dot + 2).trim() : part.trim());
+            if (typed) {
+                json.name("type").value(part.substring(0, dot));
+            }
+            json.endObject();
+        }
+        json.endArray();
+        count++;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Finishes the file and moves it into place.
+     */
+    public void commit() throws IOException {
+        json.endArray();
+        json.close();
+        Files.move(partFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        committed = true;
+    }
+
+    @Override
+    public void close() {
+        if (committed) {
+            return;
+        }
+        try {
+            json.close();
+        } catch (IOException | IllegalStateException ignored) {
+            // Incomplete document; deleted below anyway
+        }
+        try {
+            Files.deleteIfExists(partFile);
+        } catch (IOException ignored) {
+        }
+    }
+}
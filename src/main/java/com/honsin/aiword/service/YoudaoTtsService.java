@@ -1,7 +1,7 @@
 package com.honsin.aiword.service;
 
 
-import com.google.gson.Gson;
+import com.honsin.aiword.service.tts.TtsRouter;
 import com.intellij.notification.NotificationGroupManager;
 import com.intellij.notification.NotificationType;
 import com.intellij.openapi.diagnostic.Logger;
@@ -15,16 +15,12 @@ import org.jetbrains.annotations.NotNull;
 import javax.sound.sampled.LineUnavailableException;
 import javax.sound.sampled.UnsupportedAudioFileException;
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
@@ -32,16 +28,11 @@ import java.util.UUID;
 public class YoudaoTtsService {
 
     private static final Logger LOG = Logger.getInstance(YoudaoTtsService.class);
-    private static final String TTS_URL = "https://dict.youdao.com/dictvoice?audio=%s&type=1";
     private static final String NOTIFICATION_GROUP_ID = "WordMemorizerNotifications";
 
-    private static final HttpClient httpClient = HttpClient.newBuilder()
-            .connectTimeout(Duration.ofSeconds(5))
-            .build();
-    private static final Gson gson = new Gson(); // For parsing JSON error responses
-
     /**
-     * Requests pronunciation from Youdao TTS API and plays it.
+     * Requests pronunciation and plays it. The audio comes from the fastest healthy
+     * {@link com.honsin.aiword.service.tts.TtsProvider} (Youdao, local audio pack, custom HTTP...).
      * Runs asynchronously in a background task.
      *
      * @param project Current project (can be null)
@@ -59,27 +50,47 @@ public class YoudaoTtsService {
                 indicator.setIndeterminate(true);
                 indicator.setText("正在请求 " + word + " 的发音 (Requesting pronunciation for " + word + ")...");
 
+                TtsRouter.TtsAudio audio;
                 try {
-//                    Map<String, String> params = buildRequestParams(word);
-                    HttpRequest request = buildHttpRequest(word);
-
-                    LOG.info("Sending TTS request for word: " + word);
-                    HttpResponse<InputStream> response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
-
-                    handleResponse(project, word, response);
-
-                } catch (Exception e) {
-                    LOG.error("Error during Youdao TTS request for word: " + word, e);
+                    audio = TtsRouter.getInstance().fetchAudio(word.trim());
+                } catch (IOException e) {
+                    LOG.warn("All TTS providers failed for word: " + word, e);
                     NotificationGroupManager.getInstance().getNotificationGroup(NOTIFICATION_GROUP_ID)
                             .createNotification("发音请求错误 (Pronunciation Request Error)",
                                     "请求 '" + word + "' 发音时出错 (Error requesting pronunciation for '" + word + "'): " + e.getMessage(),
                                     NotificationType.ERROR)
                             .notify(project);
+                    return;
+                }
+
+                if (audio == null) {
+                    NotificationGroupManager.getInstance().getNotificationGroup(NOTIFICATION_GROUP_ID)
+                            .createNotification("没有发音 (No Pronunciation)",
+                                    "没有找到 '" + word + "' 的发音 (No pronunciation found for '" + word + "')",
+                                    NotificationType.WARNING)
+                            .notify(project);
+                    return;
                 }
+
+                playAudio(project, word, audio);
             }
         });
     }
 
+    private void playAudio(Project project, String word, TtsRouter.TtsAudio audio) {
+        try (InputStream audioStream = new ByteArrayInputStream(audio.getData())) {
+            AudioPlayerUtil.playMp3Stream(audioStream);
+            LOG.info("Successfully played pronunciation for: " + word + " (via " + audio.getProviderId() + ")");
+        } catch (Exception e) {
+            LOG.error("Error playing audio stream for word: " + word, e);
+            NotificationGroupManager.getInstance().getNotificationGroup(NOTIFICATION_GROUP_ID)
+                    .createNotification("音频播放错误 (Audio Playback Error)",
+                            "无法播放 '" + word + "' 的发音 (Could not play pronunciation for '" + word + "'): " + e.getMessage(),
+                            NotificationType.ERROR)
+                    .notify(project);
+        }
+    }
+
     private Map<String, String> buildRequestParams(String word) throws NoSuchAlgorithmException {
 //        String appKey = YoudaoApiConfig.APP_KEY;
 //        String appSecret = YoudaoApiConfig.APP_SECRET;
@@ -106,69 +117,6 @@ public class YoudaoTtsService {
         return params;
     }
 
-    private HttpRequest buildHttpRequest(String word) {
-        String format = String.format(TTS_URL, word);
-        System.out.println("---> 请求:" + format);
-        return HttpRequest.newBuilder()
-                .uri(URI.create(format))
-                .GET()
-                .timeout(Duration.ofSeconds(10)) // Request timeout
-                .build();
-    }
-
-    private void handleResponse(Project project, String word, HttpResponse<InputStream> response) throws IOException {
-        int statusCode = response.statusCode();
-        String contentType = response.headers().firstValue("Content-Type").orElse("");
-
-        LOG.info("TTS response status code: " + statusCode + ", Content-Type: " + contentType);
-
-        if (statusCode == 200 && contentType.contains("audio/mpeg")) {
-            // Success - Play audio
-            try (InputStream audioStream = response.body()) {
-                AudioPlayerUtil.playMp3Stream(audioStream);
-                LOG.info("Successfully played pronunciation for: " + word);
-            } catch (Exception e) {
-                LOG.error("Error playing audio stream for word: " + word, e);
-                NotificationGroupManager.getInstance().getNotificationGroup(NOTIFICATION_GROUP_ID)
-                        .createNotification("音频播放错误 (Audio Playback Error)",
-                                "无法播放 '" + word + "' 的发音 (Could not play pronunciation for '" + word + "'): " + e.getMessage(),
-                                NotificationType.ERROR)
-                        .notify(project);
-            }
-        } else {
-            // Error - Try to read error message from body
-            String errorBody = "";
-            try (InputStream errorStream = response.body()) {
-                errorBody = new String(errorStream.readAllBytes(), StandardCharsets.UTF_8);
-            } catch (IOException ioEx) {
-                LOG.error("Could not read error response body", ioEx);
-            }
-
-            LOG.error("Youdao TTS API error for word '" + word + "'. Status: " + statusCode + ", Content-Type: " + contentType + ", Body: " + errorBody);
-
-            // Try to parse JSON error code if available
-            String errorMessage = "服务器返回错误 (Server returned error) " + statusCode + ".";
-            if (!errorBody.isEmpty()) {
-                try {
-                    Map<String, String> errorJson = gson.fromJson(errorBody, Map.class);
-                    if (errorJson != null && errorJson.containsKey("errorCode")) {
-                        errorMessage += " 有道错误码 (Youdao error code): " + errorJson.get("errorCode");
-                        // You can check Youdao documentation for specific error codes
-                    } else {
-                        errorMessage += " 响应体 (Response Body): " + errorBody.substring(0, Math.min(errorBody.length(), 100)); // Show part of body
-                    }
-                } catch (Exception jsonEx) {
-                    errorMessage += " 无法解析错误响应 (Could not parse error response).";
-                }
-            }
-
-            NotificationGroupManager.getInstance().getNotificationGroup(NOTIFICATION_GROUP_ID)
-                    .createNotification("发音API错误 (Pronunciation API Error)", errorMessage, NotificationType.ERROR)
-                    .notify(project);
-        }
-    }
-
-
     /**
      * Generates SHA-256 digest.
      */
@@ -0,0 +1,207 @@
+package com.honsin.aiword.service.tts;
+
+import com.intellij.util.io.ByteBufferUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Read-only, memory-mapped offline audio pack ({@code *.awpack}), one per wordbook.
+ * <pre>
+ * header : magic(int "AWPK") version(int) count(int) dataStart(long)
+ * index  : count x [keyLength(short) key(UTF-8, lower case) offset(long, relative to dataStart) length(int)]
+ *          sorted by key
+ * data   : concatenated MP3 clips
+ * </pre>
+ * The index is decoded once when the pack is opened; clips are copied straight out of the mapping,
+ * so nothing but the key table lives on the heap. {@link #close()} unmaps the file at once instead of
+ * whenever the buffer is collected, which matters on Windows, where a mapped file cannot be replaced.
+ */
+public final class AudioPack implements Closeable {
+
+    public static final String EXTENSION = ".awpack";
+    static final int MAGIC = 0x4157504B; // "AWPK"
+    static final int VERSION = 1;
+
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private final String[] keys;
+    private final long[] offsets;
+    private final int[] lengths;
+    private final long dataStart;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock(); // Reads hold it shared, close() exclusively
+    private boolean closed = false; // Guarded by lock
+
+    private AudioPack(Path path, MappedByteBuffer buffer, String[] keys, long[] offsets, int[] lengths, long dataStart) {
+        this.path = path;
+        this.buffer = buffer;
+        this.keys = keys;
+        this.offsets = offsets;
+        this.lengths = lengths;
+        this.dataStart = dataStart;
+    }
+
+    /**
+     * Maps and validates a pack file.
+     *
+     * @throws IOException if the file is not a valid pack (wrong magic/version, truncated index...)
+     */
+    @NotNull
+    public static AudioPack open(@NotNull Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < 20 || size > Integer.MAX_VALUE) {
+                throw new IOException("不是有效的音频包 (Not a valid audio pack): " + path.getFileName());
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            try {
+                if (buffer.getInt() != MAGIC) {
+                    throw new IOException("不是有效的音频包 (Not a valid audio pack): " + path.getFileName());
+                }
+                int version = buffer.getInt();
+                if (version != VERSION) {
+                    throw new IOException("不支持的音频包版本 (Unsupported audio pack version " + version + "): " + path.getFileName());
+                }
+                int count = buffer.getInt();
+                long dataStart = buffer.getLong();
+                if (count < 0 || dataStart > size) {
+                    throw new IOException("音频包头损坏 (Corrupted audio pack header): " + path.getFileName());
+                }
+
+                String[] keys = new String[count];
+                long[] offsets = new long[count];
+                int[] lengths = new int[count];
+                for (int i = 0; i < count; i++) {
+                    byte[] keyBytes = new byte[buffer.getShort() & 0xFFFF];
+                    buffer.get(keyBytes);
+                    keys[i] = new String(keyBytes, StandardCharsets.UTF_8);
+                    offsets[i] = buffer.getLong();
+                    lengths[i] = buffer.getInt();
+                    if (dataStart + offsets[i] + lengths[i] > size) {
+                        throw new IOException("音频包数据被截断 (Truncated audio pack): " + path.getFileName());
+                    }
+                }
+                return new AudioPack(path, buffer, keys, offsets, lengths, dataStart);
+            } catch (java.nio.BufferUnderflowException e) {
+                throw new IOException("音频包索引被截断 (Truncated audio pack index): " + path.getFileName(), e);
+            }
+        }
+    }
+
+    /**
+     * Writes a complete pack, copying the clips out of {@code source} (the export spool file).
+     *
+     * @param clips lower-cased word -> {offset, length} of the clip inside {@code source}, in sorted key order
+     */
+    static void write(@NotNull Path target, @NotNull SortedMap<String, long[]> clips, @NotNull FileChannel source) throws IOException {
+        long indexSize = 0;
+        for (String key : clips.keySet()) {
+            indexSize += 2 + key.getBytes(StandardCharsets.UTF_8).length + 8 + 4;
+        }
+
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate((int) (20 + indexSize));
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putInt(clips.size());
+            header.putLong(20 + indexSize);
+            long offset = 0;
+            for (Map.Entry<String, long[]> clip : clips.entrySet()) {
+                byte[] keyBytes = clip.getKey().getBytes(StandardCharsets.UTF_8);
+                header.putShort((short) keyBytes.length);
+                header.put(keyBytes);
+                header.putLong(offset);
+                header.putInt((int) clip.getValue()[1]);
+                offset += clip.getValue()[1];
+            }
+            header.flip();
+            while (header.hasRemaining()) {
+                out.write(header);
+            }
+
+            for (long[] clip : clips.values()) {
+                long position = clip[0];
+                long remaining = clip[1];
+                while (remaining > 0) {
+                    long copied = source.transferTo(position, remaining, out);
+                    if (copied <= 0) {
+                        throw new IOException("音频缓存文件被截断 (Audio spool file truncated)");
+                    }
+                    position += copied;
+                    remaining -= copied;
+                }
+            }
+            out.force(true);
+        }
+    }
+
+    /**
+     * @return the MP3 clip of {@code word}, or {@code null} if the word is not in the pack or the pack is closed.
+     */
+    @Nullable
+    public byte[] read(@NotNull String word) {
+        int i = Arrays.binarySearch(keys, normalizeKey(word));
+        if (i < 0) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            if (closed) {
+                return null;
+            }
+            byte[] clip = new byte[lengths[i]];
+            buffer.get((int) (dataStart + offsets[i]), clip); // Absolute get: safe to call from several threads
+            return clip;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean contains(@NotNull String word) {
+        return Arrays.binarySearch(keys, normalizeKey(word)) >= 0;
+    }
+
+    public int size() {
+        return keys.length;
+    }
+
+    @NotNull
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Unmaps the file once running reads are done; later reads find nothing.
+     */
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (!closed) {
+                closed = true;
+                ByteBufferUtil.cleanBuffer(buffer);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @NotNull
+    static String normalizeKey(@NotNull String word) {
+        return word.trim().toLowerCase(Locale.ROOT);
+    }
+}
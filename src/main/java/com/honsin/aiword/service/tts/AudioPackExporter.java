@@ -0,0 +1,234 @@
+package com.honsin.aiword.service.tts;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bulk-fetches audio for a whole wordbook and writes one {@link AudioPack}.
+ * <p>
+ * Fetched clips are appended to a spool file ({@code <pack>.part}) as they arrive, so a cancelled or
+ * crashed export resumes where it stopped. Words without audio are recorded with an empty clip and are
+ * not asked again; failed words are retried on the next run. Once every word is done the spool is
+ * compacted into the final pack and atomically moved into place.
+ */
+public final class AudioPackExporter {
+
+    private static final Logger LOG = Logger.getInstance(AudioPackExporter.class);
+    public static final int DEFAULT_CONCURRENCY = 4;
+    private static final String SPOOL_SUFFIX = ".part";
+
+    private final Path packFile;
+    private final Path spoolFile;
+    private final int concurrency;
+
+    /**
+     * Summary of one export run.
+     */
+    public static final class Result {
+        public final int total;
+        public final int packed;
+        public final int missing;
+        public final int failed;
+
+        Result(int total, int packed, int missing, int failed) {
+            this.total = total;
+            this.packed = packed;
+            this.missing = missing;
+            this.failed = failed;
+        }
+
+        public boolean isComplete() {
+            return failed == 0;
+        }
+    }
+
+    public AudioPackExporter(@NotNull Path packFile, int concurrency) {
+        this.packFile = packFile;
+        this.spoolFile = packFile.resolveSibling(packFile.getFileName() + SPOOL_SUFFIX);
+        this.concurrency = Math.max(1, concurrency);
+    }
+
+    /**
+     * Runs the export. Cancelling the indicator keeps the spool file so the next call resumes.
+     */
+    @NotNull
+    public Result export(@NotNull List<String> words, @NotNull ProgressIndicator indicator) throws IOException {
+        Files.createDirectories(packFile.getParent());
+
+        Set<String> wanted = new LinkedHashSet<>();
+        for (String word : words) {
+            String key = AudioPack.normalizeKey(word);
+            if (!key.isEmpty()) wanted.add(key);
+        }
+
+        int packed;
+        try (FileChannel spool = FileChannel.open(spoolFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            SortedMap<String, long[]> done = readSpool(spool);
+            List<String> todo = new ArrayList<>();
+            for (String key : wanted) {
+                if (!done.containsKey(key)) todo.add(key);
+            }
+            LOG.info("Audio pack export " + packFile.getFileName() + ": " + done.size() + " already spooled, " + todo.size() + " to fetch");
+
+            int failed = fetchAll(todo, spool, done.size(), wanted.size(), indicator);
+            if (failed > 0) {
+                // Keep the spool; the next run only retries the failed words
+                return summarize(wanted, readSpool(spool), failed);
+            }
+
+            indicator.setText("正在写入音频包 (Writing audio pack)...");
+            SortedMap<String, long[]> clips = new TreeMap<>();
+            readSpool(spool).forEach((key, clip) -> {
+                if (clip[1] > 0 && wanted.contains(key)) clips.put(key, clip);
+            });
+            Path tmp = packFile.resolveSibling(packFile.getFileName() + ".tmp");
+            AudioPack.write(tmp, clips, spool);
+            moveAtomically(tmp, packFile);
+            packed = clips.size();
+        }
+        Files.deleteIfExists(spoolFile);
+        return new Result(wanted.size(), packed, wanted.size() - packed, 0);
+    }
+
+    private int fetchAll(List<String> todo, FileChannel spool, int alreadyDone, int total, ProgressIndicator indicator) throws IOException {
+        if (todo.isEmpty()) {
+            return 0;
+        }
+        TtsRouter router = TtsRouter.getInstance();
+        List<TtsProvider> networkProviders = new ArrayList<>();
+        for (TtsProvider provider : TtsProvider.EP_NAME.getExtensionList()) {
+            if (!(provider instanceof LocalAudioPackTtsProvider)) networkProviders.add(provider);
+        }
+
+        AtomicInteger completed = new AtomicInteger(alreadyDone);
+        AtomicInteger failed = new AtomicInteger();
+        ExecutorService executor = AppExecutorUtil.createBoundedApplicationPoolExecutor("AiWord audio pack export", concurrency);
+        try {
+            List<Future<?>> futures = new ArrayList<>(todo.size());
+            for (String word : todo) {
+                futures.add(executor.submit(() -> {
+                    if (indicator.isCanceled()) return;
+                    try {
+                        TtsRouter.TtsAudio audio = router.fetchAudio(word, networkProviders);
+                        appendToSpool(spool, word, audio == null ? new byte[0] : audio.getData());
+                    } catch (IOException e) {
+                        failed.incrementAndGet();
+                        LOG.debug("Audio pack export: no audio for '" + word + "': " + e.getMessage());
+                    }
+                    int n = completed.incrementAndGet();
+                    indicator.setFraction((double) n / total);
+                    indicator.setText2(n + " / " + total + "  " + word);
+                }));
+            }
+            for (Future<?> future : futures) {
+                indicator.checkCanceled();
+                try {
+                    future.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new ProcessCanceledException(e);
+                } catch (java.util.concurrent.ExecutionException e) {
+                    throw new IOException("写入音频缓存失败 (Failed to write audio spool): " + e.getCause().getMessage(), e.getCause());
+                }
+            }
+        } finally {
+            // No shutdownNow(): interrupting a request in flight would count against its provider's health.
+            // Queued words see the cancelled indicator and return at once.
+            executor.shutdown();
+            try {
+                executor.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return failed.get();
+    }
+
+    private static void appendToSpool(FileChannel spool, String key, byte[] audio) throws IOException {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(2 + keyBytes.length + 4 + audio.length);
+        record.putShort((short) keyBytes.length).put(keyBytes).putInt(audio.length).put(audio).flip();
+        synchronized (spool) {
+            long position = spool.size();
+            while (record.hasRemaining()) {
+                position += spool.write(record, position);
+            }
+        }
+    }
+
+    /**
+     * Reads the spool index; a record cut off by a crash is truncated away.
+     *
+     * @return key -> {clip offset in spool, clip length}
+     */
+    private static SortedMap<String, long[]> readSpool(FileChannel spool) throws IOException {
+        SortedMap<String, long[]> index = new TreeMap<>();
+        long size = spool.size();
+        long position = 0;
+        ByteBuffer head = ByteBuffer.allocate(2);
+        while (position + 2 <= size) {
+            head.clear();
+            spool.read(head, position);
+            head.flip();
+            int keyLength = head.getShort() & 0xFFFF;
+            if (position + 2 + keyLength + 4 > size) break;
+            ByteBuffer keyAndLength = ByteBuffer.allocate(keyLength + 4);
+            spool.read(keyAndLength, position + 2);
+            keyAndLength.flip();
+            byte[] keyBytes = new byte[keyLength];
+            keyAndLength.get(keyBytes);
+            int clipLength = keyAndLength.getInt();
+            long clipStart = position + 2 + keyLength + 4;
+            if (clipLength < 0 || clipStart + clipLength > size) break;
+            index.put(new String(keyBytes, StandardCharsets.UTF_8), new long[]{clipStart, clipLength});
+            position = clipStart + clipLength;
+        }
+        if (position < size) {
+            LOG.warn("Truncating incomplete audio spool record at " + position + " (spool size " + size + ")");
+            spool.truncate(position);
+        }
+        return index;
+    }
+
+    private static Result summarize(Set<String> wanted, SortedMap<String, long[]> spooled, int failed) {
+        int packed = 0;
+        int missing = 0;
+        for (String key : wanted) {
+            long[] clip = spooled.get(key);
+            if (clip == null) continue;
+            if (clip[1] > 0) packed++;
+            else missing++;
+        }
+        return new Result(wanted.size(), packed, missing, failed);
+    }
+
+    static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (java.nio.file.AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
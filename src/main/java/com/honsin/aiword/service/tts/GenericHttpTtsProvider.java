@@ -0,0 +1,41 @@
+package com.honsin.aiword.service.tts;
+
+import com.honsin.aiword.settings.WordMemorizerSettingsState;
+import com.intellij.openapi.util.text.StringUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * User configured HTTP endpoint, e.g. a team mirror or {@code http://localhost:8000/{word}.mp3}.
+ * The template is set in Settings -> Tools -> AiWord Memorizer Settings; {@code {word}} is replaced
+ * with the URL-encoded word.
+ */
+public class GenericHttpTtsProvider extends HttpTtsProvider {
+
+    public static final String WORD_PLACEHOLDER = "{word}";
+
+    @Override
+    public @NotNull String getId() {
+        return "custom-http";
+    }
+
+    @Override
+    public @NotNull String getDisplayName() {
+        return "自定义发音服务 (Custom HTTP)";
+    }
+
+    @Override
+    public boolean isAvailable() {
+        String template = WordMemorizerSettingsState.getInstance().getCustomTtsUrlTemplate();
+        return !StringUtil.isEmptyOrSpaces(template) && template.contains(WORD_PLACEHOLDER);
+    }
+
+    @Override
+    protected @Nullable String buildUrl(@NotNull String encodedWord) {
+        String template = WordMemorizerSettingsState.getInstance().getCustomTtsUrlTemplate();
+        if (StringUtil.isEmptyOrSpaces(template)) {
+            return null;
+        }
+        return template.trim().replace(WORD_PLACEHOLDER, encodedWord);
+    }
+}
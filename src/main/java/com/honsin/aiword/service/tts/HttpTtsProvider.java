@@ -0,0 +1,99 @@
+package com.honsin.aiword.service.tts;
+
+import com.google.gson.Gson;
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Base class for providers that GET an MP3 from a URL built from the word.
+ */
+public abstract class HttpTtsProvider implements TtsProvider {
+
+    private static final Logger LOG = Logger.getInstance(HttpTtsProvider.class);
+
+    private static final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+    private static final Gson gson = new Gson(); // For parsing JSON error responses
+
+    /**
+     * Builds the request URL for a word. The word is already URL-encoded.
+     */
+    @Nullable
+    protected abstract String buildUrl(@NotNull String encodedWord);
+
+    @Override
+    @Nullable
+    public byte[] fetchAudio(@NotNull String word) throws IOException {
+        String url = buildUrl(URLEncoder.encode(word, StandardCharsets.UTF_8).replace("+", "%20"));
+        if (url == null) {
+            return null;
+        }
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(url))
+                .GET()
+                .timeout(Duration.ofSeconds(10)) // Request timeout
+                .build();
+
+        LOG.debug("Sending TTS request (" + getId() + "): " + url);
+        HttpResponse<InputStream> response;
+        try {
+            response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("请求被中断 (Request interrupted)", e);
+        }
+
+        int statusCode = response.statusCode();
+        String contentType = response.headers().firstValue("Content-Type").orElse("");
+        try (InputStream body = response.body()) {
+            if (statusCode == 200 && isAudio(contentType)) {
+                byte[] audio = body.readAllBytes();
+                if (audio.length == 0) {
+                    throw new IOException("服务器返回空音频 (Empty audio body)");
+                }
+                return audio;
+            }
+            if (statusCode == 404) {
+                return null; // The provider just doesn't know this word
+            }
+            String errorBody = new String(body.readNBytes(4096), StandardCharsets.UTF_8);
+            throw new IOException(describeError(statusCode, contentType, errorBody));
+        }
+    }
+
+    protected boolean isAudio(String contentType) {
+        return contentType.contains("audio/") || contentType.contains("application/octet-stream");
+    }
+
+    private String describeError(int statusCode, String contentType, String errorBody) {
+        // Try to parse JSON error code if available
+        String errorMessage = "服务器返回错误 (Server returned error) " + statusCode + ", Content-Type: " + contentType + ".";
+        if (!errorBody.isEmpty()) {
+            try {
+                Map<?, ?> errorJson = gson.fromJson(errorBody, Map.class);
+                if (errorJson != null && errorJson.containsKey("errorCode")) {
+                    errorMessage += " 错误码 (Error code): " + errorJson.get("errorCode");
+                } else {
+                    errorMessage += " 响应体 (Response Body): " + errorBody.substring(0, Math.min(errorBody.length(), 100)); // Show part of body
+                }
+            } catch (Exception jsonEx) {
+                errorMessage += " 响应体 (Response Body): " + errorBody.substring(0, Math.min(errorBody.length(), 100));
+            }
+        }
+        return errorMessage;
+    }
+}
@@ -0,0 +1,143 @@
+package com.honsin.aiword.service.tts;
+
+import com.honsin.aiword.settings.WordMemorizerSettingsState;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.text.StringUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Plays audio from the local audio directory ({@code <wordbook dir>/audio}): memory-mapped
+ * {@link AudioPack} files first, then loose {@code <word>.mp3} files. Works without any network.
+ */
+public class LocalAudioPackTtsProvider implements TtsProvider {
+
+    private static final Logger LOG = Logger.getInstance(LocalAudioPackTtsProvider.class);
+    public static final String AUDIO_DIRECTORY_NAME = "audio";
+
+    // Packs currently mapped, re-scanned when the audio directory changes
+    private volatile List<AudioPack> packs = List.of();
+    private volatile Path scannedDirectory;
+    private volatile FileTime scannedAt;
+
+    @Override
+    public @NotNull String getId() {
+        return "local-pack";
+    }
+
+    @Override
+    public @NotNull String getDisplayName() {
+        return "本地音频包 (Local audio pack)";
+    }
+
+    @Override
+    public boolean isAvailable() {
+        Path dir = getAudioDirectory();
+        return dir != null && Files.isDirectory(dir);
+    }
+
+    @Override
+    @Nullable
+    public byte[] fetchAudio(@NotNull String word) throws IOException {
+        Path dir = getAudioDirectory();
+        if (dir == null) {
+            return null;
+        }
+        for (AudioPack pack : getPacks(dir)) {
+            byte[] audio = pack.read(word); // Null if a re-scan closed it meanwhile; the next lookup has the new set
+            if (audio != null) {
+                return audio;
+            }
+        }
+        Path file = dir.resolve(toFileName(word));
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        return Files.readAllBytes(file);
+    }
+
+    private List<AudioPack> getPacks(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return List.of();
+        }
+        FileTime modified = Files.getLastModifiedTime(dir);
+        if (dir.equals(scannedDirectory) && modified.equals(scannedAt)) {
+            return packs;
+        }
+        synchronized (this) {
+            if (dir.equals(scannedDirectory) && modified.equals(scannedAt)) {
+                return packs;
+            }
+            List<AudioPack> opened = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + AudioPack.EXTENSION)) {
+                for (Path entry : stream) {
+                    try {
+                        opened.add(AudioPack.open(entry));
+                    } catch (IOException e) {
+                        LOG.warn("Skipping invalid audio pack " + entry + ": " + e.getMessage());
+                    }
+                }
+            }
+            List<AudioPack> replaced = packs;
+            packs = List.copyOf(opened);
+            scannedDirectory = dir;
+            scannedAt = modified;
+            closeAll(replaced);
+            return packs;
+        }
+    }
+
+    /**
+     * Drops the mapped packs so the next lookup re-scans the directory (after export / import).
+     */
+    public synchronized void invalidate() {
+        List<AudioPack> replaced = packs;
+        packs = List.of();
+        scannedDirectory = null;
+        scannedAt = null;
+        closeAll(replaced);
+    }
+
+    /**
+     * Unmaps packs that are no longer published, so their files can be replaced or deleted.
+     */
+    private static void closeAll(List<AudioPack> replaced) {
+        for (AudioPack pack : replaced) {
+            pack.close();
+        }
+    }
+
+    @Nullable
+    public static Path getAudioDirectory() {
+        String directoryPath = WordMemorizerSettingsState.getInstance().getWordbookDirectory();
+        if (StringUtil.isEmptyOrSpaces(directoryPath)) {
+            return null;
+        }
+        return Paths.get(directoryPath).resolve(AUDIO_DIRECTORY_NAME);
+    }
+
+    /**
+     * Maps a word to a safe file name; anything outside [a-z0-9-'] becomes '_'.
+     */
+    @NotNull
+    public static String toFileName(@NotNull String word) {
+        String lower = word.trim().toLowerCase(Locale.ROOT);
+        StringBuilder sb = new StringBuilder(lower.length() + 4);
+        for (int i = 0; i < lower.length(); i++) {
+            char c = lower.charAt(i);
+            boolean safe = (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '-' || c == '\'';
+            sb.append(safe ? c : '_');
+        }
+        return sb.append(".mp3").toString();
+    }
+}
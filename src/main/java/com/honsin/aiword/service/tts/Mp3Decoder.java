@@ -0,0 +1,82 @@
+package com.honsin.aiword.service.tts;
+
+import javazoom.jl.decoder.Bitstream;
+import javazoom.jl.decoder.Decoder;
+import javazoom.jl.decoder.Header;
+import javazoom.jl.decoder.JavaLayerException;
+import javazoom.jl.decoder.SampleBuffer;
+import org.jetbrains.annotations.NotNull;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Decodes a whole MP3 clip to 16-bit little-endian PCM with JLayer, so it can be written to an
+ * already open {@link javax.sound.sampled.SourceDataLine} instead of starting a new {@code Player}.
+ */
+public final class Mp3Decoder {
+
+    /**
+     * A decoded clip ready to be written to a line.
+     */
+    public static final class DecodedClip {
+        private final AudioFormat format;
+        private final byte[] pcm;
+
+        DecodedClip(AudioFormat format, byte[] pcm) {
+            this.format = format;
+            this.pcm = pcm;
+        }
+
+        @NotNull
+        public AudioFormat getFormat() {
+            return format;
+        }
+
+        @NotNull
+        public byte[] getPcm() {
+            return pcm;
+        }
+    }
+
+    private Mp3Decoder() {
+    }
+
+    @NotNull
+    public static DecodedClip decode(@NotNull byte[] mp3) throws IOException {
+        Bitstream bitstream = new Bitstream(new ByteArrayInputStream(mp3));
+        Decoder decoder = new Decoder();
+        ByteArrayOutputStream pcm = new ByteArrayOutputStream(mp3.length * 10);
+        int sampleRate = 0;
+        int channels = 0;
+        try {
+            Header header;
+            while ((header = bitstream.readFrame()) != null) {
+                SampleBuffer output = (SampleBuffer) decoder.decodeFrame(header, bitstream);
+                sampleRate = decoder.getOutputFrequency();
+                channels = decoder.getOutputChannels();
+                short[] samples = output.getBuffer();
+                int length = output.getBufferLength();
+                for (int i = 0; i < length; i++) {
+                    pcm.write(samples[i] & 0xFF);
+                    pcm.write((samples[i] >> 8) & 0xFF);
+                }
+                bitstream.closeFrame();
+            }
+        } catch (JavaLayerException e) {
+            throw new IOException("无法解码音频 (Could not decode audio): " + e.getMessage(), e);
+        } finally {
+            try {
+                bitstream.close();
+            } catch (JavaLayerException ignored) {
+            }
+        }
+        if (sampleRate == 0 || pcm.size() == 0) {
+            throw new IOException("音频为空或不是 MP3 (Audio is empty or not MP3)");
+        }
+        AudioFormat format = new AudioFormat(sampleRate, 16, channels, true, false);
+        return new DecodedClip(format, pcm.toByteArray());
+    }
+}
@@ -0,0 +1,289 @@
+package com.honsin.aiword.service.tts;
+
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Plays a list of words hands-free as a three stage pipeline:
+ * <pre>
+ * fetch (TtsRouter) -> decode (Mp3Decoder) -> play (one SourceDataLine)
+ * </pre>
+ * While word N plays, word N+1 is already fetched and decoded, so the only pause between words is
+ * the configured gap. All words share one open audio line instead of a new {@code Player} per word.
+ * <p>
+ * Listener callbacks come from the play thread; UI code must hop to the EDT itself.
+ */
+public final class SequentialPlayer {
+
+    private static final Logger LOG = Logger.getInstance(SequentialPlayer.class);
+    // How many clips each stage may run ahead of the next one
+    private static final int LOOKAHEAD = 2;
+    // Small line buffer so onWordStarted fires close to when the word is actually heard
+    private static final int LINE_BUFFER_MS = 100;
+    private static final int WRITE_CHUNK_BYTES = 4096;
+
+    public interface Listener {
+        void onWordStarted(int index, @NotNull String word);
+
+        void onWordFailed(int index, @NotNull String word, @NotNull String reason);
+
+        /**
+         * @param stopped true if {@link #stop()} ended playback before the last word.
+         */
+        void onFinished(boolean stopped);
+    }
+
+    private static final class Item {
+        static final Item END = new Item(-1, "", null, null, null);
+
+        final int index;
+        final String word;
+        final byte[] mp3;
+        final Mp3Decoder.DecodedClip clip;
+        final String error;
+
+        Item(int index, String word, byte[] mp3, Mp3Decoder.DecodedClip clip, String error) {
+            this.index = index;
+            this.word = word;
+            this.mp3 = mp3;
+            this.clip = clip;
+            this.error = error;
+        }
+    }
+
+    private final List<String> words;
+    private final int gapMs;
+    private final Listener listener;
+    private final BlockingQueue<Item> fetched = new ArrayBlockingQueue<>(LOOKAHEAD);
+    private final BlockingQueue<Item> decoded = new ArrayBlockingQueue<>(LOOKAHEAD);
+    private final Object pauseLock = new Object();
+
+    private volatile boolean stopped = false;
+    private volatile boolean paused = false;
+    // Set by skip(), cleared only by the word or gap it cut short: a skip between words applies to the next one
+    private final AtomicBoolean skipRequested = new AtomicBoolean();
+    private Thread fetchThread;
+    private Thread decodeThread;
+    private Thread playThread;
+
+    /**
+     * @param words read lazily by index while playing (not copied), so it must not change until the player stops.
+     */
+    public SequentialPlayer(@NotNull List<String> words, int gapMs, @NotNull Listener listener) {
+        this.words = Collections.unmodifiableList(words);
+        this.gapMs = Math.max(0, gapMs);
+        this.listener = listener;
+    }
+
+    public synchronized void start() {
+        if (playThread != null) {
+            return;
+        }
+        fetchThread = newThread(this::fetchLoop, "fetch");
+        decodeThread = newThread(this::decodeLoop, "decode");
+        playThread = newThread(this::playLoop, "play");
+        fetchThread.start();
+        decodeThread.start();
+        playThread.start();
+    }
+
+    public void stop() {
+        stopped = true;
+        setPaused(false);
+        interrupt(fetchThread);
+        interrupt(decodeThread);
+        interrupt(playThread);
+    }
+
+    public void setPaused(boolean paused) {
+        synchronized (pauseLock) {
+            this.paused = paused;
+            pauseLock.notifyAll();
+        }
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * Cuts the current word short and moves on to the next one; between words (e.g. while the next one is
+     * still being fetched) the next word is skipped.
+     */
+    public void skip() {
+        skipRequested.set(true);
+        setPaused(false);
+    }
+
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    // --- Stage 1: fetch ---
+    private void fetchLoop() {
+        TtsRouter router = TtsRouter.getInstance();
+        try {
+            for (int i = 0; i < words.size() && !stopped; i++) {
+                String word = words.get(i);
+                Item item;
+                try {
+                    TtsRouter.TtsAudio audio = router.fetchAudio(word);
+                    item = audio == null
+                            ? new Item(i, word, null, null, "没有发音 (No pronunciation)")
+                            : new Item(i, word, audio.getData(), null, null);
+                } catch (IOException e) {
+                    item = new Item(i, word, null, null, e.getMessage());
+                }
+                fetched.put(item);
+            }
+            fetched.put(Item.END);
+        } catch (InterruptedException ignored) {
+            // stop() was called
+        }
+    }
+
+    // --- Stage 2: decode ---
+    private void decodeLoop() {
+        try {
+            while (!stopped) {
+                Item item = fetched.take();
+                if (item == Item.END) {
+                    decoded.put(Item.END);
+                    return;
+                }
+                if (item.mp3 != null) {
+                    try {
+                        item = new Item(item.index, item.word, null, Mp3Decoder.decode(item.mp3), null);
+                    } catch (IOException e) {
+                        item = new Item(item.index, item.word, null, null, e.getMessage());
+                    }
+                }
+                decoded.put(item);
+            }
+        } catch (InterruptedException ignored) {
+            // stop() was called
+        }
+    }
+
+    // --- Stage 3: play ---
+    private void playLoop() {
+        SourceDataLine line = null;
+        try {
+            while (!stopped) {
+                Item item = decoded.take();
+                if (item == Item.END) {
+                    break;
+                }
+                if (item.clip == null) {
+                    listener.onWordFailed(item.index, item.word, item.error == null ? "" : item.error);
+                    continue;
+                }
+
+                AudioFormat format = item.clip.getFormat();
+                if (line == null || !line.getFormat().matches(format)) {
+                    line = reopen(line, format);
+                }
+
+                listener.onWordStarted(item.index, item.word);
+                if (!write(line, item.clip.getPcm())) {
+                    line.flush(); // Skipped
+                    skipRequested.set(false);
+                }
+                writeSilence(line, format, gapMs);
+            }
+            if (line != null && !stopped) {
+                line.drain();
+            }
+        } catch (InterruptedException ignored) {
+            // stop() was called
+        } catch (LineUnavailableException | IllegalArgumentException e) {
+            LOG.warn("Audio line unavailable for sequential playback", e);
+        } finally {
+            if (line != null) {
+                if (stopped) {
+                    line.flush();
+                }
+                line.close();
+            }
+            listener.onFinished(stopped);
+        }
+    }
+
+    private static SourceDataLine reopen(@Nullable SourceDataLine old, AudioFormat format) throws LineUnavailableException {
+        if (old != null) {
+            old.drain();
+            old.close();
+        }
+        SourceDataLine line = AudioSystem.getSourceDataLine(format);
+        int bufferBytes = (int) (format.getFrameRate() * format.getFrameSize() * LINE_BUFFER_MS / 1000);
+        line.open(format, Math.max(bufferBytes, WRITE_CHUNK_BYTES));
+        line.start();
+        return line;
+    }
+
+    /**
+     * @return false if cut short by {@link #skip()} or {@link #stop()}.
+     */
+    private boolean write(SourceDataLine line, byte[] pcm) throws InterruptedException {
+        int frameSize = Math.max(1, line.getFormat().getFrameSize());
+        int chunk = WRITE_CHUNK_BYTES - WRITE_CHUNK_BYTES % frameSize;
+        int offset = 0;
+        while (offset < pcm.length && !stopped && !skipRequested.get()) {
+            waitWhilePaused(line);
+            int length = Math.min(chunk, pcm.length - offset);
+            offset += line.write(pcm, offset, length);
+        }
+        return offset >= pcm.length;
+    }
+
+    private void writeSilence(SourceDataLine line, AudioFormat format, int millis) throws InterruptedException {
+        if (millis <= 0) {
+            return;
+        }
+        int frameSize = Math.max(1, format.getFrameSize());
+        int bytes = (int) (format.getFrameRate() * millis / 1000) * frameSize;
+        if (!write(line, new byte[bytes])) {
+            skipRequested.set(false); // A skip during the gap only shortens the gap
+        }
+    }
+
+    private void waitWhilePaused(SourceDataLine line) throws InterruptedException {
+        if (!paused) {
+            return;
+        }
+        line.stop();
+        synchronized (pauseLock) {
+            while (paused && !stopped) {
+                pauseLock.wait();
+            }
+        }
+        if (stopped) {
+            throw new InterruptedException();
+        }
+        line.start();
+    }
+
+    private Thread newThread(Runnable runnable, String stage) {
+        Thread thread = new Thread(runnable, "AiWord sequential playback (" + stage + ")");
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private static void interrupt(@Nullable Thread thread) {
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+}
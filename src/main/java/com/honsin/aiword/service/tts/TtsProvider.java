@@ -0,0 +1,43 @@
+package com.honsin.aiword.service.tts;
+
+import com.intellij.openapi.extensions.ExtensionPointName;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+
+/**
+ * 发音来源扩展点 (Pronunciation source extension point).
+ * <p>
+ * Implementations are registered under {@code com.honsin.aiword.ttsProvider} in plugin.xml and are
+ * picked by {@link TtsRouter}, which keeps latency / error statistics per provider and fails over
+ * to the next healthy one.
+ */
+public interface TtsProvider {
+
+    ExtensionPointName<TtsProvider> EP_NAME = ExtensionPointName.create("com.honsin.aiword.ttsProvider");
+
+    /**
+     * Stable id used for statistics and logging, e.g. "youdao".
+     */
+    @NotNull
+    String getId();
+
+    @NotNull
+    String getDisplayName();
+
+    /**
+     * Whether the provider is configured and may be asked at all (e.g. a URL template is set).
+     */
+    boolean isAvailable();
+
+    /**
+     * Fetches the complete MP3 audio for a word.
+     *
+     * @param word The word to pronounce (already trimmed).
+     * @return MP3 bytes, or {@code null} if this provider simply has no audio for the word (not an error).
+     * @throws IOException if the provider failed (network error, bad status, not audio...).
+     */
+    @Nullable
+    byte[] fetchAudio(@NotNull String word) throws IOException;
+}
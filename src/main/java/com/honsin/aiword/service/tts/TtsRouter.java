@@ -0,0 +1,266 @@
+package com.honsin.aiword.service.tts;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Picks the fastest healthy {@link TtsProvider} and fails over to the next one.
+ * <p>
+ * Every provider gets an EWMA of its latency and error rate. A circuit breaker opens after
+ * repeated failures so a dead endpoint is skipped for {@link #OPEN_COOLDOWN_MS}, after which a
+ * single trial request (half-open) decides whether it is closed again. "No audio for this word" is a
+ * miss, not a success: it says nothing about the provider's health.
+ */
+@Service(Service.Level.APP)
+public final class TtsRouter {
+
+    private static final Logger LOG = Logger.getInstance(TtsRouter.class);
+
+    // EWMA smoothing factor: higher reacts faster to recent samples
+    private static final double ALPHA = 0.3;
+    // Latency assumed for a provider we have never measured, so it still gets a chance
+    private static final double UNKNOWN_LATENCY_MS = 400;
+    private static final int FAILURES_TO_OPEN = 3;
+    private static final double ERROR_RATE_TO_OPEN = 0.5;
+    private static final int MIN_SAMPLES_FOR_RATE = 4;
+    static final long OPEN_COOLDOWN_MS = 30_000;
+
+    private final Map<String, ProviderHealth> healthById = new ConcurrentHashMap<>();
+    private final LongSupplier clock;
+
+    public TtsRouter() {
+        this(System::currentTimeMillis);
+    }
+
+    /**
+     * @param clock current time in milliseconds; tests pass their own to get past the cooldown.
+     */
+    TtsRouter(@NotNull LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    public static TtsRouter getInstance() {
+        return ApplicationManager.getApplication().getService(TtsRouter.class);
+    }
+
+    /**
+     * Result of a routed fetch: the audio and who served it.
+     */
+    public static final class TtsAudio {
+        private final String providerId;
+        private final byte[] data;
+
+        TtsAudio(String providerId, byte[] data) {
+            this.providerId = providerId;
+            this.data = data;
+        }
+
+        public String getProviderId() {
+            return providerId;
+        }
+
+        public byte[] getData() {
+            return data;
+        }
+    }
+
+    /**
+     * Fetches audio for a word, trying providers from fastest to slowest.
+     *
+     * @return the audio, or {@code null} if every provider answered "no audio for this word".
+     * @throws IOException if no provider could serve the word and at least one failed.
+     */
+    @Nullable
+    public TtsAudio fetchAudio(@NotNull String word) throws IOException {
+        return fetchAudio(word, TtsProvider.EP_NAME.getExtensionList());
+    }
+
+    @Nullable
+    TtsAudio fetchAudio(@NotNull String word, @NotNull List<TtsProvider> providers) throws IOException {
+        List<TtsProvider> candidates = rankProviders(providers, clock.getAsLong());
+        IOException lastError = null;
+        StringBuilder errors = new StringBuilder();
+
+        for (TtsProvider provider : candidates) {
+            ProviderHealth health = healthOf(provider);
+            if (!health.tryAcquire(clock.getAsLong())) {
+                continue; // Breaker opened meanwhile, or another half-open trial is running
+            }
+            long start = System.nanoTime();
+            try {
+                byte[] audio = provider.fetchAudio(word);
+                long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+                if (audio == null) {
+                    health.release(); // A miss: try the next provider, the health stays as it was
+                    continue;
+                }
+                health.recordSuccess(elapsedMs);
+                LOG.debug("TTS '" + word + "' served by " + provider.getId() + " in " + elapsedMs + " ms");
+                return new TtsAudio(provider.getId(), audio);
+            } catch (IOException | RuntimeException e) {
+                if (isCancellation(e)) {
+                    health.release(); // Says nothing about the provider
+                    throw e;
+                }
+                health.recordFailure(clock.getAsLong());
+                LOG.warn("TTS provider " + provider.getId() + " failed for '" + word + "': " + e.getMessage());
+                lastError = e instanceof IOException ? (IOException) e : new IOException(e.getMessage(), e);
+                errors.append('[').append(provider.getDisplayName()).append("] ").append(e.getMessage()).append('\n');
+            }
+        }
+
+        if (lastError != null) {
+            throw new IOException(errors.toString().trim(), lastError);
+        }
+        return null;
+    }
+
+    /**
+     * Whether {@code e} comes from the caller giving up (thread interrupted, progress cancelled).
+     */
+    private static boolean isCancellation(Exception e) {
+        if (Thread.currentThread().isInterrupted() || e instanceof ProcessCanceledException) {
+            return true;
+        }
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof InterruptedException || cause instanceof InterruptedIOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Healthy providers ordered by EWMA latency; half-open providers are tried after the healthy ones.
+     */
+    List<TtsProvider> rankProviders(@NotNull List<TtsProvider> providers, long now) {
+        List<TtsProvider> healthy = new ArrayList<>();
+        List<TtsProvider> probing = new ArrayList<>();
+        for (TtsProvider provider : providers) {
+            if (!provider.isAvailable()) {
+                continue;
+            }
+            ProviderHealth.State state = healthOf(provider).stateAt(now);
+            if (state == ProviderHealth.State.CLOSED) {
+                healthy.add(provider);
+            } else if (state == ProviderHealth.State.HALF_OPEN) {
+                probing.add(provider);
+            }
+        }
+        Comparator<TtsProvider> byScore = Comparator.comparingDouble(p -> healthOf(p).score());
+        healthy.sort(byScore);
+        probing.sort(byScore);
+        healthy.addAll(probing);
+        return healthy;
+    }
+
+    @NotNull
+    ProviderHealth healthOf(@NotNull TtsProvider provider) {
+        return healthById.computeIfAbsent(provider.getId(), id -> new ProviderHealth());
+    }
+
+    /**
+     * Human readable summary for logs / diagnostics.
+     */
+    @NotNull
+    public String describeHealth() {
+        long now = clock.getAsLong();
+        StringBuilder sb = new StringBuilder();
+        healthById.forEach((id, health) -> sb.append(id).append(": ").append(health.describe(now)).append('\n'));
+        return sb.toString();
+    }
+
+    /**
+     * Latency / error statistics and circuit breaker state of one provider.
+     */
+    static final class ProviderHealth {
+        enum State {CLOSED, OPEN, HALF_OPEN}
+
+        private double ewmaLatencyMs = -1;
+        private double ewmaErrorRate = 0;
+        private int samples = 0;
+        private int consecutiveFailures = 0;
+        private long openedAt = 0;
+        private boolean open = false;
+        private boolean trialInFlight = false;
+
+        synchronized State stateAt(long now) {
+            if (!open) {
+                return State.CLOSED;
+            }
+            if (now - openedAt >= OPEN_COOLDOWN_MS && !trialInFlight) {
+                return State.HALF_OPEN;
+            }
+            return State.OPEN;
+        }
+
+        /**
+         * Called right before a request; only one trial request is let through while half-open.
+         */
+        synchronized boolean tryAcquire(long now) {
+            State state = stateAt(now);
+            if (state == State.OPEN) {
+                return false;
+            }
+            if (state == State.HALF_OPEN) {
+                trialInFlight = true;
+            }
+            return true;
+        }
+
+        synchronized void recordSuccess(long latencyMs) {
+            ewmaLatencyMs = ewmaLatencyMs < 0 ? latencyMs : ALPHA * latencyMs + (1 - ALPHA) * ewmaLatencyMs;
+            ewmaErrorRate = (1 - ALPHA) * ewmaErrorRate;
+            samples++;
+            consecutiveFailures = 0;
+            open = false;
+            trialInFlight = false;
+        }
+
+        /**
+         * The request says nothing about the provider (no audio for the word, or given up by the caller):
+         * no sample, but a half-open trial may be retried.
+         */
+        synchronized void release() {
+            trialInFlight = false;
+        }
+
+        synchronized void recordFailure(long now) {
+            ewmaErrorRate = ALPHA + (1 - ALPHA) * ewmaErrorRate;
+            samples++;
+            consecutiveFailures++;
+            boolean rateTooHigh = samples >= MIN_SAMPLES_FOR_RATE && ewmaErrorRate >= ERROR_RATE_TO_OPEN;
+            if (trialInFlight || consecutiveFailures >= FAILURES_TO_OPEN || rateTooHigh) {
+                open = true;
+                openedAt = now;
+            }
+            trialInFlight = false;
+        }
+
+        /**
+         * Lower is better: expected latency, penalised by the recent error rate.
+         */
+        synchronized double score() {
+            double latency = ewmaLatencyMs < 0 ? UNKNOWN_LATENCY_MS : ewmaLatencyMs;
+            return latency * (1 + 4 * ewmaErrorRate);
+        }
+
+        synchronized String describe(long now) {
+            return "latency=" + Math.round(ewmaLatencyMs) + "ms, errorRate=" + String.format("%.2f", ewmaErrorRate)
+                    + ", failures=" + consecutiveFailures + ", state=" + stateAt(now);
+        }
+    }
+}
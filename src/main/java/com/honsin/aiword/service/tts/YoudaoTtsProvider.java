@@ -0,0 +1,36 @@
+package com.honsin.aiword.service.tts;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The public Youdao dictvoice endpoint (no key required).
+ */
+public class YoudaoTtsProvider extends HttpTtsProvider {
+
+    private static final String TTS_URL = "https://dict.youdao.com/dictvoice?audio=%s&type=1";
+
+    @Override
+    public @NotNull String getId() {
+        return "youdao";
+    }
+
+    @Override
+    public @NotNull String getDisplayName() {
+        return "有道发音 (Youdao)";
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return true;
+    }
+
+    @Override
+    protected @NotNull String buildUrl(@NotNull String encodedWord) {
+        return String.format(TTS_URL, encodedWord);
+    }
+
+    @Override
+    protected boolean isAudio(String contentType) {
+        return contentType.contains("audio/mpeg");
+    }
+}
@@ -1,6 +1,14 @@
 package com.honsin.aiword.settings;
 
 
+import com.honsin.aiword.action.WordbookCatalogAction;
+import com.honsin.aiword.service.CompilingDownloadSink;
+import com.honsin.aiword.service.FrequencyTable;
+import com.honsin.aiword.service.VocabularyHighlightService;
+import com.honsin.aiword.service.WordSampler;
+import com.honsin.aiword.service.WordbookDownloader;
+import com.honsin.aiword.service.WordbookService;
+import com.honsin.aiword.service.tts.GenericHttpTtsProvider;
 import com.intellij.notification.Notification;
 import com.intellij.notification.NotificationGroupManager;
 import com.intellij.notification.NotificationType;
@@ -23,13 +31,9 @@ import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
 import java.awt.event.ActionEvent;
-import java.io.BufferedInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.SocketTimeoutException;
 import java.net.URL;
+import java.net.http.HttpTimeoutException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -65,8 +69,19 @@ public class WordMemorizerSettingsConfigurable implements Configurable {
                 null, // project context, can be null for application settings
                 FileChooserDescriptorFactory.createSingleFolderDescriptor()); // 只允许选择目录
 
+        settingsForm.getFrequencyFileField().addBrowseFolderListener(new TextBrowseFolderListener(
+                FileChooserDescriptorFactory.createSingleFileDescriptor().withTitle("选择词频表 (Select Word Frequency List)")));
+
+        settingsForm.getRandomWeightingComboBox().setModel(new DefaultComboBoxModel<>(WordSampler.Weighting.values()));
+
+        // 连读间隔: 0 - 5000 ms
+        settingsForm.getPlaybackGapSpinner().setModel(new SpinnerNumberModel(WordMemorizerSettingsState.DEFAULT_PLAYBACK_GAP_MS, 0, 5000, 100));
+
         // --- 添加下载按钮的 Action Listener ---
         settingsForm.getDownloadButton().addActionListener(this::performDownloadAction);
+        settingsForm.getOpenCatalogButton().addActionListener(e -> WordbookCatalogAction.openCatalog(currentProject(),
+                settingsForm.getCatalogUrlTextField().getText().trim(),
+                settingsForm.getWordbookDirectoryTextField().getText()));
 
         return settingsForm.getRootPanel();
     }
@@ -119,10 +134,13 @@ public class WordMemorizerSettingsConfigurable implements Configurable {
 
         // 4. 执行后台下载任务
         // 需要一个 Project 上下文来显示后台任务进度条，尝试获取当前打开的项目
-        Project currentProject = ProjectManager.getInstance().getOpenProjects().length > 0 ?
-                ProjectManager.getInstance().getOpenProjects()[0] : null;
+        new DownloadTask(currentProject(), DEFAULT_WORDBOOK_URL, targetFilePath).queue();
+    }
 
-        new DownloadTask(currentProject, DEFAULT_WORDBOOK_URL, targetFilePath).queue();
+    @Nullable
+    private static Project currentProject() {
+        return ProjectManager.getInstance().getOpenProjects().length > 0 ?
+                ProjectManager.getInstance().getOpenProjects()[0] : null;
     }
 
     // --- 辅助方法：从 URL 提取文件名 ---
@@ -143,7 +161,22 @@ public class WordMemorizerSettingsConfigurable implements Configurable {
         // Check if the value in the text field is different from the saved value
         String savedPath = WordMemorizerSettingsState.getInstance().getWordbookDirectory();
         String currentPath = settingsForm.getWordbookDirectoryTextField().getText();
-        return !StringUtil.equals(savedPath, currentPath);
+        String savedTtsUrl = WordMemorizerSettingsState.getInstance().getCustomTtsUrlTemplate();
+        String currentTtsUrl = settingsForm.getCustomTtsUrlTextField().getText().trim();
+        int savedGap = WordMemorizerSettingsState.getInstance().getPlaybackGapMs();
+        int currentGap = (int) settingsForm.getPlaybackGapSpinner().getValue();
+        String savedCatalogUrl = WordMemorizerSettingsState.getInstance().getCatalogUrl();
+        String currentCatalogUrl = settingsForm.getCatalogUrlTextField().getText().trim();
+        boolean savedHighlight = WordMemorizerSettingsState.getInstance().isHighlightVocabulary();
+        boolean currentHighlight = settingsForm.getHighlightVocabularyCheckBox().isSelected();
+        String savedFrequencyFile = WordMemorizerSettingsState.getInstance().getFrequencyFile();
+        String currentFrequencyFile = settingsForm.getFrequencyFileField().getText().trim();
+        WordSampler.Weighting savedWeighting = WordMemorizerSettingsState.getInstance().getRandomWeighting();
+        Object currentWeighting = settingsForm.getRandomWeightingComboBox().getSelectedItem();
+        return !StringUtil.equals(savedPath, currentPath) || !StringUtil.equals(savedTtsUrl, currentTtsUrl)
+                || savedGap != currentGap || !StringUtil.equals(savedCatalogUrl, currentCatalogUrl)
+                || savedHighlight != currentHighlight || !StringUtil.equals(savedFrequencyFile, currentFrequencyFile)
+                || savedWeighting != currentWeighting;
     }
 
     @Override
@@ -161,12 +194,56 @@ public class WordMemorizerSettingsConfigurable implements Configurable {
                 throw new ConfigurationException("无效的目录路径 (Invalid directory path): " + currentPath);
             }
         }
+
+        String ttsUrl = settingsForm.getCustomTtsUrlTextField().getText().trim();
+        if (!ttsUrl.isEmpty() && !ttsUrl.contains(GenericHttpTtsProvider.WORD_PLACEHOLDER)) {
+            throw new ConfigurationException("自定义发音URL必须包含 " + GenericHttpTtsProvider.WORD_PLACEHOLDER
+                    + " (Custom TTS URL must contain " + GenericHttpTtsProvider.WORD_PLACEHOLDER + ")");
+        }
+        WordMemorizerSettingsState.getInstance().setCustomTtsUrlTemplate(ttsUrl);
+        WordMemorizerSettingsState.getInstance().setPlaybackGapMs((int) settingsForm.getPlaybackGapSpinner().getValue());
+
+        String catalogUrl = settingsForm.getCatalogUrlTextField().getText().trim();
+        if (!catalogUrl.isEmpty() && !catalogUrl.startsWith("http://") && !catalogUrl.startsWith("https://")) {
+            throw new ConfigurationException("词库目录地址必须是 http(s) 地址 (Catalog URL must be an http(s) URL)");
+        }
+        WordMemorizerSettingsState.getInstance().setCatalogUrl(catalogUrl);
+
+        boolean highlight = settingsForm.getHighlightVocabularyCheckBox().isSelected();
+        if (highlight != WordMemorizerSettingsState.getInstance().isHighlightVocabulary()) {
+            WordMemorizerSettingsState.getInstance().setHighlightVocabulary(highlight);
+            VocabularyHighlightService.getInstance().settingsChanged();
+        }
+
+        String frequencyFile = settingsForm.getFrequencyFileField().getText().trim();
+        if (!frequencyFile.equals(WordMemorizerSettingsState.getInstance().getFrequencyFile())) {
+            if (!frequencyFile.isEmpty()) {
+                try {
+                    FrequencyTable.read(Paths.get(frequencyFile)); // Fail here rather than silently at the next load
+                } catch (IOException | RuntimeException e) {
+                    throw new ConfigurationException("无法读取词频表 (Cannot read word frequency list): " + e.getMessage());
+                }
+            }
+            WordMemorizerSettingsState.getInstance().setFrequencyFile(frequencyFile);
+            WordbookService.getInstance().reloadFrequencyTable(); // Applies to books loaded from now on
+        }
+
+        Object weighting = settingsForm.getRandomWeightingComboBox().getSelectedItem();
+        if (weighting instanceof WordSampler.Weighting) {
+            WordMemorizerSettingsState.getInstance().setRandomWeighting((WordSampler.Weighting) weighting);
+        }
     }
 
     @Override
     public void reset() {
         // Reset the text field to the currently saved value
         settingsForm.getWordbookDirectoryTextField().setText(WordMemorizerSettingsState.getInstance().getWordbookDirectory());
+        settingsForm.getCustomTtsUrlTextField().setText(WordMemorizerSettingsState.getInstance().getCustomTtsUrlTemplate());
+        settingsForm.getPlaybackGapSpinner().setValue(WordMemorizerSettingsState.getInstance().getPlaybackGapMs());
+        settingsForm.getCatalogUrlTextField().setText(WordMemorizerSettingsState.getInstance().getCatalogUrl());
+        settingsForm.getHighlightVocabularyCheckBox().setSelected(WordMemorizerSettingsState.getInstance().isHighlightVocabulary());
+        settingsForm.getFrequencyFileField().setText(WordMemorizerSettingsState.getInstance().getFrequencyFile());
+        settingsForm.getRandomWeightingComboBox().setSelectedItem(WordMemorizerSettingsState.getInstance().getRandomWeighting());
     }
 
     @Override
@@ -185,12 +262,6 @@ public class WordMemorizerSettingsConfigurable implements Configurable {
         private final String downloadUrl;
         private final Path targetFile;
 
-        // 定义常量提高可读性和可维护性
-        private static final int CONNECT_TIMEOUT_MS = 30000; // 增加到 30 秒
-        private static final int READ_TIMEOUT_MS = 60000;    // 增加到 60 秒
-        private static final int BUFFER_SIZE = 8192;         // 8 KB buffer
-        private static final String USER_AGENT = "IntelliJ Plugin (AiWord Memorizer)"; // 设置 User-Agent
-
         public DownloadTask(@Nullable Project project, String downloadUrl, Path targetFile) {
             super(project, "下载单词本 (Downloading Wordbook)", true); // 可取消
             this.downloadUrl = downloadUrl;
@@ -203,93 +274,23 @@ public class WordMemorizerSettingsConfigurable implements Configurable {
             indicator.setText("正在准备下载...(Preparing download...)");
             indicator.setFraction(0.0);
 
-            HttpURLConnection connection = null;
-
-            // 使用 try-with-resources 确保流总是被关闭
             try {
-                URL url = new URL(downloadUrl);
-                connection = (HttpURLConnection) url.openConnection();
-
-                // --- 设置请求属性 ---
-                connection.setRequestMethod("GET");
-                connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
-                connection.setReadTimeout(READ_TIMEOUT_MS);
-                connection.setRequestProperty("User-Agent", USER_AGENT);
-                // connection.setInstanceFollowRedirects(true); // 默认为 true，通常不需要设置
-
-                indicator.setText("正在连接服务器...(Connecting to server...)");
-                indicator.checkCanceled(); // 允许在连接前取消
-
-                connection.connect(); // 连接
-                int responseCode = connection.getResponseCode();
-
-                // 检查是否成功 (2xx 状态码)
-                if (responseCode >= 200 && responseCode < 300) {
-                    long fileSize = connection.getContentLengthLong(); // 获取文件大小，可能为 -1
-                    String fileName = targetFile.getFileName().toString();
-                    indicator.setText("正在下载: " + fileName + " (Downloading...)");
-                    if (fileSize <= 0) {
-                        indicator.setIndeterminate(true); // 大小未知，进度条不确定
-                        System.out.println("服务器未提供 Content-Length，进度条将不确定。");
-                    }
-
-                    // 使用 try-with-resources 同时管理输入和输出流
-                    try (InputStream inputStream = connection.getInputStream();
-                         BufferedInputStream bufferedInputStream = new BufferedInputStream(inputStream, BUFFER_SIZE);
-                         OutputStream outputStream = Files.newOutputStream(targetFile)) { // 直接写入目标文件
-
-                        byte[] buffer = new byte[BUFFER_SIZE];
-                        long bytesCopied = 0;
-                        int bytesRead;
-
-                        while ((bytesRead = bufferedInputStream.read(buffer, 0, BUFFER_SIZE)) != -1) {
-                            indicator.checkCanceled(); // 在循环中检查取消状态
-
-                            outputStream.write(buffer, 0, bytesRead);
-                            bytesCopied += bytesRead;
-
-                            if (fileSize > 0) {
-                                indicator.setFraction((double) bytesCopied / fileSize); // 更新进度
-                            }
-                            // 可选：即使进度不确定，也可以更新文本显示已下载字节数
-                            // else { indicator.setText("Downloading: " + fileName + " (" + bytesCopied / 1024 + " KB)"); }
-                        }
-                    } // 输入输出流在此自动关闭
-
-                    indicator.setFraction(1.0); // 确保结束时进度为 100%
-                    System.out.println("文件下载成功: " + targetFile);
-
-                } else {
-                    // 处理非成功响应码
-                    String errorDetails = "服务器响应错误 (Server returned error)。状态码 (Status Code): " + responseCode;
-                    try (InputStream errorStream = connection.getErrorStream()) {
-                        if (errorStream != null) {
-                            // 尝试读取错误流内容获取更多信息
-                            // 注意：这里简化处理，实际可能需要读取并解码
-                            errorDetails += "\n服务器错误信息可能存在。";
-                        }
-                    } catch (IOException readError) {
-                        errorDetails += "\n读取服务器错误流失败: " + readError.getMessage();
-                    }
-                    throw new IOException(errorDetails);
+                // 先写入 .part 临时文件，完成后原子替换；中断后再次下载会用 Range 续传
+                // 下载的同时解析并生成索引，下载完成即可直接加载
+                WordbookDownloader.DownloadRequest request = new WordbookDownloader.DownloadRequest(downloadUrl, targetFile);
+                if (CompilingDownloadSink.accepts(targetFile)) {
+                    request.setSink(new CompilingDownloadSink(targetFile));
                 }
-
-            } catch (SocketTimeoutException e) {
+                WordbookDownloader.DownloadResult result = WordbookDownloader.download(request, indicator);
+                System.out.println("文件下载成功: " + targetFile + (result.getResumedFrom() > 0 ? " (resumed at " + result.getResumedFrom() + ")" : ""));
+            } catch (HttpTimeoutException e) {
                 // 明确捕获超时异常
                 System.err.println("下载超时: " + e.getMessage());
-                throw new RuntimeException("下载超时，请检查网络连接或增加超时设置。(Download timed out. Check network or increase timeout settings.)", e);
+                throw new RuntimeException("下载超时，请检查网络连接后重试，将从中断处继续。(Download timed out. Check network and retry to resume.)", e);
             } catch (IOException e) {
                 // 捕获其他 IO 异常
                 System.err.println("下载过程中发生 IO 错误: " + e.getMessage());
                 throw new RuntimeException("下载失败，发生 IO 错误。(Download failed due to IO error.) " + e.getMessage(), e);
-            } catch (Exception e) {
-                // 捕获其他意外错误
-                System.err.println("下载过程中发生未知错误: " + e.getMessage());
-                throw new RuntimeException("下载失败，发生未知错误。(Download failed due to unknown error.) " + e.getMessage(), e);
-            } finally {
-                if (connection != null) {
-                    connection.disconnect(); // 最后断开连接
-                }
             }
         }
 
@@ -312,7 +313,7 @@ public class WordMemorizerSettingsConfigurable implements Configurable {
         @Override
         public void onCancel() {
             // （保持不变）
-            showNotification("下载已取消。(Download Canceled)", NotificationType.WARNING);
+            showNotification("下载已取消，再次下载将从中断处继续。(Download canceled, downloading again resumes it.)", NotificationType.WARNING);
             System.out.println("Download canceled by user for: " + downloadUrl);
         }
 
@@ -1,5 +1,6 @@
 package com.honsin.aiword.settings;
 
+import com.honsin.aiword.service.WordSampler;
 import com.intellij.openapi.ui.TextFieldWithBrowseButton;
 
 import javax.swing.*;
@@ -9,6 +10,13 @@ public class WordMemorizerSettingsForm {
     private JPanel rootPanel;
     private JButton downloadButton;
     private JLabel downloadStatus;
+    private JTextField customTtsUrlTextField;
+    private JSpinner playbackGapSpinner;
+    private JTextField catalogUrlTextField;
+    private JButton openCatalogButton;
+    private JCheckBox highlightVocabularyCheckBox;
+    private TextFieldWithBrowseButton frequencyFileField;
+    private JComboBox<WordSampler.Weighting> randomWeightingComboBox;
 
     public JPanel getRootPanel() {
         return rootPanel;
@@ -41,4 +49,60 @@ public class WordMemorizerSettingsForm {
     public void setDownloadStatus(JLabel downloadStatus) {
         this.downloadStatus = downloadStatus;
     }
+
+    public JTextField getCustomTtsUrlTextField() {
+        return customTtsUrlTextField;
+    }
+
+    public void setCustomTtsUrlTextField(JTextField customTtsUrlTextField) {
+        this.customTtsUrlTextField = customTtsUrlTextField;
+    }
+
+    public JSpinner getPlaybackGapSpinner() {
+        return playbackGapSpinner;
+    }
+
+    public void setPlaybackGapSpinner(JSpinner playbackGapSpinner) {
+        this.playbackGapSpinner = playbackGapSpinner;
+    }
+
+    public JTextField getCatalogUrlTextField() {
+        return catalogUrlTextField;
+    }
+
+    public void setCatalogUrlTextField(JTextField catalogUrlTextField) {
+        this.catalogUrlTextField = catalogUrlTextField;
+    }
+
+    public JButton getOpenCatalogButton() {
+        return openCatalogButton;
+    }
+
+    public void setOpenCatalogButton(JButton openCatalogButton) {
+        this.openCatalogButton = openCatalogButton;
+    }
+
+    public JCheckBox getHighlightVocabularyCheckBox() {
+        return highlightVocabularyCheckBox;
+    }
+
+    public void setHighlightVocabularyCheckBox(JCheckBox highlightVocabularyCheckBox) {
+        this.highlightVocabularyCheckBox = highlightVocabularyCheckBox;
+    }
+
+    public TextFieldWithBrowseButton getFrequencyFileField() {
+        return frequencyFileField;
+    }
+
+    public void setFrequencyFileField(TextFieldWithBrowseButton frequencyFileField) {
+        this.frequencyFileField = frequencyFileField;
+    }
+
+    public JComboBox<WordSampler.Weighting> getRandomWeightingComboBox() {
+        return randomWeightingComboBox;
+    }
+
+    public void setRandomWeightingComboBox(JComboBox<WordSampler.Weighting> randomWeightingComboBox) {
+        this.randomWeightingComboBox = randomWeightingComboBox;
+    }
 }
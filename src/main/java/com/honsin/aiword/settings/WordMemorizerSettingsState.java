@@ -1,85 +1,290 @@
 package com.honsin.aiword.settings;
 
 
+import com.honsin.aiword.service.WordSampler;
 import com.intellij.ide.util.PropertiesComponent;
-import com.intellij.internal.statistic.eventLog.util.StringUtil;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.PersistentStateComponentWithModificationTracker;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.components.State;
+import com.intellij.openapi.components.Storage;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.util.Alarm;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-public class WordMemorizerSettingsState {
-    // --- Keys for PropertiesComponent ---
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Plugin settings, stored in {@code aiword.xml}.
+ * <p>
+ * Setters only change memory; the IDE writes the file when it saves settings, and only if the
+ * {@link #getStateModificationCount() modification count} moved, i.e. a value really changed.
+ * The page of each wordbook changes on every page flip, so page changes are collected and published
+ * at most every {@link #FLUSH_DELAY_MS} ms (and when the IDE asks for the state or shuts down).
+ */
+@Service(Service.Level.APP)
+@State(name = "AiWordMemorizerSettings", storages = @Storage("aiword.xml"))
+public final class WordMemorizerSettingsState implements PersistentStateComponentWithModificationTracker<WordMemorizerSettingsState.SettingsData>, Disposable {
+    // --- Keys of the old PropertiesComponent storage, read once for migration ---
     private static final String WORDBOOK_DIRECTORY_KEY = "wordmemorizer.wordbook.directory";
     private static final String CURRENT_PAGE_KEY = "wordmemorizer.pagination.currentPage";
     private static final String WORDS_PER_PAGE_KEY = "wordmemorizer.pagination.wordsPerPage";
     private static final String SELECTED_WORDBOOK_KEY = "wordmemorizer.selectedWordbook";
+    private static final String CUSTOM_TTS_URL_KEY = "wordmemorizer.tts.customUrlTemplate";
+    private static final String PLAYBACK_GAP_KEY = "wordmemorizer.playback.gapMs";
+    private static final String CATALOG_URL_KEY = "wordmemorizer.catalog.url";
 
     // --- Default Values ---
     private static final int DEFAULT_CURRENT_PAGE = 1;
     private static final int DEFAULT_WORDS_PER_PAGE = 50;
-    private static final String DEFAULT_SELECTED_WORDBOOK = null; // No default selection
+    public static final int DEFAULT_PLAYBACK_GAP_MS = 400;
+    private static final int FLUSH_DELAY_MS = 3000;
+
+    /**
+     * What is stored; public fields for the XML serializer.
+     */
+    public static final class SettingsData {
+        public String wordbookDirectory = "";
+        public int wordsPerPage = DEFAULT_WORDS_PER_PAGE;
+        public String selectedWordbook = "";
+        public String customTtsUrlTemplate = "";
+        public int playbackGapMs = DEFAULT_PLAYBACK_GAP_MS;
+        public String catalogUrl = "";
+        public boolean highlightVocabulary = true;
+        public String frequencyFile = ""; // Word list, most frequent first; empty = the bundled one
+        public String randomWeighting = WordSampler.Weighting.UNIFORM.name();
+        public Map<String, BookData> books = new HashMap<>(); // Wordbook file name -> its state
+        public boolean migratedFromProperties = false;
+    }
+
+    /**
+     * State of one wordbook.
+     */
+    public static final class BookData {
+        public int currentPage = DEFAULT_CURRENT_PAGE;
+    }
+
+    private SettingsData data = new SettingsData();
+    private long modificationCount = 0;
+    private final Map<String, Integer> pendingPages = new HashMap<>(); // Not yet published page changes
+    private final Alarm flushAlarm = new Alarm(Alarm.ThreadToUse.POOLED_THREAD, this);
+
+    public static WordMemorizerSettingsState getInstance() {
+        return ApplicationManager.getApplication().getService(WordMemorizerSettingsState.class);
+    }
 
-    private static WordMemorizerSettingsState instance;
-    private final PropertiesComponent propertiesComponent;
+    // --- PersistentStateComponent ---
+    @Override
+    public synchronized SettingsData getState() {
+        flush();
+        return data;
+    }
+
+    @Override
+    public synchronized void loadState(@NotNull SettingsData state) {
+        this.data = state;
+        if (data.books == null) {
+            data.books = new HashMap<>();
+        }
+        if (!data.migratedFromProperties) {
+            migrateFromProperties();
+        }
+    }
+
+    @Override
+    public synchronized void noStateLoaded() {
+        migrateFromProperties();
+    }
 
-    private WordMemorizerSettingsState() {
-        // 使用 Application 级别的 PropertiesComponent
-        this.propertiesComponent = PropertiesComponent.getInstance();
+    @Override
+    public synchronized long getStateModificationCount() {
+        flush(); // Every save, including the last one at exit, sees the pages still waiting for the alarm
+        return modificationCount;
     }
 
-    public static synchronized WordMemorizerSettingsState getInstance() {
-        if (instance == null) {
-            instance = new WordMemorizerSettingsState();
+    @Override
+    public void dispose() {
+        synchronized (this) {
+            flush();
         }
-        return instance;
+    }
+
+    /**
+     * Takes over what the plugin stored in {@link PropertiesComponent} before it had its own file.
+     */
+    private void migrateFromProperties() {
+        PropertiesComponent properties = PropertiesComponent.getInstance();
+        data.wordbookDirectory = properties.getValue(WORDBOOK_DIRECTORY_KEY, data.wordbookDirectory);
+        data.wordsPerPage = properties.getInt(WORDS_PER_PAGE_KEY, data.wordsPerPage);
+        data.selectedWordbook = properties.getValue(SELECTED_WORDBOOK_KEY, data.selectedWordbook);
+        data.customTtsUrlTemplate = properties.getValue(CUSTOM_TTS_URL_KEY, data.customTtsUrlTemplate);
+        data.playbackGapMs = properties.getInt(PLAYBACK_GAP_KEY, data.playbackGapMs);
+        data.catalogUrl = properties.getValue(CATALOG_URL_KEY, data.catalogUrl);
+        int page = properties.getInt(CURRENT_PAGE_KEY, DEFAULT_CURRENT_PAGE);
+        if (!StringUtil.isEmptyOrSpaces(data.selectedWordbook) && page > DEFAULT_CURRENT_PAGE) {
+            // The old page was global; it belonged to the book that was selected
+            bookData(data.selectedWordbook).currentPage = page;
+        }
+        for (String key : new String[]{WORDBOOK_DIRECTORY_KEY, CURRENT_PAGE_KEY, WORDS_PER_PAGE_KEY, SELECTED_WORDBOOK_KEY,
+                CUSTOM_TTS_URL_KEY, PLAYBACK_GAP_KEY, CATALOG_URL_KEY}) {
+            properties.unsetValue(key);
+        }
+        data.migratedFromProperties = true;
+        modificationCount++;
     }
 
     // --- Wordbook Directory ---
     @NotNull
-    public String getWordbookDirectory() {
-        // 使用 Configurable 中的默认值或空字符串作为最终默认
-        String defaultValue = WordMemorizerSettingsConfigurable.getDefaultDirectory(); // 假设 Configurable 有这个静态方法
-        // 或者直接用空字符串: String defaultValue = "";
-        return propertiesComponent.getValue(WORDBOOK_DIRECTORY_KEY, defaultValue);
+    public synchronized String getWordbookDirectory() {
+        // 未配置时使用 Configurable 中的默认目录
+        return StringUtil.isEmptyOrSpaces(data.wordbookDirectory)
+                ? WordMemorizerSettingsConfigurable.getDefaultDirectory() : data.wordbookDirectory;
     }
 
-    public void setWordbookDirectory(@NotNull String directory) {
-        propertiesComponent.setValue(WORDBOOK_DIRECTORY_KEY, directory);
+    public synchronized void setWordbookDirectory(@NotNull String directory) {
+        data.wordbookDirectory = update(data.wordbookDirectory, directory);
     }
 
-    // --- Current Page ---
-    public int getCurrentPage() {
-        // propertiesComponent 存储的是字符串，需要转换
-        // 使用 getIntValue 更方便，它处理了解析和默认值
-        return propertiesComponent.getInt(CURRENT_PAGE_KEY, DEFAULT_CURRENT_PAGE);
+    // --- Current page, per wordbook ---
+    public synchronized int getCurrentPage(@Nullable String wordbookName) {
+        if (StringUtil.isEmptyOrSpaces(wordbookName)) {
+            return DEFAULT_CURRENT_PAGE;
+        }
+        Integer pending = pendingPages.get(wordbookName);
+        if (pending != null) {
+            return pending;
+        }
+        BookData book = data.books.get(wordbookName);
+        return book != null ? book.currentPage : DEFAULT_CURRENT_PAGE;
     }
 
-    public void setCurrentPage(int page) {
+    /**
+     * Cheap to call on every page flip: the change is published with the next flush.
+     */
+    public synchronized void setCurrentPage(@Nullable String wordbookName, int page) {
+        if (StringUtil.isEmptyOrSpaces(wordbookName)) {
+            return;
+        }
         // 确保页码至少为 1
-        propertiesComponent.setValue(CURRENT_PAGE_KEY, Math.max(1, page), DEFAULT_CURRENT_PAGE);
+        pendingPages.put(wordbookName, Math.max(1, page));
+        if (flushAlarm.isEmpty()) {
+            flushAlarm.addRequest(() -> {
+                synchronized (this) {
+                    flush();
+                }
+            }, FLUSH_DELAY_MS);
+        }
     }
 
     // --- Words Per Page ---
-    public int getWordsPerPage() {
-        return propertiesComponent.getInt(WORDS_PER_PAGE_KEY, DEFAULT_WORDS_PER_PAGE);
+    public synchronized int getWordsPerPage() {
+        return data.wordsPerPage;
     }
 
-    public void setWordsPerPage(int count) {
+    public synchronized void setWordsPerPage(int count) {
         // 确保每页单词数至少为 1
-        propertiesComponent.setValue(WORDS_PER_PAGE_KEY, Math.max(1, count), DEFAULT_WORDS_PER_PAGE);
+        data.wordsPerPage = update(data.wordsPerPage, Math.max(1, count));
     }
 
     // --- Selected Wordbook ---
-    public String getSelectedWordbookName() {
-        // 直接获取字符串值，默认就是 null
-        return propertiesComponent.getValue(SELECTED_WORDBOOK_KEY);
+    @Nullable
+    public synchronized String getSelectedWordbookName() {
+        return StringUtil.isEmptyOrSpaces(data.selectedWordbook) ? null : data.selectedWordbook;
     }
 
-    public void setSelectedWordbookName(String wordbookName) {
-        // 如果传入 null 或空字符串，则移除该键或设置为空值
-        if (StringUtil.isEmptyOrSpaces(wordbookName)) {
-            // propertiesComponent.unsetValue(SELECTED_WORDBOOK_KEY); // 或者设置为空字符串
-            propertiesComponent.setValue(SELECTED_WORDBOOK_KEY, "");
-        } else {
-            propertiesComponent.setValue(SELECTED_WORDBOOK_KEY, wordbookName);
+    public synchronized void setSelectedWordbookName(@Nullable String wordbookName) {
+        data.selectedWordbook = update(data.selectedWordbook, wordbookName == null ? "" : wordbookName.trim());
+    }
+
+    // --- Custom TTS URL template (e.g. http://localhost:8000/{word}.mp3) ---
+    @NotNull
+    public synchronized String getCustomTtsUrlTemplate() {
+        return StringUtil.notNullize(data.customTtsUrlTemplate);
+    }
+
+    public synchronized void setCustomTtsUrlTemplate(@NotNull String template) {
+        data.customTtsUrlTemplate = update(data.customTtsUrlTemplate, template.trim());
+    }
+
+    // --- Gap between words in "play page" mode ---
+    public synchronized int getPlaybackGapMs() {
+        return data.playbackGapMs;
+    }
+
+    public synchronized void setPlaybackGapMs(int gapMs) {
+        data.playbackGapMs = update(data.playbackGapMs, Math.max(0, gapMs));
+    }
+
+    // --- Wordbook catalog manifest URL ---
+    @NotNull
+    public synchronized String getCatalogUrl() {
+        return StringUtil.notNullize(data.catalogUrl);
+    }
+
+    public synchronized void setCatalogUrl(@NotNull String url) {
+        data.catalogUrl = update(data.catalogUrl, url.trim());
+    }
+
+    // --- Highlight wordbook words in the editor ---
+    public synchronized boolean isHighlightVocabulary() {
+        return data.highlightVocabulary;
+    }
+
+    public synchronized void setHighlightVocabulary(boolean highlight) {
+        data.highlightVocabulary = update(data.highlightVocabulary, highlight);
+    }
+
+    // --- Word frequency list ---
+    @NotNull
+    public synchronized String getFrequencyFile() {
+        return StringUtil.notNullize(data.frequencyFile);
+    }
+
+    public synchronized void setFrequencyFile(@NotNull String file) {
+        data.frequencyFile = update(data.frequencyFile, file.trim());
+    }
+
+    // --- How the random button picks words ---
+    @NotNull
+    public synchronized WordSampler.Weighting getRandomWeighting() {
+        for (WordSampler.Weighting weighting : WordSampler.Weighting.values()) {
+            if (weighting.name().equals(data.randomWeighting)) {
+                return weighting;
+            }
+        }
+        return WordSampler.Weighting.UNIFORM;
+    }
+
+    public synchronized void setRandomWeighting(@NotNull WordSampler.Weighting weighting) {
+        data.randomWeighting = update(data.randomWeighting, weighting.name());
+    }
+
+    /**
+     * Publishes pending page changes; the modification count only moves if a page really changed.
+     */
+    private void flush() {
+        for (Map.Entry<String, Integer> pending : pendingPages.entrySet()) {
+            BookData book = bookData(pending.getKey());
+            if (book.currentPage != pending.getValue()) {
+                book.currentPage = pending.getValue();
+                modificationCount++;
+            }
+        }
+        pendingPages.clear();
+    }
+
+    private BookData bookData(String wordbookName) {
+        return data.books.computeIfAbsent(wordbookName, name -> new BookData());
+    }
+
+    private <T> T update(T oldValue, T newValue) {
+        if (!Objects.equals(oldValue, newValue)) {
+            modificationCount++;
         }
+        return newValue;
     }
-}
\ No newline at end of file
+}
@@ -1,52 +1,57 @@
 package com.honsin.aiword.toolwindow;
 
 
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.DumbAware;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.wm.ToolWindow;
 import com.intellij.openapi.wm.ToolWindowFactory;
+import com.intellij.openapi.wm.ex.ToolWindowManagerListener;
 import com.intellij.ui.content.Content;
 import com.intellij.ui.content.ContentFactory;
+import com.intellij.util.messages.MessageBusConnection;
 import org.jetbrains.annotations.NotNull;
 
 import javax.swing.*;
+import java.awt.*;
 
 public class WordMemorizerToolWindowFactory implements ToolWindowFactory, DumbAware {
 
+    private static final Logger LOG = Logger.getInstance(WordMemorizerToolWindowFactory.class);
+
     @Override
     public void createToolWindowContent(@NotNull Project project, @NotNull ToolWindow toolWindow) {
-        // Create instance of our main UI panel
-        WordMemorizerToolWindowPanel toolWindowPanel = new WordMemorizerToolWindowPanel(project);
-
-        JPanel mainPanel = toolWindowPanel.getMainPanel(); // <--- 获取 Panel
-
-        // --- 添加调试代码 ---
-        if (mainPanel == null) {
-            System.err.println("ERROR: toolWindowPanel.getMainPanel() returned NULL!");
-            // 或者使用 LOG.error(...)
-        } else {
-            System.out.println("DEBUG: mainPanel instance: " + mainPanel);
-            System.out.println("DEBUG: mainPanel component count: " + mainPanel.getComponentCount());
-            // 临时给它一个背景色，看看它是否真的显示了但内容透明或尺寸不对
-            mainPanel.setBackground(java.awt.Color.YELLOW);
-            mainPanel.setOpaque(true);
-            // 检查首选尺寸是否合理
-            System.out.println("DEBUG: mainPanel preferred size: " + mainPanel.getPreferredSize());
-            if (mainPanel.getPreferredSize() != null && (mainPanel.getPreferredSize().width <= 0 || mainPanel.getPreferredSize().height <= 0)) {
-                System.err.println("WARNING: mainPanel preferred size might be zero or negative!");
-                // 强制给一个大小试试
-                mainPanel.setPreferredSize(new java.awt.Dimension(300, 200));
-            }
-        }
-        // --- 结束调试代码 ---
-
         // Get the content factory
         ContentFactory contentFactory = ContentFactory.getInstance();
-        // Create content using the panel's root component
-        Content content = contentFactory.createContent(toolWindowPanel.getMainPanel(), "", false); // No title, not closeable
+        // The real panel is built when the tool window is first shown; until then the content is an empty placeholder
+        Content content = contentFactory.createContent(new JPanel(new BorderLayout()), "", false); // No title, not closeable
 
         // Add the content to the tool window
         toolWindow.getContentManager().addContent(content);
+
+        if (toolWindow.isVisible()) {
+            buildPanel(project, content);
+            return;
+        }
+        MessageBusConnection connection = project.getMessageBus().connect(toolWindow.getDisposable());
+        connection.subscribe(ToolWindowManagerListener.TOPIC, new ToolWindowManagerListener() {
+            @Override
+            public void toolWindowShown(@NotNull ToolWindow shown) {
+                if (toolWindow.getId().equals(shown.getId())) {
+                    connection.disconnect();
+                    buildPanel(project, content);
+                }
+            }
+        });
+    }
+
+    private static void buildPanel(Project project, Content content) {
+        long start = System.nanoTime();
+        // Create instance of our main UI panel; it restores the last book and page in the background
+        WordMemorizerToolWindowPanel toolWindowPanel = new WordMemorizerToolWindowPanel(project, start);
+        content.setComponent(toolWindowPanel.getMainPanel());
+        content.setDisposer(toolWindowPanel);
+        LOG.info("AiWord tool window built in " + (System.nanoTime() - start) / 1_000_000 + " ms");
     }
 
     @Override
@@ -60,4 +65,4 @@ public class WordMemorizerToolWindowFactory implements ToolWindowFactory, DumbAw
         // Optional initialization when tool window first shows
         window.setStripeTitle("AiWord Memorizer"); // Title shown on the tool window stripe button
     }
-}
\ No newline at end of file
+}
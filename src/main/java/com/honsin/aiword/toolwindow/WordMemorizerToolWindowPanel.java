@@ -1,25 +1,44 @@
 package com.honsin.aiword.toolwindow;
 
+import com.honsin.aiword.model.ExtendedEntry;
 import com.honsin.aiword.model.WordEntry;
+import com.honsin.aiword.service.KnownWords;
+import com.honsin.aiword.service.RecallStats;
+import com.honsin.aiword.service.StudyStats;
+import com.honsin.aiword.service.VocabularyHighlightService;
+import com.honsin.aiword.service.WordViewEngine;
+import com.honsin.aiword.service.WordViewQuery;
+import com.honsin.aiword.service.WordbookLoadCoordinator;
 import com.honsin.aiword.service.WordbookService;
+import com.honsin.aiword.service.WordbookSnapshot;
 import com.honsin.aiword.service.YoudaoTtsService;
+import com.honsin.aiword.service.tts.SequentialPlayer;
 import com.honsin.aiword.settings.WordMemorizerSettingsState;
 import com.intellij.codeInsight.hint.HintManager;
 import com.intellij.codeInsight.hint.HintManagerImpl;
 import com.intellij.codeInsight.hint.HintUtil;
-import com.intellij.internal.statistic.eventLog.util.StringUtil;
 import com.intellij.notification.Notification;
+import com.intellij.notification.NotificationAction;
 import com.intellij.notification.NotificationGroupManager;
 import com.intellij.notification.NotificationType;
 import com.intellij.notification.Notifications;
 import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.popup.JBPopupFactory;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.ui.DocumentAdapter;
+import com.intellij.ui.SimpleListCellRenderer;
 import com.intellij.ui.awt.RelativePoint;
 import com.intellij.ui.components.JBScrollPane;
 import com.intellij.ui.table.JBTable;
 import com.intellij.util.Alarm;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
 import javax.swing.table.TableCellEditor;
 import javax.swing.table.TableCellRenderer;
 import javax.swing.table.TableColumn;
@@ -31,18 +50,27 @@ import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class WordMemorizerToolWindowPanel implements Disposable {
+    private static final Logger LOG = Logger.getInstance(WordMemorizerToolWindowPanel.class);
     private static final String KEY_CURRENT_PAGE = "wordMemorizer.currentPage";
     private static final String KEY_WORDS_PER_PAGE = "wordMemorizer.wordsPerPage";
+    private static final int HINT_CACHE_SIZE = 256;
+    private static final int MAX_HINT_LINES = 3; // Per section of the extended fields
     private Alarm notificationExpireAlarm;
     private JPanel mainPanel;
     private JSpinner wordCountSpinner;
     private JButton startButton;
     private JCheckBox hideTranslationCheckBox;
+    private JCheckBox showAllCheckBox;
+    private JTextField filterField;
+    private JComboBox<WordViewQuery.Sort> sortComboBox;
     private JBTable wordTable; // Use JBTable
     private JBScrollPane scrollPane; // Use JBScrollPane
     private JButton loadButton;
@@ -52,50 +80,119 @@ public class WordMemorizerToolWindowPanel implements Disposable {
     private JComboBox selectDictComboBox;
     private JTextField wordInputField;
     private JCheckBox autoFayin;
+    private JCheckBox soundsLikeCheckBox;
+    private JButton playPageButton;
+    private JButton pausePlaybackButton;
+    private JButton skipPlaybackButton;
 
     private final Project project;
     private final WordbookService wordbookService;
     private final YoudaoTtsService ttsService; // Add TTS service instance
     private WordTableModel tableModel;
-    private List<WordEntry> allLoadedWords = new ArrayList<>(); // Store all words in order
+    private final WordViewEngine viewEngine = new WordViewEngine(); // Filtered/sorted views, computed off the EDT
+    private final Map<String, String> hintHtmlCache = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > HINT_CACHE_SIZE;
+        }
+    };
+    private List<WordEntry> allLoadedWords = Collections.emptyList(); // Whole book in order, read-only (mapped)
+    private WordbookSnapshot loadedSnapshot; // Shared with other projects showing the same book; released when replaced
+    private final WordbookLoadCoordinator loadCoordinator;
     private int currentPage = 1;
     private int wordsPerPage = 20; // Default, will be loaded/set
+    private static final int MAX_SOUNDS_LIKE = 20;
     private int totalPages = 0;
     private String selectedWordbookName = null;
+    private SequentialPlayer pagePlayer; // Non-null while "play page" is running
     private static final String KEY_SELECTED_WORDBOOK = "wordMemorizer.selectedWordbook";
+    private final long startNanos; // When the tool window started building, for the startup timings
+    private boolean disposed = false;
 
-    public WordMemorizerToolWindowPanel(Project project) {
+    /**
+     * @param startNanos {@link System#nanoTime()} when building the tool window started.
+     */
+    public WordMemorizerToolWindowPanel(Project project, long startNanos) {
         this.project = project;
+        this.startNanos = startNanos;
         this.wordbookService = WordbookService.getInstance();
+        this.loadCoordinator = new WordbookLoadCoordinator(wordbookService);
         this.ttsService = new YoudaoTtsService(); // Create an instance
 
         this.notificationExpireAlarm = new Alarm(Alarm.ThreadToUse.SWING_THREAD, this);
 
+        WordMemorizerSettingsState settings = WordMemorizerSettingsState.getInstance();
+        this.wordsPerPage = Math.max(1, Math.min(500, settings.getWordsPerPage())); // Spinner range
+
+        // Only cheap UI setup here; the directory scan and the book load happen after the window is shown
         setupTable();
         setupSpinner();
+        setupViewControls();
         setupActionListeners();
-        refreshWordbookList();
-
-        // Initial load or refresh
-        // Initial load or refresh based on saved state? Or trigger load explicitly?
-        // Let's load books on startup and update view
-        if (selectedWordbookName != null && selectedWordbookName.equals(selectDictComboBox.getSelectedItem())) {
-            System.out.println("Attempting to auto-load last selected wordbook: " + selectedWordbookName);
-            loadWordsFromSelectedFile(); // 尝试自动加载
-        } else if (selectDictComboBox.getItemCount() > 0) {
-            // 如果没有自动加载，提示用户操作
-            showInfoNotification("请选择一个单词本并点击 '加载选中词库'。");
-        }
+        setupKnownWords();
+        restoreStateAsync(settings);
+
         System.out.println("WordMemorizerToolWindowPanel constructor finished."); // 添加日志
         wordInputField.setToolTipText("输入单词并按 Enter 键查找高亮");
     }
 
+    /**
+     * Restores the last wordbook and page without holding up the tool window: the directory is scanned
+     * in the background and the book is opened from its compiled cache (a memory map, no parsing).
+     */
+    private void restoreStateAsync(WordMemorizerSettingsState settings) {
+        String directoryPath = settings.getWordbookDirectory();
+        String savedBook = settings.getSelectedWordbookName();
+        int savedPage = settings.getCurrentPage(savedBook);
+        long uiReady = System.nanoTime();
+        pageInfoLabel.setText("加载中...");
+
+        ApplicationManager.getApplication().executeOnPooledThread(() -> {
+            List<String> jsonFiles;
+            try {
+                jsonFiles = StringUtil.isEmptyOrSpaces(directoryPath) ? Collections.emptyList()
+                        : scanWordbookDirectory(Paths.get(directoryPath));
+            } catch (IOException e) {
+                LOG.warn("Could not scan wordbook directory " + directoryPath + ": " + e.getMessage());
+                jsonFiles = Collections.emptyList();
+            }
+            List<String> files = jsonFiles;
+            long scanned = System.nanoTime();
+
+            SwingUtilities.invokeLater(() -> {
+                if (disposed) {
+                    return;
+                }
+                applyWordbookList(files, savedBook);
+                if (savedBook != null && savedBook.equals(selectDictComboBox.getSelectedItem())) {
+                    System.out.println("Attempting to auto-load last selected wordbook: " + savedBook);
+                    loadWordsFromSelectedFile(savedPage, () -> LOG.info("AiWord startup: ui " + millis(startNanos, uiReady)
+                            + " ms, directory scan " + millis(uiReady, scanned) + " ms, book + first page "
+                            + millis(scanned, System.nanoTime()) + " ms, total " + millis(startNanos, System.nanoTime())
+                            + " ms (" + allLoadedWords.size() + " words, page " + currentPage + ")"));
+                } else {
+                    updateViewForCurrentPage();
+                    LOG.info("AiWord startup: ui " + millis(startNanos, uiReady) + " ms, directory scan "
+                            + millis(uiReady, scanned) + " ms, no book to restore");
+                    if (selectDictComboBox.getItemCount() > 0) {
+                        // 如果没有自动加载，提示用户操作
+                        showInfoNotification("请选择一个单词本并点击 '加载词库'。");
+                    }
+                }
+            });
+        });
+    }
+
+    private static long millis(long fromNanos, long toNanos) {
+        return (toNanos - fromNanos) / 1_000_000;
+    }
+
 
     private void updatePaginationState() {
         if (wordsPerPage <= 0) {
             totalPages = 0; // Avoid division by zero
         } else {
-            totalPages = (int) Math.ceil((double) allLoadedWords.size() / wordsPerPage);
+            totalPages = (int) Math.ceil((double) tableModel.getViewSize() / wordsPerPage);
         }
         // Ensure currentPage is valid after recalculation (e.g., if wordsPerPage increased drastically)
         if (currentPage > totalPages && totalPages > 0) {
@@ -109,23 +206,28 @@ public class WordMemorizerToolWindowPanel implements Disposable {
     }
 
 
+    // Cheap on every page flip: the settings only change memory and are written in batches
     private void saveState() {
         WordMemorizerSettingsState settings = WordMemorizerSettingsState.getInstance();
-        settings.setCurrentPage(this.currentPage);
+        settings.setCurrentPage(selectedWordbookName, this.currentPage); // The page belongs to the loaded book
         settings.setWordsPerPage(this.wordsPerPage);
+        settings.setSelectedWordbookName(selectedWordbookName); // Save the loaded filename or null
 
-        Object selectedItem = selectDictComboBox.getSelectedItem();
-        String nameToSave = selectedItem instanceof String ? (String) selectedItem : null;
-        settings.setSelectedWordbookName(nameToSave); // Save the selected filename or null
-
-        System.out.println("Saved state: currentPage=" + currentPage + ", wordsPerPage=" + wordsPerPage + ", selectedWordbook=" + (selectedItem instanceof String ? selectedItem : "null"));
+        System.out.println("Saved state: currentPage=" + currentPage + ", wordsPerPage=" + wordsPerPage + ", selectedWordbook=" + selectedWordbookName);
     }
 
 
     // Updates the table and pagination controls for the current page
     private void updateViewForCurrentPage() {
-        if (allLoadedWords.isEmpty()) {
-            tableModel.setWords(List.of()); // Show empty table
+        stopPagePlayback(); // The page content is about to change
+        wordTable.clearSelection(); // Row updates keep the selection, but it belonged to the old rows
+        if (tableModel.getSource() != allLoadedWords) {
+            refreshView(); // After a random pick or a new book; comes back here once the view is ready
+            return;
+        }
+        int viewSize = tableModel.getViewSize();
+        if (viewSize == 0) {
+            tableModel.setWindow(0, 0);
             pageInfoLabel.setText("0 / 0");
             previousPageButton.setEnabled(false);
             nextPageButton.setEnabled(false);
@@ -133,21 +235,29 @@ public class WordMemorizerToolWindowPanel implements Disposable {
             return;
         }
 
+        if (showAllCheckBox.isSelected()) {
+            // One window over the whole book; the table only asks for the rows it paints
+            tableModel.showAll();
+            pageInfoLabel.setText("全部 " + viewSize);
+            previousPageButton.setEnabled(false);
+            nextPageButton.setEnabled(false);
+            return;
+        }
+
         if (totalPages == 0) updatePaginationState(); // Recalculate if needed
 
         // Clamp currentPage just in case
         currentPage = Math.max(1, Math.min(currentPage, totalPages));
 
         int startIndex = (currentPage - 1) * wordsPerPage;
-        int endIndex = Math.min(startIndex + wordsPerPage, allLoadedWords.size());
+        int endIndex = Math.min(startIndex + wordsPerPage, viewSize);
 
-        if (startIndex < 0 || startIndex >= allLoadedWords.size()) {
+        if (startIndex < 0 || startIndex >= viewSize) {
             // Handle invalid startIndex, maybe show empty page or log error
-            tableModel.setWords(List.of());
+            tableModel.setWindow(0, 0);
             System.err.println("Error: Invalid start index " + startIndex + " for page " + currentPage);
         } else {
-            List<WordEntry> wordsForPage = allLoadedWords.subList(startIndex, endIndex);
-            tableModel.setWords(wordsForPage); // Update table model with the sublist
+            tableModel.setWindow(startIndex, endIndex - startIndex); // The page is a window onto the whole book
             System.out.println("Displaying page " + currentPage + "/" + totalPages + " (Words " + (startIndex + 1) + " to " + endIndex + ")");
         }
 
@@ -161,6 +271,119 @@ public class WordMemorizerToolWindowPanel implements Disposable {
     }
 
 
+    /**
+     * Shows the loaded book through the current filter and sort. The view is computed in the background
+     * (or taken from the cache); until it is ready the table stays empty.
+     */
+    private void refreshView() {
+        List<WordEntry> book = allLoadedWords;
+        if (tableModel.getSource() != book) {
+            tableModel.setSource(book);
+            tableModel.setWindow(0, 0);
+        }
+        viewEngine.request(book, currentViewQuery(), view -> {
+            if (book != allLoadedWords || tableModel.getSource() != book) {
+                return; // Another book was loaded or random words are shown
+            }
+            tableModel.setView(view);
+            updatePaginationState();
+            updateViewForCurrentPage();
+        });
+    }
+
+    private WordViewQuery currentViewQuery() {
+        Object sort = sortComboBox.getSelectedItem();
+        return WordViewQuery.parse(filterField.getText(),
+                sort instanceof WordViewQuery.Sort ? (WordViewQuery.Sort) sort : WordViewQuery.Sort.BOOK);
+    }
+
+    private void setupViewControls() {
+        sortComboBox.setModel(new DefaultComboBoxModel<>(WordViewQuery.Sort.values()));
+        sortComboBox.addActionListener(e -> {
+            currentPage = 1;
+            refreshView();
+        });
+        filterField.getDocument().addDocumentListener(new DocumentAdapter() {
+            @Override
+            protected void textChanged(@NotNull DocumentEvent e) {
+                // Each keystroke supersedes the previous query, which is cancelled if still running
+                currentPage = 1;
+                refreshView();
+            }
+        });
+    }
+
+    /**
+     * Right click on rows marks their words as known; views of the book leave known words out, so they are
+     * recomputed whenever the known words change (here or in another window).
+     */
+    private void setupKnownWords() {
+        JPopupMenu menu = new JPopupMenu();
+        JMenuItem markKnown = new JMenuItem("标记为已掌握 (Mark as Known)");
+        markKnown.addActionListener(e -> markSelectedWordsKnown());
+        menu.add(markKnown);
+        wordTable.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                showMenu(e);
+            }
+
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                showMenu(e);
+            }
+
+            private void showMenu(MouseEvent e) {
+                if (!e.isPopupTrigger()) return;
+                int row = wordTable.rowAtPoint(e.getPoint());
+                if (row < 0) return;
+                if (!wordTable.isRowSelected(row)) {
+                    wordTable.setRowSelectionInterval(row, row);
+                }
+                menu.show(wordTable, e.getX(), e.getY());
+            }
+        });
+        KnownWords.getInstance().addChangeListener(() -> SwingUtilities.invokeLater(() -> {
+            if (!disposed && tableModel.getSource() == allLoadedWords) {
+                refreshView();
+            }
+        }), this);
+    }
+
+    /**
+     * Counts an answer for the random weighting ({@link RecallStats}) and the study statistics of the shown book.
+     */
+    private void recordAnswer(String word, boolean recalled) {
+        if (recalled) {
+            RecallStats.getInstance().recordRecalled(word);
+        } else {
+            RecallStats.getInstance().recordForgotten(word);
+        }
+        if (selectedWordbookName != null) {
+            StudyStats.getInstance().recordAnswer(selectedWordbookName, word, recalled);
+        }
+    }
+
+    private void markSelectedWordsKnown() {
+        List<String> words = new ArrayList<>();
+        for (int viewRow : wordTable.getSelectedRows()) {
+            WordEntry entry = tableModel.getWordEntryAt(wordTable.convertRowIndexToModel(viewRow));
+            if (entry != null && !KnownWords.getInstance().isKnown(entry.getWord())) {
+                words.add(entry.getWord()); // Undo must not forget words that were known before
+            }
+        }
+        if (words.isEmpty() || KnownWords.getInstance().addAll(words) == 0) {
+            return;
+        }
+        Notification notification = NotificationGroupManager.getInstance()
+                .getNotificationGroup("WordMemorizerNotifications")
+                .createNotification("已掌握 (Known Words)", "已标记 " + words.size() + " 个单词为已掌握，之后不再出现。(Marked "
+                        + words.size() + " words as known; they are skipped from now on.)", NotificationType.INFORMATION);
+        notification.addAction(NotificationAction.createSimpleExpiring("撤销 (Undo)",
+                () -> KnownWords.getInstance().removeAll(words)));
+        Notifications.Bus.notify(notification, project);
+    }
+
     public JPanel getMainPanel() {
         return mainPanel;
     }
@@ -232,7 +455,33 @@ public class WordMemorizerToolWindowPanel implements Disposable {
             this.currentPage = 1;
             updateViewForCurrentPage();
             saveState(); // Save page reset
-            tableModel.setWords(wordbookService.getRandomWords(wordsPerPage, allLoadedWords));
+            if (loadedSnapshot != null && loadedSnapshot.getWords() == allLoadedWords) {
+                // Weighted as set in the settings (frequency, difficulty, recent errors), known words skipped
+                tableModel.setWords(wordbookService.getRandomWords(wordsPerPage, loadedSnapshot,
+                        WordMemorizerSettingsState.getInstance().getRandomWeighting()));
+            }
+        });
+
+        // Play page / pause / skip
+        playPageButton.addActionListener(e -> {
+            if (pagePlayer != null) {
+                stopPagePlayback();
+            } else {
+                startPagePlayback();
+            }
+        });
+        pausePlaybackButton.addActionListener(e -> {
+            if (pagePlayer != null) {
+                boolean pause = !pagePlayer.isPaused();
+                pagePlayer.setPaused(pause);
+                pausePlaybackButton.setText(pause ? "继续" : "暂停");
+            }
+        });
+        skipPlaybackButton.addActionListener(e -> {
+            if (pagePlayer != null) {
+                pagePlayer.skip();
+                pausePlaybackButton.setText("暂停");
+            }
         });
 
         // Hide/Show translation checkbox action
@@ -241,6 +490,9 @@ public class WordMemorizerToolWindowPanel implements Disposable {
             tableModel.setTranslationsHidden(hide);
         });
 
+        // Whole book in one scrollable table instead of pages
+        showAllCheckBox.addActionListener(e -> updateViewForCurrentPage());
+
         // Add action listener to the ButtonColumn editor
         ((ButtonColumn) wordTable.getColumnModel().getColumn(WordTableModel.PRONOUNCE_COLUMN_INDEX).getCellEditor())
                 .addActionListener(e -> {
@@ -272,8 +524,11 @@ public class WordMemorizerToolWindowPanel implements Disposable {
                         WordEntry entry = tableModel.getWordEntryAt(modelRow);
 
                         if (entry != null) {
+                            if (tableModel.isTranslationsHidden()) {
+                                recordAnswer(entry.getWord(), false); // Had to look it up
+                            }
                             // --- Show Hint ---
-                            showWordDetailHint(entry, e);
+                            showWordDetailHint(entry, bookIndexOf(modelRow), e);
                         }
                     }
                 }
@@ -315,7 +570,10 @@ public class WordMemorizerToolWindowPanel implements Disposable {
                 System.out.println(">>> DEBUG: Text obtained inside invokeLater: [" + textInInvokeLater + "]");
                 String textToFind = textInInvokeLater.trim();
 
-                if (!textToFind.isEmpty()) {
+                if (!textToFind.isEmpty() && soundsLikeCheckBox.isSelected()) {
+                    showSoundsLike(textToFind);
+                    wordInputField.setText("");
+                } else if (!textToFind.isEmpty()) {
                     if (findAndHighlightWord(textToFind) && autoFayin.isSelected()) {
                         ttsService.pronounceWordAsync(project, textToFind);
                     }
@@ -330,28 +588,30 @@ public class WordMemorizerToolWindowPanel implements Disposable {
     }
 
     /**
-     * 在当前表格页中查找指定的单词，并高亮显示该行1秒钟。
+     * 查找指定的单词，并高亮显示该行1秒钟：先在当前页中查找，再在整个单词本中查找并翻到它所在的页。
+     * 词形变化会还原成单词本中的原形 (went -> go, abilities -> ability)。
      *
      * @param wordToFind 要查找的单词 (大小写不敏感)
      */
     private boolean findAndHighlightWord(String wordToFind) {
         List<WordEntry> currentPageWords = tableModel.getWordsOnCurrentPage(); // 获取当前页数据
-        if (currentPageWords == null || currentPageWords.isEmpty()) {
-            System.out.println("No words on the current page to search in.");
-            return false; // 当前页无数据
-        }
-
-        int targetRowIndex = -1; // 目标行在当前 Model 中的索引
-        for (int i = 0; i < currentPageWords.size(); i++) {
-            WordEntry entry = currentPageWords.get(i);
-            if (entry != null && wordToFind.equalsIgnoreCase(entry.getWord())) {
-                targetRowIndex = i; // 找到匹配项
-                break; // 找到第一个就停止
+        int targetRowIndex = indexOnPage(currentPageWords, wordToFind);
+        if (targetRowIndex < 0 && loadedSnapshot != null && loadedSnapshot.getWords() == allLoadedWords) {
+            int lemma = loadedSnapshot.findLemma(wordToFind); // Hash probes, no scan of the book
+            if (lemma >= 0) {
+                targetRowIndex = tableModel.getSource() == allLoadedWords
+                        ? showSourceIndex(lemma)
+                        : indexOnPage(currentPageWords, allLoadedWords.get(lemma).getWord()); // Random pick shown
             }
         }
 
         if (targetRowIndex != -1) {
             // 找到了单词！
+            if (tableModel.isTranslationsHidden()) {
+                WordEntry found = tableModel.getWordEntryAt(targetRowIndex);
+                // Recalled without seeing the translation; counted for the headword, not the typed form
+                recordAnswer(found != null ? found.getWord() : wordToFind, true);
+            }
             System.out.println("Found word '" + wordToFind + "' at model row index: " + targetRowIndex);
 
             // --- 高亮逻辑 ---
@@ -378,14 +638,158 @@ public class WordMemorizerToolWindowPanel implements Disposable {
             return true;
         } else {
             // 未找到单词
-            System.out.println("Word '" + wordToFind + "' not found on the current page.");
+            System.out.println("Word '" + wordToFind + "' not found in the wordbook view.");
 
             return false;
         }
     }
 
+    /**
+     * Lists the words of the book that sound like {@code spelling}; picking one finds it like typing it would.
+     */
+    private void showSoundsLike(String spelling) {
+        if (loadedSnapshot == null || loadedSnapshot.getWords() != allLoadedWords) {
+            showErrorNotification("请先加载单词本。(Load a wordbook first.)");
+            return;
+        }
+        List<WordEntry> candidates = new ArrayList<>();
+        for (int index : loadedSnapshot.getPhoneticIndex().find(spelling, MAX_SOUNDS_LIKE)) {
+            candidates.add(allLoadedWords.get(index));
+        }
+        if (candidates.isEmpty()) {
+            showInfoNotification("没有发音像 '" + spelling + "' 的单词 (No word sounds like it)");
+            return;
+        }
+        JBPopupFactory.getInstance().createPopupChooserBuilder(candidates)
+                .setTitle("发音像 (Sounds like) '" + spelling + "'")
+                .setRenderer(SimpleListCellRenderer.create("", entry -> entry.getWord() + "    " + entry.getTranslation()))
+                .setVisibleRowCount(10)
+                .setItemChosenCallback(entry -> {
+                    if (findAndHighlightWord(entry.getWord()) && autoFayin.isSelected()) {
+                        ttsService.pronounceWordAsync(project, entry.getWord());
+                    }
+                })
+                .createPopup()
+                .showUnderneathOf(wordInputField);
+    }
+
+    private static int indexOnPage(List<WordEntry> pageWords, String word) {
+        for (int i = 0; i < pageWords.size(); i++) {
+            WordEntry entry = pageWords.get(i);
+            if (entry != null && word.equalsIgnoreCase(entry.getWord())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Turns to the page showing entry {@code sourceIndex} of the book; returns its row, or -1 if the
+     * current filter hides it.
+     */
+    private int showSourceIndex(int sourceIndex) {
+        int position = tableModel.indexOfSourceIndex(sourceIndex);
+        if (position < 0) {
+            return -1;
+        }
+        if (!showAllCheckBox.isSelected()) {
+            int page = position / wordsPerPage + 1;
+            if (page != currentPage) {
+                currentPage = page;
+                updateViewForCurrentPage();
+                saveState();
+            }
+        }
+        return position - tableModel.getWindowOffset();
+    }
+
+    /**
+     * Plays every word on the current page; the playing row is highlighted and its translation revealed.
+     */
+    private void startPagePlayback() {
+        List<WordEntry> pageWords = tableModel.getWordsOnCurrentPage();
+        if (pageWords.isEmpty()) {
+            return;
+        }
+        // Read lazily by the player, so "show all" does not copy the whole book
+        List<String> words = new AbstractList<>() {
+            @Override
+            public String get(int index) {
+                return pageWords.get(index).getWord();
+            }
+
+            @Override
+            public int size() {
+                return pageWords.size();
+            }
+        };
+
+        SequentialPlayer[] self = new SequentialPlayer[1];
+        SequentialPlayer player = new SequentialPlayer(words, WordMemorizerSettingsState.getInstance().getPlaybackGapMs(),
+                new SequentialPlayer.Listener() {
+                    @Override
+                    public void onWordStarted(int index, @NotNull String word) {
+                        SwingUtilities.invokeLater(() -> {
+                            if (pagePlayer != self[0] || index >= tableModel.getRowCount()) return;
+                            tableModel.setRevealedRow(index);
+                            wordTable.setRowSelectionInterval(index, index);
+                            Rectangle cellRect = wordTable.getCellRect(index, 0, true);
+                            wordTable.scrollRectToVisible(cellRect);
+                        });
+                    }
+
+                    @Override
+                    public void onWordFailed(int index, @NotNull String word, @NotNull String reason) {
+                        LOG.info("Play page: skipped '" + word + "': " + reason);
+                    }
+
+                    @Override
+                    public void onFinished(boolean stopped) {
+                        SwingUtilities.invokeLater(() -> {
+                            if (pagePlayer == self[0]) {
+                                resetPagePlaybackControls();
+                            }
+                        });
+                    }
+                });
+        self[0] = player;
+        pagePlayer = player;
+        playPageButton.setText("■ 停止");
+        pausePlaybackButton.setText("暂停");
+        pausePlaybackButton.setEnabled(true);
+        skipPlaybackButton.setEnabled(true);
+        player.start();
+    }
+
+    private void stopPagePlayback() {
+        if (pagePlayer != null) {
+            pagePlayer.stop();
+            resetPagePlaybackControls();
+        }
+    }
+
+    private void resetPagePlaybackControls() {
+        pagePlayer = null;
+        tableModel.setRevealedRow(-1);
+        wordTable.clearSelection();
+        playPageButton.setText("▶ 连读");
+        pausePlaybackButton.setText("暂停");
+        pausePlaybackButton.setEnabled(false);
+        skipPlaybackButton.setEnabled(false);
+    }
+
     private void loadWordsFromSelectedFile() {
-        allLoadedWords.clear();
+        Object selectedItem = selectDictComboBox.getSelectedItem();
+        // Each book opens at the page it was left at
+        int page = WordMemorizerSettingsState.getInstance().getCurrentPage(selectedItem instanceof String ? (String) selectedItem : null);
+        loadWordsFromSelectedFile(page, null);
+    }
+
+    /**
+     * @param pageToShow page to show once the book is loaded (clamped to the book).
+     * @param onShown    run after that page is shown, if the load succeeds.
+     */
+    private void loadWordsFromSelectedFile(int pageToShow, @Nullable Runnable onShown) {
         Object selectedItem = selectDictComboBox.getSelectedItem();
         if (!(selectedItem instanceof String)) {
             showErrorNotification("未选择有效的单词本文件。（如果未配置请先到设置中设置单词本目录）");
@@ -403,30 +807,54 @@ public class WordMemorizerToolWindowPanel implements Disposable {
 
         Path filePath = Paths.get(directoryPath).resolve(selectedName);
 
-        try {
-            // Call the service to load words from this specific file
-            this.allLoadedWords = wordbookService.loadWordsFromFile(filePath);
+        // Parsed in the background; loading another book before this one is done cancels it
+        pageInfoLabel.setText("加载中...");
+        loadCoordinator.load(filePath, new WordbookLoadCoordinator.Callback() {
+            @Override
+            public void loaded(@NotNull WordbookSnapshot snapshot) {
+                releaseLoadedSnapshot();
+                loadedSnapshot = snapshot;
+                allLoadedWords = snapshot.getWords();
+                viewEngine.setFrequencyRanks(allLoadedWords, snapshot.getFrequencyRanks()); // Joined during the load
+                hintHtmlCache.clear(); // The same word may have another translation in this book
+                VocabularyHighlightService.getInstance().setWordbook(snapshot); // Editors highlight the book shown last
+
+                // Reset pagination and update view
+                currentPage = pageToShow;
+                updatePaginationState();
+                updateViewForCurrentPage();
+                selectedWordbookName = selectedName;
+                saveState(); // Remember the book, so the next start opens it again
+                if (onShown != null) {
+                    onShown.run();
+                }
 
-            // Reset pagination and update view
-            this.currentPage = 1;
-            updatePaginationState();
-            updateViewForCurrentPage();
-            // No need to saveState() here, as selection change already saved it.
+                showInfoNotification("已加载单词本: " + selectedName + " (" + allLoadedWords.size() + " words)");
+            }
 
-            showInfoNotification("已加载单词本: " + selectedName + " (" + allLoadedWords.size() + " words)");
+            @Override
+            public void failed(@NotNull Path file, @NotNull IOException e) {
+                System.err.println("加载单词本文件失败: " + file + " - " + e.getMessage());
+                e.printStackTrace(); // Print stack trace for debugging
+                showErrorNotification("加载单词本 '" + selectedName + "' 失败: " + e.getMessage());
+                clearWordDisplay(); // Clear display on error
+            }
+        });
+    }
 
-        } catch (IOException e) {
-            System.err.println("加载单词本文件失败: " + filePath + " - " + e.getMessage());
-            e.printStackTrace(); // Print stack trace for debugging
-            showErrorNotification("加载单词本 '" + selectedName + "' 失败: " + e.getMessage());
-            clearWordDisplay(); // Clear display on error
+
+    private void releaseLoadedSnapshot() {
+        if (loadedSnapshot != null) {
+            loadedSnapshot.release();
+            loadedSnapshot = null;
         }
     }
 
-
     // Helper method to clear the display when loading fails or no file selected
     private void clearWordDisplay() {
-        this.allLoadedWords.clear();
+        loadCoordinator.cancel();
+        this.allLoadedWords = Collections.emptyList();
+        releaseLoadedSnapshot();
         this.currentPage = 1;
         updatePaginationState(); // Recalculates totalPages (will be 0)
         updateViewForCurrentPage(); // Shows empty table
@@ -493,13 +921,9 @@ public class WordMemorizerToolWindowPanel implements Disposable {
         System.out.println("Refreshing list. Previously selected: " + previousSelectedName);
 
 
-        List<String> jsonFiles = new ArrayList<>();
-        try (DirectoryStream<Path> stream = Files.newDirectoryStream(wordbookDir, "*.json")) {
-            for (Path entry : stream) {
-                if (Files.isRegularFile(entry)) {
-                    jsonFiles.add(entry.getFileName().toString());
-                }
-            }
+        List<String> jsonFiles;
+        try {
+            jsonFiles = scanWordbookDirectory(wordbookDir);
         } catch (IOException e) {
             // 可以在这里显示短暂错误，或只在日志记录
             showErrorNotification("扫描单词本目录失败: " + e.getMessage());
@@ -508,18 +932,55 @@ public class WordMemorizerToolWindowPanel implements Disposable {
             return; // 扫描失败，不更新列表
         }
 
+        boolean selectionRestored = applyWordbookList(jsonFiles, previousSelectedName);
+
+        // 可以在这里保存状态吗？如果在构造函数中调用 refreshWordbookList，
+        // 可能会在 state 完全加载前就保存，导致问题。
+        // 最好只在用户明确操作（如点击加载、翻页）或程序退出时保存。
+        // saveState(); // 暂时不在这里保存
+
+        // 如果没有恢复之前的选择，并且列表不为空，那么新的默认选择(第一个)可能需要用户手动加载
+        if (!selectionRestored && !jsonFiles.isEmpty()) {
+            // 也许提示一下用户需要点击加载按钮？
+            showInfoNotification("Wordbook list refreshed. Click 'Load Selected' to load '" + selectDictComboBox.getSelectedItem() + "'.");
+        }
+    }
+
+
+    /**
+     * Names of the wordbooks (*.json) in {@code wordbookDir}, sorted; safe to call off the EDT.
+     */
+    private static List<String> scanWordbookDirectory(Path wordbookDir) throws IOException {
+        List<String> jsonFiles = new ArrayList<>();
+        if (!Files.isDirectory(wordbookDir)) {
+            return jsonFiles;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(wordbookDir, "*.json")) {
+            for (Path entry : stream) {
+                if (Files.isRegularFile(entry)) {
+                    jsonFiles.add(entry.getFileName().toString());
+                }
+            }
+        }
         Collections.sort(jsonFiles, String.CASE_INSENSITIVE_ORDER);
+        return jsonFiles;
+    }
 
+    /**
+     * Shows {@code jsonFiles} in the combo box and selects {@code preferredName} if it is among them.
+     *
+     * @return whether {@code preferredName} was selected.
+     */
+    private boolean applyWordbookList(List<String> jsonFiles, @Nullable String preferredName) {
         // --- 更新模型并尝试恢复选择 ---
         DefaultComboBoxModel<String> newModel = new DefaultComboBoxModel<>(jsonFiles.toArray(new String[0]));
         selectDictComboBox.setModel(newModel); // 设置新模型
 
-        boolean selectionRestored = false;
-        if (previousSelectedName != null && jsonFiles.contains(previousSelectedName)) {
+        if (preferredName != null && jsonFiles.contains(preferredName)) {
             // 如果之前的选项仍然存在于新列表中，重新选中它
-            selectDictComboBox.setSelectedItem(previousSelectedName);
-            selectionRestored = true;
-            System.out.println("Selection restored: " + previousSelectedName);
+            selectDictComboBox.setSelectedItem(preferredName);
+            System.out.println("Selection restored: " + preferredName);
+            return true;
         } else if (!jsonFiles.isEmpty()) {
             // 如果之前的选项不在了，或者之前就没选，默认选第一个
             selectDictComboBox.setSelectedIndex(0);
@@ -530,37 +991,53 @@ public class WordMemorizerToolWindowPanel implements Disposable {
             // 也许应该在这里调用 clearWordDisplay() 来清空表格？
             // clearWordDisplay(); // 取消注释则清空表格和状态
         }
+        return false;
+    }
 
-        // 可以在这里保存状态吗？如果在构造函数中调用 refreshWordbookList，
-        // 可能会在 state 完全加载前就保存，导致问题。
-        // 最好只在用户明确操作（如点击加载、翻页）或程序退出时保存。
-        // saveState(); // 暂时不在这里保存
-
-        // 如果没有恢复之前的选择，并且列表不为空，那么新的默认选择(第一个)可能需要用户手动加载
-        if (!selectionRestored && !jsonFiles.isEmpty()) {
-            // 也许提示一下用户需要点击加载按钮？
-            showInfoNotification("Wordbook list refreshed. Click 'Load Selected' to load '" + selectDictComboBox.getSelectedItem() + "'.");
+    /**
+     * Index in the loaded book of a table row (also for random picks, which the table shows as a copy), or -1.
+     */
+    private int bookIndexOf(int modelRow) {
+        if (loadedSnapshot == null || loadedSnapshot.getWords() != allLoadedWords) {
+            return -1;
         }
+        return tableModel.toBookIndex(modelRow, allLoadedWords, loadedSnapshot.getLookupIndex()::find);
     }
 
+    /**
+     * Hint HTML for a word, built once per word (clicking through a page shows the same hints again).
+     * Phonetics, examples etc. are only read from the book's side file here, when a hint is first shown.
+     */
+    private String hintHtml(WordEntry entry, int bookIndex) {
+        return hintHtmlCache.computeIfAbsent(entry.getWord(), word -> {
+            StringBuilder html = new StringBuilder("<html>");
+            ExtendedEntry extended = loadedSnapshot != null && bookIndex >= 0 ? loadedSnapshot.getExtendedEntry(bookIndex) : null;
+            if (extended != null && !extended.getPhonetic().isEmpty()) {
+                html.append(StringUtil.escapeXmlEntities(extended.getPhonetic())).append("<br>");
+            }
+            html.append("[  ").append(StringUtil.escapeXmlEntities(entry.getTranslation())).append("   ]");
+            if (extended != null) {
+                appendHintSection(html, "例句", extended.getExamples());
+                appendHintSection(html, "短语", extended.getPhrases());
+                appendHintSection(html, "词根", extended.getRoots());
+            }
+            return html.append("</html>").toString();
+        });
+    }
 
-    // Helper to escape HTML special characters for safety if needed
-    private String escapeHtml(String text) {
-        if (text == null) return "";
-        return text.replace("&", "&")
-                .replace("<", "<")
-                .replace(">", ">")
-                .replace("\"", " \"")
-                .replace("'", "'");
+    private static void appendHintSection(StringBuilder html, String title, List<String> lines) {
+        for (int i = 0; i < Math.min(lines.size(), MAX_HINT_LINES); i++) {
+            html.append(i == 0 ? "<br><b>" + title + "</b>" : "").append("<br>")
+                    .append(StringUtil.escapeXmlEntities(lines.get(i)));
+        }
     }
 
-    private void showWordDetailHint(WordEntry entry, MouseEvent mouseEvent) {
+    private void showWordDetailHint(WordEntry entry, int bookIndex, MouseEvent mouseEvent) {
         // Prepare the content for the hint
 
 //        boolean hide = hideTranslationCheckBox.isSelected();
-        String translationText = entry.getTranslation();
         // Use HTML for basic formatting within the label
-        String hintContent = "<html>[  " + escapeHtml(translationText) + "   ]</html>";
+        String hintContent = hintHtml(entry, bookIndex);
 
         // Create a JLabel for the hint content - allows HTML rendering
         JComponent label = HintUtil.createInformationLabel(hintContent); // Use standard info style
@@ -586,6 +1063,11 @@ public class WordMemorizerToolWindowPanel implements Disposable {
 
     @Override
     public void dispose() {
+        disposed = true;
+        stopPagePlayback();
+        loadCoordinator.dispose();
+        viewEngine.dispose();
+        releaseLoadedSnapshot();
         System.out.println("WordMemorizerToolWindowPanel disposed.");
     }
 }
@@ -626,7 +1108,11 @@ class ButtonColumn extends AbstractCellEditor implements TableCellRenderer, Tabl
 
     @Override
     public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column) {
-        renderButton.setText((value == null) ? "" : value.toString());
+        // Called for every painted cell with the same text; setText would revalidate the button each time
+        String text = (value == null) ? "" : value.toString();
+        if (!text.equals(renderButton.getText())) {
+            renderButton.setText(text);
+        }
         return renderButton;
     }
 
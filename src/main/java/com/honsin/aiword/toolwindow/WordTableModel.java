@@ -2,13 +2,28 @@ package com.honsin.aiword.toolwindow;
 
 
 import com.honsin.aiword.model.WordEntry;
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
+import javax.swing.event.TableModelEvent;
 import javax.swing.table.AbstractTableModel;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
+import java.util.function.ToIntFunction;
 
+/**
+ * Table model over a whole wordbook. Rows are read from the backing list by index when the table asks
+ * for them, so the model never copies the book; pagination is just a window (offset + length) onto it.
+ * A filtered or sorted view is an index array into the book, computed elsewhere and swapped in whole.
+ * <p>
+ * Changes fire the narrowest event that describes them (updated/inserted/deleted rows, one column for the
+ * translation mask) instead of "everything changed", so the table does not relayout on every page flip.
+ */
 public class WordTableModel extends AbstractTableModel {
 
     // Column indices
@@ -17,24 +32,178 @@ public class WordTableModel extends AbstractTableModel {
     public static final int PRONOUNCE_COLUMN_INDEX = 2;
 
     private final String[] columnNames = {"单词 (Word)", "翻译 (Translation)", "发音 (Pronounce)"};
-    private List<WordEntry> words = new ArrayList<WordEntry>();
+    private List<WordEntry> source = Collections.emptyList(); // Whole book (or a random pick), never copied
+    private int[] view; // Source indices in display order, or null for all of the source in order
+    private int windowOffset = 0;
+    private int windowLength = 0;
     private boolean translationsHidden = false;
+    private int revealedRow = -1; // Row whose translation is shown even when translations are hidden
+    // The table asks for each column of every painted row; decode each shown row only once
+    private static final int ROW_CACHE_SIZE = 256; // Power of two, more than fit on a screen
+    private static final String MASKED_TRANSLATION = "****";
+    private static final String PRONOUNCE_TEXT = "▶ 发音"; // Text displayed on the button
+    private final int[] cachedRows = new int[ROW_CACHE_SIZE];
+    private final WordEntry[] cachedEntries = new WordEntry[ROW_CACHE_SIZE];
 
+    /**
+     * Shows a copy of {@code words} (used for random picks).
+     */
     public void setWords(List<WordEntry> words) {
-        this.words = new ArrayList<>(words); // Create a copy
-        fireTableDataChanged(); // Notify the table that the data has completely changed
+        setSource(new ArrayList<>(words));
     }
 
+    /**
+     * Backs the model by {@code source} without copying it and shows all of it.
+     * The list must not change while it is shown.
+     */
+    public void setSource(@NotNull List<WordEntry> source) {
+        int oldLength = windowLength;
+        this.source = source;
+        this.view = null;
+        this.windowOffset = 0;
+        this.windowLength = source.size();
+        this.revealedRow = -1;
+        fireRowsReplaced(oldLength);
+    }
+
+    public List<WordEntry> getSource() {
+        return source;
+    }
+
+    /**
+     * Swaps in a filtered/sorted view of the source and shows all of it.
+     *
+     * @param view indices into the source, or null for the whole source in order
+     */
+    public void setView(@Nullable int[] view) {
+        int oldLength = windowLength;
+        this.view = view;
+        this.windowOffset = 0;
+        this.windowLength = getViewSize();
+        this.revealedRow = -1;
+        fireRowsReplaced(oldLength);
+    }
+
+    /**
+     * Number of entries in the current view, i.e. what pagination pages through.
+     */
+    public int getViewSize() {
+        return view != null ? view.length : source.size();
+    }
+
+    /**
+     * Shows rows {@code [offset, offset + length)} of the view, e.g. one page.
+     */
+    public void setWindow(int offset, int length) {
+        int viewSize = getViewSize();
+        int start = Math.max(0, Math.min(offset, viewSize));
+        int end = Math.max(start, Math.min(start + Math.max(0, length), viewSize));
+        if (start == windowOffset && end - start == windowLength) {
+            return;
+        }
+        int oldLength = windowLength;
+        this.windowOffset = start;
+        this.windowLength = end - start;
+        this.revealedRow = -1;
+        fireRowsReplaced(oldLength);
+    }
+
+    /**
+     * Every shown row may have new content: rows present before and after are "updated" (repaint only),
+     * the difference is inserted or deleted (the only case that changes the table's size).
+     */
+    private void fireRowsReplaced(int oldLength) {
+        invalidateRowCache();
+        int common = Math.min(oldLength, windowLength);
+        if (common > 0) {
+            fireTableRowsUpdated(0, common - 1);
+        }
+        if (windowLength > oldLength) {
+            fireTableRowsInserted(oldLength, windowLength - 1);
+        } else if (windowLength < oldLength) {
+            fireTableRowsDeleted(windowLength, oldLength - 1);
+        }
+    }
+
+    /**
+     * Shows the whole view.
+     */
+    public void showAll() {
+        setWindow(0, getViewSize());
+    }
+
+    public int getWindowOffset() {
+        return windowOffset;
+    }
+
+    /**
+     * Index in the source of a table row.
+     */
+    public int toSourceIndex(int rowIndex) {
+        return view != null ? view[windowOffset + rowIndex] : windowOffset + rowIndex;
+    }
+
+    /**
+     * Index in {@code book} of a table row. When the model shows a copy (a random pick) its source
+     * indices mean nothing in the book, so the row's word is looked up with {@code find} instead.
+     *
+     * @return the index, or -1 if the book does not contain the word.
+     */
+    public int toBookIndex(int rowIndex, @NotNull List<WordEntry> book, @NotNull ToIntFunction<String> find) {
+        if (source == book) {
+            return toSourceIndex(rowIndex);
+        }
+        WordEntry entry = getWordEntryAt(rowIndex);
+        return entry == null ? -1 : find.applyAsInt(entry.getWord());
+    }
+
+    /**
+     * Position of source entry {@code sourceIndex} in the view, or -1 if the view does not contain it.
+     */
+    public int indexOfSourceIndex(int sourceIndex) {
+        if (view == null) {
+            return sourceIndex < source.size() ? sourceIndex : -1;
+        }
+        for (int i = 0; i < view.length; i++) {
+            if (view[i] == sourceIndex) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The rows currently shown, as a view (not a copy) of the source.
+     */
     public List<WordEntry> getWordsOnCurrentPage() {
-        return this.words;
+        if (view == null) {
+            return this.source.subList(windowOffset, windowOffset + windowLength);
+        }
+        int[] rows = view;
+        int offset = windowOffset;
+        int length = windowLength;
+        List<WordEntry> words = source;
+        return new AbstractList<>() {
+            @Override
+            public WordEntry get(int index) {
+                Objects.checkIndex(index, length);
+                return words.get(rows[offset + index]);
+            }
+
+            @Override
+            public int size() {
+                return length;
+            }
+        };
     }
 
     public void setTranslationsHidden(boolean hidden) {
         if (this.translationsHidden != hidden) {
             this.translationsHidden = hidden;
-            // Notify the table that the data in the translation column might have changed
-            fireTableDataChanged(); // Easiest way to refresh all cells
-            // Or more specific: fireTableChanged(new TableModelEvent(this, 0, getRowCount() -1, TRANSLATION_COLUMN_INDEX, TableModelEvent.UPDATE));
+            // Only the translation column changes; the table repaints just that column
+            if (windowLength > 0) {
+                fireTableChanged(new TableModelEvent(this, 0, windowLength - 1, TRANSLATION_COLUMN_INDEX, TableModelEvent.UPDATE));
+            }
         }
     }
 
@@ -42,18 +211,48 @@ public class WordTableModel extends AbstractTableModel {
         return translationsHidden;
     }
 
+    /**
+     * Shows the translation of a single row while translations are hidden (used by page playback).
+     *
+     * @param rowIndex row to reveal, or -1 to hide it again
+     */
+    public void setRevealedRow(int rowIndex) {
+        int previous = this.revealedRow;
+        if (previous == rowIndex) {
+            return;
+        }
+        this.revealedRow = rowIndex;
+        if (previous >= 0 && previous < windowLength) {
+            fireTableCellUpdated(previous, TRANSLATION_COLUMN_INDEX);
+        }
+        if (rowIndex >= 0 && rowIndex < windowLength) {
+            fireTableCellUpdated(rowIndex, TRANSLATION_COLUMN_INDEX);
+        }
+    }
+
     @Nullable
     public WordEntry getWordEntryAt(int rowIndex) {
-        if (rowIndex >= 0 && rowIndex < words.size()) {
-            return words.get(rowIndex);
+        if (rowIndex < 0 || rowIndex >= windowLength) {
+            return null;
+        }
+        int slot = rowIndex & (ROW_CACHE_SIZE - 1);
+        WordEntry entry = cachedEntries[slot];
+        if (entry == null || cachedRows[slot] != rowIndex) {
+            entry = source.get(toSourceIndex(rowIndex));
+            cachedEntries[slot] = entry;
+            cachedRows[slot] = rowIndex;
         }
-        return null;
+        return entry;
+    }
+
+    private void invalidateRowCache() {
+        Arrays.fill(cachedEntries, null);
     }
 
 
     @Override
     public int getRowCount() {
-        return words.size();
+        return windowLength;
     }
 
     @Override
@@ -87,18 +286,18 @@ public class WordTableModel extends AbstractTableModel {
 
     @Override
     public Object getValueAt(int rowIndex, int columnIndex) {
-        if (rowIndex < 0 || rowIndex >= words.size()) {
+        WordEntry entry = getWordEntryAt(rowIndex);
+        if (entry == null) {
             return null; // Should not happen with valid indices
         }
-        WordEntry entry = words.get(rowIndex);
 
         switch (columnIndex) {
             case WORD_COLUMN_INDEX:
                 return entry.getWord();
             case TRANSLATION_COLUMN_INDEX:
-                return translationsHidden ? "****" : entry.getTranslation();
+                return translationsHidden && rowIndex != revealedRow ? MASKED_TRANSLATION : entry.getTranslation();
             case PRONOUNCE_COLUMN_INDEX:
-                return "▶ 发音"; // Text displayed on the button
+                return PRONOUNCE_TEXT;
             default:
                 return null;
         }
@@ -0,0 +1,175 @@
+package com.honsin.aiword.service;
+
+import com.honsin.aiword.model.ExtendedEntry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Writing and reading the {@code .awc} cache and its {@code .awx} side file.
+ */
+public class CompiledWordbookTest {
+
+    private Path dir;
+    private Path source;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("awc-test");
+        source = dir.resolve("book.json");
+        Files.writeString(source, "[]");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    @Test
+    public void roundTripsEntriesAndExtendedFields() throws IOException {
+        CompiledWordbook compiled;
+        try (CompiledWordbook.Writer writer = CompiledWordbook.newWriter(CompiledWordbook.cacheFileFor(source))) {
+            writer.add("ability", "n. 能力", null);
+            writer.add("able", "adj. 能够的", "{\"ukphone\":\"'eɪbl\",\"sentences\":[\"She is able to swim.\"]}");
+            writer.add("ça", "pron. 这", null);
+            assertEquals(3, writer.size());
+            compiled = writer.commit(source);
+        }
+
+        CompiledWordbook reopened = CompiledWordbook.openIfUpToDate(source);
+        assertNotNull(reopened);
+        for (CompiledWordbook book : List.of(compiled, reopened)) {
+            assertEquals(3, book.size());
+            assertEquals("ability", book.getWord(0));
+            assertEquals("n. 能力", book.getTranslation(0));
+            assertEquals("ça", book.getWord(2));
+            assertEquals("pron. 这", book.getTranslation(2));
+        }
+        assertThrows(IndexOutOfBoundsException.class, () -> reopened.getWord(3));
+
+        ExtendedEntryStore extended = ExtendedEntryStore.openFor(reopened);
+        assertNotNull(extended);
+        assertNull(extended.get(0));
+        ExtendedEntry able = extended.get(1);
+        assertNotNull(able);
+        assertEquals("英 /'eɪbl/", able.getPhonetic());
+        assertEquals(List.of("She is able to swim."), able.getExamples());
+        assertNull(extended.get(2));
+    }
+
+    @Test
+    public void offsetTablesGrowPastTheirInitialSize() throws IOException {
+        int count = 5000;
+        CompiledWordbook compiled;
+        try (CompiledWordbook.Writer writer = CompiledWordbook.newWriter(CompiledWordbook.cacheFileFor(source))) {
+            for (int i = 0; i < count; i++) {
+                writer.add("w" + i, "t" + i, i == 3000 ? "{\"phonetic\":\"x\"}" : null);
+            }
+            compiled = writer.commit(source);
+        }
+        assertEquals(count, compiled.size());
+        assertEquals("w4999", compiled.getWord(count - 1));
+        assertEquals("t2048", compiled.getTranslation(2048));
+
+        ExtendedEntryStore extended = ExtendedEntryStore.openFor(compiled);
+        assertNotNull(extended);
+        assertEquals(count, extended.size());
+        assertNull(extended.getJson(2999));
+        assertEquals("{\"phonetic\":\"x\"}", extended.getJson(3000));
+        assertNull(extended.getJson(count - 1));
+    }
+
+    @Test
+    public void contentHashDependsOnEntriesOnly() throws IOException {
+        CompiledWordbook.ContentHasher hasher = new CompiledWordbook.ContentHasher();
+        hasher.add("ability", "n. 能力");
+        hasher.add("able", "adj. 能够的");
+        String expected = HexFormat.of().formatHex(hasher.finish());
+
+        assertEquals(expected, compile(source, "ability", "n. 能力", "able", "adj. 能够的").getContentHash());
+        Path other = dir.resolve("other.json");
+        Files.writeString(other, "[\n]");
+        assertEquals(expected, compile(other, "ability", "n. 能力", "able", "adj. 能够的").getContentHash());
+        assertNotEquals(expected, compile(other, "able", "adj. 能够的", "ability", "n. 能力").getContentHash());
+    }
+
+    @Test
+    public void staleOrCorruptCachesAreNotUsed() throws IOException {
+        compile(source, "ability", "n. 能力");
+        Path cache = CompiledWordbook.cacheFileFor(source);
+
+        Files.writeString(source, "[ ]");
+        assertNull("Source changed size", CompiledWordbook.openIfUpToDate(source));
+
+        compile(source, "ability", "n. 能力");
+        try (FileChannel channel = FileChannel.open(cache, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 1);
+        }
+        assertThrows(IOException.class, () -> CompiledWordbook.open(cache));
+        assertNull(CompiledWordbook.openIfUpToDate(source));
+
+        Files.write(cache, "not a cache at all, just some text".getBytes(StandardCharsets.UTF_8));
+        assertThrows(IOException.class, () -> CompiledWordbook.open(cache));
+    }
+
+    @Test
+    public void abortedWriterLeavesNothingBehind() throws IOException {
+        Path cache = CompiledWordbook.cacheFileFor(source);
+        try (CompiledWordbook.Writer writer = CompiledWordbook.newWriter(cache)) {
+            writer.add("ability", "n. 能力", "{\"phonetic\":\"x\"}");
+        }
+        try (Stream<Path> files = Files.list(cache.getParent())) {
+            assertEquals(List.of(), files.toList());
+        }
+        assertFalse(Files.exists(cache));
+    }
+
+    @Test
+    public void droppingExtendedFieldsRemovesTheSideFile() throws IOException {
+        Path cache = CompiledWordbook.cacheFileFor(source);
+        try (CompiledWordbook.Writer writer = CompiledWordbook.newWriter(cache)) {
+            writer.add("ability", "n. 能力", "{\"phonetic\":\"x\"}");
+            writer.commit(source);
+        }
+        assertTrue(Files.exists(CompiledWordbook.extendedFileFor(cache)));
+
+        CompiledWordbook compiled = compile(source, "ability", "n. 能力");
+        assertFalse(Files.exists(CompiledWordbook.extendedFileFor(cache)));
+        assertNull(ExtendedEntryStore.openFor(compiled));
+    }
+
+    /**
+     * Compiles {@code wordsAndTranslations} as the cache of {@code book}.
+     */
+    static CompiledWordbook compile(Path book, String... wordsAndTranslations) throws IOException {
+        try (CompiledWordbook.Writer writer = CompiledWordbook.newWriter(CompiledWordbook.cacheFileFor(book))) {
+            for (int i = 0; i < wordsAndTranslations.length; i += 2) {
+                writer.add(wordsAndTranslations[i], wordsAndTranslations[i + 1]);
+            }
+            return writer.commit(book);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.honsin.aiword.service;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Saving and reloading {@link StudyStats}, and recovering when the rollups and the event log disagree.
+ */
+public class StudyStatsTest {
+
+    private Path dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("stats-test");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    @Test
+    public void reloadsRollupsAndLaterEvents() throws IOException {
+        StudyStats stats = new StudyStats(dir);
+        stats.recordAnswer("book", "ability", true);
+        stats.recordAnswer("book", "able", false);
+        stats.dispose();
+
+        StudyStats reloaded = load();
+        assertEquals(2, reloaded.summary("book", 30).getTotalAnswers());
+        assertEquals(1, reloaded.summary("book", 30).getTotalRecalled());
+    }
+
+    @Test
+    public void rebuildsRollupsThatCoverMoreThanTheLog() throws IOException {
+        StudyStats stats = new StudyStats(dir);
+        stats.recordAnswer("book", "ability", true);
+        stats.recordAnswer("book", "able", false);
+        stats.recordAnswer("book", "abandon", true);
+        stats.dispose();
+
+        // Keep only the first event, as if an older copy of the log had been restored
+        Path log = dir.resolve("events.log");
+        long oneEvent = 8 + 2 + "book".length() + 8 + 1;
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            channel.truncate(oneEvent);
+        }
+
+        StudyStats rebuilt = load();
+        assertEquals(1, rebuilt.summary("book", 30).getTotalAnswers());
+
+        // The rebuilt rollups were saved and new events are counted after the shortened log
+        StudyStats next = new StudyStats(dir);
+        next.recordAnswer("book", "able", true);
+        next.dispose();
+        StudyStats reloaded = load();
+        assertEquals(2, reloaded.summary("book", 30).getTotalAnswers());
+        assertEquals(2, reloaded.summary("book", 30).getTotalRecalled());
+    }
+
+    /**
+     * A new instance on {@link #dir}, once it has finished loading.
+     */
+    private StudyStats load() {
+        StudyStats stats = new StudyStats(dir);
+        stats.dispose(); // Waits for the load; a disposed instance can still be read
+        return stats;
+    }
+}
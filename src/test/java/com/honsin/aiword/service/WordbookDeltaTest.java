@@ -0,0 +1,139 @@
+package com.honsin.aiword.service;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Reading and applying {@link WordbookDelta}s, and refusing those that do not fit.
+ */
+public class WordbookDeltaTest {
+
+    private static final String BOOK = "[\n"
+            + "  {\"word\": \"ability\", \"translations\": [{\"translation\": \"能力\", \"type\": \"n\"}], \"note\": \"keep me\"},\n"
+            + "  {\"word\": \"able\", \"translations\": [{\"translation\": \"能够的\", \"type\": \"adj\"}]},\n"
+            + "  {\"word\": \"abandon\", \"translations\": [{\"translation\": \"放弃\", \"type\": \"v\"}], \"phonetic\": \"ə'bændən\"}\n"
+            + "]";
+
+    private Path dir;
+    private Path book;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("delta-test");
+        book = dir.resolve("book.json");
+        Files.writeString(book, BOOK);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    @Test
+    public void appliesChangesInPlaceAndAppendsAdditions() throws IOException {
+        CompiledWordbook base = compileBook();
+        String target = hash("ability", "n. 能力", "abandon", "v. 放弃; v. 抛弃", "about", "prep. 关于");
+        WordbookDelta delta = WordbookDelta.read(writeDelta(base.getContentHash(), target));
+        assertEquals(3, delta.size());
+
+        CompiledWordbook result = delta.applyTo(book, base);
+        assertEquals(target, result.getContentHash());
+        assertEquals(3, result.size());
+        assertEquals("abandon", result.getWord(1));
+        assertEquals("v. 放弃; v. 抛弃", result.getTranslation(1));
+        assertEquals("about", result.getWord(2));
+        assertTrue(result.isUpToDate(book));
+
+        // The rewritten JSON parses to the same entries and keeps fields of untouched entries
+        List<String> parsed = new ArrayList<>();
+        try (InputStream in = Files.newInputStream(book)) {
+            WordbookParser.parse(in, "book.json", (word, translation) -> parsed.add(word + "=" + translation));
+        }
+        assertEquals(List.of("ability=n. 能力", "abandon=v. 放弃; v. 抛弃", "about=prep. 关于"), parsed);
+        assertTrue(Files.readString(book).contains("keep me"));
+
+        ExtendedEntryStore extended = ExtendedEntryStore.openFor(result);
+        assertNotNull(extended);
+        assertEquals("{\"phonetic\":\"ə'bændən2\"}", extended.getJson(1));
+    }
+
+    @Test
+    public void refusesDeltaForAnotherBase() throws IOException {
+        CompiledWordbook base = compileBook();
+        WordbookDelta delta = WordbookDelta.read(writeDelta(hash("other", "x"), base.getContentHash()));
+
+        assertThrows(WordbookDelta.MismatchException.class, () -> delta.applyTo(book, base));
+        assertEquals(BOOK, Files.readString(book));
+    }
+
+    @Test
+    public void refusesDeltaWhoseResultDoesNotMatchTheTarget() throws IOException {
+        CompiledWordbook base = compileBook();
+        WordbookDelta delta = WordbookDelta.read(writeDelta(base.getContentHash(), hash("ability", "n. 能力")));
+
+        assertThrows(WordbookDelta.MismatchException.class, () -> delta.applyTo(book, base));
+        assertEquals(BOOK, Files.readString(book));
+        assertEquals(base.getContentHash(), CompiledWordbook.openIfUpToDate(book).getContentHash());
+    }
+
+    @Test
+    public void rejectsMalformedDeltas() throws IOException {
+        Path file = dir.resolve("book.delta.json");
+        Files.writeString(file, "{\"added\": [");
+        assertThrows(WordbookFormatException.class, () -> WordbookDelta.read(file));
+        Files.writeString(file, "[]");
+        assertThrows(WordbookFormatException.class, () -> WordbookDelta.read(file));
+        Files.writeString(file, "{\"baseHash\": \"ab\", \"added\": []}");
+        assertThrows(WordbookFormatException.class, () -> WordbookDelta.read(file));
+    }
+
+    private CompiledWordbook compileBook() throws IOException {
+        try (CompiledWordbook.Writer writer = CompiledWordbook.newWriter(CompiledWordbook.cacheFileFor(book));
+             InputStream in = Files.newInputStream(book)) {
+            WordbookParser.parseDetailed(in, "book.json", (word, translation, extended) ->
+                    writer.add(word, translation, extended != null ? extended.toString() : null));
+            return writer.commit(book);
+        }
+    }
+
+    /**
+     * Removes "able", changes "abandon" (keeping its position) and adds "about".
+     */
+    private Path writeDelta(String baseHash, String targetHash) throws IOException {
+        Path file = dir.resolve("book.delta.json");
+        Files.writeString(file, "{\"baseHash\": \"" + baseHash.toUpperCase() + "\", \"targetHash\": \"" + targetHash + "\",\n"
+                + " \"removed\": [\"able\"],\n"
+                + " \"changed\": [{\"word\": \"abandon\", \"translations\": [{\"translation\": \"放弃\", \"type\": \"v\"},"
+                + " {\"translation\": \"抛弃\", \"type\": \"v\"}], \"phonetic\": \"ə'bændən2\"}],\n"
+                + " \"added\": [{\"word\": \"about\", \"translations\": [{\"translation\": \"关于\", \"type\": \"prep\"}]}]}");
+        return file;
+    }
+
+    private static String hash(String... wordsAndTranslations) {
+        CompiledWordbook.ContentHasher hasher = new CompiledWordbook.ContentHasher();
+        for (int i = 0; i < wordsAndTranslations.length; i += 2) {
+            hasher.add(wordsAndTranslations[i], wordsAndTranslations[i + 1]);
+        }
+        return HexFormat.of().formatHex(hasher.finish());
+    }
+}
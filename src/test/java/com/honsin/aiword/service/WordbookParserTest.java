@@ -0,0 +1,76 @@
+package com.honsin.aiword.service;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The streaming {@link WordbookParser}: entries it accepts and input it rejects early.
+ */
+public class WordbookParserTest {
+
+    @Test
+    public void combinesTranslationsAndSkipsIncompleteEntries() throws IOException {
+        List<String> entries = new ArrayList<>();
+        int count = parse("﻿ [\n"
+                + " {\"word\": \" ability \", \"translations\": [{\"translation\": \"能力\", \"type\": \"n\"},"
+                + "  {\"translation\": \"才能\"}, 3], \"unknown\": {\"a\": [1, 2]}},\n"
+                + " {\"word\": \"\", \"translations\": [{\"translation\": \"空\"}]},\n"
+                + " {\"word\": \"able\", \"translations\": []},\n"
+                + " {\"word\": \"abandon\", \"translations\": [{\"translation\": \"放弃\", \"type\": \"v\"}]}\n"
+                + "]", entries);
+        assertEquals(2, count);
+        assertEquals(List.of("ability=n. 能力; 才能", "abandon=v. 放弃"), entries);
+    }
+
+    @Test
+    public void keepsOnlyExtendedFieldsWhenAsked() throws IOException {
+        List<String> extended = new ArrayList<>();
+        WordbookParser.parseDetailed(stream("[{\"word\": \"a\", \"translations\": [{\"translation\": \"一\"}],"
+                        + " \"phonetic\": \"eɪ\", \"note\": \"x\"}, {\"word\": \"b\", \"translations\": [{\"translation\": \"二\"}]}]"),
+                "test", (word, translation, fields) -> extended.add(fields == null ? null : fields.toString()));
+        assertEquals("{\"phonetic\":\"eɪ\"}", extended.get(0));
+        assertNull(extended.get(1));
+    }
+
+    @Test
+    public void rejectsInputThatIsNotAWordbook() {
+        assertRejected("", "为空 (Wordbook is empty)");
+        assertRejected("   \n", "为空 (Wordbook is empty)");
+        assertRejected("<!DOCTYPE html><html>Not found</html>", "HTML page");
+        assertRejected("{\"word\": \"a\"}", "Not a wordbook JSON array");
+        assertRejected("[\"a\", \"b\"]", "entries must be objects");
+        assertRejected("[{\"word\": \"a\", \"translations\": [{\"translation\": \"一\"}]}] trailing", "Malformed");
+        assertRejected("[{\"word\": \"a\", \"translations\": [{\"translation\": \"一\"}]}, {\"word\": \"b\", ", "truncated");
+        assertRejected("[{\"word\": \"a\" \"translations\": []}]", "Malformed");
+
+        StringBuilder other = new StringBuilder("[");
+        for (int i = 0; i < 100; i++) {
+            other.append(i == 0 ? "" : ",").append("{\"id\": ").append(i).append('}');
+        }
+        assertRejected(other.append(']').toString(), "not a wordbook");
+    }
+
+    private static void assertRejected(String input, String messagePart) {
+        List<String> entries = new ArrayList<>();
+        WordbookFormatException e = assertThrows(WordbookFormatException.class, () -> parse(input, entries));
+        assertTrue(e.getMessage(), e.getMessage().contains(messagePart));
+    }
+
+    private static int parse(String input, List<String> entries) throws IOException {
+        return WordbookParser.parse(stream(input), "test", (word, translation) -> entries.add(word + "=" + translation));
+    }
+
+    private static ByteArrayInputStream stream(String input) {
+        return new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8));
+    }
+}
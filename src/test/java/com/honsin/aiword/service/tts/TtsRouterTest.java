@@ -0,0 +1,184 @@
+package com.honsin.aiword.service.tts;
+
+import com.sun.net.httpserver.HttpServer;
+import org.jetbrains.annotations.NotNull;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Routing and circuit breaking of {@link TtsRouter} against two local stand-in TTS servers.
+ */
+public class TtsRouterTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private StandIn primary;
+    private StandIn backup;
+    private TtsRouter router;
+
+    @Before
+    public void setUp() throws IOException {
+        primary = new StandIn("primary");
+        backup = new StandIn("backup");
+        router = new TtsRouter(now::get);
+    }
+
+    @After
+    public void tearDown() {
+        primary.stop();
+        backup.stop();
+    }
+
+    @Test
+    public void failsOverAndOpensAfterConsecutiveFailures() throws IOException {
+        primary.status = 500;
+        assertServedBy(backup, router.fetchAudio("word", providers()));
+
+        // Now ranked behind the backup; fail it directly until the breaker opens
+        fetchQuietly("word", primary);
+        assertEquals(TtsRouter.ProviderHealth.State.CLOSED, router.healthOf(primary).stateAt(now.get()));
+        fetchQuietly("word", primary);
+        assertEquals(TtsRouter.ProviderHealth.State.OPEN, router.healthOf(primary).stateAt(now.get()));
+
+        int hits = primary.hits.get();
+        backup.status = 404;
+        assertNull(router.fetchAudio("open", providers()));
+        assertEquals("An open breaker is not asked", hits, primary.hits.get());
+    }
+
+    @Test
+    public void opensOnErrorRate() {
+        // Never three failures in a row, but the error rate passes 0.5 on the fourth sample
+        for (int status : new int[]{500, 200, 500}) {
+            primary.status = status;
+            fetchQuietly("word", primary);
+        }
+        assertEquals(TtsRouter.ProviderHealth.State.CLOSED, router.healthOf(primary).stateAt(now.get()));
+        primary.status = 500;
+        fetchQuietly("word", primary);
+        assertEquals(TtsRouter.ProviderHealth.State.OPEN, router.healthOf(primary).stateAt(now.get()));
+    }
+
+    @Test
+    public void halfOpenTrialClosesOrReopens() throws IOException {
+        openPrimary();
+        backup.status = 404; // The backup has no audio, so the half-open primary gets the trial
+
+        now.addAndGet(TtsRouter.OPEN_COOLDOWN_MS);
+        assertEquals(TtsRouter.ProviderHealth.State.HALF_OPEN, router.healthOf(primary).stateAt(now.get()));
+        assertTrue(router.describeHealth(), router.describeHealth().contains("state=HALF_OPEN"));
+        int hits = primary.hits.get();
+        fetchQuietly("trial", primary, backup);
+        assertEquals(hits + 1, primary.hits.get());
+        assertEquals("A failed trial reopens at once", TtsRouter.ProviderHealth.State.OPEN,
+                router.healthOf(primary).stateAt(now.get()));
+
+        now.addAndGet(TtsRouter.OPEN_COOLDOWN_MS);
+        primary.status = 200;
+        assertServedBy(primary, router.fetchAudio("trial", providers()));
+        assertEquals(TtsRouter.ProviderHealth.State.CLOSED, router.healthOf(primary).stateAt(now.get()));
+    }
+
+    @Test
+    public void missDoesNotCountAsSuccess() throws IOException {
+        openPrimary();
+        now.addAndGet(TtsRouter.OPEN_COOLDOWN_MS);
+        primary.status = 404;
+        backup.status = 404;
+        assertNull(router.fetchAudio("unknown", providers()));
+        assertEquals("A trial without audio neither closes nor reopens", TtsRouter.ProviderHealth.State.HALF_OPEN,
+                router.healthOf(primary).stateAt(now.get()));
+    }
+
+    private void openPrimary() {
+        primary.status = 500;
+        for (int i = 0; i < 3; i++) {
+            fetchQuietly("word", primary);
+        }
+        assertEquals(TtsRouter.ProviderHealth.State.OPEN, router.healthOf(primary).stateAt(now.get()));
+    }
+
+    private void fetchQuietly(String word, TtsProvider... providers) {
+        try {
+            router.fetchAudio(word, List.of(providers));
+        } catch (IOException expected) {
+            // Every provider failed
+        }
+    }
+
+    private List<TtsProvider> providers() {
+        return List.of(primary, backup);
+    }
+
+    private static void assertServedBy(StandIn expected, TtsRouter.TtsAudio audio) {
+        assertEquals(expected.getId(), audio.getProviderId());
+        assertArrayEquals(expected.audio, audio.getData());
+    }
+
+    /**
+     * A provider backed by its own local HTTP server that answers with {@link #status}.
+     */
+    private static final class StandIn extends HttpTtsProvider {
+        private final String id;
+        private final byte[] audio;
+        private final HttpServer server;
+        private final AtomicInteger hits = new AtomicInteger();
+        private volatile int status = 200;
+
+        StandIn(String id) throws IOException {
+            this.id = id;
+            this.audio = ("mp3 of " + id).getBytes(StandardCharsets.UTF_8);
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+            server.createContext("/", exchange -> {
+                hits.incrementAndGet();
+                int code = status;
+                boolean ok = code == 200;
+                exchange.getResponseHeaders().add("Content-Type", ok ? "audio/mpeg" : "text/plain");
+                byte[] body = ok ? audio : "error".getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(code, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            });
+            server.start();
+        }
+
+        void stop() {
+            server.stop(0);
+        }
+
+        @Override
+        public @NotNull String getId() {
+            return id;
+        }
+
+        @Override
+        public @NotNull String getDisplayName() {
+            return id;
+        }
+
+        @Override
+        public boolean isAvailable() {
+            return true;
+        }
+
+        @Override
+        protected String buildUrl(@NotNull String encodedWord) {
+            return "http://127.0.0.1:" + server.getAddress().getPort() + "/" + encodedWord + ".mp3";
+        }
+    }
+}
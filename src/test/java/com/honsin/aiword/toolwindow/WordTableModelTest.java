@@ -0,0 +1,54 @@
+package com.honsin.aiword.toolwindow;
+
+import com.honsin.aiword.model.WordEntry;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Mapping of table rows back to the book, which the word hints use to read phonetics and examples.
+ */
+public class WordTableModelTest {
+
+    private final List<WordEntry> book = List.of(
+            new WordEntry("apple", "苹果"),
+            new WordEntry("banana", "香蕉"),
+            new WordEntry("cherry", "樱桃"),
+            new WordEntry("date", "枣"));
+    private final ToIntFunction<String> find = word -> {
+        for (int i = 0; i < book.size(); i++) {
+            if (book.get(i).getWord().equalsIgnoreCase(word)) return i;
+        }
+        return -1;
+    };
+
+    @Test
+    public void pageOfTheBookMapsThroughTheWindow() {
+        WordTableModel model = new WordTableModel();
+        model.setSource(book);
+        model.setWindow(2, 2);
+        assertEquals(2, model.toBookIndex(0, book, find));
+        assertEquals(3, model.toBookIndex(1, book, find));
+    }
+
+    @Test
+    public void viewOfTheBookMapsThroughTheView() {
+        WordTableModel model = new WordTableModel();
+        model.setSource(book);
+        model.setView(new int[]{3, 1});
+        assertEquals(3, model.toBookIndex(0, book, find));
+        assertEquals(1, model.toBookIndex(1, book, find));
+    }
+
+    @Test
+    public void randomPickIsLookedUpByWord() {
+        WordTableModel model = new WordTableModel();
+        model.setWords(List.of(book.get(2), book.get(0), new WordEntry("elder", "接骨木")));
+        assertEquals("Row 0 is cherry, not the book's first word", 2, model.toBookIndex(0, book, find));
+        assertEquals(0, model.toBookIndex(1, book, find));
+        assertEquals("Not in the book", -1, model.toBookIndex(2, book, find));
+    }
+}